@@ -0,0 +1,81 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import java.util.Random;
+
+/**
+ * A block change like the ones logged by our plugins, used by all benchmarks.
+ */
+@DatabaseTable
+public class BenchmarkBlock {
+
+    /**
+     * The blocks are spread over [0, WORLD_SIZE) x [0, WORLD_HEIGHT) x [0, WORLD_SIZE)
+     */
+    static final int WORLD_SIZE = 1024;
+    static final int WORLD_HEIGHT = 256;
+
+    @DatabaseField(generatedId = true)
+    private int id;
+    @DatabaseField(index = true)
+    private long timestamp;
+    @DatabaseField
+    private String reason;
+    @DatabaseField(index = true)
+    private int blockX;
+    @DatabaseField(index = true)
+    private int blockY;
+    @DatabaseField(index = true)
+    private int blockZ;
+    @DatabaseField
+    private int fromId;
+    @DatabaseField
+    private int toId;
+
+    BenchmarkBlock() {
+        // Empty constructor for ORMLite
+    }
+
+    BenchmarkBlock(long timestamp, String reason, int blockX, int blockY, int blockZ, int fromId, int toId) {
+        this.timestamp = timestamp;
+        this.reason = reason;
+        this.blockX = blockX;
+        this.blockY = blockY;
+        this.blockZ = blockZ;
+        this.fromId = fromId;
+        this.toId = toId;
+    }
+
+    static BenchmarkBlock random(Random random) {
+        return new BenchmarkBlock(System.currentTimeMillis(), random.nextBoolean() ? "break" : "place",
+                random.nextInt(WORLD_SIZE), random.nextInt(WORLD_HEIGHT), random.nextInt(WORLD_SIZE),
+                random.nextInt(256), random.nextInt(256));
+    }
+}
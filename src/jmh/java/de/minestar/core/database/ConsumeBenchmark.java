@@ -0,0 +1,76 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to consume {@value ConsumeBenchmark#BATCH_SIZE} objects, which is the cost a plugin pays on the
+ * server thread. The queue of the consumer grows with every call, so every iteration is a single shot on a new
+ * consumer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = ConsumeBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = ConsumeBenchmark.BATCH_SIZE)
+@Fork(1)
+public class ConsumeBenchmark {
+
+    static final int BATCH_SIZE = 100_000;
+
+    private DatabaseConsumer<BenchmarkBlock> consumer;
+    private BenchmarkBlock block;
+
+    @Setup(Level.Trial)
+    public void createBlock() {
+        this.block = BenchmarkBlock.random(new Random(42L));
+    }
+
+    @Setup(Level.Iteration)
+    public void createConsumer() {
+        // The consumer is never started, so it does not need a database
+        this.consumer = new DatabaseConsumer<>(null, BenchmarkBlock.class);
+    }
+
+    @Benchmark
+    public void consume() {
+        consumer.consume(block);
+    }
+}
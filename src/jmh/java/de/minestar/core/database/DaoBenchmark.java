@@ -0,0 +1,87 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.table.TableUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link DatabaseAccess#getDao(Class)}, which plugins must call for every usage of a Dao.
+ * The lookup of the cached Dao in the {@link DaoManager} is the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class DaoBenchmark {
+
+    private InMemoryConnection connection;
+    private DatabaseAccess access;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        this.connection = new InMemoryConnection();
+        this.access = new DatabaseAccess(connection);
+        TableUtils.createTable(access.getConnectionSource(), BenchmarkBlock.class);
+        // The first call creates and caches the Dao
+        access.getDao(BenchmarkBlock.class);
+    }
+
+    @Benchmark
+    public Dao<BenchmarkBlock, Integer> getDao() throws SQLException {
+        return access.getDao(BenchmarkBlock.class);
+    }
+
+    @Benchmark
+    public Dao<BenchmarkBlock, Integer> getReadDao() throws SQLException {
+        return access.getReadDao(BenchmarkBlock.class);
+    }
+
+    @Benchmark
+    public Dao<BenchmarkBlock, Integer> lookupDao() {
+        return DaoManager.lookupDao(access.getConnectionSource(), BenchmarkBlock.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        access.close();
+        connection.close();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.table.TableUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of one flush of a {@link DatabaseConsumer} into an in memory SQLite database depending on the
+ * number of queued objects. The queue is filled inside the measured method, because a setup per invocation distorts
+ * such short invocations. Filling the queue costs the time of {@link ConsumeBenchmark} per object, which is small
+ * compared to the flush.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class FlushBenchmark {
+
+    @Param({"1", "16", "64", "256"})
+    public int batchSize;
+
+    private InMemoryConnection connection;
+    private DatabaseAccess access;
+    private DatabaseConsumer<BenchmarkBlock> consumer;
+    private BenchmarkBlock[] blocks;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        this.connection = new InMemoryConnection();
+        this.access = new DatabaseAccess(connection);
+        TableUtils.createTable(access.getConnectionSource(), BenchmarkBlock.class);
+        this.consumer = new DatabaseConsumer<>(access, BenchmarkBlock.class);
+        // The ids are generated again by every insert, so the blocks are reused
+        Random random = new Random(42L);
+        this.blocks = new BenchmarkBlock[batchSize];
+        for (int i = 0; i < batchSize; ++i) {
+            blocks[i] = BenchmarkBlock.random(random);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() throws Exception {
+        // Keeps the size of the indexes comparable between the iterations
+        TableUtils.clearTable(access.getConnectionSource(), BenchmarkBlock.class);
+    }
+
+    @Benchmark
+    public void flush() {
+        for (BenchmarkBlock block : blocks) {
+            consumer.consume(block);
+        }
+        consumer.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        access.close();
+        connection.close();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of selecting all block changes inside a random cuboid, like the inspection of an area does.
+ * The table contains the given number of blocks with an index on every coordinate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class SelectBenchmark {
+
+    @Param({"262144"})
+    public int blocks;
+
+    @Param({"16", "64"})
+    public int cuboidSize;
+
+    private InMemoryConnection connection;
+    private DatabaseAccess access;
+    private Dao<BenchmarkBlock, Integer> dao;
+    private PreparedQuery<BenchmarkBlock> query;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        this.connection = new InMemoryConnection();
+        this.access = new DatabaseAccess(connection);
+        this.random = new Random(42L);
+        try (BulkLoad<BenchmarkBlock> load = access.beginBulkLoad(BenchmarkBlock.class)) {
+            List<BenchmarkBlock> batch = new ArrayList<>();
+            for (int i = 0; i < blocks; ++i) {
+                batch.add(BenchmarkBlock.random(random));
+                if (batch.size() == 10_000) {
+                    load.insert(batch);
+                    batch.clear();
+                }
+            }
+            load.insert(batch);
+        }
+
+        this.dao = access.getDao(BenchmarkBlock.class);
+        QueryBuilder<BenchmarkBlock, Integer> queryBuilder = dao.queryBuilder();
+        queryBuilder.where()
+                .between("blockX", new SelectArg(), new SelectArg())
+                .and()
+                .between("blockY", new SelectArg(), new SelectArg())
+                .and()
+                .between("blockZ", new SelectArg(), new SelectArg());
+        this.query = queryBuilder.prepare();
+    }
+
+    @Benchmark
+    public List<BenchmarkBlock> selectCuboid() throws SQLException {
+        int x = random.nextInt(BenchmarkBlock.WORLD_SIZE - cuboidSize);
+        int y = random.nextInt(BenchmarkBlock.WORLD_HEIGHT - cuboidSize);
+        int z = random.nextInt(BenchmarkBlock.WORLD_SIZE - cuboidSize);
+        query.setArgumentHolderValue(0, x);
+        query.setArgumentHolderValue(1, x + cuboidSize - 1);
+        query.setArgumentHolderValue(2, y);
+        query.setArgumentHolderValue(3, y + cuboidSize - 1);
+        query.setArgumentHolderValue(4, z);
+        query.setArgumentHolderValue(5, z + cuboidSize - 1);
+        return dao.query(query);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        access.close();
+        connection.close();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.field.FieldType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects lookups by id and executes them as one <code>WHERE id IN (...)</code> query. Lookups for the same id are
+ * merged into one. This replaces many single <code>queryForId</code> calls, for example inside a loop over all players
+ * of a tick, with a single round trip to the database.
+ * <p>
+ * The collected lookups are executed when the window after the first lookup has elapsed, when the maximum batch size is
+ * reached or when {@link BatchLoader#dispatch()} is invoked, for example at the end of a tick. The results are
+ * delivered by {@link CompletableFuture}, which are completed by the thread executing the query. The windows of all
+ * loaders are timed by one shared thread, which hands the queries to a thread pool, so a slow query of one loader
+ * does not delay the others.
+ * <p>
+ * Use {@link DatabaseAccess#createBatchLoader(Class, long)} to create a loader.
+ *
+ * @param <T>  The type of the loaded entities
+ * @param <ID> The type of the id of the entities
+ */
+public class BatchLoader<T, ID> {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    private static final int MAX_IN_ARGUMENTS = 500;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BatchLoader-window");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService queryPool = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "BatchLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DatabaseAccess access;
+    private final Class<T> entityClass;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private Map<ID, CompletableFuture<T>> pending;
+    private ScheduledFuture<?> windowTimer;
+
+    BatchLoader(DatabaseAccess access, Class<T> entityClass, long windowMillis) {
+        this(access, entityClass, windowMillis, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    BatchLoader(DatabaseAccess access, Class<T> entityClass, long windowMillis, int maxBatchSize) {
+        this.access = access;
+        this.entityClass = entityClass;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.pending = new HashMap<>();
+    }
+
+    /**
+     * Adds a lookup for the id to the current batch.
+     *
+     * @param id The id of the entity
+     * @return The future of the entity. Completed with null, if no entity with this id exists
+     */
+    public CompletableFuture<T> load(ID id) {
+        CompletableFuture<T> result;
+        boolean firstLookup;
+        boolean batchFull;
+        synchronized (this) {
+            firstLookup = pending.isEmpty();
+            result = pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+            batchFull = pending.size() >= maxBatchSize;
+            if (firstLookup && !batchFull) {
+                Map<ID, CompletableFuture<T>> batch = pending;
+                this.windowTimer = scheduler.schedule(() -> queryPool.execute(() -> dispatch(batch)), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batchFull)
+            queryPool.execute(this::dispatch);
+        return result;
+    }
+
+    /**
+     * Executes all collected lookups on the calling thread. Does nothing if there are no lookups.
+     */
+    public void dispatch() {
+        dispatch(null);
+    }
+
+    /**
+     * @param expected The batch, whose window has elapsed, or null to execute any batch. A window timer firing after
+     *                 its batch was already executed must not execute the next batch before its window elapsed
+     */
+    private void dispatch(Map<ID, CompletableFuture<T>> expected) {
+        Map<ID, CompletableFuture<T>> batch;
+        synchronized (this) {
+            if (pending.isEmpty() || (expected != null && pending != expected))
+                return;
+            batch = pending;
+            pending = new HashMap<>();
+            if (windowTimer != null) {
+                windowTimer.cancel(false);
+                this.windowTimer = null;
+            }
+        }
+
+        try {
+            Map<Object, T> entities = queryForIds(new ArrayList<>(batch.keySet()));
+            batch.forEach((id, future) -> future.complete(entities.get(id)));
+        } catch (Exception e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private Map<Object, T> queryForIds(List<ID> ids) throws SQLException {
+        BaseDaoImpl<T, ID> dao = access.getDao(entityClass);
+        FieldType idField = dao.getTableInfo().getIdField();
+        if (idField == null)
+            throw new SQLException("Class '" + entityClass + "' has no id field!");
+
+        Map<Object, T> entities = new HashMap<>(ids.size() * 2);
+        // Respect the maximum number of arguments per statement (999 for SQLite)
+        for (int from = 0; from < ids.size(); from += MAX_IN_ARGUMENTS) {
+            List<ID> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_ARGUMENTS));
+            for (T entity : dao.queryBuilder().where().in(idField.getColumnName(), chunk).query()) {
+                entities.put(idField.extractJavaFieldValue(entity), entity);
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+/**
+ * A block id and its data value packed into 16 bits: 12 bits for the id and 4 bits for the data. Persisted by the
+ * {@link BlockStatePersister} as a single SMALLINT column instead of two INT columns.
+ */
+public final class BlockState {
+
+    public static final int MAX_ID = (1 << 12) - 1;
+    public static final int MAX_DATA = (1 << 4) - 1;
+
+    private final int id;
+    private final int data;
+
+    /**
+     * @param id   The block id in [0, {@value BlockState#MAX_ID}]
+     * @param data The data value in [0, {@value BlockState#MAX_DATA}]
+     */
+    public BlockState(int id, int data) {
+        if (id < 0 || id > MAX_ID || data < 0 || data > MAX_DATA)
+            throw new IllegalArgumentException("Block state " + id + ":" + data + " is out of the supported range!");
+        this.id = id;
+        this.data = data;
+    }
+
+    /**
+     * @param packed The packed block state
+     * @return The unpacked block state
+     */
+    public static BlockState fromPacked(int packed) {
+        return new BlockState((packed >>> 4) & MAX_ID, packed & MAX_DATA);
+    }
+
+    /**
+     * @return The id and the data in the lower 16 bits
+     */
+    public int getPacked() {
+        return (id << 4) | data;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getData() {
+        return data;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof BlockState))
+            return false;
+        BlockState other = (BlockState) o;
+        return id == other.id && data == other.data;
+    }
+
+    @Override
+    public int hashCode() {
+        return getPacked();
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + data;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.ShortObjectType;
+
+/**
+ * Persists a {@link BlockState} as a single SMALLINT column containing its packed id and data. Use it with
+ * <code>@DatabaseField(persisterClass = BlockStatePersister.class)</code>.
+ */
+public class BlockStatePersister extends ShortObjectType {
+
+    private static final BlockStatePersister SINGLETON = new BlockStatePersister();
+
+    private BlockStatePersister() {
+        super(SqlType.SHORT, new Class<?>[]{BlockState.class});
+    }
+
+    public static BlockStatePersister getSingleton() {
+        return SINGLETON;
+    }
+
+    @Override
+    public Object javaToSqlArg(FieldType fieldType, Object javaObject) {
+        // The packed state uses all 16 bits, so states with an id above 2047 are stored negative
+        if (javaObject instanceof BlockState)
+            return (short) ((BlockState) javaObject).getPacked();
+        return javaObject;
+    }
+
+    @Override
+    public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) {
+        return BlockState.fromPacked(((Number) sqlArg).intValue() & 0xFFFF);
+    }
+
+    @Override
+    public boolean isValidGeneratedType() {
+        return false;
+    }
+
+    @Override
+    public boolean isValidForVersion() {
+        return false;
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A session loading a huge amount of rows into one table. While the session is open, the secondary indexes of the
+ * table do not exist, the constraint checks of the database are disabled (foreign keys for SQLite, foreign key and
+ * unique checks for MySQL) and the rows are committed only every {@value BulkLoad#COMMIT_INTERVAL} rows. When the
+ * session is finished, the indexes are built in one pass over the loaded table.
+ * <p>
+ * All rows are inserted on one connection, which is held by the session. The consumers created by
+ * {@link BulkLoad#createConsumer(int, long)} insert through this connection, so only use them while the session is
+ * open. Other writers to the table should pause during a bulk load. Usage:
+ * <pre>
+ * try (BulkLoad&lt;Block&gt; load = access.beginBulkLoad(Block.class)) {
+ *     DatabaseConsumer&lt;Block&gt; consumer = load.createConsumer(1024, 25L);
+ *     ... consume and flush ...
+ *     load.finish();
+ * }
+ * </pre>
+ *
+ * @param <T> The type of the loaded entities
+ */
+public class BulkLoad<T> implements AutoCloseable {
+
+    private static final int COMMIT_INTERVAL = 50_000;
+    private static final String MYSQL_DATABASE_NAME = "MySQL";
+    private static final String SQLITE_DATABASE_NAME = "SQLite";
+    // ER_CANT_DROP_FIELD_OR_KEY, the dropped index does not exist
+    private static final int MYSQL_CANT_DROP_KEY = 1091;
+
+    private final DatabaseAccess access;
+    private final Class<T> entityClass;
+    private final BaseDaoImpl<T, ?> dao;
+    private final ConnectionSource connectionSource;
+    private final DatabaseConnection connection;
+
+    private final List<String> createIndexStatements;
+    private final List<String> constraintSettings;
+    private final List<Long> previousConstraintValues;
+    private final boolean previousAutoCommit;
+    private final MappedInsert<T> mappedInsert;
+
+    private int uncommittedRows;
+    private boolean finished;
+
+    BulkLoad(DatabaseAccess access, Class<T> entityClass) throws SQLException {
+        this.access = access;
+        this.entityClass = entityClass;
+        this.dao = access.getDao(entityClass);
+        this.connectionSource = dao.getConnectionSource();
+        DatabaseType databaseType = connectionSource.getDatabaseType();
+
+        // Create the table without its indexes or drop the indexes of the existing table
+        this.createIndexStatements = new ArrayList<>();
+        List<String> createTableStatements = new ArrayList<>();
+        for (String statement : TableUtils.getCreateTableStatements(connectionSource, entityClass)) {
+            if (statement.startsWith("CREATE INDEX") || statement.startsWith("CREATE UNIQUE INDEX"))
+                createIndexStatements.add(statement);
+            else
+                createTableStatements.add(statement);
+        }
+
+        this.connection = connectionSource.getReadWriteConnection();
+        this.constraintSettings = constraintSettings(databaseType);
+        this.previousConstraintValues = new ArrayList<>(constraintSettings.size());
+        try {
+            if (!dao.isTableExists()) {
+                for (String statement : createTableStatements) {
+                    connection.executeStatement(statement, DatabaseConnection.DEFAULT_RESULT_FLAGS);
+                }
+            } else {
+                dropIndexes(databaseType);
+            }
+
+            // SQLite ignores the foreign key setting inside of a transaction, so it is set before
+            for (String setting : constraintSettings) {
+                previousConstraintValues.add(connection.queryForLong(readSetting(setting, databaseType)));
+                connection.executeStatement(writeSetting(setting, 0L, databaseType), DatabaseConnection.DEFAULT_RESULT_FLAGS);
+            }
+            this.previousAutoCommit = connection.isAutoCommitSupported() && connection.isAutoCommit();
+            if (previousAutoCommit)
+                connection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            restoreSettings();
+            connectionSource.releaseConnection(connection);
+            throw e;
+        }
+
+        EntityMapping<T> mapping = EntityMappings.get(entityClass);
+        this.mappedInsert = mapping != null && mapping.isInsertSupported() ? new MappedInsert<>(mapping, dao.getTableInfo(), databaseType) : null;
+    }
+
+    /**
+     * Creates a consumer inserting into the table of this session. The consumer must be flushed before the session is
+     * finished.
+     *
+     * @param flushSize       If the added object count is equals or higher than this parameter, the queue will be flushed.
+     * @param sleepTimeMillis The interval the consumer will check queues size
+     * @return A new consumer, which is not started yet
+     */
+    public DatabaseConsumer<T> createConsumer(int flushSize, long sleepTimeMillis) {
+        return new DatabaseConsumer<T>(access, entityClass, flushSize, sleepTimeMillis) {
+            @Override
+            protected void persist(List<T> elements) throws Exception {
+                insert(elements);
+            }
+        };
+    }
+
+    /**
+     * Inserts the entities on the connection of this session.
+     *
+     * @param elements The entities to insert
+     * @throws SQLException The entities could not be inserted
+     */
+    public synchronized void insert(List<T> elements) throws SQLException {
+        if (finished)
+            throw new IllegalStateException("The bulk load of " + entityClass.getName() + " is already finished!");
+        // All Dao operations of this thread use the connection of the session
+        connectionSource.saveSpecialConnection(connection);
+        try {
+            for (T element : elements) {
+                if (mappedInsert != null)
+                    mappedInsert.insert(connectionSource, element);
+                else
+                    dao.create(element);
+            }
+        } finally {
+            connectionSource.clearSpecialConnection(connection);
+        }
+        this.uncommittedRows += elements.size();
+        if (uncommittedRows >= COMMIT_INTERVAL) {
+            connection.commit(null);
+            this.uncommittedRows = 0;
+        }
+    }
+
+    /**
+     * Commits the remaining rows, enables the constraint checks and builds the indexes of the table. Invoking this
+     * method multiple times has no effect.
+     *
+     * @throws SQLException The rows could not be committed or the indexes could not be built, for example because a
+     *                      unique index is violated
+     */
+    public synchronized void finish() throws SQLException {
+        if (finished)
+            return;
+        this.finished = true;
+        try {
+            try {
+                if (previousAutoCommit)
+                    connection.commit(null);
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly();
+                throw e;
+            } finally {
+                // The connection returns to the pool, so the next user must not get the settings of the session
+                restoreAutoCommit();
+                restoreSettings();
+            }
+            for (String statement : createIndexStatements) {
+                connection.executeStatement(statement, DatabaseConnection.DEFAULT_RESULT_FLAGS);
+            }
+        } finally {
+            connectionSource.releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Finishes the session, if it was not finished before.
+     *
+     * @throws SQLException See {@link BulkLoad#finish()}
+     */
+    @Override
+    public void close() throws SQLException {
+        finish();
+    }
+
+    private void dropIndexes(DatabaseType databaseType) throws SQLException {
+        Set<String> indexNames = new LinkedHashSet<>();
+        for (FieldType fieldType : dao.getTableInfo().getFieldTypes()) {
+            if (fieldType.getIndexName() != null)
+                indexNames.add(fieldType.getIndexName());
+            if (fieldType.getUniqueIndexName() != null)
+                indexNames.add(fieldType.getUniqueIndexName());
+        }
+        boolean mySql = MYSQL_DATABASE_NAME.equals(databaseType.getDatabaseName());
+        for (String indexName : indexNames) {
+            StringBuilder sb = new StringBuilder("DROP INDEX ");
+            if (!mySql)
+                sb.append("IF EXISTS ");
+            databaseType.appendEscapedEntityName(sb, indexName);
+            if (mySql) {
+                sb.append(" ON ");
+                databaseType.appendEscapedEntityName(sb, dao.getTableInfo().getTableName());
+            }
+            try {
+                connection.executeStatement(sb.toString(), DatabaseConnection.DEFAULT_RESULT_FLAGS);
+            } catch (SQLException e) {
+                // MySQL has no IF EXISTS for indexes
+                if (!mySql || !isMissingIndex(e))
+                    throw e;
+            }
+        }
+    }
+
+    private static boolean isMissingIndex(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && ((SQLException) cause).getErrorCode() == MYSQL_CANT_DROP_KEY)
+                return true;
+        }
+        return false;
+    }
+
+    private void rollbackQuietly() {
+        try {
+            connection.rollback(null);
+        } catch (SQLException ignore) {
+        }
+    }
+
+    private void restoreAutoCommit() {
+        if (!previousAutoCommit)
+            return;
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ignore) {
+        }
+    }
+
+    private void restoreSettings() {
+        DatabaseType databaseType = connectionSource.getDatabaseType();
+        for (int i = 0; i < previousConstraintValues.size(); ++i) {
+            try {
+                connection.executeStatement(writeSetting(constraintSettings.get(i), previousConstraintValues.get(i), databaseType), DatabaseConnection.DEFAULT_RESULT_FLAGS);
+            } catch (SQLException ignore) {
+            }
+        }
+        previousConstraintValues.clear();
+    }
+
+    private static List<String> constraintSettings(DatabaseType databaseType) {
+        List<String> settings = new ArrayList<>(2);
+        if (MYSQL_DATABASE_NAME.equals(databaseType.getDatabaseName())) {
+            settings.add("foreign_key_checks");
+            settings.add("unique_checks");
+        } else if (SQLITE_DATABASE_NAME.equals(databaseType.getDatabaseName())) {
+            settings.add("foreign_keys");
+        }
+        return settings;
+    }
+
+    private static String readSetting(String setting, DatabaseType databaseType) {
+        return SQLITE_DATABASE_NAME.equals(databaseType.getDatabaseName()) ? "PRAGMA " + setting : "SELECT @@" + setting;
+    }
+
+    private static String writeSetting(String setting, long value, DatabaseType databaseType) {
+        return (SQLITE_DATABASE_NAME.equals(databaseType.getDatabaseName()) ? "PRAGMA " : "SET ") + setting + " = " + value;
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableInfo;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.Inflater;
+
+/**
+ * Moves old rows of a table from the database into immutable, compressed and columnar segment files on the local disk.
+ * Old rows are rarely read, but they bloat the tables, indices and buffer pool of the live database. The archived rows
+ * can still be queried from the memory-mapped segment files: every block of rows stores the minimum and maximum of its
+ * numeric columns, so a lookup of some block coordinates in a time range only decompresses the matching blocks.
+ * <p>
+ * An archival run streams the rows older than the cutoff ordered by id into new segment files. After a segment file is
+ * completely written and forced to the disk, its rows are deleted from the database in batches of a block. If the
+ * process dies between both steps, the next run deletes the rows of the last segment again.
+ * <p>
+ * The entity needs a numeric id column. Foreign fields and other non primitive columns are not supported. The archive
+ * keeps every segment file mapped until it is closed.
+ *
+ * @param <T> The type of the archived entities
+ */
+public class ColdArchive<T> implements AutoCloseable {
+
+    /**
+     * The default number of rows of a block, the unit of the skip index and of the deletion batches.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    /**
+     * The default maximum number of rows of a segment file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final DatabaseAccess access;
+    private final Class<T> entityClass;
+    private final Path directory;
+    private final int blockSize;
+    private final int segmentSize;
+
+    private final TableInfo<T, ?> tableInfo;
+    private final List<SegmentColumn> columns;
+    private final SegmentColumn idColumn;
+    private final SegmentColumn timestampColumn;
+    private final String filePrefix;
+
+    private final NavigableMap<Integer, SegmentReader> segments;
+
+    /**
+     * Creates the archive with the default block and segment size and opens the existing segment files.
+     *
+     * @param access          The access to the database
+     * @param entityClass     The class of the archived entities
+     * @param timestampColumn The name of the column deciding, whether a row is old
+     * @param directory       The directory of the segment files. Is created, if it does not exist
+     * @throws SQLException
+     * @throws IOException  The existing segment files could not be opened
+     */
+    public ColdArchive(DatabaseAccess access, Class<T> entityClass, String timestampColumn, Path directory) throws SQLException, IOException {
+        this(access, entityClass, timestampColumn, directory, DEFAULT_BLOCK_SIZE, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates the archive and opens the existing segment files.
+     *
+     * @param access          The access to the database
+     * @param entityClass     The class of the archived entities
+     * @param timestampColumn The name of the column deciding, whether a row is old
+     * @param directory       The directory of the segment files. Is created, if it does not exist
+     * @param blockSize       The number of rows of a block
+     * @param segmentSize     The maximum number of rows of a segment file
+     * @throws SQLException
+     * @throws IOException  The existing segment files could not be opened
+     */
+    public ColdArchive(DatabaseAccess access, Class<T> entityClass, String timestampColumn, Path directory, int blockSize, int segmentSize) throws SQLException, IOException {
+        if (blockSize <= 0 || segmentSize < blockSize)
+            throw new IllegalArgumentException("Invalid block size " + blockSize + " or segment size " + segmentSize + "!");
+        this.access = access;
+        this.entityClass = entityClass;
+        this.directory = directory;
+        this.blockSize = blockSize;
+        this.segmentSize = segmentSize;
+
+        BaseDaoImpl<T, ?> dao = access.getDao(entityClass);
+        this.tableInfo = dao.getTableInfo();
+        this.columns = new ArrayList<>();
+        SegmentColumn id = null;
+        SegmentColumn timestamp = null;
+        for (FieldType fieldType : tableInfo.getFieldTypes()) {
+            if (fieldType.isForeignCollection())
+                continue;
+            SegmentColumn column = new SegmentColumn(fieldType);
+            columns.add(column);
+            if (fieldType.isId() || fieldType.isGeneratedId())
+                id = column;
+            if (fieldType.getColumnName().equalsIgnoreCase(timestampColumn))
+                timestamp = column;
+        }
+        if (id == null || id.getKind() != SegmentColumn.Kind.LONG)
+            throw new IllegalArgumentException("The entity " + entityClass.getName() + " has no numeric id column!");
+        if (timestamp == null || timestamp.getKind() != SegmentColumn.Kind.LONG)
+            throw new IllegalArgumentException("The entity " + entityClass.getName() + " has no numeric or date column " + timestampColumn + "!");
+        this.idColumn = id;
+        this.timestampColumn = timestamp;
+        this.filePrefix = tableInfo.getTableName() + "-";
+
+        this.segments = new ConcurrentSkipListMap<>();
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, filePrefix + "*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(TEMPORARY_SUFFIX)) {
+                    // Unfinished segment of an aborted run, the rows are still in the database
+                    Files.delete(file);
+                } else if (fileName.endsWith(SEGMENT_SUFFIX)) {
+                    String sequence = fileName.substring(filePrefix.length(), fileName.length() - SEGMENT_SUFFIX.length());
+                    segments.put(Integer.parseInt(sequence), new SegmentReader(file));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves all rows with a timestamp older than the cutoff into new segment files and deletes them from the database.
+     * Only one run per archive is executed at once.
+     *
+     * @param cutoff The oldest timestamp to keep in the database (as stored in the timestamp column, milliseconds for
+     *               dates)
+     * @return The number of archived rows
+     * @throws SQLException
+     * @throws IOException
+     */
+    public synchronized long archiveBefore(long cutoff) throws SQLException, IOException {
+        Dao<T, ?> dao = access.getDao(entityClass);
+        if (!segments.isEmpty())
+            deleteArchivedRows(dao, segments.lastEntry().getValue());
+
+        long archived = 0L;
+        Object lastId = null;
+        while (true) {
+            QueryBuilder<T, ?> queryBuilder = dao.queryBuilder();
+            Where<T, ?> where = queryBuilder.where();
+            where.lt(timestampColumn.getName(), timestampColumn.toSqlArg(cutoff));
+            if (lastId != null)
+                where.and().gt(idColumn.getName(), lastId);
+            queryBuilder.orderBy(idColumn.getName(), true).limit((long) segmentSize);
+
+            int sequence = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            Path file = directory.resolve(String.format("%s%010d%s", filePrefix, sequence, SEGMENT_SUFFIX));
+            Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+            int rows;
+            // Read from the primary, a lagging replica could miss rows inside the deleted id ranges
+            ConnectionSource connectionSource = access.getConnectionSource();
+            ReusingRowMapper<T> rowMapper = new ReusingRowMapper<>(tableInfo.getFieldTypes(), tableInfo.createObject());
+            try (QueryCursor<T> cursor = new QueryCursor<>(connectionSource, queryBuilder.prepare(), rowMapper, DatabaseAccess.driverFetchSize(connectionSource, DEFAULT_FETCH_SIZE));
+                 SegmentWriter writer = new SegmentWriter(temporaryFile, columns, blockSize, cutoff)) {
+                while (cursor.hasNext()) {
+                    writer.append(cursor.next());
+                }
+                rows = writer.getRowCount();
+            }
+            if (rows == 0) {
+                Files.delete(temporaryFile);
+                return archived;
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            SegmentReader segment = new SegmentReader(file);
+            segments.put(sequence, segment);
+            deleteArchivedRows(dao, segment);
+            archived += rows;
+
+            if (rows < segmentSize)
+                return archived;
+            int idIndex = segment.columnIndex(idColumn.getName());
+            lastId = idColumn.toSqlArg(segment.getMax(segment.getBlockCount() - 1, idIndex));
+        }
+    }
+
+    // Deletes the rows of every block of the segment. Rows inserted after the run with an old timestamp get higher ids
+    // and are not deleted
+    private void deleteArchivedRows(Dao<T, ?> dao, SegmentReader segment) throws SQLException {
+        int idIndex = segment.columnIndex(idColumn.getName());
+        Object cutoff = timestampColumn.toSqlArg(segment.getCutoff());
+        for (int block = 0; block < segment.getBlockCount(); ++block) {
+            DeleteBuilder<T, ?> deleteBuilder = dao.deleteBuilder();
+            deleteBuilder.where().lt(timestampColumn.getName(), cutoff)
+                    .and().between(idColumn.getName(), idColumn.toSqlArg(segment.getMin(block, idIndex)), idColumn.toSqlArg(segment.getMax(block, idIndex)));
+            deleteBuilder.delete();
+        }
+    }
+
+    /**
+     * Queries the archived rows inside the block coordinates and time range.
+     *
+     * @param cuboid        The block coordinates
+     * @param xColumn       The name of the x coordinate column
+     * @param yColumn       The name of the y coordinate column
+     * @param zColumn       The name of the z coordinate column
+     * @param fromTimestamp The minimum timestamp (inclusive)
+     * @param toTimestamp   The maximum timestamp (inclusive)
+     * @return The matching rows in archival order
+     * @throws SQLException
+     */
+    public List<T> query(Cuboid cuboid, String xColumn, String yColumn, String zColumn, long fromTimestamp, long toTimestamp) throws SQLException {
+        return query(new ColumnRange(xColumn, cuboid.getMinX(), cuboid.getMaxX()),
+                new ColumnRange(yColumn, cuboid.getMinY(), cuboid.getMaxY()),
+                new ColumnRange(zColumn, cuboid.getMinZ(), cuboid.getMaxZ()),
+                new ColumnRange(timestampColumn.getName(), fromTimestamp, toTimestamp));
+    }
+
+    /**
+     * Queries the archived rows with all values inside the ranges. Segments and blocks outside of any range are
+     * skipped using the minimum and maximum of the columns and only the matching blocks are decompressed.
+     *
+     * @param ranges Ranges of numeric columns
+     * @return The matching rows in archival order
+     * @throws SQLException The rows could not be created
+     */
+    public List<T> query(ColumnRange... ranges) throws SQLException {
+        List<T> result = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        try {
+            for (SegmentReader segment : segments.values()) {
+                query(segment, ranges, inflater, result);
+            }
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private void query(SegmentReader segment, ColumnRange[] ranges, Inflater inflater, List<T> result) throws SQLException {
+        int[] rangeColumns = new int[ranges.length];
+        for (int i = 0; i < ranges.length; ++i) {
+            rangeColumns[i] = segment.columnIndex(ranges[i].getColumnName());
+            if (rangeColumns[i] < 0 || segment.getKind(rangeColumns[i]) != SegmentColumn.Kind.LONG)
+                throw new IllegalArgumentException("The column " + ranges[i].getColumnName() + " is not a numeric column of " + segment.getPath() + "!");
+        }
+        int[] entityColumns = new int[columns.size()];
+        for (int i = 0; i < entityColumns.length; ++i) {
+            entityColumns[i] = segment.columnIndex(columns.get(i).getName());
+        }
+
+        ColumnChunk[] chunks = new ColumnChunk[entityColumns.length];
+        for (int block = 0; block < segment.getBlockCount(); ++block) {
+            if (!mayContain(segment, block, rangeColumns, ranges))
+                continue;
+
+            // Decode the filtered columns first and the remaining columns only for blocks with matching rows
+            boolean[] matches = new boolean[segment.getBlockRowCount(block)];
+            Arrays.fill(matches, true);
+            boolean anyMatch = true;
+            for (int i = 0; i < ranges.length && anyMatch; ++i) {
+                inflater.reset();
+                ColumnChunk chunk = segment.readChunk(block, rangeColumns[i], inflater);
+                anyMatch = false;
+                for (int row = 0; row < matches.length; ++row) {
+                    matches[row] &= !chunk.isNull(row) && ranges[i].contains(chunk.getLong(row));
+                    anyMatch |= matches[row];
+                }
+            }
+            if (!anyMatch)
+                continue;
+
+            for (int i = 0; i < chunks.length; ++i) {
+                if (entityColumns[i] < 0) {
+                    chunks[i] = null;
+                    continue;
+                }
+                inflater.reset();
+                chunks[i] = segment.readChunk(block, entityColumns[i], inflater);
+            }
+            for (int row = 0; row < matches.length; ++row) {
+                if (!matches[row])
+                    continue;
+                T element = tableInfo.createObject();
+                for (int i = 0; i < chunks.length; ++i) {
+                    // Columns added after the archival keep their default value
+                    if (chunks[i] != null)
+                        columns.get(i).assign(element, chunks[i].getSqlArg(columns.get(i), row));
+                }
+                result.add(element);
+            }
+        }
+    }
+
+    private static boolean mayContain(SegmentReader segment, int block, int[] rangeColumns, ColumnRange[] ranges) {
+        for (int i = 0; i < ranges.length; ++i) {
+            if (!segment.mayContain(block, rangeColumns[i], ranges[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of archived rows in all segment files
+     */
+    public long getArchivedRowCount() {
+        long rows = 0L;
+        for (SegmentReader segment : segments.values()) {
+            rows += segment.getRowCount();
+        }
+        return rows;
+    }
+
+    /**
+     * @return The number of segment files
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Releases the segment files. The archive cannot be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        for (SegmentReader segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+}
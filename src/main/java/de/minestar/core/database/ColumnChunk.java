@@ -0,0 +1,285 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The values of one column of a block in a segment file. The values are encoded column by column to achieve a good
+ * compression: numbers are stored as zig-zag encoded deltas to the previous value, so sorted ids, timestamps and
+ * coordinates of nearby blocks need only one or two bytes before the compression.
+ * <p>
+ * Encoded layout: <code>[null flag][null bitmap, if flag is set][values of the not null rows]</code>, compressed with
+ * deflate.
+ */
+class ColumnChunk {
+
+    private final SegmentColumn.Kind kind;
+    private final long[] longs;
+    private final double[] doubles;
+    private final String[] strings;
+    private final boolean[] nulls;
+
+    private int size;
+    private boolean hasNulls;
+    private boolean hasValues;
+    private long min;
+    private long max;
+
+    ColumnChunk(SegmentColumn.Kind kind, int capacity) {
+        this.kind = kind;
+        this.longs = kind == SegmentColumn.Kind.LONG ? new long[capacity] : null;
+        this.doubles = kind == SegmentColumn.Kind.DOUBLE ? new double[capacity] : null;
+        this.strings = kind == SegmentColumn.Kind.STRING ? new String[capacity] : null;
+        this.nulls = new boolean[capacity];
+    }
+
+    /**
+     * @param sqlArg The value of the next row as written to the database. Can be null
+     */
+    void add(Object sqlArg) {
+        if (sqlArg == null) {
+            nulls[size++] = true;
+            hasNulls = true;
+            return;
+        }
+        nulls[size] = false;
+        switch (kind) {
+            case LONG:
+                long value = SegmentColumn.toLong(sqlArg);
+                longs[size] = value;
+                if (!hasValues || value < min)
+                    min = value;
+                if (!hasValues || value > max)
+                    max = value;
+                hasValues = true;
+                break;
+            case DOUBLE:
+                doubles[size] = ((Number) sqlArg).doubleValue();
+                break;
+            case STRING:
+                strings[size] = sqlArg.toString();
+                break;
+        }
+        ++size;
+    }
+
+    void clear() {
+        size = 0;
+        hasNulls = false;
+        hasValues = false;
+    }
+
+    SegmentColumn.Kind getKind() {
+        return kind;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isNull(int row) {
+        return nulls[row];
+    }
+
+    long getLong(int row) {
+        return longs[row];
+    }
+
+    /**
+     * @return True, if the chunk contains at least one not null value of a {@link SegmentColumn.Kind#LONG} column
+     */
+    boolean hasValues() {
+        return hasValues;
+    }
+
+    long getMin() {
+        return min;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @param column The column of this chunk
+     * @param row    The row inside the chunk
+     * @return The value as argument for the column
+     */
+    Object getSqlArg(SegmentColumn column, int row) {
+        if (nulls[row])
+            return null;
+        switch (kind) {
+            case LONG:
+                return column.toSqlArg(longs[row]);
+            case DOUBLE:
+                return column.toSqlArg(doubles[row]);
+            default:
+                return strings[row];
+        }
+    }
+
+    /**
+     * Encodes and compresses the values.
+     *
+     * @param deflater A reset deflater
+     * @return The compressed values
+     */
+    byte[] encode(Deflater deflater) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 2 + 16);
+        out.write(hasNulls ? 1 : 0);
+        if (hasNulls) {
+            byte[] bitmap = new byte[(size + 7) >>> 3];
+            for (int i = 0; i < size; ++i) {
+                if (nulls[i])
+                    bitmap[i >>> 3] |= 1 << (i & 7);
+            }
+            out.write(bitmap, 0, bitmap.length);
+        }
+
+        long previous = 0L;
+        for (int i = 0; i < size; ++i) {
+            if (nulls[i])
+                continue;
+            switch (kind) {
+                case LONG:
+                    writeVarLong(out, zigZag(longs[i] - previous));
+                    previous = longs[i];
+                    break;
+                case DOUBLE:
+                    long bits = Double.doubleToRawLongBits(doubles[i]);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) (bits >>> shift));
+                    }
+                    break;
+                case STRING:
+                    byte[] bytes = strings[i].getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, bytes.length);
+                    out.write(bytes, 0, bytes.length);
+                    break;
+            }
+        }
+
+        deflater.setInput(out.toByteArray());
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(out.size() / 2 + 16);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Decompresses and decodes the values of a chunk.
+     *
+     * @param kind       The kind of the column
+     * @param rowCount   The number of rows of the chunk
+     * @param compressed The compressed values
+     * @param inflater   A reset inflater
+     * @return The decoded chunk
+     */
+    static ColumnChunk decode(SegmentColumn.Kind kind, int rowCount, byte[] compressed, Inflater inflater) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        inflater.setInput(compressed);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsInput())
+                    throw new IllegalStateException("The column chunk is truncated!");
+                out.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("The column chunk is corrupted!", e);
+        }
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+
+        ColumnChunk chunk = new ColumnChunk(kind, rowCount);
+        boolean hasNulls = in.get() != 0;
+        if (hasNulls) {
+            byte[] bitmap = new byte[(rowCount + 7) >>> 3];
+            in.get(bitmap);
+            for (int i = 0; i < rowCount; ++i) {
+                chunk.nulls[i] = (bitmap[i >>> 3] & (1 << (i & 7))) != 0;
+            }
+        }
+        chunk.hasNulls = hasNulls;
+
+        long previous = 0L;
+        for (int i = 0; i < rowCount; ++i) {
+            if (chunk.nulls[i])
+                continue;
+            switch (kind) {
+                case LONG:
+                    previous += unZigZag(readVarLong(in));
+                    chunk.longs[i] = previous;
+                    break;
+                case DOUBLE:
+                    chunk.doubles[i] = in.getDouble();
+                    break;
+                case STRING:
+                    byte[] bytes = new byte[(int) readVarLong(in)];
+                    in.get(bytes);
+                    chunk.strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                    break;
+            }
+        }
+        chunk.size = rowCount;
+        return chunk;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+}
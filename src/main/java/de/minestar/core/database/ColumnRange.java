@@ -0,0 +1,83 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+/**
+ * An inclusive range of values of a numeric column, for example the block coordinates or the timestamps to search in a
+ * {@link ColdArchive}. Dates and booleans are compared by their millisecond and 0/1 values.
+ */
+public final class ColumnRange {
+
+    private final String columnName;
+    private final long min;
+    private final long max;
+
+    /**
+     * @param columnName The name of the column
+     * @param min        The minimum value (inclusive)
+     * @param max        The maximum value (inclusive)
+     */
+    public ColumnRange(String columnName, long min, long max) {
+        if (min > max)
+            throw new IllegalArgumentException("The minimum " + min + " is greater than the maximum " + max + "!");
+        this.columnName = columnName;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param value A value of the column
+     * @return True, if the value is inside the range
+     */
+    public boolean contains(long value) {
+        return value >= min && value <= max;
+    }
+
+    /**
+     * @param otherMin The minimum of another range
+     * @param otherMax The maximum of another range
+     * @return True, if both ranges overlap
+     */
+    public boolean overlaps(long otherMin, long otherMax) {
+        return otherMin <= max && otherMax >= min;
+    }
+
+    @Override
+    public String toString() {
+        return columnName + " [" + min + ", " + max + "]";
+    }
+}
@@ -41,10 +41,29 @@ import java.util.Map;
  * }
  * </pre>
  * </code>
+ * The optional object <code>tuning</code> opens the database in the tuned mode (see {@link SqliteSettings}). All of its
+ * keys are optional:
+ * <code>
+ * <pre>
+ * {
+ *     "file": "server/plugin/database.db",
+ *     "tuning": {
+ *         "journalMode": "WAL",
+ *         "synchronous": "NORMAL",
+ *         "mmapSize": 268435456,
+ *         "cacheSize": -16384,
+ *         "tempStore": "MEMORY",
+ *         "busyTimeoutMillis": 5000,
+ *         "readConnections": 4
+ *     }
+ * }
+ * </pre>
+ * </code>
  */
 public class ConfigSqliteConnection implements ConnectionSupplier {
 
     private static final String FILE = "file";
+    private static final String TUNING = "tuning";
 
     private final SqliteConnection sqliteConnection;
 
@@ -60,14 +79,19 @@ public class ConfigSqliteConnection implements ConnectionSupplier {
         validateValues(configJsonFile, values);
 
         String filePath = (String) values.get(FILE);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> tuning = (Map<String, Object>) values.get(TUNING);
 
-        return new SqliteConnection(filePath);
+        return new SqliteConnection(filePath, tuning == null ? null : SqliteSettings.fromJson(tuning));
     }
 
     private void validateValues(File configJsonFile, Map<String, Object> values) throws Exception {
         if (!values.containsKey(FILE)) {
             throw new IllegalArgumentException("File '" + configJsonFile.getAbsolutePath() + "' does not contains the key '" + FILE + "'!");
         }
+        if (values.containsKey(TUNING) && !(values.get(TUNING) instanceof Map)) {
+            throw new IllegalArgumentException("The key '" + TUNING + "' in file '" + configJsonFile.getAbsolutePath() + "' must be an object!");
+        }
     }
 
     @Override
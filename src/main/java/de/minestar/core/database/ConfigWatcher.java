@@ -0,0 +1,273 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Watches a {@link DatabaseConfig} file and applies its changes to the registered accesses and consumers while they
+ * are running:
+ * <ul>
+ * <li>Changed connection settings hot swap the primary connection of every access, see
+ * {@link DatabaseAccess#reconnect(ConnectionSupplier)}. The new connections of all accesses are opened and tested
+ * before the first access is switched, so either all or none of them are switched. Replicas are not changed, they
+ * need a new access.</li>
+ * <li>Changed pool settings resize the pools of the accesses.</li>
+ * <li>Changed consumer settings are used by the consumers from their next check of the queue on.</li>
+ * </ul>
+ * Listeners are informed about every applied configuration, for example to rebuild caches. A file which is not valid
+ * is ignored and the last valid configuration stays active, see {@link ConfigWatcher#getLastFailure()}.
+ */
+public class ConfigWatcher implements AutoCloseable {
+
+    // Editors write a file in several steps, so wait for the last one
+    private static final long SETTLE_MILLIS = 100L;
+
+    private final Path configFile;
+    private volatile DatabaseConfig config;
+
+    private final List<DatabaseAccess> accesses;
+    private final List<DatabaseConsumer<?>> consumers;
+    private final List<Consumer<DatabaseConfig>> listeners;
+
+    private volatile Exception lastFailure;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Loads the configuration. The file is not watched before {@link ConfigWatcher#start()}.
+     *
+     * @param configFile The JSON file of the configuration
+     * @throws IOException              The file could not be read
+     * @throws IllegalArgumentException The file is not valid
+     */
+    public ConfigWatcher(Path configFile) throws IOException {
+        this.configFile = configFile.toAbsolutePath();
+        this.config = DatabaseConfig.load(this.configFile);
+        this.accesses = new CopyOnWriteArrayList<>();
+        this.consumers = new CopyOnWriteArrayList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * @return The last valid configuration
+     */
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Creates an access using the current configuration and registers it.
+     *
+     * @return The new access
+     * @throws Exception Something went wrong while connecting
+     */
+    public DatabaseAccess createAccess() throws Exception {
+        DatabaseAccess access = config.createAccess();
+        accesses.add(access);
+        return access;
+    }
+
+    /**
+     * Applies the current pool settings to the access and keeps it up to date.
+     *
+     * @param access The access to register
+     */
+    public void register(DatabaseAccess access) {
+        config.applyTo(access);
+        accesses.add(access);
+    }
+
+    public void unregister(DatabaseAccess access) {
+        accesses.remove(access);
+    }
+
+    /**
+     * Creates a consumer using the current consumer settings and registers it. The consumer is not started.
+     *
+     * @param access      The access to the database
+     * @param entityClass The class of the entity to consume
+     * @param <T>         The type of objects to consume
+     * @return The new consumer
+     */
+    public <T> DatabaseConsumer<T> createConsumer(DatabaseAccess access, Class<T> entityClass) {
+        DatabaseConsumer<T> consumer = new DatabaseConsumer<>(access, entityClass, config.getFlushSize(), config.getSleepTimeMillis());
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * Applies the current consumer settings to the consumer and keeps it up to date.
+     *
+     * @param consumer The consumer to register
+     */
+    public void register(DatabaseConsumer<?> consumer) {
+        config.applyTo(consumer);
+        consumers.add(consumer);
+    }
+
+    public void unregister(DatabaseConsumer<?> consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * Add a listener informed about every applied configuration. It is invoked by the watching thread.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(Consumer<DatabaseConfig> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<DatabaseConfig> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reads the file and applies it, if it is valid. Invoked by the watching thread after every change of the file.
+     *
+     * @return True, if the configuration was applied
+     */
+    public synchronized boolean reload() {
+        try {
+            DatabaseConfig newConfig = DatabaseConfig.load(configFile);
+            if (!newConfig.isSameConnection(config)) {
+                List<DatabaseAccess> switched = new ArrayList<>(accesses);
+                List<ConnectionSupplier> suppliers = new ArrayList<>(switched.size());
+                List<ConnectionSource> sources = new ArrayList<>(switched.size());
+                try {
+                    for (int i = 0; i < switched.size(); ++i) {
+                        ConnectionSupplier supplier = newConfig.createSupplier();
+                        ConnectionSource source = supplier.createConnection();
+                        suppliers.add(supplier);
+                        sources.add(source);
+                        testConnection(source);
+                    }
+                } catch (Exception e) {
+                    sources.forEach(ConnectionSource::closeQuietly);
+                    throw e;
+                }
+                for (int i = 0; i < switched.size(); ++i)
+                    switched.get(i).swap(suppliers.get(i), sources.get(i));
+            }
+            for (DatabaseAccess access : accesses)
+                newConfig.applyTo(access);
+            for (DatabaseConsumer<?> consumer : consumers)
+                newConfig.applyTo(consumer);
+
+            this.config = newConfig;
+            this.lastFailure = null;
+        } catch (Exception e) {
+            this.lastFailure = e;
+            return false;
+        }
+        for (Consumer<DatabaseConfig> listener : listeners)
+            listener.accept(config);
+        return true;
+    }
+
+    private static void testConnection(ConnectionSource source) throws SQLException {
+        DatabaseConnection connection = source.getReadWriteConnection();
+        source.releaseConnection(connection);
+    }
+
+    /**
+     * @return The failure of the last reload or null, if it succeeded
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Starts watching the file using a daemon thread.
+     *
+     * @throws IOException The directory of the file cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (watcher != null)
+            throw new IllegalStateException("The config file " + configFile + " is already watched!");
+        this.watchService = configFile.getFileSystem().newWatchService();
+        configFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watcher = new Thread(this::watch, "ConfigWatcher-" + configFile.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                if (!isConfigChanged(service.take()))
+                    continue;
+                Thread.sleep(SETTLE_MILLIS);
+                // Drop the events of the remaining writes
+                WatchKey key;
+                while ((key = service.poll()) != null)
+                    isConfigChanged(key);
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignore) {
+            // Stopped by close
+        }
+    }
+
+    private boolean isConfigChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || configFile.getFileName().equals(event.context()))
+                changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Stops watching the file. The registered accesses and consumers are neither closed nor stopped.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher == null)
+            return;
+        watchService.close();
+        watcher.interrupt();
+        this.watcher = null;
+        this.watchService = null;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.util.List;
+
+/**
+ * Listens to the objects flowing through a {@link DatabaseConsumer}.
+ *
+ * @param <T> The type of objects the consumer consumes
+ * @see DatabaseConsumer#addListener(ConsumerListener)
+ */
+public interface ConsumerListener<T> {
+
+    /**
+     * Invoked by the thread adding the object to the consumer, before the object is persisted. Must be fast and thread
+     * safe, because it is invoked for every object.
+     *
+     * @param element The consumed object
+     */
+    default void onConsume(T element) {
+    }
+
+    /**
+     * Invoked by the consumer thread before a batch of objects is persisted.
+     *
+     * @param elements The objects to persist. Only valid during this call
+     */
+    default void beforePersist(List<T> elements) {
+    }
+
+    /**
+     * Invoked by the consumer thread after a batch of objects was persisted.
+     *
+     * @param elements The persisted objects. Only valid during this call
+     */
+    default void afterPersist(List<T> elements) {
+    }
+
+    /**
+     * Invoked by the consumer thread after the consumer was stopped and its queue was flushed.
+     */
+    default void onStop() {
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.logger.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a {@link DatabaseConsumer}, see {@link DatabaseConsumer#getMetrics()}. The events are counted by
+ * striped counters and {@link Histogram}s, so recording them does not block the threads consuming objects. The metrics
+ * are read by a {@link Snapshot}. The rates are computed between two snapshots.
+ */
+public class ConsumerMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerMetrics.class);
+
+    private final DatabaseConsumer<?> consumer;
+    private final Class<?> entityClass;
+
+    private final LongAdder enqueued;
+    private final LongAdder persisted;
+    private final LongAdder flushes;
+    private final LongAdder failures;
+    private final LongAdder failedElements;
+    private final Histogram batchSize;
+    private final Histogram flushLatency;
+    private final List<MetricsListener> listeners;
+
+    ConsumerMetrics(DatabaseConsumer<?> consumer, Class<?> entityClass) {
+        this.consumer = consumer;
+        this.entityClass = entityClass;
+        this.enqueued = new LongAdder();
+        this.persisted = new LongAdder();
+        this.flushes = new LongAdder();
+        this.failures = new LongAdder();
+        this.failedElements = new LongAdder();
+        this.batchSize = new Histogram();
+        this.flushLatency = new Histogram();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    void recordEnqueue() {
+        enqueued.increment();
+    }
+
+    void recordFlush(int elements, long latencyNanos) {
+        persisted.add(elements);
+        flushes.increment();
+        batchSize.record(elements);
+        flushLatency.record(latencyNanos);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onFlush(entityClass, elements, latencyNanos);
+            } catch (RuntimeException e) {
+                logger.error(e, "Metrics listener {} failed", listener);
+            }
+        }
+    }
+
+    void recordFailure(int elements, Exception cause) {
+        failures.increment();
+        failedElements.add(elements);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onFlushFailure(entityClass, elements, cause);
+            } catch (RuntimeException e) {
+                logger.error(e, "Metrics listener {} failed", listener);
+            }
+        }
+    }
+
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The current values of the metrics
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * The values of the {@link ConsumerMetrics} at one moment.
+     */
+    public static class Snapshot {
+
+        private final Class<?> entityClass;
+        private final long nanoTime;
+        private final int queueSize;
+        private final int flushSize;
+        private final long sleepTimeMillis;
+        private final long enqueued;
+        private final long persisted;
+        private final long flushes;
+        private final long failures;
+        private final long failedElements;
+        private final Histogram.Snapshot batchSize;
+        private final Histogram.Snapshot flushLatency;
+
+        private Snapshot(ConsumerMetrics metrics) {
+            this.entityClass = metrics.entityClass;
+            this.nanoTime = System.nanoTime();
+            this.queueSize = metrics.consumer.getQueueSize();
+            this.flushSize = metrics.consumer.getFlushSize();
+            this.sleepTimeMillis = metrics.consumer.getCurrentSleepTimeMillis();
+            this.enqueued = metrics.enqueued.sum();
+            this.persisted = metrics.persisted.sum();
+            this.flushes = metrics.flushes.sum();
+            this.failures = metrics.failures.sum();
+            this.failedElements = metrics.failedElements.sum();
+            this.batchSize = metrics.batchSize.snapshot();
+            this.flushLatency = metrics.flushLatency.snapshot();
+        }
+
+        public Class<?> getEntityClass() {
+            return entityClass;
+        }
+
+        /**
+         * @return The number of objects waiting in the queue
+         */
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public int getFlushSize() {
+            return flushSize;
+        }
+
+        /**
+         * @return The current interval of the consumer, which is halved while the queue is overloaded
+         */
+        public long getSleepTimeMillis() {
+            return sleepTimeMillis;
+        }
+
+        /**
+         * @return The number of consumed objects
+         */
+        public long getEnqueued() {
+            return enqueued;
+        }
+
+        /**
+         * @return The number of persisted objects
+         */
+        public long getPersisted() {
+            return persisted;
+        }
+
+        /**
+         * @return The number of persisted batches
+         */
+        public long getFlushes() {
+            return flushes;
+        }
+
+        /**
+         * @return The number of batches, which could not be persisted
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The number of objects in the failed batches
+         */
+        public long getFailedElements() {
+            return failedElements;
+        }
+
+        /**
+         * @return The distribution of the sizes of the persisted batches
+         */
+        public Histogram.Snapshot getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * @return The distribution of the time needed to persist a batch in nanoseconds
+         */
+        public Histogram.Snapshot getFlushLatency() {
+            return flushLatency;
+        }
+
+        /**
+         * @param earlier A snapshot taken before this one
+         * @return The consumed objects per second between both snapshots
+         */
+        public double getEnqueueRate(Snapshot earlier) {
+            return perSecond(enqueued - earlier.enqueued, earlier);
+        }
+
+        /**
+         * @param earlier A snapshot taken before this one
+         * @return The persisted batches per second between both snapshots
+         */
+        public double getFlushRate(Snapshot earlier) {
+            return perSecond(flushes - earlier.flushes, earlier);
+        }
+
+        private double perSecond(long events, Snapshot earlier) {
+            long nanos = nanoTime - earlier.nanoTime;
+            return nanos <= 0L ? 0.0 : events * (double) TimeUnit.SECONDS.toNanos(1L) / nanos;
+        }
+    }
+}
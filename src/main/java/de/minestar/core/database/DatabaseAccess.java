@@ -24,19 +24,64 @@
 
 package de.minestar.core.database;
 
+import com.j256.ormlite.dao.BaseDaoImpl;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableUtils;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * Provides an API to access a database connection to via a {@link ConnectionSupplier}.
+ * <p>
+ * Optional read replicas can be added. Writes and consumers always use the primary connection, while the queries of
+ * {@link DatabaseAccess#getReadDao(Class)}, {@link DatabaseAccess#queryCursor(PreparedQuery)} and
+ * {@link DatabaseAccess#parallelScan(Class, String, int)} are balanced over the replicas. Replicas lagging too far
+ * behind are skipped (see {@link DatabaseAccess#setReplicaLagProbe(ReplicaLagProbe, long)}) and if no replica is
+ * available, the primary is used. To read your own writes, use {@link DatabaseAccess#getDao(Class)}.
+ * <p>
+ * A lazy access opens its connections by their first usage instead of the constructor. Entity classes can be
+ * registered to prepare their tables and Daos together with the connections in the background, see
+ * {@link DatabaseAccess#warmUp(int)}.
  */
 public class DatabaseAccess {
 
-    private ConnectionSupplier connectionSupplier;
-    private ConnectionSource connectionSource;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final String MYSQL_DATABASE_NAME = "MySQL";
+
+    private static final long REPLICA_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    private static final ExecutorService WARM_UP_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "DatabaseAccess-warmUp");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ConnectionSupplier connectionSupplier;
+    private volatile ConnectionSource connectionSource;
+
+    private final List<Replica> replicas;
+    private final AtomicInteger nextReplica;
+    private final List<Class<?>> entityClasses;
+    private final PoolMetrics poolMetrics;
+    private volatile ReplicaLagProbe replicaLagProbe;
+    private volatile long maxReplicaLagMillis;
 
     /**
      * Opens the connection from the connectionSupplier to connect to the database.
@@ -46,17 +91,184 @@ public class DatabaseAccess {
      * @see ConnectionSupplier#createConnection()
      */
     public DatabaseAccess(ConnectionSupplier connectionSupplier) throws Exception {
-        this.connectionSupplier = connectionSupplier;
-        this.connectionSource = connectionSupplier.createConnection();
+        this(connectionSupplier, Collections.emptyList());
+    }
+
+    /**
+     * Opens the connections to the primary database and to its read replicas.
+     *
+     * @param primarySupplier  Used to open the connection to the primary database. All writes are executed here.
+     * @param replicaSuppliers Used to open the connections to the read replicas of the primary database.
+     * @throws Exception Something went wrong while opening the connections.
+     * @see ConnectionSupplier#createConnection()
+     */
+    public DatabaseAccess(ConnectionSupplier primarySupplier, List<ConnectionSupplier> replicaSuppliers) throws Exception {
+        this(primarySupplier, replicaSuppliers, false);
+    }
+
+    /**
+     * Creates an access to the primary database and to its read replicas.
+     *
+     * @param primarySupplier  Used to open the connection to the primary database. All writes are executed here.
+     * @param replicaSuppliers Used to open the connections to the read replicas of the primary database.
+     * @param lazy             If true, no connection is opened now but by its first usage or by
+     *                         {@link DatabaseAccess#warmUp(int)}
+     * @throws Exception Something went wrong while opening the connections.
+     * @see ConnectionSupplier#createConnection()
+     */
+    public DatabaseAccess(ConnectionSupplier primarySupplier, List<ConnectionSupplier> replicaSuppliers, boolean lazy) throws Exception {
+        this.connectionSupplier = primarySupplier;
+        this.poolMetrics = new PoolMetrics();
+        if (!lazy)
+            this.connectionSource = metered(primarySupplier.createConnection());
+
+        List<Replica> replicaList = new ArrayList<>(replicaSuppliers.size());
+        try {
+            for (ConnectionSupplier replicaSupplier : replicaSuppliers) {
+                replicaList.add(new Replica(replicaSupplier, lazy));
+            }
+        } catch (Exception e) {
+            replicaList.forEach(Replica::close);
+            if (connectionSource != null)
+                this.connectionSource.closeQuietly();
+            throw e;
+        }
+        this.replicas = Collections.unmodifiableList(replicaList);
+        this.nextReplica = new AtomicInteger();
+        this.entityClasses = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * @return The supplier of the primary connection, which is replaced by {@link DatabaseAccess#reconnect(ConnectionSupplier)}
+     */
+    public ConnectionSupplier getConnectionSupplier() {
+        return connectionSupplier;
     }
 
     /**
      * @return The underlying connection source from ORMLite.
+     * @throws IllegalStateException A lazy access cannot open its connection.
      */
     public ConnectionSource getConnectionSource() {
+        ConnectionSource source = connectionSource;
+        return source != null ? source : connect();
+    }
+
+    private synchronized ConnectionSource connect() {
+        if (connectionSource == null) {
+            try {
+                this.connectionSource = metered(connectionSupplier.createConnection());
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot connect to the database", e);
+            }
+        }
         return connectionSource;
     }
 
+    private ConnectionSource metered(ConnectionSource source) {
+        if (source instanceof MeteredConnectionSource)
+            ((MeteredConnectionSource) source).setMetrics(poolMetrics);
+        return source;
+    }
+
+    /**
+     * The metrics of the primary connection pool. They are kept over reconnects. Only connection sources created by
+     * the suppliers of this library are measured, see {@link MeteredConnectionSource}.
+     *
+     * @return The metrics of the primary connection pool
+     */
+    public PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
+    /**
+     * Registers entity classes, whose tables and Daos are prepared by {@link DatabaseAccess#warmUp(int)}.
+     *
+     * @param classes The entity classes
+     */
+    public void registerEntities(Class<?>... classes) {
+        entityClasses.addAll(Arrays.asList(classes));
+    }
+
+    /**
+     * Warms up the access in the background using a shared pool of daemon threads, see
+     * {@link DatabaseAccess#warmUp(int, Executor)}.
+     *
+     * @param connections The number of connections to open in every pool
+     * @return Completes, when the access is ready
+     */
+    public CompletableFuture<Void> warmUp(int connections) {
+        return warmUp(connections, WARM_UP_POOL);
+    }
+
+    /**
+     * Warms up the access in parallel without blocking the caller. The connections to the primary and all replicas
+     * are opened, then every pool is filled with the given number of connections while the tables of the registered
+     * entity classes are created if they do not exist and their table configs and Daos are built. Pools keep at most
+     * their maximum of free connections.
+     *
+     * @param connections The number of connections to open in every pool
+     * @param executor    Executes the tasks of the warm-up. They are blocking on the database
+     * @return Completes, when the access is ready. Completes exceptionally with the first failure
+     */
+    public CompletableFuture<Void> warmUp(int connections, Executor executor) {
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+
+        CompletableFuture<ConnectionSource> primary = CompletableFuture.supplyAsync(this::getConnectionSource, executor);
+        tasks.add(primary.thenCompose(source -> fillPool(source, connections, executor)));
+        for (Class<?> entityClass : entityClasses) {
+            tasks.add(primary.thenAcceptAsync(source -> {
+                try {
+                    EntityMappings.get(entityClass);
+                    TableUtils.createTableIfNotExists(source, entityClass);
+                    DaoManager.createDao(source, entityClass);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+
+        for (Replica replica : replicas) {
+            CompletableFuture<ConnectionSource> replicaSource = CompletableFuture.supplyAsync(replica::getConnectionSource, executor);
+            tasks.add(replicaSource.thenCompose(source -> fillPool(source, connections, executor)));
+            // The tables are created by the primary, the replicas only need their Daos
+            tasks.add(replicaSource.thenAccept(source -> {
+                for (Class<?> entityClass : entityClasses) {
+                    try {
+                        DaoManager.createDao(source, entityClass);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }
+            }));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static CompletableFuture<Void> fillPool(ConnectionSource source, int connections, Executor executor) {
+        // Hold all connections until every one is open, otherwise the pool hands out the same connection again
+        List<CompletableFuture<DatabaseConnection>> opened = new ArrayList<>(connections);
+        for (int i = 0; i < connections; ++i) {
+            opened.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return source.getReadOnlyConnection();
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(opened.toArray(new CompletableFuture<?>[0])).whenComplete((ignore, failure) -> {
+            for (CompletableFuture<DatabaseConnection> connection : opened) {
+                if (!connection.isCompletedExceptionally()) {
+                    try {
+                        source.releaseConnection(connection.join());
+                    } catch (SQLException ignored) {
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Create(or get if created before) the {@link com.j256.ormlite.dao.Dao} for the clazz to manipulate and query objects in the database. <br>
      * Do ALWAYS use this method to get a Dao and do NOT reuse them as attributes or long living objects. The reason for this is
@@ -69,37 +281,270 @@ public class DatabaseAccess {
      * @throws SQLException
      */
     public <D extends Dao<T, ?>, T> D getDao(Class<T> clazz) throws SQLException {
+        // Registers the generated table config before the first Dao is created
+        EntityMappings.get(clazz);
+        return DaoManager.createDao(getConnectionSource(), clazz);
+    }
+
+    /**
+     * Create(or get if created before) the {@link com.j256.ormlite.dao.Dao} for the clazz on a read replica. The same
+     * rules as for {@link DatabaseAccess#getDao(Class)} apply. Do not write with this Dao and do not expect to read
+     * recent writes with it. Without replicas, this is the same as {@link DatabaseAccess#getDao(Class)}.
+     *
+     * @param clazz The class the Dao will be responsible for.
+     * @param <T>   The class type
+     * @return Dao responsible for the clazz using a replica
+     * @throws SQLException
+     */
+    public <D extends Dao<T, ?>, T> D getReadDao(Class<T> clazz) throws SQLException {
+        EntityMappings.get(clazz);
+        return DaoManager.createDao(getReadConnectionSource(), clazz);
+    }
 
-        return DaoManager.createDao(connectionSource, clazz);
+    /**
+     * Choose the connection source for reads. The replicas are used in turn, skipping replicas lagging behind more
+     * than the accepted lag. If no replica is available, the primary connection source is returned.
+     *
+     * @return The connection source of a replica or the primary connection source
+     */
+    public ConnectionSource getReadConnectionSource() {
+        int replicaCount = replicas.size();
+        int start = nextReplica.getAndIncrement();
+        for (int i = 0; i < replicaCount; ++i) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicaCount));
+            if (replica.isAvailable(replicaLagProbe, maxReplicaLagMillis, REPLICA_CHECK_INTERVAL_NANOS))
+                return replica.getConnectionSource();
+        }
+        return getConnectionSource();
     }
 
     /**
-     * Close the current connection without throwing an exception.
+     * Enable the lag aware choice of the read replicas. The lag of every replica is measured at most once per second.
+     *
+     * @param probe        Measures the lag of a replica, for example {@link MySqlReplicaLagProbe}. If null, all
+     *                     replicas are used regardless of their lag
+     * @param maxLagMillis Replicas with a higher lag are not used for reads
+     */
+    public void setReplicaLagProbe(ReplicaLagProbe probe, long maxLagMillis) {
+        this.maxReplicaLagMillis = maxLagMillis;
+        this.replicaLagProbe = probe;
+    }
+
+    /**
+     * Opens a cursor over the result of the query using the default fetch size of {@value DatabaseAccess#DEFAULT_FETCH_SIZE}.
+     *
+     * @param query The query to execute
+     * @param <T>   The class type
+     * @return A cursor over the result. Must be closed after usage
+     * @throws SQLException
+     * @see DatabaseAccess#queryCursor(PreparedQuery, int)
+     */
+    public <T> QueryCursor<T> queryCursor(PreparedQuery<T> query) throws SQLException {
+        return queryCursor(query, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Opens a cursor over the result of the query on a read replica. The result is not loaded completely into the memory
+     * but fetched in chunks while iterating. For MySQL the rows are streamed one by one from the server, because the driver ignores
+     * the fetch size otherwise. SQLite steps through the result anyway.
+     *
+     * @param query     The query to execute
+     * @param fetchSize The amount of rows fetched from the database at once
+     * @param <T>       The class type
+     * @return A cursor over the result. Must be closed after usage
+     * @throws SQLException
+     */
+    public <T> QueryCursor<T> queryCursor(PreparedQuery<T> query, int fetchSize) throws SQLException {
+        ConnectionSource readSource = getReadConnectionSource();
+        return new QueryCursor<>(readSource, query, query, driverFetchSize(readSource, fetchSize));
+    }
+
+    /**
+     * Opens a cursor over the result of the query on a read replica, which maps the rows using the generated
+     * {@link EntityMapping} of the clazz instead of reflection. The query must select all columns of the clazz. Without
+     * a generated mapping, this is the same as {@link DatabaseAccess#queryCursor(PreparedQuery, int)}.
+     *
+     * @param clazz     The class of the rows
+     * @param query     The query to execute
+     * @param fetchSize The amount of rows fetched from the database at once
+     * @param <T>       The class type
+     * @return A cursor over the result. Must be closed after usage
+     * @throws SQLException
+     */
+    public <T> QueryCursor<T> queryCursor(Class<T> clazz, PreparedQuery<T> query, int fetchSize) throws SQLException {
+        EntityMapping<T> mapping = EntityMappings.get(clazz);
+        if (mapping == null)
+            return queryCursor(query, fetchSize);
+        BaseDaoImpl<T, ?> dao = getDao(clazz);
+        ConnectionSource readSource = getReadConnectionSource();
+        return new QueryCursor<>(readSource, query, mapping.createRowMapper(dao.getTableInfo()), driverFetchSize(readSource, fetchSize));
+    }
+
+    /**
+     * Opens a cursor over the result of the query, which maps every row into the given row object instead of creating
+     * a new object per row. Use this for huge results, where the rows are only processed and not stored.
+     *
+     * @param clazz     The class of the rows
+     * @param query     The query to execute
+     * @param fetchSize The amount of rows fetched from the database at once
+     * @param reusedRow The object the values of every row are written to
+     * @param <T>       The class type
+     * @return A cursor over the result, always returning the reusedRow. Must be closed after usage
+     * @throws SQLException
+     */
+    public <T> QueryCursor<T> queryCursor(Class<T> clazz, PreparedQuery<T> query, int fetchSize, T reusedRow) throws SQLException {
+        BaseDaoImpl<T, ?> dao = getDao(clazz);
+        ReusingRowMapper<T> rowMapper = new ReusingRowMapper<>(dao.getTableInfo().getFieldTypes(), reusedRow);
+        ConnectionSource readSource = getReadConnectionSource();
+        return new QueryCursor<>(readSource, query, rowMapper, driverFetchSize(readSource, fetchSize));
+    }
+
+    /**
+     * Runs the query on a read replica and reads the columns of the chunk into it, one chunk after another. Select
+     * only the needed columns in the query, for example by {@link com.j256.ormlite.stmt.QueryBuilder#selectColumns(String...)},
+     * to avoid transferring unused columns.
+     *
+     * @param query The query to execute. Its result must contain all columns of the chunk
+     * @param chunk The chunk, which is filled with the rows of every chunk of the result. Its capacity is used as fetch
+     *              size
+     * @return A cursor over the chunks of the result. Must be closed after usage
+     * @throws SQLException
+     */
+    public ProjectionCursor project(PreparedQuery<?> query, ProjectionChunk chunk) throws SQLException {
+        ConnectionSource readSource = getReadConnectionSource();
+        return new ProjectionCursor(readSource, query, chunk, driverFetchSize(readSource, chunk.getCapacity()));
+    }
+
+    /**
+     * Streams the result of the query. The stream MUST be closed after usage, use a try-with-resources block for this.
+     *
+     * @param query     The query to execute
+     * @param fetchSize The amount of rows fetched from the database at once
+     * @param <T>       The class type
+     * @return A sequential stream over the result
+     * @throws SQLException
+     * @see DatabaseAccess#queryCursor(PreparedQuery, int)
+     */
+    public <T> Stream<T> stream(PreparedQuery<T> query, int fetchSize) throws SQLException {
+        return queryCursor(query, fetchSize).stream();
+    }
+
+    /**
+     * Creates a scan over the whole table of the clazz, which splits the table into ranges of the column and reads the
+     * ranges concurrently on different connections. The partitions should not exceed the amount of connections the
+     * database can handle at once.
+     *
+     * @param clazz      The class of the rows
+     * @param columnName The name of a numeric column to split the table by. Should be the primary key or indexed
+     * @param partitions The amount of ranges read concurrently
+     * @param <T>        The class type
+     * @return The scan, which is started by {@link ParallelScan#stream(boolean)} or {@link ParallelScan#reduce}
+     */
+    public <T> ParallelScan<T> parallelScan(Class<T> clazz, String columnName, int partitions) {
+        return new ParallelScan<>(this, clazz, columnName, partitions);
+    }
+
+    /**
+     * Begins a bulk load into the table of the clazz. The table is created without its indexes if it does not exist,
+     * otherwise its indexes are dropped. The indexes are built when the session is finished.
+     *
+     * @param clazz The class of the loaded entities
+     * @param <T>   The class type
+     * @return The open session. Must be finished or closed after the load
+     * @throws SQLException The table could not be prepared
+     * @see BulkLoad
+     */
+    public <T> BulkLoad<T> beginBulkLoad(Class<T> clazz) throws SQLException {
+        return new BulkLoad<>(this, clazz);
+    }
+
+    /**
+     * Creates a loader, which collects lookups by id for the clazz and executes them together as one query.
+     *
+     * @param clazz        The class of the entities. Must have an id field
+     * @param windowMillis The time lookups are collected after the first lookup of a batch
+     * @param <T>          The class type
+     * @param <ID>         The type of the id
+     * @return A new loader
+     */
+    public <T, ID> BatchLoader<T, ID> createBatchLoader(Class<T> clazz, long windowMillis) {
+        return new BatchLoader<>(this, clazz, windowMillis);
+    }
+
+    static int driverFetchSize(ConnectionSource source, int fetchSize) {
+        // The MySQL driver only streams results when the fetch size is Integer.MIN_VALUE
+        if (MYSQL_DATABASE_NAME.equals(source.getDatabaseType().getDatabaseName()))
+            return Integer.MIN_VALUE;
+        return fetchSize;
+    }
+
+    /**
+     * @return The connection sources of the primary and the replicas, which are already open. Lazy connections are not
+     * opened by this method.
+     */
+    List<ConnectionSource> getOpenConnectionSources() {
+        List<ConnectionSource> sources = new ArrayList<>(replicas.size() + 1);
+        ConnectionSource source = connectionSource;
+        if (source != null)
+            sources.add(source);
+        for (Replica replica : replicas) {
+            ConnectionSource replicaSource = replica.getOpenConnectionSource();
+            if (replicaSource != null)
+                sources.add(replicaSource);
+        }
+        return sources;
+    }
+
+    /**
+     * Close the current connections to the primary and the replicas without throwing an exception.
      */
     public void close() {
-        this.connectionSource.closeQuietly();
+        ConnectionSource source = connectionSource;
+        if (source != null)
+            source.closeQuietly();
+        replicas.forEach(Replica::close);
     }
 
     /**
-     * Close the current connection and opens a new one using the initial provided connectionSupplier.
+     * Close the current connections and opens new ones using the initial provided connectionSuppliers.
      *
      * @throws Exception Something went wrong while connecting.
      * @see ConnectionSupplier#createConnection()
      */
     public void reconnect() throws Exception {
         this.reconnect(connectionSupplier);
+        for (Replica replica : replicas) {
+            replica.reconnect();
+        }
     }
 
     /**
-     * Close the current connection and opens a new one using the new used connectionSupplier. The new connectionSupplier will replace the old one.
+     * Opens a new primary connection using the new used connectionSupplier and closes the current one afterwards. The new
+     * connectionSupplier will replace the old one. If the new connection cannot be opened, the current one is kept.
+     * The connections to the replicas are not changed.
      *
      * @param newConnectionSupplier The new connectionSupplier used for {@link de.minestar.core.database.DatabaseAccess#reconnect()}
      * @throws Exception Something went wrong while connecting.
      * @see ConnectionSupplier#createConnection()
      */
     public void reconnect(ConnectionSupplier newConnectionSupplier) throws Exception {
-        this.close();
+        swap(newConnectionSupplier, newConnectionSupplier.createConnection());
+    }
+
+    /**
+     * Replaces the primary connection by an already opened one and closes the current one afterwards. Used to switch
+     * multiple accesses after all new connections were opened.
+     *
+     * @param newConnectionSupplier The supplier of the new connection
+     * @param newConnectionSource   The opened connection created by the supplier
+     */
+    void swap(ConnectionSupplier newConnectionSupplier, ConnectionSource newConnectionSource) {
+        // Swap before closing, so other threads never see a closed connection source
+        metered(newConnectionSource);
+        ConnectionSource oldConnectionSource = this.connectionSource;
         this.connectionSupplier = newConnectionSupplier;
-        this.connectionSource = newConnectionSupplier.createConnection();
+        this.connectionSource = newConnectionSource;
+        if (oldConnectionSource != null)
+            oldConnectionSource.closeQuietly();
     }
 }
@@ -0,0 +1,529 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import jodd.json.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A validated configuration of a complete database setup: the dialect and endpoints of the connections, the pool, the
+ * consumers and named caches. The file must be a JSON file like:
+ * <code>
+ * <pre>
+ * {
+ *     "dialect": "mysql",
+ *     "host": "localhost",
+ *     "port": 3306,
+ *     "database": "minecraft",
+ *     "username": "root",
+ *     "password": "test",
+ *     "replicas": [
+ *         { "host": "replica1" }
+ *     ],
+ *     "pool": {
+ *         "maxConnectionsFree": 5,
+ *         "maxConnectionAgeMillis": 3600000
+ *     },
+ *     "consumer": {
+ *         "flushSize": 64,
+ *         "sleepTimeMillis": 25
+ *     },
+ *     "caches": {
+ *         "recentChanges": { "windowMillis": 60000, "maxEntries": 100000 }
+ *     }
+ * }
+ * </pre>
+ * </code>
+ * The dialect is one of <code>mysql</code>, <code>mariadb</code>, <code>sqlite</code> and <code>memory</code>. If it is
+ * missing, it is <code>sqlite</code> for files containing the key <code>file</code> and <code>mysql</code> otherwise, so
+ * the files of {@link ConfigMySqlConnection} and {@link ConfigSqliteConnection} are valid configurations. SQLite uses the
+ * keys <code>file</code> and the optional <code>tuning</code> (see {@link SqliteSettings}), an in memory database the
+ * optional key <code>name</code>. Replicas inherit missing keys from the primary. All other sections are optional.
+ * <p>
+ * The whole file is validated at once and all problems are reported in one {@link IllegalArgumentException}. Use a
+ * {@link ConfigWatcher} to apply changes of the file to running connections and consumers.
+ */
+public class DatabaseConfig {
+
+    public enum Dialect {
+        MYSQL, MARIADB, SQLITE, MEMORY
+    }
+
+    private static final String DIALECT = "dialect";
+    private static final String HOST = "host";
+    private static final String PORT = "port";
+    private static final String DATABASE = "database";
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+    private static final String REPLICAS = "replicas";
+    private static final String FILE = "file";
+    private static final String TUNING = "tuning";
+    private static final String NAME = "name";
+    private static final String POOL = "pool";
+    private static final String MAX_CONNECTIONS_FREE = "maxConnectionsFree";
+    private static final String MAX_CONNECTION_AGE_MILLIS = "maxConnectionAgeMillis";
+    private static final String CONSUMER = "consumer";
+    private static final String FLUSH_SIZE = "flushSize";
+    private static final String SLEEP_TIME_MILLIS = "sleepTimeMillis";
+    private static final String CACHES = "caches";
+    private static final String WINDOW_MILLIS = "windowMillis";
+    private static final String MAX_ENTRIES = "maxEntries";
+
+    private static final int DEFAULT_PORT = 3306;
+    private static final int DEFAULT_MAX_CONNECTIONS_FREE = 5;
+    private static final long DEFAULT_MAX_CONNECTION_AGE_MILLIS = 3600000L;
+    private static final int DEFAULT_FLUSH_SIZE = 64;
+    private static final long DEFAULT_SLEEP_TIME_MILLIS = 25L;
+
+    private final Dialect dialect;
+    private final Endpoint primary;
+    private final List<Endpoint> replicas;
+    private final String file;
+    private final SqliteSettings tuning;
+    private final String name;
+
+    private final int maxConnectionsFree;
+    private final long maxConnectionAgeMillis;
+    private final int flushSize;
+    private final long sleepTimeMillis;
+    private final Map<String, Cache> caches;
+
+    // The raw values of everything requiring a reconnect, used to detect changes
+    private final Map<String, Object> connectionValues;
+
+    private DatabaseConfig(Map<String, Object> values, List<String> problems) {
+        this.connectionValues = new HashMap<>();
+        for (String key : new String[]{DIALECT, HOST, PORT, DATABASE, USERNAME, PASSWORD, REPLICAS, FILE, TUNING, NAME}) {
+            if (values.containsKey(key))
+                connectionValues.put(key, values.get(key));
+        }
+
+        this.dialect = parseDialect(values, problems);
+        this.replicas = new ArrayList<>();
+        if (dialect == Dialect.MYSQL || dialect == Dialect.MARIADB) {
+            this.primary = parseEndpoint("", values, null, problems);
+            for (Map<String, Object> replica : getObjects(values, REPLICAS, problems))
+                replicas.add(parseEndpoint(REPLICAS + "[" + replicas.size() + "].", replica, primary, problems));
+        } else {
+            this.primary = null;
+        }
+
+        this.file = getString(values, FILE, "", null, problems);
+        if (dialect == Dialect.SQLITE && file == null && !values.containsKey(FILE))
+            problems.add("the key '" + FILE + "' is missing");
+        Map<String, Object> tuningValues = getObject(values, TUNING, "", problems);
+        this.tuning = tuningValues == null ? null : parseTuning(tuningValues, problems);
+        this.name = getString(values, NAME, "", null, problems);
+        if (name != null && !name.matches("\\w+"))
+            problems.add("the key '" + NAME + "' must be a word");
+
+        Map<String, Object> pool = orEmpty(getObject(values, POOL, "", problems));
+        this.maxConnectionsFree = (int) getLong(pool, MAX_CONNECTIONS_FREE, POOL + ".", DEFAULT_MAX_CONNECTIONS_FREE, 0L, Integer.MAX_VALUE, problems);
+        this.maxConnectionAgeMillis = getLong(pool, MAX_CONNECTION_AGE_MILLIS, POOL + ".", DEFAULT_MAX_CONNECTION_AGE_MILLIS, 1L, Long.MAX_VALUE, problems);
+
+        Map<String, Object> consumer = orEmpty(getObject(values, CONSUMER, "", problems));
+        this.flushSize = (int) getLong(consumer, FLUSH_SIZE, CONSUMER + ".", DEFAULT_FLUSH_SIZE, 1L, Integer.MAX_VALUE, problems);
+        this.sleepTimeMillis = getLong(consumer, SLEEP_TIME_MILLIS, CONSUMER + ".", DEFAULT_SLEEP_TIME_MILLIS, 1L, Long.MAX_VALUE, problems);
+
+        this.caches = new LinkedHashMap<>();
+        Map<String, Object> cacheValues = orEmpty(getObject(values, CACHES, "", problems));
+        for (String cacheName : cacheValues.keySet()) {
+            Map<String, Object> cache = orEmpty(getObject(cacheValues, cacheName, CACHES + ".", problems));
+            String path = CACHES + "." + cacheName + ".";
+            long windowMillis = getLong(cache, WINDOW_MILLIS, path, 0L, 0L, Long.MAX_VALUE, problems);
+            int maxEntries = (int) getLong(cache, MAX_ENTRIES, path, Integer.MAX_VALUE, 1L, Integer.MAX_VALUE, problems);
+            caches.put(cacheName, new Cache(windowMillis, maxEntries));
+        }
+    }
+
+    /**
+     * Reads and validates a configuration file.
+     *
+     * @param configJsonFile The JSON file to read
+     * @return The valid configuration
+     * @throws IOException              The file could not be read
+     * @throws IllegalArgumentException The file is not valid. The message contains all problems
+     */
+    public static DatabaseConfig load(Path configJsonFile) throws IOException {
+        // Read file content as one string
+        String jsonString = new String(Files.readAllBytes(configJsonFile), Charset.forName("UTF8"));
+        return parse(jsonString, configJsonFile.toAbsolutePath().toString());
+    }
+
+    /**
+     * Parses and validates a configuration.
+     *
+     * @param jsonString The configuration as JSON
+     * @param source     The name of the source for error messages
+     * @return The valid configuration
+     * @throws IllegalArgumentException The configuration is not valid. The message contains all problems
+     */
+    public static DatabaseConfig parse(String jsonString, String source) {
+        Object parsed;
+        try {
+            parsed = new JsonParser().parse(jsonString);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("File '" + source + "' is not valid JSON: " + e.getMessage(), e);
+        }
+        if (!(parsed instanceof Map))
+            throw new IllegalArgumentException("File '" + source + "' does not contain a JSON object!");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> values = (Map<String, Object>) parsed;
+        return fromJson(values, source);
+    }
+
+    /**
+     * Validates a configuration parsed by a {@link JsonParser}, for example an object inside another file.
+     *
+     * @param values The parsed configuration
+     * @param source The name of the source for error messages
+     * @return The valid configuration
+     * @throws IllegalArgumentException The configuration is not valid. The message contains all problems
+     */
+    public static DatabaseConfig fromJson(Map<String, Object> values, String source) {
+        List<String> problems = new ArrayList<>();
+        DatabaseConfig config = new DatabaseConfig(values, problems);
+        if (!problems.isEmpty())
+            throw new IllegalArgumentException("File '" + source + "' is not valid: " + problems);
+        return config;
+    }
+
+    /**
+     * @return A supplier connecting to the primary database
+     */
+    public ConnectionSupplier createSupplier() {
+        switch (dialect) {
+            case MARIADB:
+                return new MariaDbConnection(primary.host, primary.port, primary.database, primary.username, primary.password);
+            case SQLITE:
+                return new SqliteConnection(file, tuning);
+            case MEMORY:
+                return name == null ? new InMemoryConnection() : new InMemoryConnection(name);
+            default:
+                return new MySqlConnection(primary.host, primary.port, primary.database, primary.username, primary.password);
+        }
+    }
+
+    /**
+     * @return The suppliers connecting to the replicas. Empty, if there are none
+     */
+    public List<ConnectionSupplier> createReplicaSuppliers() {
+        List<ConnectionSupplier> suppliers = new ArrayList<>(replicas.size());
+        for (Endpoint replica : replicas) {
+            if (dialect == Dialect.MARIADB)
+                suppliers.add(new MariaDbConnection(replica.host, replica.port, replica.database, replica.username, replica.password));
+            else
+                suppliers.add(new MySqlConnection(replica.host, replica.port, replica.database, replica.username, replica.password));
+        }
+        return suppliers;
+    }
+
+    /**
+     * Creates an access to the primary and all replicas and applies the pool settings.
+     *
+     * @return The new access
+     * @throws Exception Something went wrong while connecting
+     */
+    public DatabaseAccess createAccess() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(createSupplier(), createReplicaSuppliers());
+        applyTo(access);
+        return access;
+    }
+
+    /**
+     * Applies the pool settings to the pooled connections of the access, which are already open. A lazy access is not
+     * connected by this method. Other connection sources are not changed. SQLite connection sources keep their amount
+     * of read connections, see {@link SqliteSettings#getReadConnections()}.
+     *
+     * @param access The access to configure
+     */
+    public void applyTo(DatabaseAccess access) {
+        for (ConnectionSource connectionSource : access.getOpenConnectionSources())
+            applyTo(connectionSource);
+    }
+
+    private void applyTo(ConnectionSource connectionSource) {
+        if (connectionSource instanceof JdbcPooledConnectionSource) {
+            JdbcPooledConnectionSource pool = (JdbcPooledConnectionSource) connectionSource;
+            if (!(pool instanceof SqliteConnectionSource))
+                pool.setMaxConnectionsFree(maxConnectionsFree);
+            pool.setMaxConnectionAgeMillis(maxConnectionAgeMillis);
+        }
+    }
+
+    /**
+     * Applies the flush size and the sleep time to the consumer.
+     *
+     * @param consumer The consumer to configure
+     */
+    public void applyTo(DatabaseConsumer<?> consumer) {
+        consumer.setFlushSize(flushSize);
+        consumer.setSleepTimeMillis(sleepTimeMillis);
+    }
+
+    /**
+     * @param other Another configuration
+     * @return True, if both configurations connect to the same databases with the same settings
+     */
+    public boolean isSameConnection(DatabaseConfig other) {
+        return connectionValues.equals(other.connectionValues);
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * @return The primary endpoint of MySQL and MariaDB, otherwise null
+     */
+    public Endpoint getPrimary() {
+        return primary;
+    }
+
+    public List<Endpoint> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    /**
+     * @return The file of a SQLite database, otherwise null
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return The tuning of a SQLite database or null, if it is not tuned
+     */
+    public SqliteSettings getTuning() {
+        return tuning;
+    }
+
+    public int getMaxConnectionsFree() {
+        return maxConnectionsFree;
+    }
+
+    public long getMaxConnectionAgeMillis() {
+        return maxConnectionAgeMillis;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public long getSleepTimeMillis() {
+        return sleepTimeMillis;
+    }
+
+    /**
+     * @param cacheName The name of the cache in the section <code>caches</code>
+     * @return The settings of the cache or null, if it is not configured
+     */
+    public Cache getCache(String cacheName) {
+        return caches.get(cacheName);
+    }
+
+    public Map<String, Cache> getCaches() {
+        return Collections.unmodifiableMap(caches);
+    }
+
+    private static Dialect parseDialect(Map<String, Object> values, List<String> problems) {
+        String value = getString(values, DIALECT, "", null, problems);
+        if (value == null)
+            return values.containsKey(FILE) ? Dialect.SQLITE : Dialect.MYSQL;
+        try {
+            return Dialect.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            problems.add("unknown " + DIALECT + " '" + value + "'");
+            return Dialect.MYSQL;
+        }
+    }
+
+    private static SqliteSettings parseTuning(Map<String, Object> values, List<String> problems) {
+        try {
+            return SqliteSettings.fromJson(values);
+        } catch (RuntimeException e) {
+            problems.add("the key '" + TUNING + "' is not valid: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Endpoint parseEndpoint(String path, Map<String, Object> values, Endpoint defaults, List<String> problems) {
+        if (defaults == null) {
+            for (String key : new String[]{HOST, DATABASE, USERNAME, PASSWORD}) {
+                if (!values.containsKey(key))
+                    problems.add("the key '" + path + key + "' is missing");
+            }
+        }
+        return new Endpoint(
+                getString(values, HOST, path, defaults == null ? null : defaults.host, problems),
+                (int) getLong(values, PORT, path, defaults == null ? DEFAULT_PORT : defaults.port, 1L, 65535L, problems),
+                getString(values, DATABASE, path, defaults == null ? null : defaults.database, problems),
+                getString(values, USERNAME, path, defaults == null ? null : defaults.username, problems),
+                getString(values, PASSWORD, path, defaults == null ? null : defaults.password, problems));
+    }
+
+    private static String getString(Map<String, Object> values, String key, String path, String defaultValue, List<String> problems) {
+        Object value = values.get(key);
+        if (value == null)
+            return defaultValue;
+        if (!(value instanceof String)) {
+            problems.add("the key '" + path + key + "' must be a string");
+            return defaultValue;
+        }
+        return (String) value;
+    }
+
+    private static long getLong(Map<String, Object> values, String key, String path, long defaultValue, long minimum, long maximum, List<String> problems) {
+        Object value = values.get(key);
+        if (value == null)
+            return defaultValue;
+        if (!(value instanceof Integer || value instanceof Long)) {
+            problems.add("the key '" + path + key + "' must be an integer");
+            return defaultValue;
+        }
+        long number = ((Number) value).longValue();
+        if (number < minimum || number > maximum) {
+            problems.add("the key '" + path + key + "' is out of range: " + number);
+            return defaultValue;
+        }
+        return number;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getObject(Map<String, Object> values, String key, String path, List<String> problems) {
+        Object value = values.get(key);
+        if (value == null)
+            return null;
+        if (!(value instanceof Map)) {
+            problems.add("the key '" + path + key + "' must be an object");
+            return null;
+        }
+        return (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> getObjects(Map<String, Object> values, String key, List<String> problems) {
+        Object value = values.get(key);
+        if (value == null)
+            return Collections.emptyList();
+        if (!(value instanceof List) || !((List<Object>) value).stream().allMatch(element -> element instanceof Map)) {
+            problems.add("the key '" + key + "' must be an array of objects");
+            return Collections.emptyList();
+        }
+        return (List<Map<String, Object>>) value;
+    }
+
+    private static Map<String, Object> orEmpty(Map<String, Object> values) {
+        return values == null ? Collections.emptyMap() : values;
+    }
+
+    /**
+     * The address and the credentials of a MySQL or MariaDB server.
+     */
+    public static class Endpoint {
+
+        private final String host;
+        private final int port;
+        private final String database;
+        private final String username;
+        private final String password;
+
+        private Endpoint(String host, int port, String database, String username, String password) {
+            this.host = host;
+            this.port = port;
+            this.database = database;
+            this.username = username;
+            this.password = password;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port + "/" + database;
+        }
+    }
+
+    /**
+     * The settings of a named cache, for example of a {@link RecentChangeIndex} or a {@link BatchLoader}.
+     */
+    public static class Cache {
+
+        private final long windowMillis;
+        private final int maxEntries;
+
+        private Cache(long windowMillis, int maxEntries) {
+            this.windowMillis = windowMillis;
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * @return The time the entries are kept or the objects are collected. Zero, if not configured
+         */
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        /**
+         * @return The maximum number of entries. {@link Integer#MAX_VALUE}, if not configured
+         */
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+    }
+}
@@ -24,11 +24,15 @@
 
 package de.minestar.core.database;
 
-import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.logger.LoggerFactory;
+import com.j256.ormlite.support.ConnectionSource;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -49,6 +53,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The method {@link DatabaseConsumer#kickOf(DatabaseConsumer)} provide a standard method to start a consumer. The consumer
  * are handled by a Thread Pool. Using an own thread for the consumer needs to invoke {@link DatabaseConsumer#start()}
  * before starting the thread.
+ * <p>
+ * {@link ConsumerListener}s can be added to observe the consumed objects, for example to build in memory indices.
+ * The queue, the flushes and their failures are measured by the {@link ConsumerMetrics} of the consumer.
  *
  * @param <T> The type of objects to consume
  */
@@ -59,19 +66,25 @@ public class DatabaseConsumer<T> implements Runnable {
     private static final int DEFAULT_FLUSH_SIZE = 64;
     private static final int IDLE_CYCLES_BEFORE_RESET = 10;
     private static final int MAX_BUFFER_SIZE = 256;
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseConsumer.class);
 
     private final DatabaseAccess access;
-    private final int flushSize;
+    private volatile int flushSize;
     private final Class<T> entityClass;
     private final List<T> flushBuffer;
+    private final List<ConsumerListener<T>> listeners;
+    private final ConsumerMetrics metrics;
 
-    private final long initialSleepTime;
-    private long sleepTime;
+    private volatile long initialSleepTime;
+    private volatile long sleepTime;
     private BlockingQueue<T> queue;
 
     private boolean isRunning;
     private AtomicInteger idleCycles;
 
+    private MappedInsert<T> mappedInsert;
+    private ConnectionSource mappedInsertSource;
+
     /**
      * Creates an default database consumer with default sleep time of {@value DatabaseConsumer#DEFAULT_SLEEP_TIME_MILLIS} ms
      * and a default flush size of {@value DatabaseConsumer#DEFAULT_FLUSH_SIZE}.
@@ -101,6 +114,8 @@ public class DatabaseConsumer<T> implements Runnable {
         this.idleCycles = new AtomicInteger();
         this.queue = new LinkedBlockingQueue<>();
         this.flushBuffer = new ArrayList<>(flushSize);
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.metrics = new ConsumerMetrics(this, entityClass);
     }
 
     /**
@@ -110,6 +125,81 @@ public class DatabaseConsumer<T> implements Runnable {
      */
     public void consume(T ele) {
         this.queue.add(ele);
+        metrics.recordEnqueue();
+        for (ConsumerListener<T> listener : listeners) {
+            listener.onConsume(ele);
+        }
+    }
+
+    /**
+     * Add a listener observing the objects of this consumer.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(ConsumerListener<T> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a previously added listener.
+     *
+     * @param listener The listener to remove
+     */
+    public void removeListener(ConsumerListener<T> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * @return The number of objects waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /**
+     * Changes the flush size of a running consumer. It is used from the next check of the queue on.
+     *
+     * @param flushSize If the added object count is equals or higher than this parameter, the queue will be flushed.
+     */
+    public void setFlushSize(int flushSize) {
+        if (flushSize < 1)
+            throw new IllegalArgumentException("The flush size must be positive: " + flushSize);
+        this.flushSize = flushSize;
+    }
+
+    public long getSleepTimeMillis() {
+        return initialSleepTime;
+    }
+
+    /**
+     * @return The current interval, which is halved while the queue is overloaded
+     */
+    public long getCurrentSleepTimeMillis() {
+        return sleepTime;
+    }
+
+    public ConsumerMetrics getMetrics() {
+        return metrics;
+    }
+
+    DatabaseAccess getAccess() {
+        return access;
+    }
+
+    /**
+     * Changes the interval a running consumer checks the size of its queue. A halved interval is reset, too.
+     *
+     * @param sleepTimeMillis The interval the consumer will check queues size
+     */
+    public void setSleepTimeMillis(long sleepTimeMillis) {
+        if (sleepTimeMillis < 1L)
+            throw new IllegalArgumentException("The sleep time must be positive: " + sleepTimeMillis);
+        this.initialSleepTime = sleepTimeMillis;
+        this.sleepTime = sleepTimeMillis;
     }
 
     /**
@@ -165,6 +255,9 @@ public class DatabaseConsumer<T> implements Runnable {
         }
         while (!queue.isEmpty())
             flush();
+        for (ConsumerListener<T> listener : listeners) {
+            listener.onStop();
+        }
     }
 
     private boolean wasQueueOverloaded(int queueSize) {
@@ -172,18 +265,70 @@ public class DatabaseConsumer<T> implements Runnable {
     }
 
     private void flush(int queueSize) {
-        int elements = queue.drainTo(flushBuffer, Math.min(MAX_BUFFER_SIZE, queueSize));
+        queue.drainTo(flushBuffer, Math.min(MAX_BUFFER_SIZE, queueSize));
+        // The buffer still contains the objects of a failed batch
+        int elements = flushBuffer.size();
+        List<T> batch = flushBuffer;
+        long latencyNanos;
         try {
-            Dao<T, ?> dao = access.getDao(entityClass);
-            dao.callBatchTasks(() -> {
-                for (int i = 0; i < elements; ++i) {
-                    dao.create(flushBuffer.get(i));
-                }
-                return null;
-            });
-            flushBuffer.clear();
-        } catch (Exception ignore) {
+            for (ConsumerListener<T> listener : listeners) {
+                listener.beforePersist(batch);
+            }
+            long start = System.nanoTime();
+            persist(batch);
+            latencyNanos = System.nanoTime() - start;
+        } catch (Exception e) {
+            metrics.recordFailure(elements, e);
+            return;
+        }
+
+        // The batch is committed, so nothing must cause it to be persisted again
+        List<T> persisted = listeners.isEmpty() ? null : new ArrayList<>(batch);
+        flushBuffer.clear();
+        metrics.recordFlush(elements, latencyNanos);
+        if (persisted == null)
+            return;
+        for (ConsumerListener<T> listener : listeners) {
+            try {
+                listener.afterPersist(persisted);
+            } catch (RuntimeException e) {
+                logger.error(e, "Listener {} failed after persisting a batch of {}", listener, entityClass.getName());
+            }
+        }
+    }
+
+    /**
+     * Persists a batch of drained objects. The default implementation creates them in one batch task using the Dao of
+     * the entity class. If the entity class has a generated {@link EntityMapping}, its arguments are bound without
+     * reflection. Subclasses can override this to route the objects to other tables or databases.
+     *
+     * @param elements The objects to persist. Only valid during this call
+     * @throws Exception The objects could not be persisted
+     */
+    protected void persist(List<T> elements) throws Exception {
+        BaseDaoImpl<T, ?> dao = access.getDao(entityClass);
+        MappedInsert<T> insert = getMappedInsert(dao);
+        dao.callBatchTasks(() -> {
+            for (T element : elements) {
+                if (insert != null)
+                    insert.insert(dao.getConnectionSource(), element);
+                else
+                    dao.create(element);
+            }
+            return null;
+        });
+    }
+
+    private MappedInsert<T> getMappedInsert(BaseDaoImpl<T, ?> dao) {
+        EntityMapping<T> mapping = EntityMappings.get(entityClass);
+        if (mapping == null || !mapping.isInsertSupported())
+            return null;
+        // The statement depends on the database type, which can change by a reconnect
+        if (mappedInsert == null || mappedInsertSource != dao.getConnectionSource()) {
+            this.mappedInsert = new MappedInsert<>(mapping, dao.getTableInfo(), dao.getConnectionSource().getDatabaseType());
+            this.mappedInsertSource = dao.getConnectionSource();
         }
+        return mappedInsert;
     }
 
     private static ExecutorService threadPool = Executors.newCachedThreadPool();
@@ -0,0 +1,113 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.IntegerObjectType;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists a String as the INTEGER id of its value in a {@link StringDictionary}. Use it with
+ * <code>@DatabaseField(persisterClass = DictionaryPersister.class)</code>. The column uses the dictionary registered
+ * with the name in the <code>format</code> of the field or, if no format is set, with the column name. Queries can
+ * compare the column with strings, they are converted to their ids as well.
+ * <p>
+ * The persister never creates values, because ORMLite converts the arguments of queries the same way as the values of
+ * inserted rows. Unknown strings are converted to {@link StringDictionary#UNKNOWN_ID}, which matches no row. Create the
+ * values before inserting rows, see {@link StringDictionary#batchCreator(java.util.function.Function)}.
+ */
+public class DictionaryPersister extends IntegerObjectType {
+
+    private static final DictionaryPersister SINGLETON = new DictionaryPersister();
+
+    private static final Map<String, StringDictionary> DICTIONARIES = new ConcurrentHashMap<>();
+
+    private DictionaryPersister() {
+        super(SqlType.INTEGER, new Class<?>[]{String.class});
+    }
+
+    public static DictionaryPersister getSingleton() {
+        return SINGLETON;
+    }
+
+    /**
+     * Registers the dictionary for all columns using its name. Must be invoked before the first Dao of such a column is
+     * used.
+     *
+     * @param dictionary The dictionary to register
+     */
+    public static void register(StringDictionary dictionary) {
+        DICTIONARIES.put(dictionary.getName(), dictionary);
+    }
+
+    /**
+     * @param dictionary The dictionary to unregister
+     */
+    public static void unregister(StringDictionary dictionary) {
+        DICTIONARIES.remove(dictionary.getName(), dictionary);
+    }
+
+    private static StringDictionary dictionaryOf(FieldType fieldType) throws SQLException {
+        String name = fieldType.getFormat() != null ? fieldType.getFormat() : fieldType.getColumnName();
+        StringDictionary dictionary = DICTIONARIES.get(name);
+        if (dictionary == null)
+            throw new SQLException("No dictionary " + name + " is registered for the column " + fieldType.getColumnName() + "!");
+        return dictionary;
+    }
+
+    @Override
+    public Object javaToSqlArg(FieldType fieldType, Object javaObject) throws SQLException {
+        // Arguments of queries can already be ids. A read must not create dictionary entries on the primary
+        if (javaObject instanceof String)
+            return dictionaryOf(fieldType).findId((String) javaObject);
+        return javaObject;
+    }
+
+    @Override
+    public Object resultToSqlArg(FieldType fieldType, DatabaseResults results, int columnPos) throws SQLException {
+        int id = results.getInt(columnPos);
+        return results.wasNull(columnPos) ? null : id;
+    }
+
+    @Override
+    public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) throws SQLException {
+        return dictionaryOf(fieldType).valueOf((Integer) sqlArg);
+    }
+
+    @Override
+    public boolean isValidGeneratedType() {
+        return false;
+    }
+
+    @Override
+    public boolean isValidForVersion() {
+        return false;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.support.DatabaseResults;
+import com.j256.ormlite.table.DatabaseTableConfig;
+import com.j256.ormlite.table.TableInfo;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * The base class of the mappings generated by the {@link EntityProcessor} for every class annotated with
+ * {@link com.j256.ormlite.table.DatabaseTable}. A mapping provides the table config without scanning the annotations
+ * at runtime and maps rows and insert arguments with direct field access instead of reflection. Private fields are
+ * accessed by constant method handles, which the JIT inlines like direct accesses.
+ * <p>
+ * Mappings are found and registered automatically by the {@link DatabaseAccess} on the first usage of an entity class.
+ * Columns with custom persisters, foreign objects or other special types are still converted by their ORMLite
+ * {@link FieldType}.
+ *
+ * @param <T> The type of the entity
+ */
+public abstract class EntityMapping<T> {
+
+    /**
+     * The suffix of the generated mapping class. The mapping of <code>a.b.Outer.Entity</code> is
+     * <code>a.b.Outer_Entity_Mapping</code>.
+     */
+    public static final String CLASS_SUFFIX = "_Mapping";
+
+    private final Class<T> entityClass;
+    private final String[] fieldNames;
+    private final String[] insertFieldNames;
+
+    /**
+     * @param entityClass      The class of the entity
+     * @param fieldNames       The names of all persisted fields in the order of the mapped columns
+     * @param insertFieldNames The names of the fields bound as insert arguments or null, if inserts are not supported
+     */
+    protected EntityMapping(Class<T> entityClass, String[] fieldNames, String[] insertFieldNames) {
+        this.entityClass = entityClass;
+        this.fieldNames = fieldNames;
+        this.insertFieldNames = insertFieldNames;
+    }
+
+    /**
+     * @return The class of the entity
+     */
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return A new table config containing the field configs of all persisted fields
+     */
+    public abstract DatabaseTableConfig<T> createTableConfig();
+
+    /**
+     * @return True, if the entity can be inserted by the mapping. Entities with version fields, default values or
+     * foreign auto creation are inserted by ORMLite
+     */
+    public boolean isInsertSupported() {
+        return insertFieldNames != null;
+    }
+
+    /**
+     * @return A new instance of the entity
+     * @throws Throwable The entity could not be created
+     */
+    protected abstract T newInstance() throws Throwable;
+
+    /**
+     * Assigns the values of the current row to the entity.
+     *
+     * @param entity      The entity to fill
+     * @param results     The results positioned at the row
+     * @param columns     The positions of the columns in the order of the field names
+     * @param fieldTypes  The field types in the order of the field names
+     * @param columnCache The column position cache for {@link FieldType#resultToJava(DatabaseResults, Map)}
+     * @throws Throwable The values could not be read or assigned
+     */
+    protected abstract void mapRow(T entity, DatabaseResults results, int[] columns, FieldType[] fieldTypes, Map<String, Integer> columnCache) throws Throwable;
+
+    /**
+     * Extracts the insert arguments of the entity.
+     *
+     * @param entity     The entity to insert
+     * @param arguments  The arguments in the order of the insert field names
+     * @param fieldTypes The field types in the order of the insert field names
+     * @throws Throwable The values could not be extracted
+     */
+    protected abstract void bindArguments(T entity, Object[] arguments, FieldType[] fieldTypes) throws Throwable;
+
+    String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    String[] getInsertFieldNames() {
+        return insertFieldNames;
+    }
+
+    /**
+     * @param tableInfo The table info of a Dao of the entity
+     * @return A row mapper for queries selecting all columns of the entity
+     */
+    MappedRowMapper<T> createRowMapper(TableInfo<T, ?> tableInfo) {
+        return new MappedRowMapper<>(this, fieldTypes(tableInfo, fieldNames));
+    }
+
+    static FieldType[] fieldTypes(TableInfo<?, ?> tableInfo, String[] fieldNames) {
+        FieldType[] fieldTypes = new FieldType[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; ++i) {
+            for (FieldType fieldType : tableInfo.getFieldTypes()) {
+                if (fieldType.getFieldName().equals(fieldNames[i]))
+                    fieldTypes[i] = fieldType;
+            }
+            if (fieldTypes[i] == null)
+                throw new IllegalStateException("The field " + fieldNames[i] + " is not persisted by " + tableInfo.getDataClass().getName() + "!");
+        }
+        return fieldTypes;
+    }
+
+    /**
+     * Creates a getter handle of type <code>(entity)field</code> for a field of the entity or its super classes.
+     *
+     * @param entityClass The class of the entity
+     * @param fieldName   The name of the field
+     * @return The getter handle
+     */
+    protected static MethodHandle getter(Class<?> entityClass, String fieldName) {
+        Field field = findField(entityClass, fieldName);
+        try {
+            return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(field.getType(), entityClass));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the field " + fieldName + " of " + entityClass.getName() + "!", e);
+        }
+    }
+
+    /**
+     * Creates a setter handle of type <code>(entity, field)void</code> for a field of the entity or its super classes.
+     *
+     * @param entityClass The class of the entity
+     * @param fieldName   The name of the field
+     * @return The setter handle
+     */
+    protected static MethodHandle setter(Class<?> entityClass, String fieldName) {
+        Field field = findField(entityClass, fieldName);
+        try {
+            return MethodHandles.lookup().unreflectSetter(field).asType(MethodType.methodType(void.class, entityClass, field.getType()));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the field " + fieldName + " of " + entityClass.getName() + "!", e);
+        }
+    }
+
+    /**
+     * Creates a handle of type <code>()entity</code> for the no-arg constructor of the entity.
+     *
+     * @param entityClass The class of the entity
+     * @return The constructor handle
+     */
+    protected static MethodHandle constructor(Class<?> entityClass) {
+        try {
+            Constructor<?> constructor = entityClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(entityClass));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the no-arg constructor of " + entityClass.getName() + "!", e);
+        }
+    }
+
+    private static Field findField(Class<?> entityClass, String fieldName) {
+        for (Class<?> classWalk = entityClass; classWalk != null; classWalk = classWalk.getSuperclass()) {
+            try {
+                Field field = classWalk.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException ignore) {
+            }
+        }
+        throw new IllegalStateException("The class " + entityClass.getName() + " has no field " + fieldName + "!");
+    }
+
+    /**
+     * Wraps a throwable of a generated method into a SQLException.
+     */
+    static SQLException wrap(Throwable throwable, String message) {
+        if (throwable instanceof SQLException)
+            return (SQLException) throwable;
+        if (throwable instanceof Error)
+            throw (Error) throwable;
+        return new SQLException(message, throwable);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import java.util.Collections;
+
+/**
+ * Finds the generated {@link EntityMapping} of entity classes. The mapping is loaded by the class loader of the entity,
+ * so mappings of plugins with their own class loaders are found as well. The table config of a found mapping is
+ * registered at the {@link DaoManager}, so the Daos created afterwards skip the annotation scan.
+ */
+final class EntityMappings {
+
+    private static final ClassValue<EntityMapping<?>> MAPPINGS = new ClassValue<EntityMapping<?>>() {
+        @Override
+        protected EntityMapping<?> computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private EntityMappings() {
+    }
+
+    /**
+     * @param entityClass An entity class
+     * @param <T>         The type of the entity
+     * @return The generated mapping of the entity or null, if the entity has no generated mapping
+     */
+    @SuppressWarnings("unchecked")
+    static <T> EntityMapping<T> get(Class<T> entityClass) {
+        return (EntityMapping<T>) MAPPINGS.get(entityClass);
+    }
+
+    private static EntityMapping<?> load(Class<?> entityClass) {
+        if (entityClass.getClassLoader() == null)
+            return null;
+        String packagePrefix = entityClass.getPackage() == null ? "" : entityClass.getPackage().getName() + ".";
+        String nestedName = entityClass.getName().substring(packagePrefix.length()).replace('$', '_');
+        Class<?> mappingClass;
+        try {
+            mappingClass = Class.forName(packagePrefix + nestedName + EntityMapping.CLASS_SUFFIX, true, entityClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!EntityMapping.class.isAssignableFrom(mappingClass))
+            return null;
+
+        EntityMapping<?> mapping;
+        try {
+            mapping = (EntityMapping<?>) mappingClass.newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Outdated mapping, fall back to reflection
+            return null;
+        }
+        if (mapping.getEntityClass() != entityClass)
+            return null;
+        DatabaseTableConfig<?> tableConfig = mapping.createTableConfig();
+        DaoManager.addCachedDatabaseConfigs(Collections.<DatabaseTableConfig<?>>singleton(tableConfig));
+        return mapping;
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an {@link EntityMapping} for every class annotated with {@link com.j256.ormlite.table.DatabaseTable}. The
+ * processor is registered as service of this library, so every compilation with this library on the class path runs
+ * it.
+ * <p>
+ * Entities, which cannot be mapped (abstract, generic, not accessible from their package, without no-arg constructor
+ * or with foreign collections), are skipped with a note and still work by reflection.
+ */
+@SupportedAnnotationTypes(EntityProcessor.DATABASE_TABLE)
+public class EntityProcessor extends AbstractProcessor {
+
+    static final String DATABASE_TABLE = "com.j256.ormlite.table.DatabaseTable";
+    private static final String DATABASE_FIELD = "com.j256.ormlite.field.DatabaseField";
+    private static final String FOREIGN_COLLECTION_FIELD = "com.j256.ormlite.field.ForeignCollectionField";
+
+    // The getters of DatabaseResults for types, which are read and bound without their ORMLite persister
+    private static final Map<String, String> RESULT_GETTERS = new HashMap<>();
+    // Attributes, which need the ORMLite persister of the field
+    private static final Set<String> CONVERTED_ATTRIBUTES = new HashSet<>(Arrays.asList("dataType", "persisterClass", "foreign", "useGetSet", "throwIfNull", "format"));
+    // Attributes, which need the insert of ORMLite
+    private static final Set<String> ORMLITE_INSERT_ATTRIBUTES = new HashSet<>(Arrays.asList("version", "defaultValue", "foreignAutoCreate", "allowGeneratedIdInsert", "generatedIdSequence"));
+
+    static {
+        RESULT_GETTERS.put("boolean", "getBoolean");
+        RESULT_GETTERS.put("byte", "getByte");
+        RESULT_GETTERS.put("short", "getShort");
+        RESULT_GETTERS.put("int", "getInt");
+        RESULT_GETTERS.put("long", "getLong");
+        RESULT_GETTERS.put("float", "getFloat");
+        RESULT_GETTERS.put("double", "getDouble");
+        RESULT_GETTERS.put("java.lang.String", "getString");
+    }
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+        this.messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement databaseTable = elements.getTypeElement(DATABASE_TABLE);
+        if (databaseTable == null)
+            return false;
+        for (Element element : roundEnv.getElementsAnnotatedWith(databaseTable)) {
+            if (element.getKind() != ElementKind.CLASS)
+                continue;
+            TypeElement entity = (TypeElement) element;
+            try {
+                generate(entity);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Could not generate the mapping: " + e.getMessage(), entity);
+            }
+        }
+        // Other processors can handle the annotation as well
+        return false;
+    }
+
+    private void generate(TypeElement entity) throws IOException {
+        String skipReason = checkEntity(entity);
+        List<MappedField> fields = new ArrayList<>();
+        if (skipReason == null)
+            skipReason = collectFields(entity, fields);
+        if (skipReason != null) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "No mapping generated for " + entity.getQualifiedName() + ": " + skipReason, entity);
+            return;
+        }
+
+        PackageElement packageElement = elements.getPackageOf(entity);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(entity).toString();
+        String mappingName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + EntityMapping.CLASS_SUFFIX;
+        String qualifiedMappingName = packageName.isEmpty() ? mappingName : packageName + "." + mappingName;
+        if (!generated.add(qualifiedMappingName))
+            return;
+
+        try (Writer writer = filer.createSourceFile(qualifiedMappingName, entity).openWriter()) {
+            writer.write(new MappingWriter(entity, packageName, mappingName, fields).write());
+        }
+    }
+
+    private String checkEntity(TypeElement entity) {
+        if (entity.getModifiers().contains(Modifier.ABSTRACT))
+            return "the class is abstract";
+        if (!entity.getTypeParameters().isEmpty())
+            return "the class is generic";
+        for (Element element = entity; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement type = (TypeElement) element;
+            if (type.getModifiers().contains(Modifier.PRIVATE))
+                return "the class is not accessible from its package";
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS)
+                return "the class is local";
+            if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))
+                return "the class is an inner class";
+        }
+        for (Element member : entity.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) member).getParameters().isEmpty())
+                return null;
+        }
+        return "the class has no no-arg constructor";
+    }
+
+    private String collectFields(TypeElement entity, List<MappedField> fields) {
+        Set<String> names = new HashSet<>();
+        for (TypeElement type = entity; type != null; type = superclassOf(type)) {
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.FIELD || member.getModifiers().contains(Modifier.STATIC))
+                    continue;
+                if (findAnnotation(member, FOREIGN_COLLECTION_FIELD) != null)
+                    return "the class has foreign collections";
+                AnnotationMirror databaseField = findAnnotation(member, DATABASE_FIELD);
+                if (databaseField == null)
+                    continue;
+                MappedField field = new MappedField(entity, type, (VariableElement) member, databaseField);
+                if (!names.add(field.name))
+                    return "the field " + field.name + " is declared multiple times";
+                fields.add(field);
+            }
+        }
+        return fields.isEmpty() ? "the class has no persisted fields" : null;
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED)
+            return null;
+        TypeElement element = (TypeElement) types.asElement(superclass);
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName))
+                return mirror;
+        }
+        return null;
+    }
+
+    private static Map<String, Object> explicitValues(AnnotationMirror mirror) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    /**
+     * A persisted field of an entity.
+     */
+    private final class MappedField {
+
+        private final String name;
+        private final String type;
+        private final Map<String, Object> attributes;
+        // Read and bound without the ORMLite persister
+        private final boolean direct;
+        // Accessible by the generated class without method handles
+        private final boolean accessible;
+
+        private MappedField(TypeElement entity, TypeElement declaringType, VariableElement field, AnnotationMirror databaseField) {
+            this.name = field.getSimpleName().toString();
+            this.type = types.erasure(field.asType()).toString();
+            this.attributes = explicitValues(databaseField);
+
+            boolean converted = !RESULT_GETTERS.containsKey(type);
+            for (String attribute : attributes.keySet()) {
+                converted |= CONVERTED_ATTRIBUTES.contains(attribute);
+            }
+            this.direct = !converted;
+
+            Set<Modifier> modifiers = field.getModifiers();
+            boolean samePackage = elements.getPackageOf(declaringType).equals(elements.getPackageOf(entity));
+            this.accessible = !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.FINAL)
+                    && (samePackage || (modifiers.contains(Modifier.PUBLIC) && declaringType.getModifiers().contains(Modifier.PUBLIC)));
+        }
+
+        private boolean isTrue(String attribute) {
+            return Boolean.TRUE.equals(attributes.get(attribute));
+        }
+
+        private boolean isInserted() {
+            return !isTrue("generatedId") && !isTrue("readOnly");
+        }
+
+        private boolean needsOrmliteInsert() {
+            for (String attribute : attributes.keySet()) {
+                if (ORMLITE_INSERT_ATTRIBUTES.contains(attribute))
+                    return true;
+            }
+            return false;
+        }
+
+        private String literal(Object value) {
+            if (value instanceof VariableElement) {
+                VariableElement constant = (VariableElement) value;
+                return ((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "." + constant.getSimpleName();
+            }
+            if (value instanceof TypeMirror)
+                return types.erasure((TypeMirror) value).toString() + ".class";
+            return elements.getConstantExpression(value);
+        }
+    }
+
+    /**
+     * Writes the source of a mapping.
+     */
+    private final class MappingWriter {
+
+        private final TypeElement entity;
+        private final String packageName;
+        private final String mappingName;
+        private final List<MappedField> fields;
+        private final String entityName;
+        private final StringBuilder out;
+
+        private MappingWriter(TypeElement entity, String packageName, String mappingName, List<MappedField> fields) {
+            this.entity = entity;
+            this.packageName = packageName;
+            this.mappingName = mappingName;
+            this.fields = fields;
+            this.entityName = entity.getQualifiedName().toString();
+            this.out = new StringBuilder();
+        }
+
+        private String write() {
+            List<MappedField> insertFields = new ArrayList<>();
+            boolean insertSupported = true;
+            for (MappedField field : fields) {
+                insertSupported &= !field.needsOrmliteInsert();
+                if (field.isInserted())
+                    insertFields.add(field);
+            }
+
+            if (!packageName.isEmpty())
+                line("package " + packageName + ";").line("");
+            line("/**");
+            line(" * The generated mapping of {@link " + entityName + "}. Do not edit.");
+            line(" */");
+            line("public final class " + mappingName + " extends de.minestar.core.database.EntityMapping<" + entityName + "> {");
+            line("");
+            writeHandles();
+            line("    public " + mappingName + "() {");
+            line("        super(" + entityName + ".class, " + names(fields) + ", " + (insertSupported ? names(insertFields) : "null") + ");");
+            line("    }");
+            line("");
+            writeTableConfig();
+            writeNewInstance();
+            writeMapRow();
+            writeBindArguments(insertFields);
+            line("}");
+            return out.toString();
+        }
+
+        private void writeHandles() {
+            boolean constructorAccessible = false;
+            for (Element member : entity.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) member).getParameters().isEmpty())
+                    constructorAccessible = !member.getModifiers().contains(Modifier.PRIVATE);
+            }
+            if (!constructorAccessible)
+                line("    private static final java.lang.invoke.MethodHandle NEW = constructor(" + entityName + ".class);");
+            for (int i = 0; i < fields.size(); ++i) {
+                MappedField field = fields.get(i);
+                if (!field.direct || field.accessible)
+                    continue;
+                if (field.isInserted())
+                    line("    private static final java.lang.invoke.MethodHandle GET_" + i + " = getter(" + entityName + ".class, \"" + field.name + "\");");
+                line("    private static final java.lang.invoke.MethodHandle SET_" + i + " = setter(" + entityName + ".class, \"" + field.name + "\");");
+            }
+            line("");
+        }
+
+        private void writeTableConfig() {
+            AnnotationMirror databaseTable = findAnnotation(entity, DATABASE_TABLE);
+            Object tableName = databaseTable == null ? null : explicitValues(databaseTable).get("tableName");
+            String tableNameExpression = tableName == null || tableName.toString().trim().isEmpty()
+                    ? "com.j256.ormlite.table.DatabaseTableConfig.extractTableName(" + entityName + ".class)"
+                    : elements.getConstantExpression(tableName);
+
+            line("    @Override");
+            line("    public com.j256.ormlite.table.DatabaseTableConfig<" + entityName + "> createTableConfig() {");
+            line("        java.util.List<com.j256.ormlite.field.DatabaseFieldConfig> fields = new java.util.ArrayList<>(" + fields.size() + ");");
+            line("        com.j256.ormlite.field.DatabaseFieldConfig field;");
+            for (MappedField field : fields) {
+                line("        field = new com.j256.ormlite.field.DatabaseFieldConfig(\"" + field.name + "\");");
+                for (Map.Entry<String, Object> attribute : field.attributes.entrySet()) {
+                    String key = attribute.getKey();
+                    Object value = attribute.getValue();
+                    // Blank strings are the defaults of the annotation
+                    if (value instanceof String && ((String) value).trim().isEmpty())
+                        continue;
+                    if (key.equals("unknownEnumName"))
+                        line("        field.setUnknownEnumValue(" + field.type + "." + value + ");");
+                    else
+                        line("        field.set" + Character.toUpperCase(key.charAt(0)) + key.substring(1) + "(" + field.literal(value) + ");");
+                }
+                line("        fields.add(field);");
+            }
+            line("        return new com.j256.ormlite.table.DatabaseTableConfig<>(" + entityName + ".class, " + tableNameExpression + ", fields);");
+            line("    }");
+            line("");
+        }
+
+        private void writeNewInstance() {
+            line("    @Override");
+            line("    protected " + entityName + " newInstance() throws Throwable {");
+            boolean usesHandle = out.indexOf(" NEW = ") >= 0;
+            line(usesHandle ? "        return (" + entityName + ") NEW.invokeExact();" : "        return new " + entityName + "();");
+            line("    }");
+            line("");
+        }
+
+        private void writeMapRow() {
+            line("    @Override");
+            line("    protected void mapRow(" + entityName + " entity, com.j256.ormlite.support.DatabaseResults results, int[] columns,");
+            line("                          com.j256.ormlite.field.FieldType[] fieldTypes, java.util.Map<String, Integer> columnCache) throws Throwable {");
+            for (int i = 0; i < fields.size(); ++i) {
+                MappedField field = fields.get(i);
+                if (!field.direct) {
+                    line("        fieldTypes[" + i + "].assignField(entity, fieldTypes[" + i + "].resultToJava(results, columnCache), false, null);");
+                    continue;
+                }
+                String value = "results." + RESULT_GETTERS.get(field.type) + "(columns[" + i + "])";
+                if (field.accessible)
+                    line("        entity." + field.name + " = " + value + ";");
+                else
+                    line("        SET_" + i + ".invokeExact(entity, " + value + ");");
+            }
+            line("    }");
+            line("");
+        }
+
+        private void writeBindArguments(List<MappedField> insertFields) {
+            line("    @Override");
+            line("    protected void bindArguments(" + entityName + " entity, Object[] arguments, com.j256.ormlite.field.FieldType[] fieldTypes) throws Throwable {");
+            for (int j = 0; j < insertFields.size(); ++j) {
+                MappedField field = insertFields.get(j);
+                int i = fields.indexOf(field);
+                if (!field.direct)
+                    line("        arguments[" + j + "] = fieldTypes[" + j + "].extractJavaFieldToSqlArgValue(entity);");
+                else if (field.accessible)
+                    line("        arguments[" + j + "] = entity." + field.name + ";");
+                else
+                    line("        arguments[" + j + "] = (" + field.type + ") GET_" + i + ".invokeExact(entity);");
+            }
+            line("    }");
+        }
+
+        private String names(List<MappedField> mappedFields) {
+            StringBuilder names = new StringBuilder("new String[]{");
+            for (int i = 0; i < mappedFields.size(); ++i) {
+                names.append(i > 0 ? ", \"" : "\"").append(mappedFields.get(i).name).append('"');
+            }
+            return names.append('}').toString();
+        }
+
+        private MappingWriter line(String line) {
+            out.append(line).append('\n');
+            return this;
+        }
+    }
+}
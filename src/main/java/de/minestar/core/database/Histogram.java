@@ -0,0 +1,189 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of non negative long values like latencies in nanoseconds or batch sizes. Every power of two
+ * is divided into {@value Histogram#SUB_BUCKETS} buckets, so values up to {@value Histogram#SUB_BUCKETS} are exact and
+ * the relative error of larger values is at most 12.5%. Recording a value costs one atomic increment of its bucket
+ * and does not allocate.
+ * <p>
+ * The values are read by a {@link Snapshot}, which can be taken concurrently to the recording.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0L);
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value The value to record
+     */
+    public void record(long value) {
+        if (value < 0L)
+            value = 0L;
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return A copy of the recorded values
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+            bucketCounts[i] = counts.get(i);
+        return new Snapshot(bucketCounts, sum.sum(), max.get());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param value A non negative value
+     * @return The highest value of the bucket containing the value, so {@link Snapshot#getCountAtMost(long)} counts
+     * exactly the values up to it
+     */
+    public static long bucketEdgeAtLeast(long value) {
+        return upperBoundOf(bucketOf(Math.max(0L, value)));
+    }
+
+    /**
+     * @param bucket The index of a bucket
+     * @return The lowest value recorded into the bucket
+     */
+    static long lowerBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param bucket The index of a bucket
+     * @return The highest value recorded into the bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return lowerBoundOf(bucket) + (1L << (exponent - SUB_BUCKET_BITS)) - 1L;
+    }
+
+    /**
+     * An immutable copy of the values of a {@link Histogram}.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long total = 0L;
+            for (long bucketCount : counts)
+                total += bucketCount;
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0L ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Counts the values up to a bound, for example for the cumulative buckets of a monitoring system. Only the
+         * buckets ending at or below the bound are counted, so the count is exact for the bounds returned by
+         * {@link Histogram#bucketEdgeAtLeast(long)}. For other bounds, values of the bucket containing the bound are
+         * missing.
+         *
+         * @param value The bound
+         * @return The number of values in the buckets ending at or below the bound
+         */
+        public long getCountAtMost(long value) {
+            long result = 0L;
+            for (int i = 0; i < counts.length && upperBoundOf(i) <= value; ++i)
+                result += counts[i];
+            return result;
+        }
+
+        /**
+         * @param percentile The percentile between 0 and 100
+         * @return The highest value of the bucket containing the percentile, but at most the maximum. Zero, if
+         * nothing was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0L)
+                return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(upperBoundOf(i), max);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provide a connection to an in memory SQLite database, for example for temporary data of a session or for tests.
+ * All connections of the pool share the same database in the shared cache mode. Writes are serialized on one
+ * connection like in {@link SqliteConnectionSource} and the readers read uncommitted, so they do not wait for the
+ * table locks of the writer.
+ * <p>
+ * The database exists until this supplier is closed, so it survives {@link DatabaseAccess#reconnect()} and can be
+ * used by multiple {@link DatabaseAccess}es at once.
+ */
+public class InMemoryConnection implements ConnectionSupplier, AutoCloseable {
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final String jdbcUrl;
+    private final SqliteSettings settings;
+    // Keeps the database alive while no connection source is open
+    private Connection keepAlive;
+
+    /**
+     * Creates a supplier of a new and empty in memory database.
+     */
+    public InMemoryConnection() {
+        this("memory" + NEXT_ID.incrementAndGet());
+    }
+
+    /**
+     * Creates a supplier of a named in memory database. Suppliers with the same name share the database while one
+     * of them is open.
+     *
+     * @param name The name of the database. Only letters, digits and underscores are allowed
+     */
+    public InMemoryConnection(String name) {
+        if (!name.matches("\\w+"))
+            throw new IllegalArgumentException("Invalid name of an in memory database: " + name);
+        this.jdbcUrl = "jdbc:sqlite:file:" + name + "?mode=memory&cache=shared";
+        this.settings = new SqliteSettings();
+        settings.setJournalMode(SqliteSettings.JournalMode.MEMORY);
+        settings.setSynchronous(SqliteSettings.Synchronous.OFF);
+        settings.setMmapSize(0L);
+        settings.setReadUncommitted(true);
+    }
+
+    @Override
+    public synchronized ConnectionSource createConnection() throws Exception {
+        if (keepAlive == null)
+            this.keepAlive = DriverManager.getConnection(jdbcUrl);
+        return new SqliteConnectionSource(jdbcUrl, settings);
+    }
+
+    /**
+     * Drops the database after all connection sources created by this supplier are closed.
+     */
+    @Override
+    public synchronized void close() throws SQLException {
+        if (keepAlive != null) {
+            keepAlive.close();
+            this.keepAlive = null;
+        }
+    }
+}
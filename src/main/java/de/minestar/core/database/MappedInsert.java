@@ -0,0 +1,93 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
+
+import java.sql.SQLException;
+
+/**
+ * Inserts entities with the arguments bound by a generated {@link EntityMapping} instead of extracting the field values
+ * by reflection. Generated ids are assigned to the entities like {@link com.j256.ormlite.dao.Dao#create(Object)} does.
+ *
+ * @param <T> The type of the entity
+ */
+class MappedInsert<T> {
+
+    private final EntityMapping<T> mapping;
+    private final FieldType[] argumentFieldTypes;
+    private final FieldType idField;
+    private final String statement;
+
+    MappedInsert(EntityMapping<T> mapping, TableInfo<T, ?> tableInfo, DatabaseType databaseType) {
+        this.mapping = mapping;
+        this.argumentFieldTypes = EntityMapping.fieldTypes(tableInfo, mapping.getInsertFieldNames());
+        FieldType id = tableInfo.getIdField();
+        this.idField = id != null && id.isGeneratedId() ? id : null;
+
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        databaseType.appendEscapedEntityName(sb, tableInfo.getTableName());
+        sb.append(" (");
+        for (int i = 0; i < argumentFieldTypes.length; ++i) {
+            if (i > 0)
+                sb.append(',');
+            databaseType.appendEscapedEntityName(sb, argumentFieldTypes[i].getColumnName());
+        }
+        sb.append(") VALUES (");
+        for (int i = 0; i < argumentFieldTypes.length; ++i) {
+            sb.append(i > 0 ? ",?" : "?");
+        }
+        this.statement = sb.append(')').toString();
+    }
+
+    /**
+     * Inserts the entity using a connection of the source. Inside of a batch task the connection of the batch is used.
+     *
+     * @param connectionSource The connection source of the table
+     * @param entity           The entity to insert
+     * @throws SQLException
+     */
+    void insert(ConnectionSource connectionSource, T entity) throws SQLException {
+        Object[] arguments = new Object[argumentFieldTypes.length];
+        try {
+            mapping.bindArguments(entity, arguments, argumentFieldTypes);
+        } catch (Throwable t) {
+            throw EntityMapping.wrap(t, "Could not bind the arguments of " + entity + "!");
+        }
+
+        DatabaseConnection connection = connectionSource.getReadWriteConnection();
+        try {
+            int rows = connection.insert(statement, arguments, argumentFieldTypes, idField == null ? null : key -> idField.assignIdValue(entity, key, null));
+            if (rows != 1)
+                throw new SQLException("Inserting " + entity + " changed " + rows + " rows!");
+        } finally {
+            connectionSource.releaseConnection(connection);
+        }
+    }
+}
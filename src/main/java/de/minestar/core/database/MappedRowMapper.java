@@ -0,0 +1,72 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps rows to new entities using a generated {@link EntityMapping}. The positions of the columns are resolved on the
+ * first row, so a mapper must only be used for one query.
+ *
+ * @param <T> The type of the entity
+ */
+class MappedRowMapper<T> implements GenericRowMapper<T> {
+
+    private final EntityMapping<T> mapping;
+    private final FieldType[] fieldTypes;
+    private final Map<String, Integer> columnCache;
+    private int[] columns;
+
+    MappedRowMapper(EntityMapping<T> mapping, FieldType[] fieldTypes) {
+        this.mapping = mapping;
+        this.fieldTypes = fieldTypes;
+        this.columnCache = new HashMap<>();
+    }
+
+    @Override
+    public T mapRow(DatabaseResults results) throws SQLException {
+        if (columns == null) {
+            int[] positions = new int[fieldTypes.length];
+            for (int i = 0; i < positions.length; ++i) {
+                positions[i] = results.findColumn(fieldTypes[i].getColumnName());
+                columnCache.put(fieldTypes[i].getColumnName(), positions[i]);
+            }
+            columns = positions;
+        }
+        try {
+            T entity = mapping.newInstance();
+            mapping.mapRow(entity, results, columns, fieldTypes, columnCache);
+            return entity;
+        } catch (Throwable t) {
+            throw EntityMapping.wrap(t, "Could not map the row to " + mapping.getEntityClass().getName() + "!");
+        }
+    }
+}
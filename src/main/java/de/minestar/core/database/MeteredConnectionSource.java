@@ -0,0 +1,93 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import java.sql.SQLException;
+
+/**
+ * A pooled connection source measuring the time threads wait for a connection, see {@link PoolMetrics}. All
+ * connection suppliers of this library create metered sources.
+ */
+public class MeteredConnectionSource extends JdbcPooledConnectionSource {
+
+    private volatile PoolMetrics metrics;
+
+    public MeteredConnectionSource(String url, DatabaseType databaseType) throws SQLException {
+        this(url, null, null, databaseType);
+    }
+
+    public MeteredConnectionSource(String url, String username, String password, DatabaseType databaseType) throws SQLException {
+        super(url, username, password, databaseType);
+        this.metrics = new PoolMetrics();
+        metrics.attach(this);
+    }
+
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records into the metrics of an access instead of own ones, so they survive reconnects.
+     */
+    void setMetrics(PoolMetrics metrics) {
+        this.metrics = metrics;
+        metrics.attach(this);
+    }
+
+    @Override
+    public DatabaseConnection getReadWriteConnection() throws SQLException {
+        long start = System.nanoTime();
+        DatabaseConnection connection = super.getReadWriteConnection();
+        recordAcquire(System.nanoTime() - start);
+        return connection;
+    }
+
+    @Override
+    public void releaseConnection(DatabaseConnection connection) throws SQLException {
+        recordRelease();
+        super.releaseConnection(connection);
+    }
+
+    /**
+     * For subclasses handing out connections without the pool.
+     *
+     * @param waitNanos The time the thread waited for the connection
+     */
+    protected void recordAcquire(long waitNanos) {
+        metrics.recordAcquire(waitNanos);
+    }
+
+    /**
+     * For subclasses releasing connections without the pool.
+     */
+    protected void recordRelease() {
+        metrics.recordRelease();
+    }
+}
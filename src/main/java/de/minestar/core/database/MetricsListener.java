@@ -0,0 +1,62 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+/**
+ * Listens to the events measured by {@link ConsumerMetrics} and {@link PoolMetrics}, for example to forward them to a
+ * monitoring system. The methods are invoked by the thread causing the event, so they must be fast and thread safe.
+ * Exceptions thrown by a listener are logged and never reach the consumer or the pool.
+ */
+public interface MetricsListener {
+
+    /**
+     * Invoked by the consumer thread after a batch was persisted.
+     *
+     * @param entityClass  The entity class of the consumer
+     * @param batchSize    The number of persisted objects
+     * @param latencyNanos The time needed to persist the batch
+     */
+    default void onFlush(Class<?> entityClass, int batchSize, long latencyNanos) {
+    }
+
+    /**
+     * Invoked by the consumer thread after a batch could not be persisted.
+     *
+     * @param entityClass The entity class of the consumer
+     * @param batchSize   The number of objects, which were not persisted
+     * @param cause       The reason of the failure
+     */
+    default void onFlushFailure(Class<?> entityClass, int batchSize, Exception cause) {
+    }
+
+    /**
+     * Invoked by a thread after it acquired a connection from a pool.
+     *
+     * @param waitNanos The time the thread waited for the connection
+     */
+    default void onAcquire(long waitNanos) {
+    }
+}
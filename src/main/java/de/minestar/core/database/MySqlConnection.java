@@ -25,7 +25,6 @@
 package de.minestar.core.database;
 
 import com.j256.ormlite.db.MysqlDatabaseType;
-import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
 import com.j256.ormlite.support.ConnectionSource;
 
 /**
@@ -80,6 +79,6 @@ public class MySqlConnection implements ConnectionSupplier {
 
     @Override
     public ConnectionSource createConnection() throws Exception {
-        return new JdbcPooledConnectionSource(jdbcUrl, user, password, new MysqlDatabaseType());
+        return new MeteredConnectionSource(jdbcUrl, user, password, new MysqlDatabaseType());
     }
 }
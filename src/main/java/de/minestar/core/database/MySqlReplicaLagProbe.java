@@ -0,0 +1,62 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the replication lag of a MySQL or MariaDB replica from the column <code>Seconds_Behind_Master</code> of
+ * <code>SHOW SLAVE STATUS</code>. The user of the replica connection needs the REPLICATION CLIENT privilege.
+ */
+public class MySqlReplicaLagProbe implements ReplicaLagProbe {
+
+    private static final String SLAVE_STATUS_QUERY = "SHOW SLAVE STATUS";
+    private static final String LAG_COLUMN = "Seconds_Behind_Master";
+
+    @Override
+    public long lagMillis(ConnectionSource replica) throws SQLException {
+        DatabaseConnection connection = replica.getReadOnlyConnection();
+        try (Statement statement = ((JdbcDatabaseConnection) connection).getInternalConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(SLAVE_STATUS_QUERY)) {
+            // The database is no replica
+            if (!resultSet.next())
+                return Long.MAX_VALUE;
+            long lagSeconds = resultSet.getLong(LAG_COLUMN);
+            // NULL means the replication is stopped or broken
+            if (resultSet.wasNull())
+                return Long.MAX_VALUE;
+            return TimeUnit.SECONDS.toMillis(lagSeconds);
+        } finally {
+            replica.releaseConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+
+/**
+ * A row of a {@link PackedBatchTable} containing a batch of packed records. The table of the row is defined by its
+ * batch table.
+ */
+public class PackedBatch {
+
+    static final String MIN_TIMESTAMP = "minTimestamp";
+    static final String MAX_TIMESTAMP = "maxTimestamp";
+
+    @DatabaseField(generatedId = true)
+    private long id;
+
+    @DatabaseField(columnName = MIN_TIMESTAMP, index = true)
+    private long minTimestamp;
+
+    @DatabaseField(columnName = MAX_TIMESTAMP)
+    private long maxTimestamp;
+
+    @DatabaseField
+    private int recordCount;
+
+    @DatabaseField(dataType = DataType.BYTE_ARRAY, canBeNull = false)
+    private byte[] payload;
+
+    /**
+     * Constructor for ORMLite
+     */
+    public PackedBatch() {
+    }
+
+    PackedBatch(long minTimestamp, long maxTimestamp, int recordCount, byte[] payload) {
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.recordCount = recordCount;
+        this.payload = payload;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.util.List;
+
+/**
+ * Consumes records into a {@link PackedBatchTable}. Every flushed batch of the consumer becomes one packed row, so the
+ * database receives a single small insert instead of one wide insert per record.
+ *
+ * @param <T> The type of records to consume
+ */
+public class PackedBatchConsumer<T> extends DatabaseConsumer<T> {
+
+    private final PackedBatchTable<T> table;
+
+    /**
+     * Creates a packed consumer with default sleep time and flush size.
+     *
+     * @param table The packed table. Cannot be null
+     * @see DatabaseConsumer#DatabaseConsumer(DatabaseAccess, Class)
+     */
+    public PackedBatchConsumer(PackedBatchTable<T> table) {
+        super(table.getAccess(), table.getFormat().getRecordClass());
+        this.table = table;
+    }
+
+    /**
+     * Creates a packed consumer with fine adjustment of running parameter.
+     *
+     * @param table           The packed table. Cannot be null
+     * @param flushSize       If the added object count is equals or higher than this parameter, the queue will be flushed.
+     * @param sleepTimeMillis The interval the consumer will check queues size
+     * @see DatabaseConsumer#DatabaseConsumer(DatabaseAccess, Class, int, long)
+     */
+    public PackedBatchConsumer(PackedBatchTable<T> table, int flushSize, long sleepTimeMillis) {
+        super(table.getAccess(), table.getFormat().getRecordClass(), flushSize, sleepTimeMillis);
+        this.table = table;
+    }
+
+    @Override
+    protected void persist(List<T> elements) throws Exception {
+        table.write(elements);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Stores records packed in batches: every row of the table contains the records of a batch in a single binary column.
+ * The timestamps are stored as deltas to the previous record and the other fields are packed by a
+ * {@link PackedRecordFormat}, so a record of a block change needs about 10 to 20 bytes instead of a row with eleven
+ * columns and its index entries. Use this for high-volume logs, which are written much more often than read.
+ * <p>
+ * Queries read all batches overlapping the time range and unpack their records. Use a {@link PackedBatchConsumer} to
+ * write the batches of a consumer into the table.
+ *
+ * @param <T> The type of the records
+ */
+public class PackedBatchTable<T> {
+
+    /**
+     * The maximum number of records of a batch row. Larger batches are split into multiple rows.
+     */
+    public static final int MAX_RECORDS_PER_BATCH = 1024;
+
+    private static final int BYTES_PER_RECORD = 16;
+
+    private final DatabaseAccess access;
+    private final String tableName;
+    private final PackedRecordFormat<T> format;
+
+    private ConnectionSource daoSource;
+    private Dao<PackedBatch, Long> dao;
+
+    /**
+     * @param access    The access to the database of the table
+     * @param tableName The name of the table
+     * @param format    The format of the records
+     */
+    public PackedBatchTable(DatabaseAccess access, String tableName, PackedRecordFormat<T> format) {
+        this.access = access;
+        this.tableName = tableName;
+        this.format = format;
+    }
+
+    /**
+     * Creates the table, if it does not exist.
+     *
+     * @throws SQLException
+     */
+    public void createTableIfNotExists() throws SQLException {
+        if (!getDao().isTableExists())
+            TableUtils.createTable(access.getConnectionSource(), TableConfigs.forTable(access.getConnectionSource(), PackedBatch.class, tableName));
+    }
+
+    /**
+     * Packs the records into batch rows and inserts them.
+     *
+     * @param records The records to write
+     * @throws SQLException
+     */
+    public void write(List<T> records) throws SQLException {
+        if (records.isEmpty())
+            return;
+        List<PackedBatch> batches = new ArrayList<>((records.size() + MAX_RECORDS_PER_BATCH - 1) / MAX_RECORDS_PER_BATCH);
+        for (int from = 0; from < records.size(); from += MAX_RECORDS_PER_BATCH) {
+            batches.add(pack(records.subList(from, Math.min(records.size(), from + MAX_RECORDS_PER_BATCH))));
+        }
+        Dao<PackedBatch, Long> dao = getDao();
+        if (batches.size() == 1) {
+            dao.create(batches.get(0));
+            return;
+        }
+        try {
+            dao.callBatchTasks(() -> {
+                for (PackedBatch batch : batches) {
+                    dao.create(batch);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Could not write the batches into " + tableName + "!", e);
+        }
+    }
+
+    private PackedBatch pack(List<T> records) {
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        for (T record : records) {
+            long timestamp = format.timestampOf(record);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        PackedRecordOutput out = new PackedRecordOutput(records.size() * BYTES_PER_RECORD);
+        long previous = minTimestamp;
+        for (T record : records) {
+            long timestamp = format.timestampOf(record);
+            out.writeSignedVarLong(timestamp - previous);
+            previous = timestamp;
+            format.write(record, out);
+        }
+        return new PackedBatch(minTimestamp, maxTimestamp, records.size(), out.toByteArray());
+    }
+
+    /**
+     * Queries all records inside the time range.
+     *
+     * @param fromTimestamp The minimum timestamp (inclusive)
+     * @param toTimestamp   The maximum timestamp (inclusive)
+     * @return The records in insertion order
+     * @throws SQLException
+     */
+    public List<T> query(long fromTimestamp, long toTimestamp) throws SQLException {
+        return query(fromTimestamp, toTimestamp, null);
+    }
+
+    /**
+     * Queries all records inside the time range matching the filter.
+     *
+     * @param fromTimestamp The minimum timestamp (inclusive)
+     * @param toTimestamp   The maximum timestamp (inclusive)
+     * @param filter        Additional restriction of the result. Can be null
+     * @return The records in insertion order
+     * @throws SQLException
+     */
+    public List<T> query(long fromTimestamp, long toTimestamp, Predicate<? super T> filter) throws SQLException {
+        ConnectionSource readSource = access.getReadConnectionSource();
+        Dao<PackedBatch, Long> readDao = new BaseDaoImpl<PackedBatch, Long>(readSource, TableConfigs.forTable(readSource, PackedBatch.class, tableName)) {
+        };
+        QueryBuilder<PackedBatch, Long> queryBuilder = readDao.queryBuilder();
+        queryBuilder.where().le(PackedBatch.MIN_TIMESTAMP, toTimestamp).and().ge(PackedBatch.MAX_TIMESTAMP, fromTimestamp);
+        queryBuilder.orderBy("id", true);
+
+        List<T> result = new ArrayList<>();
+        for (PackedBatch batch : queryBuilder.query()) {
+            PackedRecordInput in = new PackedRecordInput(batch.getPayload());
+            long timestamp = batch.getMinTimestamp();
+            for (int i = 0; i < batch.getRecordCount(); ++i) {
+                timestamp += in.readSignedVarLong();
+                T record = format.read(timestamp, in);
+                if (timestamp >= fromTimestamp && timestamp <= toTimestamp && (filter == null || filter.test(record)))
+                    result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The format of the records
+     */
+    public PackedRecordFormat<T> getFormat() {
+        return format;
+    }
+
+    /**
+     * @return The access to the database of the table
+     */
+    public DatabaseAccess getAccess() {
+        return access;
+    }
+
+    private synchronized Dao<PackedBatch, Long> getDao() throws SQLException {
+        // Recreate the Dao after a reconnect of the access
+        ConnectionSource connectionSource = access.getConnectionSource();
+        if (dao == null || daoSource != connectionSource) {
+            dao = new BaseDaoImpl<PackedBatch, Long>(connectionSource, TableConfigs.forTable(connectionSource, PackedBatch.class, tableName)) {
+            };
+            daoSource = connectionSource;
+        }
+        return dao;
+    }
+}
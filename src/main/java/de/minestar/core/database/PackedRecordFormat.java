@@ -0,0 +1,62 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+/**
+ * Defines how the records of a {@link PackedBatchTable} are packed. The timestamps are packed by the table as deltas to
+ * the previous record of the batch, the format packs the remaining fields.
+ *
+ * @param <T> The type of the records
+ */
+public interface PackedRecordFormat<T> {
+
+    /**
+     * @return The class of the records
+     */
+    Class<T> getRecordClass();
+
+    /**
+     * @param record A record
+     * @return The timestamp of the record in milliseconds
+     */
+    long timestampOf(T record);
+
+    /**
+     * Packs the fields of a record except the timestamp.
+     *
+     * @param record The record to pack
+     * @param out    The output of the batch
+     */
+    void write(T record, PackedRecordOutput out);
+
+    /**
+     * Unpacks a record written by {@link PackedRecordFormat#write(Object, PackedRecordOutput)}.
+     *
+     * @param timestamp The timestamp of the record
+     * @param in        The input of the batch
+     * @return The unpacked record
+     */
+    T read(long timestamp, PackedRecordInput in);
+}
@@ -0,0 +1,367 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a table in parallel by splitting it into ranges of a numeric column. Every range is read by its own
+ * {@link QueryCursor} on its own connection of the pool, so the scan scales with the available connections and cores.
+ * <p>
+ * The column should be the primary key or an indexed column, otherwise every range query is a full table scan. The
+ * ranges are equally sized between the minimum and the maximum of the column, so the values should be distributed
+ * evenly, like generated ids.
+ * <p>
+ * Use {@link DatabaseAccess#parallelScan(Class, String, int)} to create a scan.
+ *
+ * @param <T> The type of the scanned rows
+ */
+public class ParallelScan<T> {
+
+    private static final Object END_OF_RANGE = new Object();
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    // The range read by the consumer of an ordered stream and the next one
+    private static final int ORDERED_RANGES_IN_FLIGHT = 2;
+
+    private static final ExecutorService threadPool = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ParallelScan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DatabaseAccess access;
+    private final Class<T> entityClass;
+    private final String columnName;
+    private final int partitions;
+
+    private int fetchSize;
+    private QueryFilter<T> filter;
+
+    ParallelScan(DatabaseAccess access, Class<T> entityClass, String columnName, int partitions) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("Partitions must be at least one, but was " + partitions + "!");
+        this.access = access;
+        this.entityClass = entityClass;
+        this.columnName = columnName;
+        this.partitions = partitions;
+        this.fetchSize = DEFAULT_FETCH_SIZE;
+    }
+
+    /**
+     * Restricts the scanned rows additional to the range of the partition column.
+     *
+     * @param filter Adds exactly one (combined) clause to the where statement
+     * @return This scan
+     */
+    public ParallelScan<T> where(QueryFilter<T> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * @param fetchSize The amount of rows fetched at once per range (default {@value ParallelScan#DEFAULT_FETCH_SIZE})
+     * @return This scan
+     */
+    public ParallelScan<T> fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Starts the scan and merges the rows of all ranges into one stream. The stream MUST be closed after usage, which
+     * cancels the running range queries.
+     *
+     * @param ordered If true, the rows are ordered by the partition column. Otherwise they are returned as soon as any
+     *                range delivers them. An ordered stream only reads the current and the next range at once, so the
+     *                later ranges do not hold connections while waiting.
+     * @return A sequential stream over all rows
+     * @throws SQLException Could not determine the ranges
+     */
+    public Stream<T> stream(boolean ordered) throws SQLException {
+        List<Range> ranges = splitRanges();
+        MergingIterator iterator = new MergingIterator(ranges, ordered);
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::cancel);
+    }
+
+    /**
+     * Starts the scan and reduces every range on its own thread. The results of the ranges are combined in the order
+     * of the ranges. Each range maps its rows into one reused object, so the accumulator must not store the rows. If a
+     * range fails, the other ranges stop reading.
+     *
+     * @param identity    Creates the initial result for every range
+     * @param accumulator Adds a row to a result
+     * @param combiner    Combines the results of two ranges
+     * @param <R>         The type of the result
+     * @return The combined result of all ranges
+     * @throws SQLException Could not determine the ranges or a range query failed
+     */
+    public <R> R reduce(Supplier<R> identity, BiFunction<R, ? super T, R> accumulator, BinaryOperator<R> combiner) throws SQLException {
+        List<Range> ranges = splitRanges();
+        BaseDaoImpl<T, ?> dao = access.getDao(entityClass);
+
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<R>> results = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                R result = identity.get();
+                if (failed.get())
+                    return result;
+                try (QueryCursor<T> cursor = access.queryCursor(entityClass, prepareRange(range), fetchSize, dao.getTableInfo().createObject())) {
+                    while (!failed.get() && cursor.hasNext())
+                        result = accumulator.apply(result, cursor.next());
+                } catch (SQLException e) {
+                    failed.set(true);
+                    throw new CompletionException(e);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                }
+                return result;
+            }, threadPool));
+        }
+
+        try {
+            R result = identity.get();
+            for (CompletableFuture<R> rangeResult : results)
+                result = combiner.apply(result, rangeResult.join());
+            return result;
+        } catch (CompletionException e) {
+            // Stop the running ranges and skip the waiting ones
+            failed.set(true);
+            for (CompletableFuture<R> rangeResult : results)
+                rangeResult.cancel(false);
+            if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            throw e;
+        }
+    }
+
+    private List<Range> splitRanges() throws SQLException {
+        BaseDaoImpl<T, ?> dao = access.getDao(entityClass);
+        StringBuilder sql = new StringBuilder("SELECT MIN(");
+        appendEscaped(sql, columnName);
+        sql.append("), MAX(");
+        appendEscaped(sql, columnName);
+        sql.append(") FROM ");
+        appendEscaped(sql, dao.getTableInfo().getTableName());
+
+        String[] minMax;
+        GenericRawResults<String[]> rawResults = dao.queryRaw(sql.toString());
+        try {
+            minMax = rawResults.getFirstResult();
+        } finally {
+            rawResults.close();
+        }
+        // Empty table
+        if (minMax == null || minMax[0] == null || minMax[1] == null)
+            return Collections.emptyList();
+
+        long min = Long.parseLong(minMax[0]);
+        long max = Long.parseLong(minMax[1]);
+        // The distances between the values can exceed a long, but never an unsigned long. A step of zero stands for
+        // 2^64, which only occurs with a single partition over all values
+        long step = Long.divideUnsigned(max - min, partitions) + 1L;
+
+        List<Range> ranges = new ArrayList<>(partitions);
+        for (long from = min; ; ) {
+            long to = Long.compareUnsigned(step - 1L, max - from) >= 0 ? max : from + step - 1L;
+            ranges.add(new Range(from, to));
+            if (to == max)
+                break;
+            from = to + 1L;
+        }
+        return ranges;
+    }
+
+    private void appendEscaped(StringBuilder sql, String name) {
+        access.getConnectionSource().getDatabaseType().appendEscapedEntityName(sql, name);
+    }
+
+    private PreparedQuery<T> prepareRange(Range range) throws SQLException {
+        QueryBuilder<T, ?> queryBuilder = access.<BaseDaoImpl<T, ?>, T>getDao(entityClass).queryBuilder();
+        queryBuilder.orderBy(columnName, true);
+        Where<T, ?> where = queryBuilder.where();
+        where.between(columnName, range.from, range.to);
+        if (filter != null) {
+            filter.apply(where);
+            where.and(2);
+        }
+        return queryBuilder.prepare();
+    }
+
+    private static class Range {
+        private final long from;
+        private final long to;
+
+        private Range(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class ScanFailure {
+        private final Exception exception;
+
+        private ScanFailure(Exception exception) {
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * Reads the rows produced by the range tasks. In ordered mode every range has its own queue, which are drained one
+     * after another, and a range is started when the range {@value ParallelScan#ORDERED_RANGES_IN_FLIGHT} before it is
+     * finished. Otherwise all ranges are started at once and share a single queue.
+     */
+    private class MergingIterator implements Iterator<T> {
+
+        private final List<Range> ranges;
+        private final boolean ordered;
+        private final List<BlockingQueue<Object>> queues;
+        private final int rangeCount;
+
+        private volatile boolean cancelled;
+        private int currentQueue;
+        private int finishedRanges;
+        private Object next;
+
+        private MergingIterator(List<Range> ranges, boolean ordered) {
+            this.ranges = ranges;
+            this.ordered = ordered;
+            this.rangeCount = ranges.size();
+            this.queues = new ArrayList<>();
+            if (ordered) {
+                for (int i = 0; i < Math.min(ORDERED_RANGES_IN_FLIGHT, rangeCount); ++i)
+                    startRange(i);
+            } else if (!ranges.isEmpty()) {
+                BlockingQueue<Object> queue = new ArrayBlockingQueue<>(fetchSize * ranges.size());
+                queues.add(queue);
+                for (Range range : ranges)
+                    threadPool.submit(() -> produce(range, queue));
+            }
+        }
+
+        private void startRange(int index) {
+            BlockingQueue<Object> queue = new ArrayBlockingQueue<>(fetchSize);
+            queues.add(queue);
+            Range range = ranges.get(index);
+            threadPool.submit(() -> produce(range, queue));
+        }
+
+        private void produce(Range range, BlockingQueue<Object> queue) {
+            try (QueryCursor<T> cursor = access.queryCursor(prepareRange(range), fetchSize)) {
+                while (!cancelled && cursor.hasNext())
+                    offer(queue, cursor.next());
+            } catch (Exception e) {
+                offer(queue, new ScanFailure(e));
+            }
+            offer(queue, END_OF_RANGE);
+        }
+
+        private void offer(BlockingQueue<Object> queue, Object element) {
+            try {
+                while (!cancelled && !queue.offer(element, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // Wait until the consumer has taken elements or the scan was cancelled
+                }
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (cancelled || finishedRanges == rangeCount)
+                    return false;
+                Object element;
+                try {
+                    element = queues.get(currentQueue).take();
+                } catch (InterruptedException e) {
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the next row!", e);
+                }
+                if (element == END_OF_RANGE) {
+                    ++finishedRanges;
+                    // In ordered mode continue with the next range
+                    if (ordered) {
+                        ++currentQueue;
+                        int nextRange = currentQueue + ORDERED_RANGES_IN_FLIGHT - 1;
+                        if (nextRange < rangeCount)
+                            startRange(nextRange);
+                    }
+                } else if (element instanceof ScanFailure) {
+                    cancel();
+                    throw new IllegalStateException("A range of the parallel scan failed!", ((ScanFailure) element).exception);
+                } else {
+                    next = element;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T result = (T) next;
+            next = null;
+            return result;
+        }
+
+        private void cancel() {
+            this.cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time span of a partition of a {@link TimePartitionedTable}. Partitions start at midnight UTC.
+ */
+public enum PartitionInterval {
+
+    /**
+     * A partition per day
+     */
+    DAY {
+        @Override
+        LocalDate startDate(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        LocalDate nextStartDate(LocalDate startDate) {
+            return startDate.plusDays(1L);
+        }
+    },
+
+    /**
+     * A partition per week starting at monday
+     */
+    WEEK {
+        @Override
+        LocalDate startDate(LocalDate date) {
+            return date.minusDays(date.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+        }
+
+        @Override
+        LocalDate nextStartDate(LocalDate startDate) {
+            return startDate.plusWeeks(1L);
+        }
+    };
+
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    abstract LocalDate startDate(LocalDate date);
+
+    abstract LocalDate nextStartDate(LocalDate startDate);
+
+    /**
+     * @param timestampMillis A timestamp in milliseconds
+     * @return The start of the partition containing the timestamp in milliseconds
+     */
+    public long startOf(long timestampMillis) {
+        return toMillis(startDate(toDate(timestampMillis)));
+    }
+
+    /**
+     * @param partitionStart The start of a partition in milliseconds
+     * @return The start of the following partition in milliseconds
+     */
+    public long nextStart(long partitionStart) {
+        return toMillis(nextStartDate(toDate(partitionStart)));
+    }
+
+    /**
+     * @param partitionStart The start of a partition in milliseconds
+     * @return The suffix of the table name of the partition, for example <code>20150123</code>
+     */
+    public String suffix(long partitionStart) {
+        return toDate(partitionStart).format(SUFFIX_FORMAT);
+    }
+
+    /**
+     * @param suffix The suffix of the table name of a partition
+     * @return The start of the partition in milliseconds
+     * @throws java.time.format.DateTimeParseException The suffix is invalid
+     */
+    public long parseSuffix(String suffix) {
+        return toMillis(LocalDate.parse(suffix, SUFFIX_FORMAT));
+    }
+
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static LocalDate toDate(long millis) {
+        return LocalDate.ofEpochDay(Math.floorDiv(millis, TimeUnit.DAYS.toMillis(1L)));
+    }
+}
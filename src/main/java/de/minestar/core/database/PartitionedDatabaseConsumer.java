@@ -0,0 +1,98 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.misc.TransactionManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumes objects into the partitions of a {@link TimePartitionedTable} using their timestamps. The partitions are
+ * created on demand.
+ *
+ * @param <T> The type of objects to consume
+ */
+public class PartitionedDatabaseConsumer<T> extends DatabaseConsumer<T> {
+
+    private final TimePartitionedTable<T> table;
+
+    /**
+     * Creates a partitioned consumer with default sleep time and flush size.
+     *
+     * @param table The partitioned table. Cannot be null
+     * @see DatabaseConsumer#DatabaseConsumer(DatabaseAccess, Class)
+     */
+    public PartitionedDatabaseConsumer(TimePartitionedTable<T> table) {
+        super(table.getAccess(), table.getEntityClass());
+        this.table = table;
+    }
+
+    /**
+     * Creates a partitioned consumer with fine adjustment of running parameter.
+     *
+     * @param table           The partitioned table. Cannot be null
+     * @param flushSize       If the added object count is equals or higher than this parameter, the queue will be flushed.
+     * @param sleepTimeMillis The interval the consumer will check queues size
+     * @see DatabaseConsumer#DatabaseConsumer(DatabaseAccess, Class, int, long)
+     */
+    public PartitionedDatabaseConsumer(TimePartitionedTable<T> table, int flushSize, long sleepTimeMillis) {
+        super(table.getAccess(), table.getEntityClass(), flushSize, sleepTimeMillis);
+        this.table = table;
+    }
+
+    @Override
+    protected void persist(List<T> elements) throws Exception {
+        // Usually all elements of a batch belong to the same partition
+        Map<Long, List<T>> partitions = new LinkedHashMap<>();
+        for (T element : elements) {
+            partitions.computeIfAbsent(table.partitionOf(element), partition -> new ArrayList<>()).add(element);
+        }
+
+        // Create the missing partitions before the transaction, DDL commits it implicitly on MySQL
+        List<Dao<T, ?>> daos = new ArrayList<>(partitions.size());
+        for (Long partitionStart : partitions.keySet()) {
+            daos.add(table.getDao(partitionStart));
+        }
+
+        if (daos.isEmpty())
+            return;
+
+        // A failed batch is retried, so the partitions are written all or nothing
+        TransactionManager.callInTransaction(daos.get(0).getConnectionSource(), () -> {
+            int i = 0;
+            for (List<T> partition : partitions.values()) {
+                Dao<T, ?> dao = daos.get(i++);
+                for (T element : partition) {
+                    dao.create(element);
+                }
+            }
+            return null;
+        });
+    }
+}
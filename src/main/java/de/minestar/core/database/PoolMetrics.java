@@ -0,0 +1,152 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.logger.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a connection pool measured by a {@link MeteredConnectionSource}. A {@link DatabaseAccess} keeps its
+ * pool metrics over reconnects, see {@link DatabaseAccess#getPoolMetrics()}. Reading the metrics never takes the lock
+ * of the pool.
+ */
+public class PoolMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoolMetrics.class);
+
+    private final LongAdder acquisitions;
+    private final LongAdder releases;
+    private final Histogram acquireWait;
+    private final List<MetricsListener> listeners;
+
+    private volatile JdbcPooledConnectionSource pool;
+
+    PoolMetrics() {
+        this.acquisitions = new LongAdder();
+        this.releases = new LongAdder();
+        this.acquireWait = new Histogram();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    void attach(JdbcPooledConnectionSource pool) {
+        this.pool = pool;
+    }
+
+    void recordAcquire(long waitNanos) {
+        acquisitions.increment();
+        acquireWait.record(waitNanos);
+        // Invoked while the connection or the SQLite write lock is held, so nothing must escape
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onAcquire(waitNanos);
+            } catch (RuntimeException e) {
+                logger.error(e, "Metrics listener {} failed", listener);
+            }
+        }
+    }
+
+    void recordRelease() {
+        releases.increment();
+    }
+
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The current values of the metrics
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * The values of the {@link PoolMetrics} at one moment.
+     */
+    public static class Snapshot {
+
+        private final long acquisitions;
+        private final long inUse;
+        private final long opened;
+        private final long closed;
+        private final Histogram.Snapshot acquireWait;
+
+        private Snapshot(PoolMetrics metrics) {
+            // Read the releases first, so connections in use are never negative
+            long released = metrics.releases.sum();
+            this.acquisitions = metrics.acquisitions.sum();
+            this.inUse = acquisitions - released;
+            JdbcPooledConnectionSource pool = metrics.pool;
+            this.opened = pool == null ? 0L : pool.getOpenCount();
+            this.closed = pool == null ? 0L : pool.getCloseCount();
+            this.acquireWait = metrics.acquireWait.snapshot();
+        }
+
+        /**
+         * @return The number of acquired connections
+         */
+        public long getAcquisitions() {
+            return acquisitions;
+        }
+
+        /**
+         * @return The number of acquired connections, which are not released yet
+         */
+        public long getInUse() {
+            return inUse;
+        }
+
+        /**
+         * @return The number of connections opened by the current pool
+         */
+        public long getOpened() {
+            return opened;
+        }
+
+        /**
+         * @return The number of connections closed by the current pool
+         */
+        public long getClosed() {
+            return closed;
+        }
+
+        /**
+         * @return The distribution of the time waited for a connection in nanoseconds
+         */
+        public Histogram.Snapshot getAcquireWait() {
+            return acquireWait;
+        }
+    }
+}
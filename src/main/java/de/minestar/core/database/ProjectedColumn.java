@@ -0,0 +1,98 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+/**
+ * A numeric column read by a projection into a {@link ProjectionChunk}. SQL NULL values are read as zero.
+ */
+public final class ProjectedColumn {
+
+    /**
+     * The primitive type a column is stored as.
+     */
+    public enum Type {
+        INT(Integer.BYTES),
+        LONG(Long.BYTES),
+        DOUBLE(Double.BYTES);
+
+        private final int bytes;
+
+        Type(int bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return The size of one value in bytes
+         */
+        public int getBytes() {
+            return bytes;
+        }
+    }
+
+    private final String name;
+    private final Type type;
+
+    private ProjectedColumn(String name, Type type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * @param columnName The name of the column in the result
+     * @return A column read as int
+     */
+    public static ProjectedColumn ofInt(String columnName) {
+        return new ProjectedColumn(columnName, Type.INT);
+    }
+
+    /**
+     * @param columnName The name of the column in the result
+     * @return A column read as long
+     */
+    public static ProjectedColumn ofLong(String columnName) {
+        return new ProjectedColumn(columnName, Type.LONG);
+    }
+
+    /**
+     * @param columnName The name of the column in the result
+     * @return A column read as double
+     */
+    public static ProjectedColumn ofDouble(String columnName) {
+        return new ProjectedColumn(columnName, Type.DOUBLE);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + type;
+    }
+}
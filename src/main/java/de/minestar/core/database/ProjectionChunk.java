@@ -0,0 +1,275 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.SQLException;
+import java.util.stream.IntStream;
+
+/**
+ * A chunk of rows of a projection stored column by column in primitive arrays or in direct (off-heap) buffers. The
+ * chunk is filled by a {@link ProjectionCursor} and reused for every chunk of the result, so reading a result does not
+ * allocate objects per row. The values of a chunk are only valid until the cursor moves to the next chunk.
+ * <p>
+ * The rows of a chunk can be processed in parallel, for example by <code>chunk.rows().parallel()</code>.
+ */
+public final class ProjectionChunk {
+
+    private final ProjectedColumn[] columns;
+    private final int capacity;
+    private final boolean offHeap;
+
+    // Either the arrays or the direct buffers of the columns
+    private final Object[] arrays;
+    private final ByteBuffer[] buffers;
+
+    private int size;
+
+    private ProjectionChunk(int capacity, boolean offHeap, ProjectedColumn[] columns) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The capacity must be positive!");
+        if (columns.length == 0)
+            throw new IllegalArgumentException("At least one column must be projected!");
+        this.columns = columns.clone();
+        this.capacity = capacity;
+        this.offHeap = offHeap;
+        this.arrays = new Object[columns.length];
+        this.buffers = new ByteBuffer[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            if (offHeap) {
+                buffers[i] = ByteBuffer.allocateDirect(capacity * columns[i].getType().getBytes()).order(ByteOrder.nativeOrder());
+                continue;
+            }
+            switch (columns[i].getType()) {
+                case INT:
+                    arrays[i] = new int[capacity];
+                    break;
+                case LONG:
+                    arrays[i] = new long[capacity];
+                    break;
+                default:
+                    arrays[i] = new double[capacity];
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Creates a chunk storing the columns in primitive arrays.
+     *
+     * @param capacity The maximal amount of rows of a chunk
+     * @param columns  The columns to read
+     * @return A new empty chunk
+     */
+    public static ProjectionChunk onHeap(int capacity, ProjectedColumn... columns) {
+        return new ProjectionChunk(capacity, false, columns);
+    }
+
+    /**
+     * Creates a chunk storing the columns in direct buffers in native byte order. The arrays of the columns are not
+     * available, use the buffer views instead.
+     *
+     * @param capacity The maximal amount of rows of a chunk
+     * @param columns  The columns to read
+     * @return A new empty chunk
+     */
+    public static ProjectionChunk offHeap(int capacity, ProjectedColumn... columns) {
+        return new ProjectionChunk(capacity, true, columns);
+    }
+
+    /**
+     * @return The amount of rows in this chunk
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @return The indices of the rows in this chunk
+     */
+    public IntStream rows() {
+        return IntStream.range(0, size);
+    }
+
+    /**
+     * @param columnName The name of a projected column
+     * @return The index of the column in this chunk
+     * @throws IllegalArgumentException The column is not projected
+     */
+    public int columnIndex(String columnName) {
+        for (int i = 0; i < columns.length; ++i) {
+            if (columns[i].getName().equalsIgnoreCase(columnName))
+                return i;
+        }
+        throw new IllegalArgumentException("The column " + columnName + " is not projected!");
+    }
+
+    public int getInt(int column, int row) {
+        checkColumn(column, ProjectedColumn.Type.INT);
+        return offHeap ? buffers[column].getInt(row * Integer.BYTES) : ((int[]) arrays[column])[row];
+    }
+
+    public long getLong(int column, int row) {
+        checkColumn(column, ProjectedColumn.Type.LONG);
+        return offHeap ? buffers[column].getLong(row * Long.BYTES) : ((long[]) arrays[column])[row];
+    }
+
+    public double getDouble(int column, int row) {
+        checkColumn(column, ProjectedColumn.Type.DOUBLE);
+        return offHeap ? buffers[column].getDouble(row * Double.BYTES) : ((double[]) arrays[column])[row];
+    }
+
+    /**
+     * @param column The index of an int column
+     * @return The array of the column. Only the first {@link ProjectionChunk#getSize()} values are valid
+     * @throws IllegalStateException The chunk is stored off heap
+     */
+    public int[] getInts(int column) {
+        checkArray(column, ProjectedColumn.Type.INT);
+        return (int[]) arrays[column];
+    }
+
+    /**
+     * @param column The index of a long column
+     * @return The array of the column. Only the first {@link ProjectionChunk#getSize()} values are valid
+     * @throws IllegalStateException The chunk is stored off heap
+     */
+    public long[] getLongs(int column) {
+        checkArray(column, ProjectedColumn.Type.LONG);
+        return (long[]) arrays[column];
+    }
+
+    /**
+     * @param column The index of a double column
+     * @return The array of the column. Only the first {@link ProjectionChunk#getSize()} values are valid
+     * @throws IllegalStateException The chunk is stored off heap
+     */
+    public double[] getDoubles(int column) {
+        checkArray(column, ProjectedColumn.Type.DOUBLE);
+        return (double[]) arrays[column];
+    }
+
+    /**
+     * @param column The index of an int column
+     * @return A read only view of the valid values of the column
+     */
+    public IntBuffer getIntBuffer(int column) {
+        checkColumn(column, ProjectedColumn.Type.INT);
+        IntBuffer buffer = offHeap ? view(column).asIntBuffer() : IntBuffer.wrap((int[]) arrays[column]);
+        return ((IntBuffer) buffer.limit(size)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param column The index of a long column
+     * @return A read only view of the valid values of the column
+     */
+    public LongBuffer getLongBuffer(int column) {
+        checkColumn(column, ProjectedColumn.Type.LONG);
+        LongBuffer buffer = offHeap ? view(column).asLongBuffer() : LongBuffer.wrap((long[]) arrays[column]);
+        return ((LongBuffer) buffer.limit(size)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param column The index of a double column
+     * @return A read only view of the valid values of the column
+     */
+    public DoubleBuffer getDoubleBuffer(int column) {
+        checkColumn(column, ProjectedColumn.Type.DOUBLE);
+        DoubleBuffer buffer = offHeap ? view(column).asDoubleBuffer() : DoubleBuffer.wrap((double[]) arrays[column]);
+        return ((DoubleBuffer) buffer.limit(size)).asReadOnlyBuffer();
+    }
+
+    private ByteBuffer view(int column) {
+        return buffers[column].duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    private void checkColumn(int column, ProjectedColumn.Type type) {
+        if (columns[column].getType() != type)
+            throw new IllegalArgumentException("The column " + columns[column] + " is not of type " + type + "!");
+    }
+
+    private void checkArray(int column, ProjectedColumn.Type type) {
+        checkColumn(column, type);
+        if (offHeap)
+            throw new IllegalStateException("The chunk is stored off heap, use the buffer views!");
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    int[] findColumns(DatabaseResults results) throws SQLException {
+        int[] positions = new int[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            positions[i] = results.findColumn(columns[i].getName());
+        }
+        return positions;
+    }
+
+    void append(DatabaseResults results, int[] positions) throws SQLException {
+        int row = size;
+        for (int i = 0; i < columns.length; ++i) {
+            switch (columns[i].getType()) {
+                case INT:
+                    if (offHeap)
+                        buffers[i].putInt(row * Integer.BYTES, results.getInt(positions[i]));
+                    else
+                        ((int[]) arrays[i])[row] = results.getInt(positions[i]);
+                    break;
+                case LONG:
+                    if (offHeap)
+                        buffers[i].putLong(row * Long.BYTES, results.getLong(positions[i]));
+                    else
+                        ((long[]) arrays[i])[row] = results.getLong(positions[i]);
+                    break;
+                default:
+                    if (offHeap)
+                        buffers[i].putDouble(row * Double.BYTES, results.getDouble(positions[i]));
+                    else
+                        ((double[]) arrays[i])[row] = results.getDouble(positions[i]);
+                    break;
+            }
+        }
+        this.size = row + 1;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the result of a projection in chunks. Every chunk is the same {@link ProjectionChunk} instance refilled
+ * with the next rows of the result, so no objects are created per row. The same rules as for a {@link QueryCursor}
+ * apply: the cursor holds a connection until it is closed, so use a try-with-resources block.
+ */
+public class ProjectionCursor implements Iterator<ProjectionChunk>, AutoCloseable {
+
+    private final ProjectionChunk chunk;
+    private final QueryCursor<ProjectionChunk> rows;
+    private int[] positions;
+
+    ProjectionCursor(ConnectionSource connectionSource, PreparedQuery<?> query, ProjectionChunk chunk, int driverFetchSize) throws SQLException {
+        this.chunk = chunk;
+        this.rows = new QueryCursor<>(connectionSource, query, this::mapRow, driverFetchSize);
+    }
+
+    private ProjectionChunk mapRow(DatabaseResults results) throws SQLException {
+        // The positions of the columns are resolved once per query
+        if (positions == null)
+            this.positions = chunk.findColumns(results);
+        chunk.append(results, positions);
+        return chunk;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rows.hasNext();
+    }
+
+    /**
+     * @return The chunk filled with the next rows. At most the last chunk contains less rows than its capacity
+     */
+    @Override
+    public ProjectionChunk next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        chunk.clear();
+        while (!chunk.isFull() && rows.hasNext()) {
+            rows.next();
+        }
+        return chunk;
+    }
+
+    /**
+     * Closes the underlying cursor. Invoking this method multiple times has no effect.
+     */
+    @Override
+    public void close() {
+        rows.close();
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves the metrics of registered consumers, accesses, caches and queries in the Prometheus text format under
+ * <code>/metrics</code>. The server is the one of the JDK and uses a single daemon thread. A scrape only reads
+ * {@link ConsumerMetrics}, {@link PoolMetrics} and {@link Histogram} snapshots, so it never blocks the threads
+ * consuming and persisting objects.
+ * <p>
+ * The consumer metrics are labeled with the entity class and the connection supplier, the pool metrics with the
+ * connection supplier. The supplier is the label given for the access or the simple class name of its supplier.
+ * Consumers of the same entity class on the same access need a name, which is added as the <code>consumer</code>
+ * label. Registrations, which would duplicate the labels of another one, are rejected.
+ * <p>
+ * The bounds of the histogram buckets are aligned to the buckets of {@link Histogram}, so the exported counts are
+ * exact.
+ */
+public class PrometheusExporter implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final Charset UTF8 = Charset.forName("UTF8");
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+    private static final long[] LATENCY_BOUNDS_NANOS = alignedBounds(
+            100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L,
+            50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L);
+    private static final long[] BATCH_SIZE_BOUNDS = alignedBounds(1L, 2L, 4L, 8L, 16L, 32L, 64L, 128L, 256L);
+
+    private final InetSocketAddress address;
+    private final List<Registration> consumers;
+    private final List<Registration> accesses;
+    private final List<Registration> caches;
+    private final List<Registration> queries;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param address The address to listen on, when the exporter is started
+     */
+    public PrometheusExporter(InetSocketAddress address) {
+        this.address = address;
+        this.consumers = new CopyOnWriteArrayList<>();
+        this.accesses = new CopyOnWriteArrayList<>();
+        this.caches = new CopyOnWriteArrayList<>();
+        this.queries = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * @param consumer The consumer to export
+     * @throws IllegalArgumentException Another consumer of the entity class on the access is registered without a name
+     */
+    public void register(DatabaseConsumer<?> consumer) {
+        register(consumer, null);
+    }
+
+    /**
+     * @param consumer The consumer to export
+     * @param name     The label distinguishing consumers of the same entity class on the same access. If null, it is
+     *                 not added
+     * @throws IllegalArgumentException Another consumer with the same labels is registered
+     */
+    public void register(DatabaseConsumer<?> consumer, String name) {
+        add(consumers, new Registration(consumer, name, null, null));
+    }
+
+    /**
+     * Exports the pool metrics of the access labeled with the simple class name of its connection supplier.
+     *
+     * @param access The access to export
+     * @throws IllegalArgumentException Another access with this label is registered
+     */
+    public void register(DatabaseAccess access) {
+        register(access, null);
+    }
+
+    /**
+     * @param access   The access to export
+     * @param supplier The label of the access and its consumers
+     * @throws IllegalArgumentException Another access with this label is registered
+     */
+    public void register(DatabaseAccess access, String supplier) {
+        add(accesses, new Registration(access, supplier, null, null));
+    }
+
+    public void registerCache(String name, StringDictionary dictionary) {
+        add(caches, new Registration(dictionary, name, dictionary::size, null));
+    }
+
+    public void registerCache(String name, RecentChangeIndex<?> index) {
+        add(caches, new Registration(index, name, index::size, index::getCompleteSince));
+    }
+
+    /**
+     * Exports a histogram of query latencies recorded by the caller.
+     *
+     * @param name         The label of the query
+     * @param latencyNanos The latencies of the query in nanoseconds
+     */
+    public void registerQuery(String name, Histogram latencyNanos) {
+        add(queries, new Registration(latencyNanos, name, null, null));
+    }
+
+    private synchronized void add(List<Registration> registrations, Registration registration) {
+        registrations.add(registration);
+        // A label of the access can change the labels of the consumers
+        String duplicate = duplicateLabels();
+        if (duplicate != null) {
+            registrations.remove(registration);
+            throw new IllegalArgumentException("The series " + duplicate + " are already exported, register it with a unique label!");
+        }
+    }
+
+    private String duplicateLabels() {
+        Set<String> labels = new HashSet<>();
+        for (Registration consumer : consumers) {
+            if (!labels.add(consumerLabels(consumer)))
+                return consumerLabels(consumer);
+        }
+        labels.clear();
+        for (Registration access : accesses) {
+            if (!labels.add(labels("supplier", supplierOf((DatabaseAccess) access.source))))
+                return labels("supplier", supplierOf((DatabaseAccess) access.source));
+        }
+        labels.clear();
+        for (Registration cache : caches) {
+            if (!labels.add(cache.label))
+                return labels("cache", cache.label);
+        }
+        labels.clear();
+        for (Registration query : queries) {
+            if (!labels.add(query.label))
+                return labels("query", query.label);
+        }
+        return null;
+    }
+
+    /**
+     * Stops exporting a registered consumer, access, cache or query.
+     *
+     * @param registered The registered object
+     */
+    public synchronized void unregister(Object registered) {
+        consumers.removeIf(registration -> registration.source == registered);
+        accesses.removeIf(registration -> registration.source == registered);
+        caches.removeIf(registration -> registration.source == registered);
+        queries.removeIf(registration -> registration.source == registered);
+    }
+
+    /**
+     * Starts the HTTP server.
+     *
+     * @throws IOException The address cannot be used
+     */
+    public synchronized void start() throws IOException {
+        if (server != null)
+            throw new IllegalStateException("The exporter is already started!");
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PrometheusExporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return The address the server listens on or null, if it is not started
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server == null)
+            return;
+        server.stop(0);
+        executor.shutdown();
+        this.server = null;
+        this.executor = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = scrape().getBytes(UTF8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return The current metrics in the Prometheus text format
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        writeConsumers(out);
+        writePools(out);
+        writeCaches(out);
+        writeQueries(out);
+        return out.toString();
+    }
+
+    private void writeConsumers(StringBuilder out) {
+        List<ConsumerMetrics.Snapshot> snapshots = new ArrayList<>(consumers.size());
+        List<String> labels = new ArrayList<>(consumers.size());
+        for (Registration consumer : consumers) {
+            snapshots.add(((DatabaseConsumer<?>) consumer.source).getMetrics().snapshot());
+            labels.add(consumerLabels(consumer));
+        }
+        if (snapshots.isEmpty())
+            return;
+
+        family(out, "minestar_db_consumer_queue_size", "gauge", "Objects waiting in the queue of the consumer.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_queue_size", labels.get(i), snapshots.get(i).getQueueSize());
+        family(out, "minestar_db_consumer_flush_size", "gauge", "Queue size triggering a flush.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_flush_size", labels.get(i), snapshots.get(i).getFlushSize());
+        family(out, "minestar_db_consumer_sleep_time_seconds", "gauge", "Current interval of the queue checks.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_sleep_time_seconds", labels.get(i), snapshots.get(i).getSleepTimeMillis() / 1000.0);
+        family(out, "minestar_db_consumer_enqueued_total", "counter", "Consumed objects.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_enqueued_total", labels.get(i), snapshots.get(i).getEnqueued());
+        family(out, "minestar_db_consumer_persisted_total", "counter", "Persisted objects.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_persisted_total", labels.get(i), snapshots.get(i).getPersisted());
+        family(out, "minestar_db_consumer_flush_failures_total", "counter", "Batches, which could not be persisted.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_flush_failures_total", labels.get(i), snapshots.get(i).getFailures());
+        family(out, "minestar_db_consumer_failed_objects_total", "counter", "Objects in the failed batches.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_consumer_failed_objects_total", labels.get(i), snapshots.get(i).getFailedElements());
+        family(out, "minestar_db_consumer_batch_size", "histogram", "Sizes of the persisted batches.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            histogram(out, "minestar_db_consumer_batch_size", labels.get(i), snapshots.get(i).getBatchSize(), BATCH_SIZE_BOUNDS, 1.0);
+        family(out, "minestar_db_consumer_flush_duration_seconds", "histogram", "Time needed to persist a batch.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            histogram(out, "minestar_db_consumer_flush_duration_seconds", labels.get(i), snapshots.get(i).getFlushLatency(), LATENCY_BOUNDS_NANOS, NANOS_PER_SECOND);
+    }
+
+    private void writePools(StringBuilder out) {
+        if (accesses.isEmpty())
+            return;
+        List<PoolMetrics.Snapshot> snapshots = new ArrayList<>(accesses.size());
+        List<String> labels = new ArrayList<>(accesses.size());
+        for (Registration registration : accesses) {
+            DatabaseAccess access = (DatabaseAccess) registration.source;
+            snapshots.add(access.getPoolMetrics().snapshot());
+            labels.add(labels("supplier", supplierOf(access)));
+        }
+
+        family(out, "minestar_db_pool_acquisitions_total", "counter", "Connections acquired from the primary pool.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_pool_acquisitions_total", labels.get(i), snapshots.get(i).getAcquisitions());
+        family(out, "minestar_db_pool_connections_in_use", "gauge", "Acquired connections, which are not released yet.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_pool_connections_in_use", labels.get(i), snapshots.get(i).getInUse());
+        family(out, "minestar_db_pool_connections_opened", "gauge", "Connections opened by the current pool.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_pool_connections_opened", labels.get(i), snapshots.get(i).getOpened());
+        family(out, "minestar_db_pool_connections_closed", "gauge", "Connections closed by the current pool.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            sample(out, "minestar_db_pool_connections_closed", labels.get(i), snapshots.get(i).getClosed());
+        family(out, "minestar_db_pool_acquire_wait_seconds", "histogram", "Time waited for a connection.");
+        for (int i = 0; i < snapshots.size(); ++i)
+            histogram(out, "minestar_db_pool_acquire_wait_seconds", labels.get(i), snapshots.get(i).getAcquireWait(), LATENCY_BOUNDS_NANOS, NANOS_PER_SECOND);
+    }
+
+    private void writeCaches(StringBuilder out) {
+        if (caches.isEmpty())
+            return;
+        family(out, "minestar_db_cache_entries", "gauge", "Entries held in memory by the cache.");
+        for (Registration cache : caches)
+            sample(out, "minestar_db_cache_entries", labels("cache", cache.label), cache.entries.getAsLong());
+        family(out, "minestar_db_cache_complete_since_seconds", "gauge", "Unix time since when the cache contains all changes.");
+        for (Registration cache : caches) {
+            if (cache.completeSinceMillis != null)
+                sample(out, "minestar_db_cache_complete_since_seconds", labels("cache", cache.label), cache.completeSinceMillis.getAsLong() / 1000.0);
+        }
+    }
+
+    private void writeQueries(StringBuilder out) {
+        if (queries.isEmpty())
+            return;
+        family(out, "minestar_db_query_duration_seconds", "histogram", "Time needed by the query.");
+        for (Registration query : queries)
+            histogram(out, "minestar_db_query_duration_seconds", labels("query", query.label), ((Histogram) query.source).snapshot(), LATENCY_BOUNDS_NANOS, NANOS_PER_SECOND);
+    }
+
+    private String consumerLabels(Registration registration) {
+        DatabaseConsumer<?> consumer = (DatabaseConsumer<?>) registration.source;
+        String entity = consumer.getMetrics().getEntityClass().getName();
+        if (registration.label == null)
+            return labels("entity", entity, "supplier", supplierOf(consumer.getAccess()));
+        return labels("entity", entity, "supplier", supplierOf(consumer.getAccess()), "consumer", registration.label);
+    }
+
+    private String supplierOf(DatabaseAccess access) {
+        for (Registration registration : accesses) {
+            if (registration.source == access && registration.label != null)
+                return registration.label;
+        }
+        return access.getConnectionSupplier().getClass().getSimpleName();
+    }
+
+    private static void family(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, Histogram.Snapshot snapshot, long[] bounds, double unit) {
+        // The labels end with '}', the bound is the last label
+        String prefix = labels.substring(0, labels.length() - 1) + ",le=\"";
+        for (long bound : bounds)
+            out.append(name).append("_bucket").append(prefix).append(bound / unit).append("\"} ").append(snapshot.getCountAtMost(bound)).append('\n');
+        out.append(name).append("_bucket").append(prefix).append("+Inf\"} ").append(snapshot.getCount()).append('\n');
+        sample(out, name + "_sum", labels, snapshot.getSum() / unit);
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+
+    private static long[] alignedBounds(long... bounds) {
+        long[] aligned = new long[bounds.length];
+        for (int i = 0; i < bounds.length; ++i)
+            aligned[i] = Histogram.bucketEdgeAtLeast(bounds[i]);
+        return aligned;
+    }
+
+    private static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0)
+                labels.append(',');
+            labels.append(namesAndValues[i]).append("=\"").append(escape(namesAndValues[i + 1])).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Registration {
+
+        private final Object source;
+        private final String label;
+        private final LongSupplier entries;
+        private final LongSupplier completeSinceMillis;
+
+        private Registration(Object source, String label, LongSupplier entries, LongSupplier completeSinceMillis) {
+            this.source = source;
+            this.label = label;
+            this.entries = entries;
+            this.completeSinceMillis = completeSinceMillis;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.StatementBuilder;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates lazily over the result of a query without loading the complete result into the memory. The rows are fetched
+ * in chunks of the fetch size (or streamed row by row for MySQL) from the database, so the memory usage is bounded
+ * independent of the size of the result.
+ * <p>
+ * The cursor holds a connection of the pool until it is closed. The cursor closes itself when the last row was read,
+ * but if the iteration is aborted, {@link QueryCursor#close()} MUST be invoked. Use a try-with-resources block for
+ * this.
+ * <p>
+ * MySQL does not allow other statements on the connection while a streamed result is open. Do not invoke other queries
+ * on the same thread inside a transaction while iterating a cursor.
+ *
+ * @param <T> The type of the mapped rows
+ */
+public class QueryCursor<T> implements Iterator<T>, AutoCloseable {
+
+    private final ConnectionSource connectionSource;
+    private final DatabaseConnection connection;
+    private final GenericRowMapper<T> rowMapper;
+
+    private CompiledStatement statement;
+    private DatabaseResults results;
+
+    private boolean rowAvailable;
+    private boolean closed;
+
+    QueryCursor(ConnectionSource connectionSource, PreparedQuery<?> query, GenericRowMapper<T> rowMapper, int driverFetchSize) throws SQLException {
+        this.connectionSource = connectionSource;
+        this.connection = connectionSource.getReadOnlyConnection();
+        this.rowMapper = rowMapper;
+        try {
+            DatabaseConnection streamingConnection = new StreamingDatabaseConnection(((JdbcDatabaseConnection) connection).getInternalConnection(), driverFetchSize);
+            this.statement = query.compile(streamingConnection, StatementBuilder.StatementType.SELECT);
+            this.results = statement.runQuery(null);
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed)
+            return false;
+        if (!rowAvailable) {
+            try {
+                rowAvailable = results.next();
+            } catch (SQLException e) {
+                close();
+                throw new IllegalStateException("Could not move to the next row of the cursor!", e);
+            }
+            // Release the connection as soon as possible
+            if (!rowAvailable)
+                close();
+        }
+        return rowAvailable;
+    }
+
+    /**
+     * @return The next row. If the cursor reuses a row object, this is always the same instance filled with the values
+     * of the current row.
+     */
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        rowAvailable = false;
+        try {
+            return rowMapper.mapRow(results);
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException("Could not map the current row of the cursor!", e);
+        }
+    }
+
+    /**
+     * Wraps the cursor into a sequential stream. Closing the stream closes the cursor.
+     *
+     * @return A stream over the remaining rows of the cursor
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Closes the result and the statement and releases the connection to the pool without throwing an exception.
+     * Invoking this method multiple times has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        rowAvailable = false;
+        if (results != null)
+            results.closeQuietly();
+        if (statement != null)
+            statement.closeQuietly();
+        try {
+            connectionSource.releaseConnection(connection);
+        } catch (SQLException ignore) {
+        }
+    }
+}
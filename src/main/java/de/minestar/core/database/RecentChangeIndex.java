@@ -0,0 +1,267 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.QueryBuilder;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps the recently persisted block changes in memory to answer inspections and rollbacks of the last hours without
+ * the database. The changes are bucketed by chunk and 16 blocks high section, so a query only visits the buckets
+ * intersecting its cuboid.
+ * <p>
+ * The index is fed by a {@link DatabaseConsumer} (see {@link DatabaseConsumer#addListener(ConsumerListener)}) after
+ * a batch was persisted, so every evicted change can be found in the database. The consumer thread adds the batch and
+ * evicts changes older than the time window and the oldest changes, when it holds more than the maximum number of
+ * changes. The index knows since when it is complete ({@link RecentChangeIndex#getCompleteSince()}) and
+ * {@link RecentChangeIndex#query(Cuboid, long, long, HistoryQuery)} queries only the older part from the database.
+ * <p>
+ * The timestamps of the persisted changes are expected to be (nearly) increasing.
+ *
+ * @param <T> The type of the block changes
+ */
+public class RecentChangeIndex<T> implements ConsumerListener<T> {
+
+    private static final int SECTION_SHIFT = 4;
+
+    private final ToIntFunction<? super T> xFunction;
+    private final ToIntFunction<? super T> yFunction;
+    private final ToIntFunction<? super T> zFunction;
+    private final ToLongFunction<? super T> timestampFunction;
+    private final long windowMillis;
+    private final int maxEntries;
+
+    private final LongObjectHashMap<ArrayDeque<T>> buckets;
+    // All changes in the order of persistence
+    private final ArrayDeque<T> entries;
+    private final ReadWriteLock lock;
+
+    // Written under the write lock, but read without a lock by monitoring
+    private volatile long completeSince;
+    private volatile int size;
+
+    /**
+     * Creates an empty index. It is complete for all changes persisted after its creation.
+     *
+     * @param xFunction         Returns the x coordinate of a change
+     * @param yFunction         Returns the y coordinate of a change
+     * @param zFunction         Returns the z coordinate of a change
+     * @param timestampFunction Returns the timestamp in milliseconds of a change
+     * @param windowMillis      Changes older than this are evicted
+     * @param maxEntries        The maximum number of changes kept in memory. Bounds the used memory
+     */
+    public RecentChangeIndex(ToIntFunction<? super T> xFunction, ToIntFunction<? super T> yFunction, ToIntFunction<? super T> zFunction, ToLongFunction<? super T> timestampFunction, long windowMillis, int maxEntries) {
+        this.xFunction = xFunction;
+        this.yFunction = yFunction;
+        this.zFunction = zFunction;
+        this.timestampFunction = timestampFunction;
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+
+        this.buckets = new LongObjectHashMap<>();
+        this.entries = new ArrayDeque<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.completeSince = System.currentTimeMillis();
+    }
+
+    @Override
+    public void afterPersist(List<T> elements) {
+        // Changes still in the queue of the consumer are neither in the index nor in the database. Evicting them would
+        // move the complete timestamp past changes, which the database does not have yet
+        lock.writeLock().lock();
+        try {
+            for (T element : elements) {
+                long key = bucketKey(xFunction.applyAsInt(element) >> SECTION_SHIFT, yFunction.applyAsInt(element) >> SECTION_SHIFT, zFunction.applyAsInt(element) >> SECTION_SHIFT);
+                ArrayDeque<T> bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayDeque<>();
+                    buckets.put(key, bucket);
+                }
+                bucket.addLast(element);
+                entries.addLast(element);
+            }
+            evict(System.currentTimeMillis());
+            this.size = entries.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void evict(long now) {
+        long oldestAllowed = now - windowMillis;
+        while (!entries.isEmpty()) {
+            T oldest = entries.peekFirst();
+            long timestamp = timestampFunction.applyAsLong(oldest);
+            if (timestamp >= oldestAllowed && entries.size() <= maxEntries)
+                break;
+
+            entries.pollFirst();
+            // The oldest change of the index is the oldest change of its bucket, too
+            long key = bucketKey(xFunction.applyAsInt(oldest) >> SECTION_SHIFT, yFunction.applyAsInt(oldest) >> SECTION_SHIFT, zFunction.applyAsInt(oldest) >> SECTION_SHIFT);
+            ArrayDeque<T> bucket = buckets.get(key);
+            bucket.pollFirst();
+            if (bucket.isEmpty())
+                buckets.remove(key);
+            completeSince = Math.max(completeSince, timestamp + 1L);
+        }
+    }
+
+    /**
+     * Queries the changes inside the cuboid in the time range. The part of the time range covered by the index is
+     * answered from memory, the older part by the history query.
+     *
+     * @param cuboid        The cuboid to query
+     * @param fromTimestamp The minimum timestamp (inclusive)
+     * @param toTimestamp   The maximum timestamp (inclusive)
+     * @param history       Queries the changes older than the index. If null, only the memory is queried
+     * @return The changes inside the cuboid and time range
+     * @throws SQLException The history query failed
+     */
+    public List<T> query(Cuboid cuboid, long fromTimestamp, long toTimestamp, HistoryQuery<T> history) throws SQLException {
+        List<T> result = new ArrayList<>();
+        long memoryFrom;
+        lock.readLock().lock();
+        try {
+            memoryFrom = Math.max(fromTimestamp, completeSince);
+            if (memoryFrom <= toTimestamp)
+                collect(cuboid, memoryFrom, toTimestamp, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (history != null && fromTimestamp < memoryFrom)
+            result.addAll(history.query(cuboid, fromTimestamp, Math.min(toTimestamp, memoryFrom - 1L)));
+        return result;
+    }
+
+    private void collect(Cuboid cuboid, long fromTimestamp, long toTimestamp, List<T> result) {
+        int minChunkX = cuboid.getMinX() >> SECTION_SHIFT;
+        int maxChunkX = cuboid.getMaxX() >> SECTION_SHIFT;
+        int minSection = cuboid.getMinY() >> SECTION_SHIFT;
+        int maxSection = cuboid.getMaxY() >> SECTION_SHIFT;
+        int minChunkZ = cuboid.getMinZ() >> SECTION_SHIFT;
+        int maxChunkZ = cuboid.getMaxZ() >> SECTION_SHIFT;
+
+        long candidates = (maxChunkX - (long) minChunkX + 1L) * (maxSection - (long) minSection + 1L) * (maxChunkZ - (long) minChunkZ + 1L);
+        // Huge cuboids visit all buckets instead of all possible bucket keys
+        if (candidates > buckets.size()) {
+            buckets.forEachValue(bucket -> filter(bucket, cuboid, fromTimestamp, toTimestamp, result));
+            return;
+        }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; ++chunkX) {
+            for (int section = minSection; section <= maxSection; ++section) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; ++chunkZ) {
+                    ArrayDeque<T> bucket = buckets.get(bucketKey(chunkX, section, chunkZ));
+                    if (bucket != null)
+                        filter(bucket, cuboid, fromTimestamp, toTimestamp, result);
+                }
+            }
+        }
+    }
+
+    private void filter(ArrayDeque<T> bucket, Cuboid cuboid, long fromTimestamp, long toTimestamp, List<T> result) {
+        for (T element : bucket) {
+            long timestamp = timestampFunction.applyAsLong(element);
+            if (timestamp >= fromTimestamp && timestamp <= toTimestamp
+                    && cuboid.contains(xFunction.applyAsInt(element), yFunction.applyAsInt(element), zFunction.applyAsInt(element)))
+                result.add(element);
+        }
+    }
+
+    /**
+     * @return The timestamp since when all persisted changes are in the index
+     */
+    public long getCompleteSince() {
+        return completeSince;
+    }
+
+    /**
+     * @return The number of changes in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    // 28 bits chunk x, 28 bits chunk z and 8 bits section. Collisions of far away sections are filtered by the query
+    private static long bucketKey(int chunkX, int section, int chunkZ) {
+        return ((long) chunkX << 36) | (((long) chunkZ & 0xFFFFFFFL) << 8) | (section & 0xFFL);
+    }
+
+    /**
+     * Queries the changes, which are too old for the index.
+     *
+     * @param <T> The type of the block changes
+     */
+    @FunctionalInterface
+    public interface HistoryQuery<T> {
+
+        /**
+         * @param cuboid        The cuboid to query
+         * @param fromTimestamp The minimum timestamp (inclusive)
+         * @param toTimestamp   The maximum timestamp (inclusive)
+         * @return The changes inside the cuboid and time range
+         * @throws SQLException
+         */
+        List<T> query(Cuboid cuboid, long fromTimestamp, long toTimestamp) throws SQLException;
+    }
+
+    /**
+     * Creates a history query using <code>between</code> clauses on the coordinate and timestamp columns on a read
+     * connection of the access.
+     *
+     * @param access          The access to the database
+     * @param clazz           The class of the block changes
+     * @param xColumn         The name of the x column
+     * @param yColumn         The name of the y column
+     * @param zColumn         The name of the z column
+     * @param timestampColumn The name of the timestamp column
+     * @param <T>             The type of the block changes
+     * @return The history query
+     */
+    public static <T> HistoryQuery<T> betweenQuery(DatabaseAccess access, Class<T> clazz, String xColumn, String yColumn, String zColumn, String timestampColumn) {
+        return (cuboid, fromTimestamp, toTimestamp) -> {
+            Dao<T, ?> dao = access.getReadDao(clazz);
+            QueryBuilder<T, ?> queryBuilder = dao.queryBuilder();
+            queryBuilder.where()
+                    .between(xColumn, cuboid.getMinX(), cuboid.getMaxX())
+                    .and()
+                    .between(yColumn, cuboid.getMinY(), cuboid.getMaxY())
+                    .and()
+                    .between(zColumn, cuboid.getMinZ(), cuboid.getMaxZ())
+                    .and()
+                    .between(timestampColumn, fromTimestamp, toTimestamp);
+            return queryBuilder.query();
+        };
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A read replica of a {@link DatabaseAccess} caching its last measured replication lag. Only one thread measures an
+ * expired lag, the other threads keep using the cached lag meanwhile.
+ */
+class Replica {
+
+    private final ConnectionSupplier connectionSupplier;
+    private volatile ConnectionSource connectionSource;
+
+    // Unknown until the first measurement, so the replica is skipped while it is measured
+    private volatile long lagMillis = Long.MAX_VALUE;
+    private volatile long lastCheckNanos;
+    private volatile boolean checked;
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    /**
+     * @param connectionSupplier Opens the connection to the replica
+     * @param lazy               If true, the connection is opened by the first usage
+     */
+    Replica(ConnectionSupplier connectionSupplier, boolean lazy) throws Exception {
+        this.connectionSupplier = connectionSupplier;
+        if (!lazy)
+            this.connectionSource = connectionSupplier.createConnection();
+    }
+
+    ConnectionSource getConnectionSource() {
+        ConnectionSource source = connectionSource;
+        return source != null ? source : connect();
+    }
+
+    /**
+     * @return The connection source or null, if the lazy connection was not opened yet
+     */
+    ConnectionSource getOpenConnectionSource() {
+        return connectionSource;
+    }
+
+    private synchronized ConnectionSource connect() {
+        if (connectionSource == null) {
+            try {
+                this.connectionSource = connectionSupplier.createConnection();
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot connect to the replica", e);
+            }
+        }
+        return connectionSource;
+    }
+
+    /**
+     * @param probe              Measures the lag. If null, the replica is always available
+     * @param maxLagMillis       The maximum accepted lag
+     * @param checkIntervalNanos The time the last measured lag is valid
+     * @return True, if the lag of the replica is acceptable
+     */
+    boolean isAvailable(ReplicaLagProbe probe, long maxLagMillis, long checkIntervalNanos) {
+        if (probe == null)
+            return true;
+        if ((!checked || System.nanoTime() - lastCheckNanos > checkIntervalNanos) && probing.compareAndSet(false, true)) {
+            try {
+                // Another thread may have checked the lag in the meantime
+                if (!checked || System.nanoTime() - lastCheckNanos > checkIntervalNanos) {
+                    try {
+                        this.lagMillis = probe.lagMillis(getConnectionSource());
+                    } catch (SQLException | IllegalStateException e) {
+                        // Unreachable replicas are skipped like lagging ones
+                        this.lagMillis = Long.MAX_VALUE;
+                    }
+                    this.lastCheckNanos = System.nanoTime();
+                    this.checked = true;
+                }
+            } finally {
+                probing.set(false);
+            }
+        }
+        return lagMillis <= maxLagMillis;
+    }
+
+    void close() {
+        ConnectionSource source = connectionSource;
+        if (source != null)
+            source.closeQuietly();
+    }
+
+    synchronized void reconnect() throws Exception {
+        // Swap before closing, so other threads never see a closed connection source. If the replica is unreachable,
+        // the old connection source is kept
+        ConnectionSource newConnectionSource = connectionSupplier.createConnection();
+        ConnectionSource oldConnectionSource = this.connectionSource;
+        this.connectionSource = newConnectionSource;
+        this.checked = false;
+        if (oldConnectionSource != null)
+            oldConnectionSource.closeQuietly();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.SQLException;
+
+/**
+ * Measures how far a read replica is behind its primary database.
+ *
+ * @see DatabaseAccess#setReplicaLagProbe(ReplicaLagProbe, long)
+ */
+@FunctionalInterface
+public interface ReplicaLagProbe {
+
+    /**
+     * Measure the replication lag of a replica.
+     *
+     * @param replica The connection to the replica
+     * @return The lag in milliseconds or {@link Long#MAX_VALUE}, if the replica does not replicate at the moment
+     * @throws SQLException The replica is not reachable. It will be treated as not available.
+     */
+    long lagMillis(ConnectionSource replica) throws SQLException;
+}
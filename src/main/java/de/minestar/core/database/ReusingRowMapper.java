@@ -0,0 +1,62 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps every row into the same object instead of creating a new object per row. Foreign collections are not supported.
+ *
+ * @param <T> The type of the mapped rows
+ */
+class ReusingRowMapper<T> implements GenericRowMapper<T> {
+
+    private final FieldType[] fieldTypes;
+    private final T row;
+    private final Map<String, Integer> columnPositions;
+
+    ReusingRowMapper(FieldType[] fieldTypes, T row) {
+        this.fieldTypes = fieldTypes;
+        this.row = row;
+        this.columnPositions = new HashMap<>();
+    }
+
+    @Override
+    public T mapRow(DatabaseResults results) throws SQLException {
+        for (FieldType fieldType : fieldTypes) {
+            if (fieldType.isForeignCollection())
+                continue;
+            Object value = fieldType.resultToJava(results, columnPositions);
+            fieldType.assignField(row, value, false, null);
+        }
+        return row;
+    }
+}
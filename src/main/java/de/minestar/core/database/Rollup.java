@@ -0,0 +1,307 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+import com.j256.ormlite.table.TableUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Maintains precomputed aggregates of consumed objects, for example the block changes per player and hour. Added as
+ * listener to a {@link DatabaseConsumer}, the rollup counts the persisted objects per group and time bucket in memory and
+ * adds the counts periodically to the rows of its summary table. Aggregate queries read the few summary rows instead of
+ * scanning the raw history.
+ * <p>
+ * The summary table contains one {@link RollupRow} per group and bucket. The counts are added in one batch of
+ * <code>UPDATE ... SET rowCount = rowCount + ?</code> statements in one transaction, missing rows are created. Multiple
+ * servers can share a summary table.
+ * <p>
+ * The counts are written after a batch of the consumer was persisted, at most every write interval, and when the
+ * consumer thread stops. Counts, which could not be written, are kept and written with the next batch.
+ *
+ * @param <T> The type of the consumed objects
+ */
+public class Rollup<T> implements ConsumerListener<T> {
+
+    /**
+     * The default minimum interval between two writes of the counts.
+     */
+    public static final long DEFAULT_WRITE_INTERVAL_MILLIS = 10_000L;
+
+    private final DatabaseAccess access;
+    private final String tableName;
+    private final Function<? super T, String> keyFunction;
+    private final ToLongFunction<? super T> timestampFunction;
+    private final ToLongFunction<? super T> valueFunction;
+    private final long bucketMillis;
+    private final long writeIntervalNanos;
+
+    private final Map<BucketKey, long[]> pending;
+    private volatile long lastWriteNanos;
+
+    private ConnectionSource daoSource;
+    private Dao<RollupRow, Long> dao;
+
+    /**
+     * Creates a rollup counting the objects per group and bucket. The sums of the rows are always zero.
+     *
+     * @param access            The access to the database of the summary table
+     * @param tableName         The name of the summary table
+     * @param keyFunction       Returns the group of an object, for example the name of the player. Objects with a null
+     *                          group are ignored
+     * @param timestampFunction Returns the timestamp of an object in milliseconds
+     * @param bucketMillis      The time span of a bucket in milliseconds, for example an hour
+     */
+    public Rollup(DatabaseAccess access, String tableName, Function<? super T, String> keyFunction, ToLongFunction<? super T> timestampFunction, long bucketMillis) {
+        this(access, tableName, keyFunction, timestampFunction, null, bucketMillis, DEFAULT_WRITE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates a rollup counting the objects and summing their values per group and bucket.
+     *
+     * @param access              The access to the database of the summary table
+     * @param tableName           The name of the summary table
+     * @param keyFunction         Returns the group of an object, for example the name of the player. Objects with a
+     *                            null group are ignored
+     * @param timestampFunction   Returns the timestamp of an object in milliseconds
+     * @param valueFunction       Returns the value of an object to sum. Can be null
+     * @param bucketMillis        The time span of a bucket in milliseconds, for example an hour
+     * @param writeIntervalMillis The minimum interval between two writes of the counts
+     */
+    public Rollup(DatabaseAccess access, String tableName, Function<? super T, String> keyFunction, ToLongFunction<? super T> timestampFunction, ToLongFunction<? super T> valueFunction, long bucketMillis, long writeIntervalMillis) {
+        if (bucketMillis <= 0L)
+            throw new IllegalArgumentException("The bucket size must be positive!");
+        this.access = access;
+        this.tableName = tableName;
+        this.keyFunction = keyFunction;
+        this.timestampFunction = timestampFunction;
+        this.valueFunction = valueFunction;
+        this.bucketMillis = bucketMillis;
+        this.writeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(writeIntervalMillis);
+
+        this.pending = new ConcurrentHashMap<>();
+        this.lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates the summary table, if it does not exist.
+     *
+     * @throws SQLException
+     */
+    public void createTableIfNotExists() throws SQLException {
+        Dao<RollupRow, Long> dao = getDao();
+        if (!dao.isTableExists())
+            TableUtils.createTable(access.getConnectionSource(), TableConfigs.forTable(access.getConnectionSource(), RollupRow.class, tableName));
+    }
+
+    @Override
+    public void afterPersist(List<T> elements) {
+        // Objects of failed batches are not counted
+        for (T element : elements) {
+            count(element);
+        }
+        if (System.nanoTime() - lastWriteNanos >= writeIntervalNanos)
+            flushQuietly();
+    }
+
+    private void count(T element) {
+        String key = keyFunction.apply(element);
+        if (key == null)
+            return;
+        long bucket = Math.floorDiv(timestampFunction.applyAsLong(element), bucketMillis) * bucketMillis;
+        long value = valueFunction == null ? 0L : valueFunction.applyAsLong(element);
+        // The counts are only modified inside compute, which is atomic to the removal while writing
+        pending.compute(new BucketKey(bucket, key), (bucketKey, counts) -> {
+            if (counts == null)
+                counts = new long[2];
+            counts[0] += 1L;
+            counts[1] += value;
+            return counts;
+        });
+    }
+
+    @Override
+    public void onStop() {
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException ignore) {
+        }
+    }
+
+    /**
+     * Adds the pending counts to the summary table. If the counts could not be written, they are kept and written by
+     * the next invocation.
+     *
+     * @return The number of updated or created summary rows
+     * @throws SQLException
+     */
+    public synchronized int flush() throws SQLException {
+        lastWriteNanos = System.nanoTime();
+        List<BucketKey> keys = new ArrayList<>(pending.keySet());
+        if (keys.isEmpty())
+            return 0;
+
+        Map<BucketKey, long[]> batch = new HashMap<>(keys.size());
+        for (BucketKey key : keys) {
+            long[] counts = pending.remove(key);
+            if (counts != null)
+                batch.put(key, counts);
+        }
+
+        try {
+            Dao<RollupRow, Long> dao = getDao();
+            // A batch task commits the finished statements on failure, which would add them twice
+            TransactionManager.callInTransaction(dao.getConnectionSource(), () -> {
+                for (Map.Entry<BucketKey, long[]> entry : batch.entrySet()) {
+                    upsert(dao, entry.getKey(), entry.getValue());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Keep the counts for the next write
+            for (Map.Entry<BucketKey, long[]> entry : batch.entrySet()) {
+                long[] counts = entry.getValue();
+                pending.merge(entry.getKey(), counts, (current, failed) -> new long[]{current[0] + failed[0], current[1] + failed[1]});
+            }
+            if (e instanceof SQLException)
+                throw (SQLException) e;
+            throw new SQLException("Could not write the rollup " + tableName + "!", e);
+        }
+        return batch.size();
+    }
+
+    private void upsert(Dao<RollupRow, Long> dao, BucketKey key, long[] counts) throws SQLException {
+        if (update(dao, key, counts) > 0)
+            return;
+        try {
+            dao.create(new RollupRow(key.bucket, key.groupKey, counts[0], counts[1]));
+        } catch (SQLException e) {
+            // Another server created the row in the meantime
+            if (update(dao, key, counts) == 0)
+                throw e;
+        }
+    }
+
+    private int update(Dao<RollupRow, Long> dao, BucketKey key, long[] counts) throws SQLException {
+        UpdateBuilder<RollupRow, Long> updateBuilder = dao.updateBuilder();
+        updateBuilder.updateColumnExpression(RollupRow.ROW_COUNT, addExpression(RollupRow.ROW_COUNT, counts[0]));
+        updateBuilder.updateColumnExpression(RollupRow.VALUE_SUM, addExpression(RollupRow.VALUE_SUM, counts[1]));
+        updateBuilder.where().eq(RollupRow.BUCKET, key.bucket).and().eq(RollupRow.GROUP_KEY, new SelectArg(key.groupKey));
+        return updateBuilder.update();
+    }
+
+    private String addExpression(String columnName, long value) {
+        StringBuilder expression = new StringBuilder();
+        access.getConnectionSource().getDatabaseType().appendEscapedEntityName(expression, columnName);
+        return expression.append(" + ").append(value).toString();
+    }
+
+    /**
+     * Queries the summary rows of a group inside the time range.
+     *
+     * @param groupKey      The key of the group. If null, the rows of all groups are returned
+     * @param fromTimestamp The minimum timestamp (inclusive)
+     * @param toTimestamp   The maximum timestamp (inclusive)
+     * @return The summary rows ordered by bucket. Pending counts are not included
+     * @throws SQLException
+     */
+    public List<RollupRow> query(String groupKey, long fromTimestamp, long toTimestamp) throws SQLException {
+        DatabaseTableConfig<RollupRow> tableConfig = TableConfigs.forTable(access.getReadConnectionSource(), RollupRow.class, tableName);
+        Dao<RollupRow, Long> readDao = new BaseDaoImpl<RollupRow, Long>(access.getReadConnectionSource(), tableConfig) {
+        };
+        QueryBuilder<RollupRow, Long> queryBuilder = readDao.queryBuilder();
+        Where<RollupRow, Long> where = queryBuilder.where();
+        where.between(RollupRow.BUCKET, Math.floorDiv(fromTimestamp, bucketMillis) * bucketMillis, toTimestamp);
+        if (groupKey != null)
+            where.and().eq(RollupRow.GROUP_KEY, new SelectArg(groupKey));
+        return queryBuilder.orderBy(RollupRow.BUCKET, true).query();
+    }
+
+    /**
+     * @return The number of groups and buckets with counts not yet written
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private synchronized Dao<RollupRow, Long> getDao() throws SQLException {
+        // Recreate the Dao after a reconnect of the access
+        ConnectionSource connectionSource = access.getConnectionSource();
+        if (dao == null || daoSource != connectionSource) {
+            dao = new BaseDaoImpl<RollupRow, Long>(connectionSource, TableConfigs.forTable(connectionSource, RollupRow.class, tableName)) {
+            };
+            daoSource = connectionSource;
+        }
+        return dao;
+    }
+
+    private static final class BucketKey {
+
+        private final long bucket;
+        private final String groupKey;
+
+        private BucketKey(long bucket, String groupKey) {
+            this.bucket = bucket;
+            this.groupKey = groupKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof BucketKey))
+                return false;
+            BucketKey other = (BucketKey) o;
+            return bucket == other.bucket && groupKey.equals(other.groupKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucket, groupKey);
+        }
+    }
+}
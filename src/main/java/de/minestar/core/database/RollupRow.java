@@ -0,0 +1,100 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+
+/**
+ * A precomputed aggregate of a {@link Rollup}: the number and the summed values of all objects of a group inside a time
+ * bucket. The table of the row is defined by its rollup.
+ */
+public class RollupRow {
+
+    static final String BUCKET = "bucket";
+    static final String GROUP_KEY = "groupKey";
+    static final String ROW_COUNT = "rowCount";
+    static final String VALUE_SUM = "valueSum";
+
+    @DatabaseField(generatedId = true)
+    private long id;
+
+    @DatabaseField(columnName = BUCKET, uniqueCombo = true)
+    private long bucket;
+
+    @DatabaseField(columnName = GROUP_KEY, uniqueCombo = true, canBeNull = false)
+    private String groupKey;
+
+    @DatabaseField(columnName = ROW_COUNT)
+    private long rowCount;
+
+    @DatabaseField(columnName = VALUE_SUM)
+    private long valueSum;
+
+    /**
+     * Constructor for ORMLite
+     */
+    public RollupRow() {
+    }
+
+    RollupRow(long bucket, String groupKey, long rowCount, long valueSum) {
+        this.bucket = bucket;
+        this.groupKey = groupKey;
+        this.rowCount = rowCount;
+        this.valueSum = valueSum;
+    }
+
+    /**
+     * @return The start of the time bucket in milliseconds
+     */
+    public long getBucket() {
+        return bucket;
+    }
+
+    /**
+     * @return The key of the group, for example the name of a player
+     */
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    /**
+     * @return The number of objects of the group in the bucket
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The sum of the values of the objects of the group in the bucket
+     */
+    public long getValueSum() {
+        return valueSum;
+    }
+
+    @Override
+    public String toString() {
+        return "RollupRow{bucket=" + bucket + ", groupKey='" + groupKey + "', rowCount=" + rowCount + ", valueSum=" + valueSum + "}";
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Converts the values of a field of an entity to the values stored in a segment file and back. The values are
+ * converted by the persister of the field, so the segment contains the same values as the database column.
+ */
+class SegmentColumn {
+
+    /**
+     * The storage of the values of a column.
+     */
+    enum Kind {
+        LONG, DOUBLE, STRING
+    }
+
+    private final FieldType fieldType;
+    private final SqlType sqlType;
+    private final Kind kind;
+
+    SegmentColumn(FieldType fieldType) {
+        this.fieldType = fieldType;
+        this.sqlType = fieldType.getDataPersister() == null ? null : fieldType.getDataPersister().getSqlType();
+        this.kind = kindOf(sqlType);
+        if (fieldType.isForeign() || kind == null)
+            throw new IllegalArgumentException("The column " + fieldType.getColumnName() + " of type " + fieldType.getType().getName() + " cannot be archived!");
+    }
+
+    private static Kind kindOf(SqlType sqlType) {
+        if (sqlType == null)
+            return null;
+        switch (sqlType) {
+            case BOOLEAN:
+            case CHAR:
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+            case DATE:
+                return Kind.LONG;
+            case FLOAT:
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case STRING:
+            case LONG_STRING:
+                return Kind.STRING;
+            default:
+                return null;
+        }
+    }
+
+    String getName() {
+        return fieldType.getColumnName();
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @param row An entity
+     * @return The value of the column as written to the database. Can be null
+     * @throws SQLException
+     */
+    Object extract(Object row) throws SQLException {
+        return fieldType.extractJavaFieldToSqlArgValue(row);
+    }
+
+    /**
+     * Converts the value of the column to the value used in queries and the segment files.
+     *
+     * @param sqlArg The value of the column
+     * @return The value as long
+     */
+    static long toLong(Object sqlArg) {
+        if (sqlArg instanceof Number)
+            return ((Number) sqlArg).longValue();
+        if (sqlArg instanceof Boolean)
+            return (Boolean) sqlArg ? 1L : 0L;
+        if (sqlArg instanceof Character)
+            return (Character) sqlArg;
+        if (sqlArg instanceof Date)
+            return ((Date) sqlArg).getTime();
+        throw new IllegalArgumentException("Cannot convert " + sqlArg + " to a long value!");
+    }
+
+    /**
+     * @param value A value of a {@link Kind#LONG} column
+     * @return The value as argument for a query of this column
+     */
+    Object toSqlArg(long value) {
+        switch (sqlType) {
+            case BOOLEAN:
+                return value != 0L;
+            case CHAR:
+                return (char) value;
+            case BYTE:
+                return (byte) value;
+            case SHORT:
+                return (short) value;
+            case INTEGER:
+                return (int) value;
+            case DATE:
+                return new Timestamp(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @param value A value of a {@link Kind#DOUBLE} column
+     * @return The value as argument for a query of this column
+     */
+    Object toSqlArg(double value) {
+        return sqlType == SqlType.FLOAT ? (Object) (float) value : (Object) value;
+    }
+
+    /**
+     * Converts the stored value to the type of the field and assigns it to the entity.
+     *
+     * @param row    An entity
+     * @param sqlArg The stored value of the column. Can be null
+     * @throws SQLException
+     */
+    void assign(Object row, Object sqlArg) throws SQLException {
+        Object value = sqlArg == null ? null : fieldType.getDataPersister().sqlArgToJava(fieldType, sqlArg, 0);
+        fieldType.assignField(row, value, false, null);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a segment file written by a {@link SegmentWriter}. The header and the footer are read once, the blocks are
+ * memory-mapped, so only the pages of the blocks, which are not skipped by the skip index, are read from the disk. The
+ * blocks are mapped in as few regions of at most 2 GiB as possible, usually one per segment. The reader is thread safe
+ * and must be closed after usage.
+ */
+class SegmentReader implements AutoCloseable {
+
+    private static final long MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+
+    private final Path path;
+    private volatile ByteBuffer[] regions;
+    private final int[] blockRegions;
+    private final int[] blockPositions;
+
+    private final long cutoff;
+    private final String[] columnNames;
+    private final SegmentColumn.Kind[] kinds;
+
+    private final int[] blockRowCounts;
+    private final boolean[][] hasValues;
+    private final long[][] mins;
+    private final long[][] maxs;
+    private final int rowCount;
+
+    SegmentReader(Path path) throws IOException {
+        this.path = path;
+        // The mappings stay valid after closing the channel
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long trailerOffset = channel.size() - SegmentWriter.TRAILER_SIZE;
+            if (trailerOffset < Integer.BYTES)
+                throw new IOException("The file " + path + " is not a complete segment file!");
+            ByteBuffer trailer = read(channel, trailerOffset, channel.size());
+            long footerOffset = trailer.getLong(0);
+            if (trailer.getInt(Long.BYTES) != SegmentWriter.MAGIC || footerOffset < Integer.BYTES || footerOffset > trailerOffset)
+                throw new IOException("The file " + path + " is not a complete segment file!");
+
+            channel.position(0L);
+            DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (header.readInt() != SegmentWriter.MAGIC)
+                throw new IOException("The file " + path + " is not a complete segment file!");
+            int version = header.readInt();
+            if (version != SegmentWriter.VERSION)
+                throw new IOException("Unsupported version " + version + " of the segment file " + path + "!");
+            this.cutoff = header.readLong();
+            int columnCount = header.readInt();
+            this.columnNames = new String[columnCount];
+            this.kinds = new SegmentColumn.Kind[columnCount];
+            for (int i = 0; i < columnCount; ++i) {
+                columnNames[i] = header.readUTF();
+                kinds[i] = SegmentColumn.Kind.values()[header.readByte()];
+            }
+
+            ByteBuffer footer = read(channel, footerOffset, trailerOffset);
+            int blockCount = footer.getInt();
+            long[] blockOffsets = new long[blockCount];
+            this.blockRowCounts = new int[blockCount];
+            this.hasValues = new boolean[blockCount][columnCount];
+            this.mins = new long[blockCount][columnCount];
+            this.maxs = new long[blockCount][columnCount];
+            int rows = 0;
+            for (int block = 0; block < blockCount; ++block) {
+                blockOffsets[block] = footer.getLong();
+                blockRowCounts[block] = footer.getInt();
+                rows += blockRowCounts[block];
+                for (int column = 0; column < columnCount; ++column) {
+                    if (kinds[column] != SegmentColumn.Kind.LONG)
+                        continue;
+                    hasValues[block][column] = footer.get() != 0;
+                    mins[block][column] = footer.getLong();
+                    maxs[block][column] = footer.getLong();
+                }
+            }
+            this.rowCount = rows;
+
+            // Start a new region, when the next block does not fit into the current one
+            this.blockRegions = new int[blockCount];
+            this.blockPositions = new int[blockCount];
+            List<ByteBuffer> mappedRegions = new ArrayList<>(1);
+            int firstBlock = 0;
+            for (int block = 0; block < blockCount; ++block) {
+                long end = block + 1 < blockCount ? blockOffsets[block + 1] : footerOffset;
+                if (end - blockOffsets[firstBlock] > MAX_MAPPING_SIZE) {
+                    if (block == firstBlock)
+                        throw new IOException("The block " + block + " of the segment file " + path + " is larger than 2 GiB!");
+                    mappedRegions.add(map(channel, blockOffsets[firstBlock], blockOffsets[block]));
+                    firstBlock = block;
+                    if (end - blockOffsets[firstBlock] > MAX_MAPPING_SIZE)
+                        throw new IOException("The block " + block + " of the segment file " + path + " is larger than 2 GiB!");
+                }
+                blockRegions[block] = mappedRegions.size();
+                blockPositions[block] = (int) (blockOffsets[block] - blockOffsets[firstBlock]);
+            }
+            if (blockCount > 0)
+                mappedRegions.add(map(channel, blockOffsets[firstBlock], footerOffset));
+            this.regions = mappedRegions.toArray(new ByteBuffer[mappedRegions.size()]);
+        }
+    }
+
+    private ByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+        if (from > to)
+            throw new IOException("The segment file " + path + " is corrupted!");
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    private ByteBuffer read(FileChannel channel, long from, long to) throws IOException {
+        if (from > to || to - from > MAX_MAPPING_SIZE)
+            throw new IOException("The segment file " + path + " is corrupted!");
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0)
+                throw new IOException("The segment file " + path + " is truncated!");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The cutoff timestamp of the archival run, which created the segment
+     */
+    long getCutoff() {
+        return cutoff;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    int getBlockCount() {
+        return blockRowCounts.length;
+    }
+
+    int getBlockRowCount(int block) {
+        return blockRowCounts[block];
+    }
+
+    /**
+     * @param columnName The name of a column
+     * @return The index of the column in this segment or -1, if the segment does not contain the column
+     */
+    int columnIndex(String columnName) {
+        for (int i = 0; i < columnNames.length; ++i) {
+            if (columnNames[i].equalsIgnoreCase(columnName))
+                return i;
+        }
+        return -1;
+    }
+
+    SegmentColumn.Kind getKind(int column) {
+        return kinds[column];
+    }
+
+    /**
+     * @param block  The index of the block
+     * @param column The index of a {@link SegmentColumn.Kind#LONG} column
+     * @return True, if the block contains a not null value of the column
+     */
+    boolean hasValues(int block, int column) {
+        return hasValues[block][column];
+    }
+
+    long getMin(int block, int column) {
+        return mins[block][column];
+    }
+
+    long getMax(int block, int column) {
+        return maxs[block][column];
+    }
+
+    /**
+     * Checks the skip index of a block.
+     *
+     * @param block  The index of the block
+     * @param column The index of a {@link SegmentColumn.Kind#LONG} column
+     * @param range  The queried range of the column
+     * @return False, if no row of the block can be inside the range
+     */
+    boolean mayContain(int block, int column, ColumnRange range) {
+        return hasValues[block][column] && range.overlaps(mins[block][column], maxs[block][column]);
+    }
+
+    /**
+     * Reads and decodes the values of a column of a block.
+     *
+     * @param block    The index of the block
+     * @param column   The index of the column
+     * @param inflater A reset inflater
+     * @return The values of the column
+     */
+    ColumnChunk readChunk(int block, int column, Inflater inflater) {
+        ByteBuffer[] mapped = regions;
+        if (mapped == null)
+            throw new IllegalStateException("The segment file " + path + " is closed!");
+        ByteBuffer buffer = mapped[blockRegions[block]];
+        int position = blockPositions[block];
+        for (int i = 0; i < column; ++i) {
+            position += Integer.BYTES + buffer.getInt(position);
+        }
+        byte[] compressed = new byte[buffer.getInt(position)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + Integer.BYTES);
+        view.get(compressed);
+        return ColumnChunk.decode(kinds[column], blockRowCounts[block], compressed, inflater);
+    }
+
+    /**
+     * Releases the mappings of the file. They are unmapped by the garbage collector, because Java cannot unmap them
+     * explicitly.
+     */
+    @Override
+    public void close() {
+        this.regions = null;
+    }
+}
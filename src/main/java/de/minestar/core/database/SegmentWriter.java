@@ -0,0 +1,178 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the rows of an entity into an immutable, columnar segment file. The rows are grouped into blocks of a fixed
+ * number of rows and every block stores its columns one after another, compressed separately.
+ * <p>
+ * Layout of a segment file:
+ * <pre>
+ * header:  magic, version, cutoff, column count, (column name, column kind)*
+ * blocks:  ((compressed length, compressed column chunk)* per column)*
+ * footer:  block count, (offset, row count, (has values, min, max)* per LONG column)* per block
+ * trailer: footer offset, magic
+ * </pre>
+ * The footer is the skip index: readers compare the minimum and maximum of the numeric columns of a block with the
+ * queried ranges before they read the block.
+ */
+class SegmentWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x4D534547;
+    static final int VERSION = 1;
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final List<SegmentColumn> columns;
+    private final ColumnChunk[] chunks;
+    private final int blockSize;
+    private final Deflater deflater;
+
+    private final ByteArrayOutputStream footerBuffer;
+    private final DataOutputStream footer;
+    private int blockCount;
+    private int rowCount;
+
+    /**
+     * Creates the segment file and writes the header.
+     *
+     * @param path      The path of the segment file
+     * @param columns   The columns to store
+     * @param blockSize The number of rows of a block
+     * @param cutoff    The cutoff timestamp of the archival run creating the segment
+     * @throws IOException
+     */
+    SegmentWriter(Path path, List<SegmentColumn> columns, int blockSize, long cutoff) throws IOException {
+        this.columns = columns;
+        this.blockSize = blockSize;
+        this.chunks = new ColumnChunk[columns.size()];
+        for (int i = 0; i < chunks.length; ++i) {
+            chunks[i] = new ColumnChunk(columns.get(i).getKind(), blockSize);
+        }
+        this.footerBuffer = new ByteArrayOutputStream();
+        this.footer = new DataOutputStream(footerBuffer);
+
+        ByteArrayOutputStream headerBuffer = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBuffer);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeLong(cutoff);
+        header.writeInt(columns.size());
+        for (SegmentColumn column : columns) {
+            header.writeUTF(column.getName());
+            header.writeByte(column.getKind().ordinal());
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            write(ByteBuffer.wrap(headerBuffer.toByteArray()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Appends a row to the current block. The block is written, when it is full.
+     *
+     * @param row The entity to append. Can be reused after this call
+     * @throws SQLException The values could not be extracted
+     * @throws IOException  The block could not be written
+     */
+    void append(Object row) throws SQLException, IOException {
+        for (int i = 0; i < chunks.length; ++i) {
+            chunks[i].add(columns.get(i).extract(row));
+        }
+        ++rowCount;
+        if (chunks[0].size() == blockSize)
+            writeBlock();
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    private void writeBlock() throws IOException {
+        int blockRows = chunks[0].size();
+        footer.writeLong(channel.position());
+        footer.writeInt(blockRows);
+        for (ColumnChunk chunk : chunks) {
+            deflater.reset();
+            byte[] compressed = chunk.encode(deflater);
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + compressed.length);
+            buffer.putInt(compressed.length).put(compressed).flip();
+            write(buffer);
+
+            if (chunk.getKind() == SegmentColumn.Kind.LONG) {
+                footer.writeBoolean(chunk.hasValues());
+                footer.writeLong(chunk.getMin());
+                footer.writeLong(chunk.getMax());
+            }
+            chunk.clear();
+        }
+        ++blockCount;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the last block and the footer and forces the file to the disk.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (chunks[0].size() > 0)
+                writeBlock();
+            long footerOffset = channel.position();
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + footerBuffer.size() + TRAILER_SIZE);
+            buffer.putInt(blockCount).put(footerBuffer.toByteArray());
+            buffer.putLong(footerOffset).putInt(MAGIC).flip();
+            write(buffer);
+            channel.force(true);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.PreparedQuery;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Distributes entities over multiple databases (shards) by a shard key, for example the world or the region of a
+ * block. Every shard is an own {@link DatabaseAccess}, so the write capacity grows with every added database.
+ * <p>
+ * The shard of a key is determined by its hash code modulo the number of shards. The hash code of the key must be
+ * stable between restarts (like the hash codes of {@link String} and {@link Long}) and the number and order of the
+ * shards must never change for an existing data set. Otherwise the entities are not found anymore.
+ * <p>
+ * Queries over all shards are executed in parallel by {@link ShardedDatabaseAccess#scatterGather(ShardQuery)}. Use
+ * {@link ShardedDatabaseConsumer} to consume entities into the shards.
+ */
+public class ShardedDatabaseAccess {
+
+    private static ExecutorService threadPool = Executors.newCachedThreadPool();
+
+    private final List<DatabaseAccess> shards;
+
+    /**
+     * Opens the connections to all shards.
+     *
+     * @param shardSuppliers The suppliers of the shards. The order defines the shard index and must never change
+     * @throws Exception Something went wrong while opening a connection. Already opened connections are closed.
+     */
+    public ShardedDatabaseAccess(List<ConnectionSupplier> shardSuppliers) throws Exception {
+        if (shardSuppliers.isEmpty())
+            throw new IllegalArgumentException("At least one shard is necessary!");
+
+        List<DatabaseAccess> shardList = new ArrayList<>(shardSuppliers.size());
+        try {
+            for (ConnectionSupplier shardSupplier : shardSuppliers) {
+                shardList.add(new DatabaseAccess(shardSupplier));
+            }
+        } catch (Exception e) {
+            shardList.forEach(DatabaseAccess::close);
+            throw e;
+        }
+        this.shards = Collections.unmodifiableList(shardList);
+    }
+
+    /**
+     * @return The number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return All shards ordered by their index
+     */
+    public List<DatabaseAccess> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param shardIndex The index of the shard
+     * @return The access to the shard
+     */
+    public DatabaseAccess getShard(int shardIndex) {
+        return shards.get(shardIndex);
+    }
+
+    /**
+     * @param shardKey The shard key, must not be null
+     * @return The index of the shard responsible for the key
+     */
+    public int shardIndexOf(Object shardKey) {
+        return Math.floorMod(mix(shardKey.hashCode()), shards.size());
+    }
+
+    /**
+     * @param shardKey The shard key, must not be null
+     * @return The access to the shard responsible for the key
+     */
+    public DatabaseAccess forKey(Object shardKey) {
+        return shards.get(shardIndexOf(shardKey));
+    }
+
+    /**
+     * Create(or get if created before) the Dao for the clazz on the shard responsible for the key. See
+     * {@link DatabaseAccess#getDao(Class)} for the rules of Dao usage.
+     *
+     * @param clazz    The class the Dao will be responsible for.
+     * @param shardKey The shard key, must not be null
+     * @param <T>      The class type
+     * @return Dao responsible for the clazz on the shard of the key
+     * @throws SQLException
+     */
+    public <D extends Dao<T, ?>, T> D getDao(Class<T> clazz, Object shardKey) throws SQLException {
+        return forKey(shardKey).getDao(clazz);
+    }
+
+    /**
+     * Executes the query on every shard in parallel and concatenates the results in the order of the shards.
+     *
+     * @param query The query executed on every shard
+     * @param <R>   The type of the results
+     * @return The results of all shards
+     * @throws SQLException A query on a shard failed
+     */
+    public <R> List<R> scatterGather(ShardQuery<R> query) throws SQLException {
+        List<CompletableFuture<List<R>>> shardResults = new ArrayList<>(shards.size());
+        for (DatabaseAccess shard : shards) {
+            shardResults.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return query.query(shard);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, threadPool));
+        }
+
+        List<R> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<R>> shardResult : shardResults) {
+                result.addAll(shardResult.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Executes the prepared query on every shard in parallel using the read connections of the shards.
+     *
+     * @param clazz The class of the result
+     * @param query The query executed on every shard
+     * @param <T>   The class type
+     * @return The results of all shards
+     * @throws SQLException A query on a shard failed
+     */
+    public <T> List<T> query(Class<T> clazz, PreparedQuery<T> query) throws SQLException {
+        return scatterGather(shard -> shard.<Dao<T, ?>, T>getReadDao(clazz).query(query));
+    }
+
+    /**
+     * Close the connections to all shards without throwing an exception.
+     */
+    public void close() {
+        shards.forEach(DatabaseAccess::close);
+    }
+
+    /**
+     * Close the connections to all shards and open new ones.
+     *
+     * @throws Exception Something went wrong while connecting.
+     */
+    public void reconnect() throws Exception {
+        for (DatabaseAccess shard : shards) {
+            shard.reconnect();
+        }
+    }
+
+    // Spread the bits of weak hash codes like small integers over all shards (finalizer of MurmurHash3)
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * A query executed on one shard.
+     *
+     * @param <R> The type of the results
+     */
+    @FunctionalInterface
+    public interface ShardQuery<R> {
+
+        /**
+         * @param shard The access to the shard
+         * @return The results of the shard
+         * @throws SQLException
+         */
+        List<R> query(DatabaseAccess shard) throws SQLException;
+    }
+
+    /**
+     * Creates a shard key for the region of a block in a world. A region has the size of a Minecraft region file
+     * (512 x 512 blocks), so neighboured blocks are stored on the same shard and selections rarely span shards.
+     *
+     * @param world  The name of the world
+     * @param blockX The x coordinate of the block
+     * @param blockZ The z coordinate of the block
+     * @return The shard key of the region
+     */
+    public static String regionKey(String world, int blockX, int blockZ) {
+        return world + ':' + (blockX >> 9) + ':' + (blockZ >> 9);
+    }
+}
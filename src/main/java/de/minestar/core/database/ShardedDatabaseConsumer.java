@@ -0,0 +1,122 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Consumes objects into the shards of a {@link ShardedDatabaseAccess}. Every shard has its own {@link DatabaseConsumer}
+ * with its own queue and thread, so the shards are written independently and in parallel.
+ *
+ * @param <T> The type of objects to consume
+ */
+public class ShardedDatabaseConsumer<T> {
+
+    private final ShardedDatabaseAccess access;
+    private final Function<? super T, ?> shardKeyFunction;
+    private final List<DatabaseConsumer<T>> consumers;
+
+    /**
+     * Creates a default database consumer for every shard.
+     *
+     * @param access           The sharded access to the databases. Cannot be null
+     * @param entityClass      The class of the entity to consume. Cannot be null
+     * @param shardKeyFunction Extracts the shard key of an object. Cannot be null
+     * @see DatabaseConsumer#DatabaseConsumer(DatabaseAccess, Class)
+     */
+    public ShardedDatabaseConsumer(ShardedDatabaseAccess access, Class<T> entityClass, Function<? super T, ?> shardKeyFunction) {
+        this(access, shardKeyFunction, shard -> new DatabaseConsumer<>(shard, entityClass));
+    }
+
+    /**
+     * Creates a database consumer for every shard with fine adjustment of running parameter.
+     *
+     * @param access           The sharded access to the databases. Cannot be null
+     * @param entityClass      The class of the entity to consume. Cannot be null
+     * @param shardKeyFunction Extracts the shard key of an object. Cannot be null
+     * @param flushSize        The flush size of every shard consumer
+     * @param sleepTimeMillis  The interval every shard consumer will check its queue size
+     * @see DatabaseConsumer#DatabaseConsumer(DatabaseAccess, Class, int, long)
+     */
+    public ShardedDatabaseConsumer(ShardedDatabaseAccess access, Class<T> entityClass, Function<? super T, ?> shardKeyFunction, int flushSize, long sleepTimeMillis) {
+        this(access, shardKeyFunction, shard -> new DatabaseConsumer<>(shard, entityClass, flushSize, sleepTimeMillis));
+    }
+
+    private ShardedDatabaseConsumer(ShardedDatabaseAccess access, Function<? super T, ?> shardKeyFunction, Function<DatabaseAccess, DatabaseConsumer<T>> consumerFactory) {
+        this.access = access;
+        this.shardKeyFunction = shardKeyFunction;
+
+        List<DatabaseConsumer<T>> consumerList = new ArrayList<>(access.getShardCount());
+        for (DatabaseAccess shard : access.getShards()) {
+            consumerList.add(consumerFactory.apply(shard));
+        }
+        this.consumers = Collections.unmodifiableList(consumerList);
+    }
+
+    /**
+     * Add an object to the consumer of its shard. The consumer will persist it later.
+     *
+     * @param ele The object to add
+     */
+    public void consume(T ele) {
+        consumers.get(access.shardIndexOf(shardKeyFunction.apply(ele))).consume(ele);
+    }
+
+    /**
+     * @param shardIndex The index of the shard
+     * @return The consumer of the shard
+     */
+    public DatabaseConsumer<T> getConsumer(int shardIndex) {
+        return consumers.get(shardIndex);
+    }
+
+    /**
+     * Starts the consumers of all shards using the Thread Pool of the {@link DatabaseConsumer}.
+     *
+     * @see DatabaseConsumer#kickOf(DatabaseConsumer)
+     */
+    public void kickOf() {
+        consumers.forEach(DatabaseConsumer::kickOf);
+    }
+
+    /**
+     * Stops the consumers of all shards. They will flush their queues.
+     *
+     * @see DatabaseConsumer#stop()
+     */
+    public void stop() {
+        consumers.forEach(DatabaseConsumer::stop);
+    }
+
+    /**
+     * Persists all objects in the queues of all shards ignoring the flush size.
+     */
+    public void flush() {
+        consumers.forEach(DatabaseConsumer::flush);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * Identifies the local database of a {@link StoreAndForward} shipper. A recreated local database gets a new
+ * generation, so its restarted ids are not mistaken for already shipped ones.
+ */
+@DatabaseTable(tableName = "shipment_generation")
+public class ShipmentGeneration {
+
+    @DatabaseField(id = true, width = 64)
+    private String shipper;
+
+    @DatabaseField(canBeNull = false, width = 36)
+    private String generation;
+
+    /**
+     * Constructor for ORMLite
+     */
+    public ShipmentGeneration() {
+    }
+
+    ShipmentGeneration(String shipper, String generation) {
+        this.shipper = shipper;
+        this.generation = generation;
+    }
+
+    /**
+     * @return The name of the shipper
+     */
+    public String getShipper() {
+        return shipper;
+    }
+
+    /**
+     * @return The random id of the local database
+     */
+    public String getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * The progress of a {@link StoreAndForward} shipper, stored in the target database together with the shipped rows.
+ */
+@DatabaseTable(tableName = "shipment_progress")
+public class ShipmentProgress {
+
+    @DatabaseField(id = true, width = 64)
+    private String shipper;
+
+    @DatabaseField
+    private long lastShippedId;
+
+    @DatabaseField(width = 36)
+    private String generation;
+
+    /**
+     * Constructor for ORMLite
+     */
+    public ShipmentProgress() {
+    }
+
+    ShipmentProgress(String shipper, long lastShippedId, String generation) {
+        this.shipper = shipper;
+        this.lastShippedId = lastShippedId;
+        this.generation = generation;
+    }
+
+    /**
+     * @return The name of the shipper
+     */
+    public String getShipper() {
+        return shipper;
+    }
+
+    /**
+     * @return The highest local id, which is already stored in the target database
+     */
+    public long getLastShippedId() {
+        return lastShippedId;
+    }
+
+    /**
+     * @return The generation of the local database the ids belong to, see {@link ShipmentGeneration}
+     */
+    public String getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+/**
+ * A block position encoded as a Z-order (Morton) key. The bits of the coordinates are interleaved, so positions close
+ * to each other have close keys and a cuboid is covered by a few key ranges (see {@link SpatialQuery}).
+ * <p>
+ * The key has 64 bits: 28 bits for x and z each and 8 bits for y. The lower 24 bits interleave x, y and z, the upper
+ * 40 bits interleave only x and z. Supported are x and z in [{@value SpatialKey#MIN_XZ}, {@value SpatialKey#MAX_XZ}]
+ * (more than the Minecraft world border) and y in [{@value SpatialKey#MIN_Y}, {@value SpatialKey#MAX_Y}].
+ * <p>
+ * The stored key has the sign bit flipped, so the order of the stored (signed) keys in the database equals the order
+ * of the Z-curve.
+ */
+public final class SpatialKey {
+
+    public static final int MIN_XZ = -(1 << 27);
+    public static final int MAX_XZ = (1 << 27) - 1;
+    public static final int MIN_Y = 0;
+    public static final int MAX_Y = 255;
+
+    static final int AXIS_X = 0;
+    static final int AXIS_Y = 1;
+    static final int AXIS_Z = 2;
+
+    private static final int XYZ_LEVELS = 8;
+    // The axis and the bit of the axis for every bit of the key
+    static final int[] AXIS_OF_BIT = new int[Long.SIZE];
+    private static final int[] AXIS_BIT_OF_BIT = new int[Long.SIZE];
+
+    static {
+        int[] axisBits = new int[3];
+        for (int bit = 0; bit < Long.SIZE; ++bit) {
+            int axis;
+            if (bit < XYZ_LEVELS * 3)
+                axis = bit % 3;
+            else
+                axis = (bit - XYZ_LEVELS * 3) % 2 == 0 ? AXIS_X : AXIS_Z;
+            AXIS_OF_BIT[bit] = axis;
+            AXIS_BIT_OF_BIT[bit] = axisBits[axis]++;
+        }
+    }
+
+    private final int x;
+    private final int y;
+    private final int z;
+
+    /**
+     * @param x The x coordinate in [{@value SpatialKey#MIN_XZ}, {@value SpatialKey#MAX_XZ}]
+     * @param y The y coordinate in [{@value SpatialKey#MIN_Y}, {@value SpatialKey#MAX_Y}]
+     * @param z The z coordinate in [{@value SpatialKey#MIN_XZ}, {@value SpatialKey#MAX_XZ}]
+     */
+    public SpatialKey(int x, int y, int z) {
+        if (x < MIN_XZ || x > MAX_XZ || z < MIN_XZ || z > MAX_XZ || y < MIN_Y || y > MAX_Y)
+            throw new IllegalArgumentException("Position (" + x + ", " + y + ", " + z + ") is out of the supported range!");
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * @return The key as it is stored in the database
+     */
+    public long getStoredKey() {
+        return toStoredKey(interleave(x - MIN_XZ, y - MIN_Y, z - MIN_XZ));
+    }
+
+    /**
+     * @param storedKey A key as stored in the database
+     * @return The decoded position
+     */
+    public static SpatialKey fromStoredKey(long storedKey) {
+        long code = toZOrder(storedKey);
+        long[] axes = new long[3];
+        for (int bit = 0; bit < Long.SIZE; ++bit) {
+            axes[AXIS_OF_BIT[bit]] |= ((code >>> bit) & 1L) << AXIS_BIT_OF_BIT[bit];
+        }
+        return new SpatialKey((int) axes[AXIS_X] + MIN_XZ, (int) axes[AXIS_Y] + MIN_Y, (int) axes[AXIS_Z] + MIN_XZ);
+    }
+
+    /**
+     * @param min The minimum corner of the cuboid
+     * @param max The maximum corner of the cuboid
+     * @return True, if this position is inside the cuboid (inclusive)
+     */
+    public boolean isInside(SpatialKey min, SpatialKey max) {
+        return x >= min.x && x <= max.x && y >= min.y && y <= max.y && z >= min.z && z <= max.z;
+    }
+
+    private static long interleave(long biasedX, long biasedY, long biasedZ) {
+        long[] axes = {biasedX, biasedY, biasedZ};
+        long code = 0L;
+        for (int bit = 0; bit < Long.SIZE; ++bit) {
+            code |= ((axes[AXIS_OF_BIT[bit]] >>> AXIS_BIT_OF_BIT[bit]) & 1L) << bit;
+        }
+        return code;
+    }
+
+    // Flip the sign bit, so the unsigned Z-order equals the signed order
+    static long toStoredKey(long zOrder) {
+        return zOrder ^ Long.MIN_VALUE;
+    }
+
+    static long toZOrder(long storedKey) {
+        return storedKey ^ Long.MIN_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof SpatialKey))
+            return false;
+        SpatialKey that = (SpatialKey) o;
+        return x == that.x && y == that.y && z == that.z;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * x + y) + z;
+    }
+
+    @Override
+    public String toString() {
+        return "SpatialKey{" +
+                "x=" + x +
+                ", y=" + y +
+                ", z=" + z +
+                '}';
+    }
+}
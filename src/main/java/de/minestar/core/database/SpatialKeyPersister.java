@@ -0,0 +1,70 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.LongObjectType;
+
+/**
+ * Persists a {@link SpatialKey} as a single BIGINT column containing its Z-order key. Use it with
+ * <code>@DatabaseField(persisterClass = SpatialKeyPersister.class, index = true)</code> and query the column with
+ * {@link SpatialQuery}.
+ */
+public class SpatialKeyPersister extends LongObjectType {
+
+    private static final SpatialKeyPersister SINGLETON = new SpatialKeyPersister();
+
+    private SpatialKeyPersister() {
+        super(SqlType.LONG, new Class<?>[]{SpatialKey.class});
+    }
+
+    public static SpatialKeyPersister getSingleton() {
+        return SINGLETON;
+    }
+
+    @Override
+    public Object javaToSqlArg(FieldType fieldType, Object javaObject) {
+        // Arguments of range queries are already stored keys
+        if (javaObject instanceof SpatialKey)
+            return ((SpatialKey) javaObject).getStoredKey();
+        return javaObject;
+    }
+
+    @Override
+    public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) {
+        return SpatialKey.fromStoredKey((Long) sqlArg);
+    }
+
+    @Override
+    public boolean isValidGeneratedType() {
+        return false;
+    }
+
+    @Override
+    public boolean isValidForVersion() {
+        return false;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Queries a column of {@link SpatialKey}s (see {@link SpatialKeyPersister}) for all positions inside a cuboid. The
+ * cuboid is decomposed into a small set of ranges of the Z-order key, so the database only needs a few range scans on
+ * one index instead of intersecting three coordinate indices. The ranges cover some positions outside of the cuboid,
+ * which are filtered after the query.
+ */
+public final class SpatialQuery {
+
+    /**
+     * The default maximum number of key ranges a cuboid is decomposed into
+     */
+    public static final int DEFAULT_MAX_RANGES = 32;
+
+    private SpatialQuery() {
+        // Utility class
+    }
+
+    /**
+     * Queries all rows with a position inside the cuboid.
+     *
+     * @param dao         The Dao of the entities
+     * @param columnName  The name of the spatial key column
+     * @param keyFunction Returns the spatial key of an entity
+     * @param min         The minimum corner of the cuboid (inclusive)
+     * @param max         The maximum corner of the cuboid (inclusive)
+     * @param <T>         The type of the entities
+     * @return All entities inside the cuboid
+     * @throws SQLException
+     */
+    public static <T> List<T> queryCuboid(Dao<T, ?> dao, String columnName, Function<T, SpatialKey> keyFunction, SpatialKey min, SpatialKey max) throws SQLException {
+        QueryBuilder<T, ?> queryBuilder = dao.queryBuilder();
+        where(queryBuilder.where(), columnName, min, max, DEFAULT_MAX_RANGES);
+        return queryBuilder.query().stream()
+                .filter(entity -> keyFunction.apply(entity).isInside(min, max))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Adds one clause to the where statement, which selects at least all positions inside the cuboid. The result must
+     * be filtered by {@link SpatialKey#isInside(SpatialKey, SpatialKey)} afterwards.
+     *
+     * @param where      The where statement
+     * @param columnName The name of the spatial key column
+     * @param min        The minimum corner of the cuboid (inclusive)
+     * @param max        The maximum corner of the cuboid (inclusive)
+     * @param maxRanges  The maximum number of key ranges
+     * @param <T>        The type of the entities
+     * @return The where statement
+     * @throws SQLException
+     */
+    public static <T> Where<T, ?> where(Where<T, ?> where, String columnName, SpatialKey min, SpatialKey max, int maxRanges) throws SQLException {
+        List<long[]> ranges = decompose(min, max, maxRanges);
+        for (long[] range : ranges) {
+            if (range[0] == range[1])
+                where.eq(columnName, range[0]);
+            else
+                where.between(columnName, range[0], range[1]);
+        }
+        if (ranges.size() > 1)
+            where.or(ranges.size());
+        return where;
+    }
+
+    /**
+     * Decomposes the cuboid into ranges of stored keys. The Z-order space is split level by level like an octree.
+     * Nodes inside the cuboid become ranges, nodes outside are dropped and nodes intersecting the border are split
+     * further, until the next level would exceed the maximum number of ranges.
+     *
+     * @param min       The minimum corner of the cuboid (inclusive)
+     * @param max       The maximum corner of the cuboid (inclusive)
+     * @param maxRanges The maximum number of ranges. Must be at least 1
+     * @return Sorted, disjoint ranges of stored keys as {from, to} (inclusive)
+     */
+    public static List<long[]> decompose(SpatialKey min, SpatialKey max, int maxRanges) {
+        if (maxRanges < 1)
+            throw new IllegalArgumentException("At least one range is necessary!");
+        long[] queryMin = {min.getX() - (long) SpatialKey.MIN_XZ, min.getY() - (long) SpatialKey.MIN_Y, min.getZ() - (long) SpatialKey.MIN_XZ};
+        long[] queryMax = {max.getX() - (long) SpatialKey.MIN_XZ, max.getY() - (long) SpatialKey.MIN_Y, max.getZ() - (long) SpatialKey.MIN_XZ};
+
+        List<long[]> ranges = new ArrayList<>();
+        List<Node> frontier = new ArrayList<>();
+        frontier.add(new Node(0L, new long[]{0L, 0L, 0L}, new long[]{SpatialKey.MAX_XZ - (long) SpatialKey.MIN_XZ, SpatialKey.MAX_Y - (long) SpatialKey.MIN_Y, SpatialKey.MAX_XZ - (long) SpatialKey.MIN_XZ}, Long.SIZE));
+
+        for (int bit = Long.SIZE - 1; bit >= 0 && !frontier.isEmpty(); --bit) {
+            // Splitting every node could exceed the limit
+            if (ranges.size() + frontier.size() * 2 > maxRanges)
+                break;
+
+            int axis = SpatialKey.AXIS_OF_BIT[bit];
+            List<Node> next = new ArrayList<>(frontier.size() * 2);
+            for (Node node : frontier) {
+                long middle = (node.min[axis] + node.max[axis]) >>> 1;
+
+                long[] lowerMax = node.max.clone();
+                lowerMax[axis] = middle;
+                classify(new Node(node.prefix, node.min, lowerMax, bit), queryMin, queryMax, ranges, next);
+
+                long[] upperMin = node.min.clone();
+                upperMin[axis] = middle + 1;
+                classify(new Node(node.prefix | (1L << bit), upperMin, node.max, bit), queryMin, queryMax, ranges, next);
+            }
+            frontier = next;
+        }
+        // The remaining nodes are only partially inside the cuboid
+        for (Node node : frontier) {
+            ranges.add(node.toRange());
+        }
+        return merge(ranges);
+    }
+
+    private static void classify(Node node, long[] queryMin, long[] queryMax, List<long[]> ranges, List<Node> next) {
+        boolean inside = true;
+        for (int axis = 0; axis < 3; ++axis) {
+            // Disjoint
+            if (node.max[axis] < queryMin[axis] || node.min[axis] > queryMax[axis])
+                return;
+            inside &= node.min[axis] >= queryMin[axis] && node.max[axis] <= queryMax[axis];
+        }
+        if (inside)
+            ranges.add(node.toRange());
+        else
+            next.add(node);
+    }
+
+    private static List<long[]> merge(List<long[]> ranges) {
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            if (!merged.isEmpty()) {
+                long[] last = merged.get(merged.size() - 1);
+                // Adjacent ranges (overflow at the end of the key space is impossible, because the range would be last)
+                if (last[1] != Long.MAX_VALUE && last[1] + 1 == range[0]) {
+                    last[1] = range[1];
+                    continue;
+                }
+            }
+            merged.add(range);
+        }
+        return merged;
+    }
+
+    private static class Node {
+        private final long prefix;
+        private final long[] min;
+        private final long[] max;
+        // All bits of the key from this bit upwards are fixed by the prefix
+        private final int lowestFixedBit;
+
+        private Node(long prefix, long[] min, long[] max, int lowestFixedBit) {
+            this.prefix = prefix;
+            this.min = min;
+            this.max = max;
+            this.lowestFixedBit = lowestFixedBit;
+        }
+
+        /**
+         * @return The range of stored keys covered by this node
+         */
+        private long[] toRange() {
+            long freeBits = lowestFixedBit == Long.SIZE ? -1L : (1L << lowestFixedBit) - 1L;
+            return new long[]{SpatialKey.toStoredKey(prefix), SpatialKey.toStoredKey(prefix | freeBits)};
+        }
+    }
+}
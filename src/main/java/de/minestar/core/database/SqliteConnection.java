@@ -25,17 +25,18 @@
 package de.minestar.core.database;
 
 import com.j256.ormlite.db.SqliteDatabaseType;
-import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
 import com.j256.ormlite.support.ConnectionSource;
 
 import java.io.File;
 
 /**
- * Provide information to open a connection to a SQLite filebased database.
+ * Provide information to open a connection to a SQLite filebased database. With {@link SqliteSettings}, the database is
+ * opened in a tuned mode by a {@link SqliteConnectionSource}.
  */
 public class SqliteConnection implements ConnectionSupplier {
 
     private final String jdbcUrl;
+    private final SqliteSettings settings;
 
     /**
      * Creates if not existing the file and connecting to the database.
@@ -52,11 +53,34 @@ public class SqliteConnection implements ConnectionSupplier {
      * @param filePath The path to the SQLite database file
      */
     public SqliteConnection(String filePath) {
+        this(filePath, null);
+    }
+
+    /**
+     * Creates if not existing the file and connecting to the database in the tuned mode.
+     *
+     * @param file     The file of the SQLite database
+     * @param settings The settings of the tuned mode. If null, a plain connection pool is used
+     */
+    public SqliteConnection(File file, SqliteSettings settings) {
+        this(file.getAbsolutePath(), settings);
+    }
+
+    /**
+     * Creates if not existing the file and connecting to the database in the tuned mode.
+     *
+     * @param filePath The path to the SQLite database file
+     * @param settings The settings of the tuned mode. If null, a plain connection pool is used
+     */
+    public SqliteConnection(String filePath, SqliteSettings settings) {
         this.jdbcUrl = "jdbc:sqlite:" + filePath;
+        this.settings = settings;
     }
 
     @Override
     public ConnectionSource createConnection() throws Exception {
-        return new JdbcPooledConnectionSource(jdbcUrl, new SqliteDatabaseType());
+        if (settings != null)
+            return new SqliteConnectionSource(jdbcUrl, settings);
+        return new MeteredConnectionSource(jdbcUrl, new SqliteDatabaseType());
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.db.SqliteDatabaseType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.logger.LoggerFactory;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A connection source for SQLite with one dedicated write connection and a pool of read only connections. SQLite
+ * allows only one writer at once, so concurrent writers on different connections wait for each other's locks and fail
+ * with <code>SQLITE_BUSY</code>. This source serializes all writers on its write connection instead: a thread
+ * acquiring the read write connection holds it exclusively until it releases it. With the write ahead log, the readers
+ * are never blocked by the writer.
+ * <p>
+ * Inside of a transaction or a batch task, the reads of the thread use the write connection as well, so they see the
+ * uncommitted writes. A thread must release the write connection itself.
+ */
+public class SqliteConnectionSource extends MeteredConnectionSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcPooledConnectionSource.class);
+
+    private final SqliteSettings settings;
+    private final ReentrantLock writeLock;
+    private DatabaseConnection writeConnection;
+
+    /**
+     * @param jdbcUrl  The URL of the SQLite database
+     * @param settings The settings applied to every connection
+     * @throws SQLException The database could not be opened
+     */
+    public SqliteConnectionSource(String jdbcUrl, SqliteSettings settings) throws SQLException {
+        super(jdbcUrl, new SqliteDatabaseType());
+        this.settings = settings;
+        this.writeLock = new ReentrantLock(true);
+        setMaxConnectionsFree(settings.getReadConnections());
+        // Opening the write connection first switches the journal mode before any reader exists
+        this.writeConnection = super.makeConnection(logger);
+        try {
+            configure(writeConnection, false);
+        } catch (SQLException e) {
+            writeConnection.closeQuietly();
+            throw e;
+        }
+    }
+
+    public SqliteSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public DatabaseConnection getReadOnlyConnection() throws SQLException {
+        // The pool of the super class only contains the read connections
+        return super.getReadWriteConnection();
+    }
+
+    @Override
+    public DatabaseConnection getReadWriteConnection() throws SQLException {
+        DatabaseConnection saved = getSavedConnection();
+        if (saved != null) {
+            recordAcquire(0L);
+            return saved;
+        }
+        if (!isOpen())
+            throw new SQLException("The connection source is closed!");
+        long start = System.nanoTime();
+        writeLock.lock();
+        recordAcquire(System.nanoTime() - start);
+        return writeConnection;
+    }
+
+    @Override
+    public void releaseConnection(DatabaseConnection connection) throws SQLException {
+        if (connection != writeConnection) {
+            super.releaseConnection(connection);
+            return;
+        }
+        recordRelease();
+        // Saved connections are released by the thread, which saved them
+        if (isSavedConnection(connection))
+            return;
+        writeLock.unlock();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        super.close();
+        writeLock.lock();
+        try {
+            writeConnection.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    protected DatabaseConnection makeConnection(Logger logger) throws SQLException {
+        DatabaseConnection connection = super.makeConnection(logger);
+        try {
+            configure(connection, true);
+        } catch (SQLException e) {
+            connection.closeQuietly();
+            throw e;
+        }
+        return connection;
+    }
+
+    private void configure(DatabaseConnection databaseConnection, boolean readOnly) throws SQLException {
+        Connection connection = ((JdbcDatabaseConnection) databaseConnection).getInternalConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (!readOnly)
+                statement.execute("PRAGMA journal_mode = " + settings.getJournalMode());
+            statement.execute("PRAGMA synchronous = " + settings.getSynchronous());
+            statement.execute("PRAGMA cache_size = " + settings.getCacheSize());
+            statement.execute("PRAGMA mmap_size = " + settings.getMmapSize());
+            statement.execute("PRAGMA temp_store = " + settings.getTempStore());
+            statement.execute("PRAGMA busy_timeout = " + settings.getBusyTimeoutMillis());
+            if (readOnly)
+                statement.execute("PRAGMA query_only = 1");
+            if (readOnly && settings.isReadUncommitted())
+                statement.execute("PRAGMA read_uncommitted = 1");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import java.util.Map;
+
+/**
+ * The settings of a tuned SQLite database used by {@link SqliteConnectionSource}. The defaults are tuned for a high
+ * write throughput on a server: the write ahead log lets readers continue while the writer commits, and the normal
+ * synchronous mode only syncs at checkpoints, which is safe against application crashes but may lose the last commits
+ * on a power loss.
+ */
+public class SqliteSettings {
+
+    public enum JournalMode {
+        DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF
+    }
+
+    public enum Synchronous {
+        OFF, NORMAL, FULL, EXTRA
+    }
+
+    public enum TempStore {
+        DEFAULT, FILE, MEMORY
+    }
+
+    private static final String JOURNAL_MODE = "journalMode";
+    private static final String SYNCHRONOUS = "synchronous";
+    private static final String MMAP_SIZE = "mmapSize";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String TEMP_STORE = "tempStore";
+    private static final String BUSY_TIMEOUT_MILLIS = "busyTimeoutMillis";
+    private static final String READ_CONNECTIONS = "readConnections";
+
+    private JournalMode journalMode = JournalMode.WAL;
+    private Synchronous synchronous = Synchronous.NORMAL;
+    private long mmapSize = 256L << 20;
+    // Negative values are the size in KiB instead of pages
+    private int cacheSize = -16 * 1024;
+    private TempStore tempStore = TempStore.MEMORY;
+    private int busyTimeoutMillis = 5000;
+    private int readConnections = 4;
+    private boolean readUncommitted;
+
+    /**
+     * Creates the default tuned settings.
+     */
+    public SqliteSettings() {
+    }
+
+    /**
+     * Creates the settings from a parsed JSON object. Missing keys keep their default value.
+     *
+     * @param values The values of the JSON object, for example <code>{"journalMode": "WAL", "mmapSize": 268435456}</code>
+     * @return The settings
+     * @throws IllegalArgumentException A value is invalid
+     */
+    public static SqliteSettings fromJson(Map<String, Object> values) {
+        SqliteSettings settings = new SqliteSettings();
+        if (values.containsKey(JOURNAL_MODE))
+            settings.setJournalMode(JournalMode.valueOf(values.get(JOURNAL_MODE).toString().toUpperCase()));
+        if (values.containsKey(SYNCHRONOUS))
+            settings.setSynchronous(Synchronous.valueOf(values.get(SYNCHRONOUS).toString().toUpperCase()));
+        if (values.containsKey(MMAP_SIZE))
+            settings.setMmapSize(((Number) values.get(MMAP_SIZE)).longValue());
+        if (values.containsKey(CACHE_SIZE))
+            settings.setCacheSize(((Number) values.get(CACHE_SIZE)).intValue());
+        if (values.containsKey(TEMP_STORE))
+            settings.setTempStore(TempStore.valueOf(values.get(TEMP_STORE).toString().toUpperCase()));
+        if (values.containsKey(BUSY_TIMEOUT_MILLIS))
+            settings.setBusyTimeoutMillis(((Number) values.get(BUSY_TIMEOUT_MILLIS)).intValue());
+        if (values.containsKey(READ_CONNECTIONS))
+            settings.setReadConnections(((Number) values.get(READ_CONNECTIONS)).intValue());
+        return settings;
+    }
+
+    public JournalMode getJournalMode() {
+        return journalMode;
+    }
+
+    public void setJournalMode(JournalMode journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    public Synchronous getSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(Synchronous synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /**
+     * @param mmapSize The maximal amount of bytes of the database file read by memory mapping. 0 disables it
+     */
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @param cacheSize The page cache size of every connection. Positive values are pages, negative values KiB
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public TempStore getTempStore() {
+        return tempStore;
+    }
+
+    public void setTempStore(TempStore tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    /**
+     * @param busyTimeoutMillis The time a connection waits for a lock of another process before failing
+     */
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    public int getReadConnections() {
+        return readConnections;
+    }
+
+    /**
+     * @param readConnections The amount of read only connections kept open in the pool
+     */
+    public void setReadConnections(int readConnections) {
+        if (readConnections < 1)
+            throw new IllegalArgumentException("At least one read connection is needed!");
+        this.readConnections = readConnections;
+    }
+
+    public boolean isReadUncommitted() {
+        return readUncommitted;
+    }
+
+    /**
+     * @param readUncommitted Whether the read connections see uncommitted writes. Only has an effect on databases in
+     *                        the shared cache mode, where readers would otherwise wait for the table locks of the
+     *                        writer
+     */
+    public void setReadUncommitted(boolean readUncommitted) {
+        this.readUncommitted = readUncommitted;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteSettings{" +
+                "journalMode=" + journalMode +
+                ", synchronous=" + synchronous +
+                ", mmapSize=" + mmapSize +
+                ", cacheSize=" + cacheSize +
+                ", tempStore=" + tempStore +
+                ", busyTimeoutMillis=" + busyTimeoutMillis +
+                ", readConnections=" + readConnections +
+                ", readUncommitted=" + readUncommitted +
+                '}';
+    }
+}
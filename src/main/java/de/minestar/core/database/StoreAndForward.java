@@ -0,0 +1,272 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores objects first into a local database and ships them in large batches to a remote database. Consumers write
+ * into the local database, usually a {@link SqliteConnection} file, so their latency does not depend on the network
+ * or the load of the remote database. A background shipper moves the committed rows to the remote database, for
+ * example a {@link MySqlConnection}, and deletes them locally afterwards. If the remote database is unreachable, the
+ * rows wait in the local file until the next successful shipment.
+ * <p>
+ * The progress of the shipper is stored in the remote database in the same transaction as the shipped rows, so every
+ * row is shipped exactly once, even if the shipper fails between the remote commit and the local delete. The entity
+ * must have a numeric generated id, which orders the local rows. The rows get new ids in the remote database.
+ * <p>
+ * The local database stores a random generation, which is stored with the progress. If the local database is
+ * recreated, its ids start again and the stored progress of the old generation is ignored.
+ * <p>
+ * The shipper reads and deletes while the consumers write, so open the local database with {@link SqliteSettings}.
+ *
+ * @param <T> The type of the shipped entities
+ */
+public class StoreAndForward<T> {
+
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private final DatabaseAccess local;
+    private final DatabaseAccess remote;
+    private final Class<T> entityClass;
+    private final String name;
+    private final int batchSize;
+    private final FieldType idField;
+
+    // The progress of the current local generation or null, if it is unknown
+    private volatile ShipmentProgress shipped;
+    private volatile Exception lastFailure;
+    private ScheduledExecutorService shipper;
+
+    /**
+     * Creates a store and forward tier with the default batch size of {@value StoreAndForward#DEFAULT_BATCH_SIZE}.
+     *
+     * @param local       The local database the consumers write into
+     * @param remote      The remote database the rows are shipped to
+     * @param entityClass The class of the shipped entities
+     * @param name        The unique name of the shipper in the remote database
+     * @throws SQLException The entity has no numeric generated id
+     */
+    public StoreAndForward(DatabaseAccess local, DatabaseAccess remote, Class<T> entityClass, String name) throws SQLException {
+        this(local, remote, entityClass, name, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param local       The local database the consumers write into
+     * @param remote      The remote database the rows are shipped to
+     * @param entityClass The class of the shipped entities
+     * @param name        The unique name of the shipper in the remote database
+     * @param batchSize   The maximal amount of rows shipped in one transaction
+     * @throws SQLException The entity has no numeric generated id
+     */
+    public StoreAndForward(DatabaseAccess local, DatabaseAccess remote, Class<T> entityClass, String name, int batchSize) throws SQLException {
+        this.local = local;
+        this.remote = remote;
+        this.entityClass = entityClass;
+        this.name = name;
+        this.batchSize = batchSize;
+        BaseDaoImpl<T, ?> dao = local.getDao(entityClass);
+        this.idField = dao.getTableInfo().getIdField();
+        if (idField == null || !idField.isGeneratedId() || !(idField.getType().isPrimitive() || Number.class.isAssignableFrom(idField.getType())))
+            throw new SQLException(entityClass.getName() + " has no numeric generated id!");
+    }
+
+    /**
+     * Creates the local tables, the remote table and the remote progress table if they do not exist.
+     *
+     * @throws SQLException
+     */
+    public void createTablesIfNotExists() throws SQLException {
+        TableUtils.createTableIfNotExists(local.getConnectionSource(), entityClass);
+        TableUtils.createTableIfNotExists(local.getConnectionSource(), ShipmentGeneration.class);
+        TableUtils.createTableIfNotExists(remote.getConnectionSource(), entityClass);
+        TableUtils.createTableIfNotExists(remote.getConnectionSource(), ShipmentProgress.class);
+    }
+
+    /**
+     * @return A new consumer writing into the local database. It must be started as every other consumer
+     */
+    public DatabaseConsumer<T> createConsumer() {
+        return new DatabaseConsumer<>(local, entityClass);
+    }
+
+    /**
+     * Ships the next batch of local rows to the remote database and deletes them locally.
+     *
+     * @return The amount of shipped rows. Less than the batch size, if no more rows are waiting
+     * @throws SQLException The rows could not be shipped. They stay in the local database
+     */
+    public synchronized int ship() throws SQLException {
+        String generation = localGeneration();
+        long fromId = shippedIdOf(generation);
+        Dao<T, ?> localDao = local.getDao(entityClass);
+        String idColumn = idField.getColumnName();
+        List<T> rows = localDao.queryBuilder().orderBy(idColumn, true).limit((long) batchSize).where().gt(idColumn, fromId).query();
+        if (rows.isEmpty())
+            return 0;
+        long lastId = ((Number) idField.extractJavaFieldValue(rows.get(rows.size() - 1))).longValue();
+
+        BaseDaoImpl<T, ?> remoteDao = remote.getDao(entityClass);
+        Dao<ShipmentProgress, String> progressDao = remote.getDao(ShipmentProgress.class);
+        ConnectionSource remoteSource = remoteDao.getConnectionSource();
+        EntityMapping<T> mapping = EntityMappings.get(entityClass);
+        MappedInsert<T> insert = mapping != null && mapping.isInsertSupported() ? new MappedInsert<>(mapping, remoteDao.getTableInfo(), remoteSource.getDatabaseType()) : null;
+        try {
+            TransactionManager.callInTransaction(remoteSource, () -> {
+                for (T row : rows) {
+                    if (insert != null)
+                        insert.insert(remoteSource, row);
+                    else
+                        remoteDao.create(row);
+                }
+                progressDao.createOrUpdate(new ShipmentProgress(name, lastId, generation));
+                return null;
+            });
+        } catch (SQLException e) {
+            // The commit may have succeeded anyway, so the progress is read again
+            this.shipped = null;
+            throw e;
+        }
+        this.shipped = new ShipmentProgress(name, lastId, generation);
+        deleteShipped(lastId);
+        return rows.size();
+    }
+
+    /**
+     * Starts shipping the rows in the background. Every interval, all waiting rows are shipped in batches. Failures are
+     * retried in the next interval, see {@link StoreAndForward#getLastFailure()}.
+     *
+     * @param intervalMillis The time between the shipments
+     */
+    public synchronized void start(long intervalMillis) {
+        if (shipper != null)
+            throw new IllegalStateException("The shipper " + name + " is already started!");
+        this.shipper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StoreAndForward-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        shipper.scheduleWithFixedDelay(this::shipAll, 0L, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background shipping and waits for the current shipment. Rows not shipped yet stay in the local
+     * database until the shipper is started again.
+     *
+     * @throws InterruptedException The thread was interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = shipper;
+            this.shipper = null;
+        }
+        if (executor == null)
+            return;
+        executor.shutdown();
+        executor.awaitTermination(1L, TimeUnit.MINUTES);
+    }
+
+    private void shipAll() {
+        try {
+            while (ship() == batchSize) {
+                // Ship until the local database is drained
+            }
+            this.lastFailure = null;
+        } catch (Exception e) {
+            this.lastFailure = e;
+        }
+    }
+
+    /**
+     * @return The highest local id of the current local database, which is stored in the remote database
+     * @throws SQLException The progress could not be read from the remote or the local database
+     */
+    public long getShippedId() throws SQLException {
+        return shippedIdOf(localGeneration());
+    }
+
+    private long shippedIdOf(String generation) throws SQLException {
+        ShipmentProgress progress = shipped;
+        if (progress == null || !generation.equals(progress.getGeneration())) {
+            Dao<ShipmentProgress, String> progressDao = remote.getDao(ShipmentProgress.class);
+            progress = progressDao.queryForId(name);
+            // The progress of another generation belongs to a deleted local database
+            if (progress == null || !generation.equals(progress.getGeneration()))
+                progress = new ShipmentProgress(name, 0L, generation);
+            this.shipped = progress;
+        }
+        return progress.getLastShippedId();
+    }
+
+    private String localGeneration() throws SQLException {
+        // The local database may have been recreated since the last shipment, so the table is checked every time
+        ConnectionSource localSource = local.getConnectionSource();
+        TableUtils.createTableIfNotExists(localSource, ShipmentGeneration.class);
+        Dao<ShipmentGeneration, String> generationDao = local.getDao(ShipmentGeneration.class);
+        ShipmentGeneration generation = generationDao.queryForId(name);
+        if (generation == null) {
+            generation = new ShipmentGeneration(name, UUID.randomUUID().toString());
+            generationDao.create(generation);
+        }
+        return generation.getGeneration();
+    }
+
+    /**
+     * @return The amount of rows waiting in the local database
+     * @throws SQLException
+     */
+    public long getPendingCount() throws SQLException {
+        Dao<T, ?> localDao = local.getDao(entityClass);
+        return localDao.queryBuilder().where().gt(idField.getColumnName(), getShippedId()).countOf();
+    }
+
+    /**
+     * @return The failure of the last background shipment or null, if it succeeded
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    private void deleteShipped(long lastId) throws SQLException {
+        Dao<T, ?> localDao = local.getDao(entityClass);
+        DeleteBuilder<T, ?> delete = localDao.deleteBuilder();
+        delete.where().le(idField.getColumnName(), lastId);
+        delete.delete();
+    }
+}
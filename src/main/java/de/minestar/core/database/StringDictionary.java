@@ -0,0 +1,299 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.logger.LoggerFactory;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Maps the values of low-cardinality string columns, for example player or entity names, to small integer ids stored in
+ * a dictionary table. Columns persisted by the {@link DictionaryPersister} store the ids instead of the strings, which
+ * shrinks the rows, the indices and the transferred bytes of every insert.
+ * <p>
+ * All known values are cached in memory. Unknown values must be created in the dictionary table before rows using them
+ * are inserted - use the {@link StringDictionary#batchCreator(Function)} listener, so a {@link DatabaseConsumer} creates
+ * all new values of a batch at once before persisting it, or {@link StringDictionary#createAll(Collection)}. The
+ * persister never creates values, because ORMLite converts query arguments the same way as inserted values. Multiple
+ * servers can share a dictionary table.
+ */
+public class StringDictionary {
+
+    private static final String TABLE_PREFIX = "dictionary_";
+    private static final int MAX_IN_ARGUMENTS = 500;
+
+    /**
+     * The id of values, which are not in the dictionary. No value has this id, so it matches no row.
+     */
+    public static final int UNKNOWN_ID = -1;
+    private static final Logger logger = LoggerFactory.getLogger(StringDictionary.class);
+
+    private final DatabaseAccess access;
+    private final String name;
+    private final String tableName;
+
+    private final Map<String, Integer> ids;
+    private final Map<Integer, String> values;
+    private final LongAdder batchCreateFailures;
+
+    private ConnectionSource daoSource;
+    private Dao<DictionaryEntry, Integer> dao;
+
+    /**
+     * Creates a dictionary stored in the table <code>dictionary_&lt;name&gt;</code>. The dictionary must be registered
+     * at the {@link DictionaryPersister} to be used by columns.
+     *
+     * @param access The access to the database of the dictionary table
+     * @param name   The name of the dictionary
+     */
+    public StringDictionary(DatabaseAccess access, String name) {
+        this.access = access;
+        this.name = name;
+        this.tableName = TABLE_PREFIX + name;
+        this.ids = new ConcurrentHashMap<>();
+        this.values = new ConcurrentHashMap<>();
+        this.batchCreateFailures = new LongAdder();
+    }
+
+    /**
+     * @return The name of the dictionary
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates the dictionary table, if it does not exist.
+     *
+     * @throws SQLException
+     */
+    public void createTableIfNotExists() throws SQLException {
+        if (!getDao().isTableExists())
+            TableUtils.createTable(access.getConnectionSource(), TableConfigs.forTable(access.getConnectionSource(), DictionaryEntry.class, tableName));
+    }
+
+    /**
+     * Loads all values of the dictionary table into the cache.
+     *
+     * @return The number of cached values
+     * @throws SQLException
+     */
+    public int load() throws SQLException {
+        for (DictionaryEntry entry : getDao().queryForAll()) {
+            cache(entry);
+        }
+        return ids.size();
+    }
+
+    /**
+     * @param value A value
+     * @return The id of the value. If the value is unknown, it is created
+     * @throws SQLException The value could not be created
+     */
+    public int idOf(String value) throws SQLException {
+        Integer id = ids.get(value);
+        if (id == null) {
+            createAll(Collections.singleton(value));
+            id = ids.get(value);
+        }
+        return id;
+    }
+
+    /**
+     * Looks up the id of a value without creating it.
+     *
+     * @param value A value
+     * @return The id of the value or {@link StringDictionary#UNKNOWN_ID}, if it is not in the dictionary table
+     * @throws SQLException The dictionary table could not be read
+     */
+    public int findId(String value) throws SQLException {
+        Integer id = ids.get(value);
+        if (id == null) {
+            // Another server may have created it
+            loadExisting(getDao(), new LinkedHashSet<>(Collections.singleton(value)));
+            id = ids.get(value);
+        }
+        return id == null ? UNKNOWN_ID : id;
+    }
+
+    /**
+     * @param id The id of a value
+     * @return The value. Values created by other servers are loaded from the dictionary table
+     * @throws SQLException The id is unknown
+     */
+    public String valueOf(int id) throws SQLException {
+        String value = values.get(id);
+        if (value == null) {
+            DictionaryEntry entry = getDao().queryForId(id);
+            if (entry == null)
+                throw new SQLException("Unknown id " + id + " of the dictionary " + name + "!");
+            cache(entry);
+            value = entry.getValue();
+        }
+        return value;
+    }
+
+    /**
+     * Creates all unknown values in one batch. Values created by other servers in the meantime are loaded instead.
+     *
+     * @param newValues The values to create. Known values and null are ignored
+     * @throws SQLException
+     */
+    public synchronized void createAll(Collection<String> newValues) throws SQLException {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String value : newValues) {
+            if (value != null && !ids.containsKey(value))
+                missing.add(value);
+        }
+        if (missing.isEmpty())
+            return;
+
+        Dao<DictionaryEntry, Integer> dao = getDao();
+        loadExisting(dao, missing);
+        if (missing.isEmpty())
+            return;
+
+        List<DictionaryEntry> created = new ArrayList<>(missing.size());
+        try {
+            dao.callBatchTasks(() -> {
+                for (String value : missing) {
+                    DictionaryEntry entry = new DictionaryEntry(value);
+                    dao.create(entry);
+                    created.add(entry);
+                }
+                return null;
+            });
+            // Cache the entries after the batch was committed
+            created.forEach(this::cache);
+        } catch (Exception e) {
+            // Another server created some of the values, create the remaining values one by one
+            for (String value : missing) {
+                if (ids.containsKey(value))
+                    continue;
+                try {
+                    DictionaryEntry entry = new DictionaryEntry(value);
+                    dao.create(entry);
+                    cache(entry);
+                } catch (SQLException duplicate) {
+                    loadExisting(dao, new LinkedHashSet<>(Collections.singleton(value)));
+                    if (!ids.containsKey(value))
+                        throw duplicate;
+                }
+            }
+        }
+    }
+
+    // Caches the existing entries of the values and removes them from the set
+    private void loadExisting(Dao<DictionaryEntry, Integer> dao, Set<String> missing) throws SQLException {
+        List<SelectArg> arguments = new ArrayList<>(MAX_IN_ARGUMENTS);
+        List<String> remaining = new ArrayList<>(missing);
+        for (int from = 0; from < remaining.size(); from += MAX_IN_ARGUMENTS) {
+            arguments.clear();
+            for (String value : remaining.subList(from, Math.min(remaining.size(), from + MAX_IN_ARGUMENTS))) {
+                arguments.add(new SelectArg(value));
+            }
+            for (DictionaryEntry entry : dao.queryBuilder().where().in(DictionaryEntry.VALUE, arguments.toArray()).query()) {
+                cache(entry);
+                missing.remove(entry.getValue());
+            }
+        }
+    }
+
+    private void cache(DictionaryEntry entry) {
+        ids.put(entry.getValue(), entry.getId());
+        values.put(entry.getId(), entry.getValue());
+    }
+
+    /**
+     * Creates a listener, which creates all new values of a batch of a {@link DatabaseConsumer} at once before the batch
+     * is persisted. If they cannot be created, the failure is logged and counted (see
+     * {@link StringDictionary#getBatchCreateFailures()}) and the batch fails, so the consumer keeps it for the next
+     * flush.
+     *
+     * @param valueFunction Returns the dictionary value of a consumed object. Can return null
+     * @param <T>           The type of the consumed objects
+     * @return The listener to add to the consumer
+     */
+    public <T> ConsumerListener<T> batchCreator(Function<? super T, String> valueFunction) {
+        return new ConsumerListener<T>() {
+            @Override
+            public void beforePersist(List<T> elements) {
+                List<String> batchValues = new ArrayList<>(elements.size());
+                for (T element : elements) {
+                    batchValues.add(valueFunction.apply(element));
+                }
+                try {
+                    createAll(batchValues);
+                } catch (SQLException e) {
+                    // The persister does not create values, the rows would reference unknown ids
+                    batchCreateFailures.increment();
+                    logger.warn(e, "Could not create the new values of the dictionary {}", name);
+                    throw new IllegalStateException("Could not create the new values of the dictionary " + name + "!", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return The number of batches, whose new values could not be created at once by a batch creator
+     */
+    public long getBatchCreateFailures() {
+        return batchCreateFailures.sum();
+    }
+
+    /**
+     * @return The number of cached values
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private synchronized Dao<DictionaryEntry, Integer> getDao() throws SQLException {
+        // Recreate the Dao after a reconnect of the access
+        ConnectionSource connectionSource = access.getConnectionSource();
+        if (dao == null || daoSource != connectionSource) {
+            dao = new BaseDaoImpl<DictionaryEntry, Integer>(connectionSource, TableConfigs.forTable(connectionSource, DictionaryEntry.class, tableName)) {
+            };
+            daoSource = connectionSource;
+        }
+        return dao;
+    }
+}
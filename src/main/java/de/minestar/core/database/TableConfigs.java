@@ -0,0 +1,69 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseFieldConfig;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates table configs to store an entity class in other tables than the one of its annotation.
+ */
+final class TableConfigs {
+
+    private TableConfigs() {
+    }
+
+    /**
+     * Creates the config of an entity class for another table. In contrast to changing the table name of
+     * {@link DatabaseTableConfig#fromClass(ConnectionSource, Class)}, the names of the indices are derived from the new
+     * table name, so the indices of different tables do not collide.
+     *
+     * @param connectionSource The connection source of the table
+     * @param entityClass      The annotated entity class
+     * @param tableName        The name of the table
+     * @param <T>              The type of the entity
+     * @return The config for the table
+     * @throws SQLException
+     */
+    static <T> DatabaseTableConfig<T> forTable(ConnectionSource connectionSource, Class<T> entityClass, String tableName) throws SQLException {
+        List<DatabaseFieldConfig> fieldConfigs = new ArrayList<>();
+        for (Class<?> classWalk = entityClass; classWalk != null; classWalk = classWalk.getSuperclass()) {
+            for (Field field : classWalk.getDeclaredFields()) {
+                DatabaseFieldConfig fieldConfig = DatabaseFieldConfig.fromField(connectionSource.getDatabaseType(), tableName, field);
+                if (fieldConfig != null)
+                    fieldConfigs.add(fieldConfig);
+            }
+        }
+        DatabaseTableConfig<T> tableConfig = new DatabaseTableConfig<>(entityClass, tableName, fieldConfigs);
+        tableConfig.extractFieldTypes(connectionSource);
+        return tableConfig;
+    }
+}
@@ -0,0 +1,522 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams whole tables into binary dump files and back, for example to migrate the block log from SQLite to MySQL.
+ * Rows are read by a {@link QueryCursor} and written through a {@link FileChannel} with a direct buffer, so the memory
+ * usage does not depend on the size of the table.
+ * <p>
+ * A dump starts with a header containing the names and kinds of the columns, followed by length prefixed rows. Every
+ * row consists of a null bitmap and the non null values. The import matches the columns by their names and inserts
+ * the rows by batched JDBC statements, committing every {@value TableDump#COMMIT_INTERVAL} rows. Ids are copied, so
+ * references between tables stay valid. For MySQL, enable <code>rewriteBatchedStatements</code> in the URL to send
+ * the batches as multi row inserts.
+ */
+public class TableDump {
+
+    private static final int MAGIC = 0x4D534455; // MSDU
+    private static final short FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BATCH_SIZE = 1000;
+    private static final int COMMIT_INTERVAL = 50_000;
+
+    private final DatabaseAccess access;
+
+    /**
+     * @param access The database to export from or import into
+     */
+    public TableDump(DatabaseAccess access) {
+        this.access = access;
+    }
+
+    /**
+     * Writes all rows of the table of the clazz into the file. An existing file is replaced.
+     *
+     * @param clazz The class of the table
+     * @param file  The dump file
+     * @param <T>   The class type
+     * @return The amount of exported rows
+     * @throws SQLException The table could not be read
+     * @throws IOException  The file could not be written
+     */
+    public <T> long exportTable(Class<T> clazz, Path file) throws SQLException, IOException {
+        BaseDaoImpl<T, ?> dao = access.getDao(clazz);
+        List<DumpColumn> columns = columnsOf(dao.getTableInfo().getFieldTypes());
+        QueryBuilder<T, ?> queryBuilder = dao.queryBuilder();
+        FieldType idField = dao.getTableInfo().getIdField();
+        if (idField != null)
+            queryBuilder.orderBy(idField.getColumnName(), true);
+        PreparedQuery<T> query = queryBuilder.prepare();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DumpOutput output = new DumpOutput(channel);
+            output.writeHeader(columns);
+            ConnectionSource source = access.getConnectionSource();
+            long rows = 0L;
+            try (QueryCursor<DatabaseResults> cursor = new QueryCursor<>(source, query, results -> results, DatabaseAccess.driverFetchSize(source, BATCH_SIZE))) {
+                int[] positions = null;
+                while (cursor.hasNext()) {
+                    DatabaseResults results = cursor.next();
+                    if (positions == null)
+                        positions = findColumns(results, columns);
+                    output.writeRow(results, columns, positions);
+                    ++rows;
+                }
+            }
+            output.flush();
+            return rows;
+        }
+    }
+
+    /**
+     * Inserts all rows of the file into the table of the clazz. The table must exist and contain all columns of the
+     * dump. If the import fails, the rows of the already committed batches stay in the table.
+     *
+     * @param clazz The class of the table
+     * @param file  The dump file
+     * @param <T>   The class type
+     * @return The amount of imported rows
+     * @throws SQLException The rows could not be inserted
+     * @throws IOException  The file could not be read or is not a dump
+     */
+    public <T> long importTable(Class<T> clazz, Path file) throws SQLException, IOException {
+        BaseDaoImpl<T, ?> dao = access.getDao(clazz);
+        ConnectionSource source = access.getConnectionSource();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            DumpInput input = new DumpInput(channel);
+            List<DumpColumn> columns = input.readHeader();
+            String insert = insertStatement(source, dao.getTableInfo().getTableName(), columns);
+
+            DatabaseConnection databaseConnection = source.getReadWriteConnection();
+            Connection connection = ((JdbcDatabaseConnection) databaseConnection).getInternalConnection();
+            boolean autoCommit = connection.getAutoCommit();
+            try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                connection.setAutoCommit(false);
+                long rows = 0L;
+                while (input.readRow(statement, columns)) {
+                    statement.addBatch();
+                    if (++rows % BATCH_SIZE == 0)
+                        statement.executeBatch();
+                    if (rows % COMMIT_INTERVAL == 0)
+                        connection.commit();
+                }
+                statement.executeBatch();
+                connection.commit();
+                return rows;
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                source.releaseConnection(databaseConnection);
+            }
+        }
+    }
+
+    private static List<DumpColumn> columnsOf(FieldType[] fieldTypes) {
+        List<DumpColumn> columns = new ArrayList<>(fieldTypes.length);
+        for (FieldType fieldType : fieldTypes) {
+            if (!fieldType.isForeignCollection())
+                columns.add(new DumpColumn(fieldType.getColumnName(), Kind.of(fieldType.getSqlType())));
+        }
+        return columns;
+    }
+
+    private static int[] findColumns(DatabaseResults results, List<DumpColumn> columns) throws SQLException {
+        int[] positions = new int[columns.size()];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = results.findColumn(columns.get(i).name);
+        }
+        return positions;
+    }
+
+    private static String insertStatement(ConnectionSource source, String tableName, List<DumpColumn> columns) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        source.getDatabaseType().appendEscapedEntityName(sb, tableName);
+        sb.append(" (");
+        for (int i = 0; i < columns.size(); ++i) {
+            if (i > 0)
+                sb.append(',');
+            source.getDatabaseType().appendEscapedEntityName(sb, columns.get(i).name);
+        }
+        sb.append(") VALUES (");
+        for (int i = 0; i < columns.size(); ++i) {
+            sb.append(i > 0 ? ",?" : "?");
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * The encoding of a column in the dump.
+     */
+    private enum Kind {
+        BOOLEAN, LONG, DOUBLE, STRING, BYTES, TIMESTAMP, DECIMAL;
+
+        private static Kind of(SqlType sqlType) {
+            switch (sqlType) {
+                case BOOLEAN:
+                    return BOOLEAN;
+                case BYTE:
+                case SHORT:
+                case INTEGER:
+                case LONG:
+                    return LONG;
+                case FLOAT:
+                case DOUBLE:
+                    return DOUBLE;
+                case STRING:
+                case LONG_STRING:
+                case CHAR:
+                    return STRING;
+                case BYTE_ARRAY:
+                case SERIALIZABLE:
+                    return BYTES;
+                case DATE:
+                    return TIMESTAMP;
+                case BIG_DECIMAL:
+                    return DECIMAL;
+                default:
+                    throw new IllegalArgumentException("Columns of type " + sqlType + " cannot be dumped!");
+            }
+        }
+    }
+
+    private static final class DumpColumn {
+
+        private final String name;
+        private final Kind kind;
+
+        private DumpColumn(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Writes the dump through a direct buffer. Rows are encoded into a reused scratch buffer first to know their
+     * length.
+     */
+    private static final class DumpOutput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private ByteBuffer row;
+
+        private DumpOutput(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.row = ByteBuffer.allocate(4096);
+        }
+
+        private void writeHeader(List<DumpColumn> columns) throws IOException {
+            row.clear();
+            row.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) columns.size());
+            for (DumpColumn column : columns) {
+                putBytes(column.name.getBytes(StandardCharsets.UTF_8));
+                ensureRow(1);
+                row.put((byte) column.kind.ordinal());
+            }
+            row.flip();
+            write(row);
+        }
+
+        private void writeRow(DatabaseResults results, List<DumpColumn> columns, int[] positions) throws SQLException, IOException {
+            row.clear();
+            int bitmapSize = (columns.size() + 7) / 8;
+            ensureRow(bitmapSize);
+            int bitmapStart = row.position();
+            row.position(bitmapStart + bitmapSize);
+            for (int i = 0; i < bitmapSize; ++i) {
+                row.put(bitmapStart + i, (byte) 0);
+            }
+
+            for (int i = 0; i < positions.length; ++i) {
+                if (!putValue(results, positions[i], columns.get(i).kind)) {
+                    int index = bitmapStart + (i >>> 3);
+                    row.put(index, (byte) (row.get(index) | (1 << (i & 7))));
+                }
+            }
+            row.flip();
+            if (buffer.remaining() < Integer.BYTES)
+                flush();
+            buffer.putInt(row.remaining());
+            write(row);
+        }
+
+        // Returns false for null values
+        private boolean putValue(DatabaseResults results, int position, Kind kind) throws SQLException {
+            switch (kind) {
+                case BOOLEAN:
+                    boolean bool = results.getBoolean(position);
+                    if (results.wasNull(position))
+                        return false;
+                    ensureRow(1);
+                    row.put((byte) (bool ? 1 : 0));
+                    return true;
+                case LONG:
+                    long value = results.getLong(position);
+                    if (results.wasNull(position))
+                        return false;
+                    ensureRow(Long.BYTES);
+                    row.putLong(value);
+                    return true;
+                case DOUBLE:
+                    double number = results.getDouble(position);
+                    if (results.wasNull(position))
+                        return false;
+                    ensureRow(Double.BYTES);
+                    row.putDouble(number);
+                    return true;
+                case STRING:
+                    String string = results.getString(position);
+                    if (string == null)
+                        return false;
+                    putBytes(string.getBytes(StandardCharsets.UTF_8));
+                    return true;
+                case BYTES:
+                    byte[] bytes = results.getBytes(position);
+                    if (bytes == null)
+                        return false;
+                    putBytes(bytes);
+                    return true;
+                case TIMESTAMP:
+                    Timestamp timestamp = results.getTimestamp(position);
+                    if (timestamp == null)
+                        return false;
+                    ensureRow(Long.BYTES);
+                    row.putLong(timestamp.getTime());
+                    return true;
+                default:
+                    BigDecimal decimal = results.getBigDecimal(position);
+                    if (decimal == null)
+                        return false;
+                    putBytes(decimal.toString().getBytes(StandardCharsets.US_ASCII));
+                    return true;
+            }
+        }
+
+        private void putBytes(byte[] bytes) {
+            ensureRow(Integer.BYTES + bytes.length);
+            row.putInt(bytes.length).put(bytes);
+        }
+
+        private void ensureRow(int bytes) {
+            if (row.remaining() >= bytes)
+                return;
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(row.capacity() * 2, row.position() + bytes));
+            row.flip();
+            this.row = larger.put(row);
+        }
+
+        private void write(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                if (!buffer.hasRemaining())
+                    flush();
+                int length = Math.min(source.remaining(), buffer.remaining());
+                ByteBuffer part = source.duplicate();
+                part.limit(part.position() + length);
+                buffer.put(part);
+                source.position(source.position() + length);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the dump through a direct buffer. Rows larger than the buffer are read into a scratch buffer.
+     */
+    private static final class DumpInput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private ByteBuffer scratch;
+
+        private DumpInput(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.flip();
+        }
+
+        private List<DumpColumn> readHeader() throws IOException {
+            if (!fill(Integer.BYTES + 2 * Short.BYTES) || buffer.getInt() != MAGIC)
+                throw new IOException("The file is not a table dump!");
+            short version = buffer.getShort();
+            if (version != FORMAT_VERSION)
+                throw new IOException("The dump has the unsupported version " + version + "!");
+            int columnCount = buffer.getShort();
+            List<DumpColumn> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; ++i) {
+                if (!fill(Integer.BYTES))
+                    throw new EOFException("The header of the dump is truncated!");
+                ByteBuffer name = read(buffer.getInt() + 1);
+                byte[] bytes = new byte[name.remaining() - 1];
+                name.get(bytes);
+                columns.add(new DumpColumn(new String(bytes, StandardCharsets.UTF_8), Kind.values()[name.get()]));
+            }
+            return columns;
+        }
+
+        private boolean readRow(PreparedStatement statement, List<DumpColumn> columns) throws IOException, SQLException {
+            if (!fill(Integer.BYTES)) {
+                if (buffer.hasRemaining())
+                    throw new EOFException("The last row of the dump is truncated!");
+                return false;
+            }
+            ByteBuffer row = read(buffer.getInt());
+            int bitmapStart = row.position();
+            row.position(bitmapStart + (columns.size() + 7) / 8);
+            for (int i = 0; i < columns.size(); ++i) {
+                int parameter = i + 1;
+                Kind kind = columns.get(i).kind;
+                if ((row.get(bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                    statement.setNull(parameter, sqlTypeOf(kind));
+                    continue;
+                }
+                switch (kind) {
+                    case BOOLEAN:
+                        statement.setBoolean(parameter, row.get() != 0);
+                        break;
+                    case LONG:
+                        statement.setLong(parameter, row.getLong());
+                        break;
+                    case DOUBLE:
+                        statement.setDouble(parameter, row.getDouble());
+                        break;
+                    case STRING:
+                        statement.setString(parameter, new String(getBytes(row), StandardCharsets.UTF_8));
+                        break;
+                    case BYTES:
+                        statement.setBytes(parameter, getBytes(row));
+                        break;
+                    case TIMESTAMP:
+                        statement.setTimestamp(parameter, new Timestamp(row.getLong()));
+                        break;
+                    default:
+                        statement.setBigDecimal(parameter, new BigDecimal(new String(getBytes(row), StandardCharsets.US_ASCII)));
+                        break;
+                }
+            }
+            return true;
+        }
+
+        private static byte[] getBytes(ByteBuffer row) {
+            byte[] bytes = new byte[row.getInt()];
+            row.get(bytes);
+            return bytes;
+        }
+
+        private static int sqlTypeOf(Kind kind) {
+            switch (kind) {
+                case BOOLEAN:
+                    return Types.BOOLEAN;
+                case LONG:
+                    return Types.BIGINT;
+                case DOUBLE:
+                    return Types.DOUBLE;
+                case STRING:
+                    return Types.VARCHAR;
+                case BYTES:
+                    return Types.VARBINARY;
+                case TIMESTAMP:
+                    return Types.TIMESTAMP;
+                default:
+                    return Types.DECIMAL;
+            }
+        }
+
+        // Returns a buffer containing the next bytes of the dump, either a slice of the direct buffer or the scratch
+        private ByteBuffer read(int length) throws IOException {
+            if (length <= buffer.capacity()) {
+                if (!fill(length))
+                    throw new EOFException("The dump is truncated!");
+                ByteBuffer slice = buffer.slice();
+                slice.limit(length);
+                buffer.position(buffer.position() + length);
+                return slice;
+            }
+            if (scratch == null || scratch.capacity() < length)
+                this.scratch = ByteBuffer.allocate(length);
+            scratch.clear().limit(length);
+            scratch.put(buffer);
+            while (scratch.hasRemaining()) {
+                if (channel.read(scratch) < 0)
+                    throw new EOFException("The dump is truncated!");
+            }
+            scratch.flip();
+            return scratch;
+        }
+
+        // Ensures the buffer contains at least the amount of bytes, returns false at the end of the file
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes)
+                return true;
+            buffer.compact();
+            try {
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0)
+                        return false;
+                }
+                return true;
+            } finally {
+                buffer.flip();
+            }
+        }
+    }
+}
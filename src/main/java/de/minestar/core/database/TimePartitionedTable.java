@@ -0,0 +1,269 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.DatabaseTableConfig;
+import com.j256.ormlite.table.TableUtils;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToLongFunction;
+
+/**
+ * Stores the entities of a class in rolling tables per time interval, for example <code>block_20150123</code> for all
+ * blocks of a day. Every table is small, so inserts only maintain small indices, queries with a time range only touch
+ * the tables of the range and old data is removed by dropping whole tables instead of deleting rows.
+ * <p>
+ * The tables are created on demand by {@link TimePartitionedTable#getDao(long)}. Use a
+ * {@link PartitionedDatabaseConsumer} to consume entities into their tables.
+ *
+ * @param <T> The type of the entities
+ */
+public class TimePartitionedTable<T> {
+
+    private static final char SEPARATOR = '_';
+
+    private final DatabaseAccess access;
+    private final Class<T> entityClass;
+    private final ToLongFunction<? super T> timestampFunction;
+    private final String timestampColumn;
+    private final PartitionInterval interval;
+    private final String baseTableName;
+
+    private final NavigableSet<Long> partitions;
+    private final Map<Long, DatabaseTableConfig<T>> tableConfigs;
+    private final ConcurrentMap<ConnectionSource, ConcurrentMap<Long, Dao<T, ?>>> daos;
+
+    /**
+     * Creates the partitioned table and reads the existing partitions from the database.
+     *
+     * @param access            The access to the database
+     * @param entityClass       The class of the entities. Its table name is the prefix of all partitions
+     * @param timestampFunction Returns the timestamp in milliseconds of an entity
+     * @param timestampColumn   The name of the timestamp column
+     * @param interval          The time span of a partition
+     * @throws SQLException Could not read the existing partitions
+     */
+    public TimePartitionedTable(DatabaseAccess access, Class<T> entityClass, ToLongFunction<? super T> timestampFunction, String timestampColumn, PartitionInterval interval) throws SQLException {
+        this.access = access;
+        this.entityClass = entityClass;
+        this.timestampFunction = timestampFunction;
+        this.timestampColumn = timestampColumn;
+        this.interval = interval;
+        String tableName = DatabaseTableConfig.extractTableName(entityClass);
+        if (access.getConnectionSource().getDatabaseType().isEntityNamesMustBeUpCase())
+            tableName = tableName.toUpperCase(Locale.ROOT);
+        this.baseTableName = tableName;
+
+        this.partitions = new ConcurrentSkipListSet<>();
+        this.tableConfigs = new ConcurrentHashMap<>();
+        this.daos = new ConcurrentHashMap<>();
+        refreshPartitions();
+    }
+
+    /**
+     * Reads the existing partitions from the database. Necessary, if other servers create or drop partitions.
+     *
+     * @throws SQLException
+     */
+    public void refreshPartitions() throws SQLException {
+        String prefix = (baseTableName + SEPARATOR).toLowerCase(Locale.ROOT);
+        List<Long> existing = new ArrayList<>();
+
+        ConnectionSource connectionSource = access.getConnectionSource();
+        DatabaseConnection connection = connectionSource.getReadOnlyConnection();
+        try {
+            DatabaseMetaData metaData = ((JdbcDatabaseConnection) connection).getInternalConnection().getMetaData();
+            try (ResultSet tables = metaData.getTables(null, null, "%", new String[]{"TABLE"})) {
+                while (tables.next()) {
+                    String tableName = tables.getString("TABLE_NAME");
+                    if (!tableName.toLowerCase(Locale.ROOT).startsWith(prefix))
+                        continue;
+                    try {
+                        existing.add(interval.parseSuffix(tableName.substring(prefix.length())));
+                    } catch (DateTimeParseException ignore) {
+                        // Another table with the same prefix
+                    }
+                }
+            }
+        } finally {
+            connectionSource.releaseConnection(connection);
+        }
+        partitions.retainAll(existing);
+        partitions.addAll(existing);
+    }
+
+    /**
+     * @param element An entity
+     * @return The start of the partition of the entity in milliseconds
+     */
+    public long partitionOf(T element) {
+        return interval.startOf(timestampFunction.applyAsLong(element));
+    }
+
+    /**
+     * @param timestampMillis A timestamp in milliseconds
+     * @return The name of the table of the partition containing the timestamp
+     */
+    public String getTableName(long timestampMillis) {
+        return baseTableName + SEPARATOR + interval.suffix(interval.startOf(timestampMillis));
+    }
+
+    /**
+     * Create(or get if created before) the Dao for the partition containing the timestamp. The table of the partition
+     * is created if it does not exist. See {@link DatabaseAccess#getDao(Class)} for the rules of Dao usage.
+     *
+     * @param timestampMillis A timestamp in milliseconds
+     * @return Dao responsible for the partition
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public <D extends Dao<T, ?>> D getDao(long timestampMillis) throws SQLException {
+        long partitionStart = interval.startOf(timestampMillis);
+        Dao<T, ?> dao = getDao(access.getConnectionSource(), partitionStart);
+        if (!partitions.contains(partitionStart)) {
+            synchronized (this) {
+                if (!partitions.contains(partitionStart)) {
+                    if (!dao.isTableExists())
+                        TableUtils.createTable(access.getConnectionSource(), getTableConfig(partitionStart));
+                    partitions.add(partitionStart);
+                }
+            }
+        }
+        return (D) dao;
+    }
+
+    /**
+     * @return The start of all existing partitions in ascending order
+     */
+    public List<Long> getPartitions() {
+        return new ArrayList<>(partitions);
+    }
+
+    /**
+     * Queries all entities inside the time range. Only the partitions overlapping the range are queried using the read
+     * connection of the access.
+     *
+     * @param fromTimestamp The minimum timestamp (inclusive)
+     * @param toTimestamp   The maximum timestamp (inclusive)
+     * @param filter        Additional restriction of the result. Can be null
+     * @return The entities ordered by their partitions
+     * @throws SQLException
+     */
+    public List<T> query(long fromTimestamp, long toTimestamp, QueryFilter<T> filter) throws SQLException {
+        List<T> result = new ArrayList<>();
+        for (long partitionStart : partitions.subSet(interval.startOf(fromTimestamp), true, toTimestamp, true)) {
+            Dao<T, ?> dao = getDao(access.getReadConnectionSource(), partitionStart);
+            QueryBuilder<T, ?> queryBuilder = dao.queryBuilder();
+            Where<T, ?> where = queryBuilder.where();
+            where.between(timestampColumn, fromTimestamp, toTimestamp);
+            if (filter != null) {
+                filter.apply(where);
+                where.and(2);
+            }
+            result.addAll(queryBuilder.query());
+        }
+        return result;
+    }
+
+    /**
+     * Drops all partitions, which contain only timestamps older than the timestamp.
+     *
+     * @param timestampMillis The oldest timestamp to keep in milliseconds
+     * @return The number of dropped partitions
+     * @throws SQLException
+     */
+    public int dropPartitionsBefore(long timestampMillis) throws SQLException {
+        int dropped = 0;
+        for (long partitionStart : partitions.headSet(timestampMillis, false)) {
+            if (interval.nextStart(partitionStart) > timestampMillis)
+                continue;
+            TableUtils.dropTable(access.getConnectionSource(), getTableConfig(partitionStart), false);
+            partitions.remove(partitionStart);
+            for (Map<Long, Dao<T, ?>> sourceDaos : daos.values()) {
+                sourceDaos.remove(partitionStart);
+            }
+            ++dropped;
+        }
+        return dropped;
+    }
+
+    // The DaoManager caches only one Dao per class and connection source, so the Daos of the partitions are cached here
+    @SuppressWarnings("unchecked")
+    private <D extends Dao<T, ?>> D getDao(ConnectionSource connectionSource, long partitionStart) throws SQLException {
+        ConcurrentMap<Long, Dao<T, ?>> sourceDaos = daos.computeIfAbsent(connectionSource, source -> new ConcurrentHashMap<>());
+        Dao<T, ?> dao = sourceDaos.get(partitionStart);
+        if (dao == null) {
+            dao = new BaseDaoImpl<T, Object>(connectionSource, getTableConfig(partitionStart)) {
+            };
+            Dao<T, ?> previous = sourceDaos.putIfAbsent(partitionStart, dao);
+            if (previous != null)
+                dao = previous;
+        }
+        return (D) dao;
+    }
+
+    private DatabaseTableConfig<T> getTableConfig(long partitionStart) throws SQLException {
+        DatabaseTableConfig<T> tableConfig = tableConfigs.get(partitionStart);
+        if (tableConfig == null) {
+            String tableName = baseTableName + SEPARATOR + interval.suffix(partitionStart);
+            tableConfig = TableConfigs.forTable(access.getConnectionSource(), entityClass, tableName);
+            tableConfigs.putIfAbsent(partitionStart, tableConfig);
+            tableConfig = tableConfigs.get(partitionStart);
+        }
+        return tableConfig;
+    }
+
+    /**
+     * @return The access to the database
+     */
+    public DatabaseAccess getAccess() {
+        return access;
+    }
+
+    /**
+     * @return The class of the entities
+     */
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+}
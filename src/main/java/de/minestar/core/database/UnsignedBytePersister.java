@@ -0,0 +1,83 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.ByteObjectType;
+
+/**
+ * Persists an int field in [0, 255], for example the y coordinate of a block, as a single TINYINT column instead of an
+ * INT column. Use it with <code>@DatabaseField(persisterClass = UnsignedBytePersister.class)</code>. The values are
+ * stored shifted by -128, so the order of the stored values equals the order of the values and range queries with int
+ * arguments work as before.
+ * <p>
+ * Query arguments outside of [0, 255] are clamped to 256 or -1, just outside of the stored range, so every comparison
+ * has the same result as with the original argument. ORMLite converts the values of inserted rows the same way, so the
+ * persister cannot reject them: a row with a value outside of [0, 255] is stored as 256 or -1 by SQLite and rejected
+ * by MySQL in strict mode. Validate the values before they are persisted.
+ */
+public class UnsignedBytePersister extends ByteObjectType {
+
+    private static final int OFFSET = 128;
+    private static final int MIN_VALUE = 0;
+    private static final int MAX_VALUE = 255;
+
+    private static final UnsignedBytePersister SINGLETON = new UnsignedBytePersister();
+
+    private UnsignedBytePersister() {
+        super(SqlType.BYTE, new Class<?>[]{int.class, Integer.class});
+    }
+
+    public static UnsignedBytePersister getSingleton() {
+        return SINGLETON;
+    }
+
+    @Override
+    public Object javaToSqlArg(FieldType fieldType, Object javaObject) {
+        int value = ((Number) javaObject).intValue();
+        // Arguments like lt(300) or ge(-1) keep their result
+        if (value > MAX_VALUE)
+            return (short) (MAX_VALUE + 1 - OFFSET);
+        if (value < MIN_VALUE)
+            return (short) (MIN_VALUE - 1 - OFFSET);
+        return (byte) (value - OFFSET);
+    }
+
+    @Override
+    public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) {
+        return ((Number) sqlArg).intValue() + OFFSET;
+    }
+
+    @Override
+    public boolean isValidGeneratedType() {
+        return false;
+    }
+
+    @Override
+    public boolean isValidForVersion() {
+        return false;
+    }
+}
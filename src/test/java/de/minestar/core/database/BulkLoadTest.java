@@ -0,0 +1,114 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+public class BulkLoadTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void deferredIndexTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        final int sampleSize = 60_000;
+
+        try (BulkLoad<LoadedBlock> load = access.beginBulkLoad(LoadedBlock.class)) {
+            // The table exists without its indexes
+            Assert.assertEquals(0L, indexCount(access));
+            DatabaseConsumer<LoadedBlock> consumer = load.createConsumer(1024, 25L);
+            for (int i = 0; i < sampleSize; ++i) {
+                consumer.consume(new LoadedBlock(i % 512, i, "player" + i % 10));
+            }
+            consumer.flush();
+            load.finish();
+        }
+        Assert.assertEquals(2L, indexCount(access));
+        Dao<LoadedBlock, Integer> dao = access.getDao(LoadedBlock.class);
+        Assert.assertEquals(sampleSize, dao.countOf());
+        Assert.assertEquals(sampleSize / 10, dao.queryForEq("player", new SelectArg("player3")).size());
+
+        access.close();
+    }
+
+    @Test
+    public void existingTableTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), LoadedBlock.class);
+        Assert.assertEquals(2L, indexCount(access));
+        Dao<LoadedBlock, Integer> dao = access.getDao(LoadedBlock.class);
+        dao.create(new LoadedBlock(1, 1, "before"));
+
+        try (BulkLoad<LoadedBlock> load = access.beginBulkLoad(LoadedBlock.class)) {
+            Assert.assertEquals(0L, indexCount(access));
+            load.insert(Arrays.asList(new LoadedBlock(2, 2, "after"), new LoadedBlock(3, 3, "after")));
+        }
+        Assert.assertEquals(2L, indexCount(access));
+        Assert.assertEquals(3L, dao.countOf());
+
+        access.close();
+    }
+
+    private static long indexCount(DatabaseAccess access) throws Exception {
+        Dao<LoadedBlock, Integer> dao = access.getDao(LoadedBlock.class);
+        return Long.parseLong(dao.queryRaw("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND tbl_name = 'loadedblock' AND sql IS NOT NULL").getFirstResult()[0]);
+    }
+
+    @DatabaseTable
+    static class LoadedBlock {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private int x;
+
+        @DatabaseField
+        private long timestamp;
+
+        @DatabaseField(index = true)
+        private String player;
+
+        LoadedBlock() {
+            // Empty constructor for ORMLite
+        }
+
+        LoadedBlock(int x, long timestamp, String player) {
+            this.x = x;
+            this.timestamp = timestamp;
+            this.player = player;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class ColdArchiveTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testArchiveAndQuery() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), ArchivedBlock.class);
+        Dao<ArchivedBlock, Integer> dao = access.getDao(ArchivedBlock.class);
+
+        List<ArchivedBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            blocks.add(new ArchivedBlock(i % 50 - 25, i % 7 + 60, i / 50, 1000L * i, i % 3 == 0 ? null : "player" + i % 11, i % 2 == 0));
+        }
+        dao.callBatchTasks(() -> {
+            for (ArchivedBlock block : blocks) {
+                dao.create(block);
+            }
+            return null;
+        });
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        ColdArchive<ArchivedBlock> archive = new ColdArchive<>(access, ArchivedBlock.class, "timestamp", directory, 1000, 4000);
+        // Archive the first 9000 rows into three segments
+        Assert.assertEquals(9000, archive.archiveBefore(9000L * 1000L));
+        Assert.assertEquals(3, archive.getSegmentCount());
+        Assert.assertEquals(1000, dao.countOf());
+        Assert.assertEquals(0, archive.archiveBefore(9000L * 1000L));
+
+        Cuboid cuboid = new Cuboid(-5, 60, 10, 5, 62, 100);
+        long from = 500L * 1000L;
+        long to = 5000L * 1000L;
+        List<ArchivedBlock> expected = new ArrayList<>();
+        for (ArchivedBlock block : blocks.subList(0, 9000)) {
+            if (cuboid.contains(block.x, block.y, block.z) && block.timestamp >= from && block.timestamp <= to)
+                expected.add(block);
+        }
+        Assert.assertFalse(expected.isEmpty());
+
+        // Reopen the segments
+        archive.close();
+        archive = new ColdArchive<>(access, ArchivedBlock.class, "timestamp", directory, 1000, 4000);
+        Assert.assertEquals(9000, archive.getArchivedRowCount());
+        List<ArchivedBlock> result = archive.query(cuboid, "x", "y", "z", from, to);
+        Assert.assertEquals(expected.size(), result.size());
+        for (int i = 0; i < result.size(); ++i) {
+            ArchivedBlock actual = result.get(i);
+            ArchivedBlock block = expected.get(i);
+            Assert.assertEquals(block.id, actual.id);
+            Assert.assertEquals(block.x, actual.x);
+            Assert.assertEquals(block.timestamp, actual.timestamp);
+            Assert.assertEquals(block.player, actual.player);
+            Assert.assertEquals(block.placed, actual.placed);
+            Assert.assertEquals(block.created, actual.created);
+        }
+
+        archive.close();
+        Assert.assertEquals(0, archive.getSegmentCount());
+        access.close();
+    }
+
+    @DatabaseTable
+    public static class ArchivedBlock {
+
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private int x;
+
+        @DatabaseField
+        private int y;
+
+        @DatabaseField
+        private int z;
+
+        @DatabaseField(index = true)
+        private long timestamp;
+
+        @DatabaseField
+        private String player;
+
+        @DatabaseField
+        private Boolean placed;
+
+        @DatabaseField
+        private Date created;
+
+        public ArchivedBlock() {
+        }
+
+        public ArchivedBlock(int x, int y, int z, long timestamp, String player, boolean placed) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.timestamp = timestamp;
+            this.player = player;
+            this.placed = placed;
+            this.created = new Date(timestamp);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+public class CompactEncodingTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCompactPersisters() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), CompactBlock.class);
+        Dao<CompactBlock, Integer> dao = access.getDao(CompactBlock.class);
+
+        for (int y = 0; y < 256; y += 5) {
+            dao.create(new CompactBlock(y, new BlockState(y * 16, y % 16), new BlockState(4095, 15)));
+        }
+
+        List<CompactBlock> blocks = dao.queryBuilder().orderBy("blockY", true).query();
+        Assert.assertEquals(52, blocks.size());
+        Assert.assertEquals(255, blocks.get(51).blockY);
+        Assert.assertEquals(new BlockState(255 * 16, 15), blocks.get(51).from);
+        Assert.assertEquals(new BlockState(4095, 15), blocks.get(0).to);
+
+        // Range queries keep working with the shifted values
+        Assert.assertEquals(10, dao.queryBuilder().where().between("blockY", 100, 149).countOf());
+        // Arguments outside of [0, 255] are clamped without changing the result
+        Assert.assertEquals(52, dao.queryBuilder().where().lt("blockY", 300).countOf());
+        Assert.assertEquals(52, dao.queryBuilder().where().ge("blockY", -1).countOf());
+        Assert.assertEquals(0, dao.queryBuilder().where().gt("blockY", 256).countOf());
+        Assert.assertEquals(0, dao.queryBuilder().where().eq("blockY", 300).countOf());
+        Assert.assertEquals(1, dao.queryBuilder().where().ge("blockY", 255).countOf());
+        Assert.assertEquals(1, dao.queryBuilder().where().eq("fromState", new BlockState(80, 5)).countOf());
+
+        access.close();
+    }
+
+    @Test
+    public void testPackedBatches() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        PackedBatchTable<BlockRecord> table = new PackedBatchTable<>(access, "block_log", new BlockRecordFormat());
+        table.createTableIfNotExists();
+
+        PackedBatchConsumer<BlockRecord> consumer = new PackedBatchConsumer<>(table);
+        long start = 1420070400000L;
+        for (int i = 0; i < 2000; ++i) {
+            consumer.consume(new BlockRecord(start + i * 50L, -1000 + i % 20, 64 + i % 3, 300 - i / 20, i % 200, i % 16));
+        }
+        consumer.flush();
+
+        List<BlockRecord> all = table.query(start, start + 100000L);
+        Assert.assertEquals(2000, all.size());
+        BlockRecord last = all.get(1999);
+        Assert.assertEquals(start + 1999 * 50L, last.timestamp);
+        Assert.assertEquals(-1000 + 19, last.x);
+        Assert.assertEquals(65, last.y);
+        Assert.assertEquals(300 - 99, last.z);
+        Assert.assertEquals(new BlockState(199, 15), last.to);
+
+        // The filter and time range are applied to the records of the overlapping batches
+        Assert.assertEquals(101, table.query(start + 1000L, start + 6000L).size());
+        Assert.assertEquals(20, table.query(start, start + 100000L, record -> record.z == 250).size());
+
+        // A packed batch is much smaller than the rows
+        Dao<CompactBlock, Integer> rawDao = access.getDao(CompactBlock.class);
+        String[] bytes = rawDao.queryRaw("SELECT SUM(LENGTH(payload)) FROM block_log").getFirstResult();
+        Assert.assertTrue(Long.parseLong(bytes[0]) < 2000L * 12L);
+
+        access.close();
+    }
+
+    @DatabaseTable
+    public static class CompactBlock {
+
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(persisterClass = UnsignedBytePersister.class)
+        private int blockY;
+
+        @DatabaseField(columnName = "fromState", persisterClass = BlockStatePersister.class)
+        private BlockState from;
+
+        @DatabaseField(columnName = "toState", persisterClass = BlockStatePersister.class)
+        private BlockState to;
+
+        public CompactBlock() {
+        }
+
+        public CompactBlock(int blockY, BlockState from, BlockState to) {
+            this.blockY = blockY;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public static class BlockRecord {
+
+        private long timestamp;
+        private int x;
+        private int y;
+        private int z;
+        private BlockState to;
+
+        public BlockRecord() {
+        }
+
+        public BlockRecord(long timestamp, int x, int y, int z, int id, int data) {
+            this.timestamp = timestamp;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.to = new BlockState(id, data);
+        }
+    }
+
+    private static class BlockRecordFormat implements PackedRecordFormat<BlockRecord> {
+
+        @Override
+        public Class<BlockRecord> getRecordClass() {
+            return BlockRecord.class;
+        }
+
+        @Override
+        public long timestampOf(BlockRecord record) {
+            return record.timestamp;
+        }
+
+        @Override
+        public void write(BlockRecord record, PackedRecordOutput out) {
+            out.writeSignedVarInt(record.x);
+            out.writeByte(record.y);
+            out.writeSignedVarInt(record.z);
+            out.writeVarInt(record.to.getPacked());
+        }
+
+        @Override
+        public BlockRecord read(long timestamp, PackedRecordInput in) {
+            BlockRecord record = new BlockRecord();
+            record.timestamp = timestamp;
+            record.x = in.readSignedVarInt();
+            record.y = in.readByte();
+            record.z = in.readSignedVarInt();
+            record.to = BlockState.fromPacked(in.readVarInt());
+            return record;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConfigWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void validationTest() throws Exception {
+        DatabaseConfig config = DatabaseConfig.parse("{\"host\": \"localhost\", \"database\": \"minecraft\", \"username\": \"root\", \"password\": \"test\", " +
+                "\"replicas\": [{\"host\": \"replica\", \"port\": 3307}], \"caches\": {\"recentChanges\": {\"windowMillis\": 60000}}}", "test");
+        Assert.assertEquals(DatabaseConfig.Dialect.MYSQL, config.getDialect());
+        Assert.assertEquals(3306, config.getPrimary().getPort());
+        Assert.assertEquals("minecraft", config.getReplicas().get(0).getDatabase());
+        Assert.assertEquals(3307, config.getReplicas().get(0).getPort());
+        Assert.assertEquals(60000L, config.getCache("recentChanges").getWindowMillis());
+        Assert.assertEquals(64, config.getFlushSize());
+
+        // All problems are reported at once
+        try {
+            DatabaseConfig.parse("{\"dialect\": \"mariadb\", \"host\": \"localhost\", \"port\": \"3306\", \"consumer\": {\"flushSize\": 0}}", "test");
+            Assert.fail("The config is not valid");
+        } catch (IllegalArgumentException e) {
+            for (String problem : new String[]{"database", "username", "password", "port", "consumer.flushSize"})
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("'" + problem + "'"));
+        }
+    }
+
+    @Test
+    public void lazyAccessTest() throws Exception {
+        DatabaseConfig config = DatabaseConfig.parse("{\"host\": \"localhost\", \"database\": \"minecraft\", \"username\": \"root\", \"password\": \"test\"}", "test");
+        AtomicInteger connects = new AtomicInteger();
+        ConnectionSupplier supplier = () -> {
+            connects.incrementAndGet();
+            throw new SQLException("Not reachable");
+        };
+
+        // Applying the pool settings does not connect a lazy access
+        DatabaseAccess access = new DatabaseAccess(supplier, Collections.singletonList(supplier), true);
+        config.applyTo(access);
+        Assert.assertEquals(0, connects.get());
+    }
+
+    @Test
+    public void reloadTest() throws Exception {
+        Path configFile = folder.newFile("database.json").toPath();
+        File firstDatabase = new File(folder.getRoot(), "first.db");
+        File secondDatabase = new File(folder.getRoot(), "second.db");
+        write(configFile, firstDatabase, 16, 2);
+
+        try (ConfigWatcher watcher = new ConfigWatcher(configFile)) {
+            DatabaseAccess access = watcher.createAccess();
+            DatabaseConsumer<ShipmentProgress> consumer = watcher.createConsumer(access, ShipmentProgress.class);
+            Assert.assertEquals(16, consumer.getFlushSize());
+
+            LinkedBlockingQueue<DatabaseConfig> applied = new LinkedBlockingQueue<>();
+            watcher.addListener(applied::add);
+            watcher.start();
+
+            // Only the consumer and the pool settings change
+            ConnectionSource firstSource = access.getConnectionSource();
+            write(configFile, firstDatabase, 128, 1);
+            Assert.assertNotNull(applied.poll(30L, TimeUnit.SECONDS));
+            Assert.assertEquals(128, consumer.getFlushSize());
+            Assert.assertSame(firstSource, access.getConnectionSource());
+
+            // An invalid file is ignored
+            Files.write(configFile, "{\"consumer\": {\"flushSize\": -1}".getBytes(Charset.forName("UTF8")));
+            Assert.assertFalse(watcher.reload());
+            Assert.assertNotNull(watcher.getLastFailure());
+            Assert.assertEquals(128, watcher.getConfig().getFlushSize());
+
+            // Another database is hot swapped
+            write(configFile, secondDatabase, 128, 1);
+            DatabaseConfig config;
+            do {
+                config = applied.poll(30L, TimeUnit.SECONDS);
+                Assert.assertNotNull(config);
+            } while (!config.getFile().equals(secondDatabase.getPath()));
+            Assert.assertNotSame(firstSource, access.getConnectionSource());
+            Assert.assertTrue(access.getConnectionSource() instanceof JdbcPooledConnectionSource);
+            TableUtils.createTable(access.getConnectionSource(), ShipmentProgress.class);
+            Assert.assertTrue(secondDatabase.exists());
+            access.close();
+        }
+    }
+
+    @Test
+    public void failedReconnectTest() throws Exception {
+        Path configFile = folder.newFile("database.json").toPath();
+        write(configFile, new File(folder.getRoot(), "first.db"), 16, 2);
+
+        try (ConfigWatcher watcher = new ConfigWatcher(configFile)) {
+            DatabaseAccess first = watcher.createAccess();
+            DatabaseAccess second = watcher.createAccess();
+            ConnectionSource firstSource = first.getConnectionSource();
+            ConnectionSource secondSource = second.getConnectionSource();
+
+            // The directory of the database is a file, so no access is switched
+            File notADirectory = folder.newFile("not-a-directory");
+            write(configFile, new File(notADirectory, "second.db"), 128, 2);
+            Assert.assertFalse(watcher.reload());
+            Assert.assertNotNull(watcher.getLastFailure());
+            Assert.assertSame(firstSource, first.getConnectionSource());
+            Assert.assertSame(secondSource, second.getConnectionSource());
+            Assert.assertEquals(16, watcher.getConfig().getFlushSize());
+
+            // Both are switched by the next valid file
+            write(configFile, new File(folder.getRoot(), "second.db"), 128, 2);
+            Assert.assertTrue(watcher.reload());
+            Assert.assertNotSame(firstSource, first.getConnectionSource());
+            Assert.assertNotSame(secondSource, second.getConnectionSource());
+            first.close();
+            second.close();
+        }
+    }
+
+    private static void write(Path configFile, File database, int flushSize, int maxConnectionsFree) throws Exception {
+        String json = "{\"dialect\": \"sqlite\", \"file\": \"" + database.getPath().replace("\\", "\\\\") + "\", " +
+                "\"pool\": {\"maxConnectionsFree\": " + maxConnectionsFree + "}, \"consumer\": {\"flushSize\": " + flushSize + "}}";
+        Files.write(configFile, json.getBytes(Charset.forName("UTF8")));
+    }
+}
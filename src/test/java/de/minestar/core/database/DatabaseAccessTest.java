@@ -26,6 +26,8 @@ package de.minestar.core.database;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.table.DatabaseTable;
 import com.j256.ormlite.table.TableUtils;
 import jodd.json.JsonSerializer;
@@ -37,9 +39,15 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class DatabaseAccessTest {
 
@@ -64,6 +72,182 @@ public class DatabaseAccessTest {
         testDatabase(connectionSupplier);
     }
 
+    @Test
+    public void testStreamingQuery() throws Exception {
+        DatabaseAccess databaseAccess = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(databaseAccess.getConnectionSource(), TestModelClass.class);
+        Dao<TestModelClass, Integer> modelDao = databaseAccess.getDao(TestModelClass.class);
+        List<TestModelClass> testData = generateTestData();
+        for (TestModelClass data : testData) {
+            modelDao.create(data);
+        }
+
+        PreparedQuery<TestModelClass> adminQuery = modelDao.queryBuilder().orderBy("id", true).where().eq("isAdmin", true).prepare();
+        // The stream must be closed to release the connection
+        try (Stream<TestModelClass> admins = databaseAccess.stream(adminQuery, 2)) {
+            Assert.assertEquals(Arrays.asList("Meldanor", "GeMoschen"), admins.map(TestModelClass::getUserName).collect(Collectors.toList()));
+        }
+
+        // Reuse one object for all rows
+        TestModelClass reusedRow = new TestModelClass();
+        int rows = 0;
+        try (QueryCursor<TestModelClass> cursor = databaseAccess.queryCursor(TestModelClass.class, modelDao.queryBuilder().prepare(), 2, reusedRow)) {
+            while (cursor.hasNext()) {
+                Assert.assertSame(reusedRow, cursor.next());
+                ++rows;
+            }
+        }
+        Assert.assertEquals(testData.size(), rows);
+        Assert.assertEquals("west_", reusedRow.getUserName());
+
+        databaseAccess.close();
+    }
+
+    @Test
+    public void testParallelScan() throws Exception {
+        DatabaseAccess databaseAccess = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(databaseAccess.getConnectionSource(), TestModelClass.class);
+        Dao<TestModelClass, Integer> modelDao = databaseAccess.getDao(TestModelClass.class);
+        final int sampleSize = 1000;
+        modelDao.callBatchTasks(() -> {
+            for (int i = 0; i < sampleSize; ++i) {
+                modelDao.create(new TestModelClass("user" + i, i % 2 == 0));
+            }
+            return null;
+        });
+
+        // Ordered scan must return the rows sorted by the partition column
+        try (Stream<TestModelClass> rows = databaseAccess.parallelScan(TestModelClass.class, "id", 4).fetchSize(16).stream(true)) {
+            List<Integer> ids = rows.map(TestModelClass::getId).collect(Collectors.toList());
+            Assert.assertEquals(IntStream.rangeClosed(1, sampleSize).boxed().collect(Collectors.toList()), ids);
+        }
+        // Unordered scan with an additional filter
+        try (Stream<TestModelClass> rows = databaseAccess.parallelScan(TestModelClass.class, "id", 4).where(where -> where.eq("isAdmin", true)).stream(false)) {
+            Assert.assertEquals(sampleSize / 2, rows.count());
+        }
+        // Count the admins in each range and combine the results
+        long admins = databaseAccess.parallelScan(TestModelClass.class, "id", 4).reduce(() -> 0L, (count, row) -> row.isAdmin() ? count + 1 : count, Long::sum);
+        Assert.assertEquals(sampleSize / 2, admins);
+
+        databaseAccess.close();
+    }
+
+    @Test
+    public void testParallelScanOfWholeLongRange() throws Exception {
+        DatabaseAccess databaseAccess = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(databaseAccess.getConnectionSource(), Timestamped.class);
+        Dao<Timestamped, Long> dao = databaseAccess.getDao(Timestamped.class);
+        for (long timestamp : new long[]{Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE})
+            dao.create(new Timestamped(timestamp));
+
+        // The distance between the minimum and the maximum does not fit into a long
+        for (int partitions : new int[]{1, 3, 4}) {
+            try (Stream<Timestamped> rows = databaseAccess.parallelScan(Timestamped.class, "timestamp", partitions).stream(true)) {
+                Assert.assertEquals(Arrays.asList(Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE), rows.map(row -> row.timestamp).collect(Collectors.toList()));
+            }
+        }
+
+        databaseAccess.close();
+    }
+
+    @DatabaseTable
+    static class Timestamped {
+        @DatabaseField(id = true)
+        private long timestamp;
+
+        Timestamped() {
+            // Empty constructor for ORMLite
+        }
+
+        Timestamped(long timestamp) {
+            this.timestamp = timestamp;
+        }
+    }
+
+    @Test
+    public void testReadReplicas() throws Exception {
+        // Use two independent databases to see where the queries are executed
+        ConnectionSupplier primary = new SqliteConnection(temporaryFolder.newFile());
+        ConnectionSupplier replica = new SqliteConnection(temporaryFolder.newFile());
+        DatabaseAccess databaseAccess = new DatabaseAccess(primary, Collections.singletonList(replica));
+        TableUtils.createTableIfNotExists(databaseAccess.getConnectionSource(), TestModelClass.class);
+        TableUtils.createTableIfNotExists(databaseAccess.getReadConnectionSource(), TestModelClass.class);
+
+        Dao<TestModelClass, Integer> writeDao = databaseAccess.getDao(TestModelClass.class);
+        writeDao.create(new TestModelClass("Meldanor", true));
+
+        // Writes are not visible on the replica
+        Dao<TestModelClass, Integer> readDao = databaseAccess.getReadDao(TestModelClass.class);
+        Assert.assertEquals(0, readDao.countOf());
+        Assert.assertEquals(1, writeDao.countOf());
+
+        // Fall back to the primary, when the replica lags too far behind
+        databaseAccess.setReplicaLagProbe(connectionSource -> Long.MAX_VALUE, 1000L);
+        Assert.assertSame(databaseAccess.getConnectionSource(), databaseAccess.getReadConnectionSource());
+        readDao = databaseAccess.getReadDao(TestModelClass.class);
+        Assert.assertEquals(1, readDao.countOf());
+
+        databaseAccess.close();
+    }
+
+    @Test
+    public void testBatchLoader() throws Exception {
+        DatabaseAccess databaseAccess = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(databaseAccess.getConnectionSource(), TestModelClass.class);
+        Dao<TestModelClass, Integer> modelDao = databaseAccess.getDao(TestModelClass.class);
+        for (TestModelClass data : generateTestData()) {
+            modelDao.create(data);
+        }
+
+        // Use a long window and dispatch the lookups manually like at the end of a tick
+        BatchLoader<TestModelClass, Integer> loader = databaseAccess.createBatchLoader(TestModelClass.class, 60000L);
+        CompletableFuture<TestModelClass> first = loader.load(1);
+        CompletableFuture<TestModelClass> third = loader.load(3);
+        CompletableFuture<TestModelClass> duplicate = loader.load(3);
+        CompletableFuture<TestModelClass> missing = loader.load(42);
+        Assert.assertFalse(first.isDone());
+        loader.dispatch();
+
+        Assert.assertEquals("Meldanor", first.get().getUserName());
+        Assert.assertEquals("west_", third.get().getUserName());
+        Assert.assertSame(third, duplicate);
+        Assert.assertNull(missing.get());
+
+        // The window timer of a dispatched batch does not dispatch the next batch
+        BatchLoader<TestModelClass, Integer> windowed = databaseAccess.createBatchLoader(TestModelClass.class, 1000L);
+        windowed.load(1);
+        windowed.dispatch();
+        Thread.sleep(400L);
+        CompletableFuture<TestModelClass> next = windowed.load(3);
+        Thread.sleep(750L);
+        Assert.assertFalse(next.isDone());
+        Assert.assertEquals("west_", next.get(30L, TimeUnit.SECONDS).getUserName());
+
+        databaseAccess.close();
+    }
+
+    @Test
+    public void testLazyWarmUp() throws Exception {
+        File databaseFile = new File(temporaryFolder.getRoot(), "lazy.db");
+        DatabaseAccess databaseAccess = new DatabaseAccess(new SqliteConnection(databaseFile, new SqliteSettings()), Collections.emptyList(), true);
+        // Nothing is opened before the warm-up
+        Assert.assertFalse(databaseFile.exists());
+
+        databaseAccess.registerEntities(TestModelClass.class);
+        databaseAccess.warmUp(3).get(30L, TimeUnit.SECONDS);
+        Assert.assertTrue(databaseFile.exists());
+        Assert.assertEquals(3, ((JdbcPooledConnectionSource) databaseAccess.getConnectionSource()).getCurrentConnectionsFree());
+
+        Dao<TestModelClass, Integer> modelDao = databaseAccess.getDao(TestModelClass.class);
+        Assert.assertTrue(modelDao.isTableExists());
+        for (TestModelClass data : generateTestData()) {
+            modelDao.create(data);
+        }
+        Assert.assertEquals(3L, modelDao.countOf());
+
+        databaseAccess.close();
+    }
+
     private void testDatabase(ConnectionSupplier connectionSupplier) throws Exception {
         // Create access to the database - now the connection will be opened
         DatabaseAccess databaseAccess = new DatabaseAccess(connectionSupplier);
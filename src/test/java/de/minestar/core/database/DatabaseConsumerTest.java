@@ -26,6 +26,7 @@ package de.minestar.core.database;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.table.DatabaseTable;
 import com.j256.ormlite.table.TableUtils;
 import org.junit.Assert;
@@ -33,6 +34,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.Arrays;
 import java.util.Random;
 
 public class DatabaseConsumerTest {
@@ -73,6 +75,41 @@ public class DatabaseConsumerTest {
         access.close();
     }
 
+    @Test
+    public void shardedConsumerTest() throws Exception {
+        ShardedDatabaseAccess access = new ShardedDatabaseAccess(Arrays.asList(
+                new SqliteConnection(temporaryFolder.newFile()),
+                new SqliteConnection(temporaryFolder.newFile())));
+        for (DatabaseAccess shard : access.getShards()) {
+            TableUtils.createTableIfNotExists(shard.getConnectionSource(), SimpleEntity.class);
+        }
+
+        // Shard the entities by their char
+        ShardedDatabaseConsumer<SimpleEntity> consumer = new ShardedDatabaseConsumer<>(access, SimpleEntity.class, entity -> entity.randomChar);
+        consumer.kickOf();
+
+        final int sampleSize = 100;
+        for (int i = 0; i < sampleSize; ++i) {
+            consumer.consume(new SimpleEntity(System.nanoTime(), (char) ('a' + i % 26)));
+        }
+        Thread.sleep(250L);
+        consumer.stop();
+        Thread.sleep(250L);
+
+        // Every entity is stored on the shard of its key
+        for (int i = 0; i < access.getShardCount(); ++i) {
+            Dao<SimpleEntity, Integer> dao = access.getShard(i).getDao(SimpleEntity.class);
+            for (SimpleEntity entity : dao.queryForAll()) {
+                Assert.assertEquals(i, access.shardIndexOf(entity.randomChar));
+            }
+        }
+        // Query all shards at once
+        PreparedQuery<SimpleEntity> query = access.getShard(0).<Dao<SimpleEntity, Integer>, SimpleEntity>getDao(SimpleEntity.class).queryBuilder().prepare();
+        Assert.assertEquals(sampleSize, access.query(SimpleEntity.class, query).size());
+
+        access.close();
+    }
+
     private DatabaseAccess createDatabase() throws Exception {
         return new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
     }
@@ -0,0 +1,158 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EntityMappingTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generatedMappingTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        EntityMapping<MappedEntity> mapping = EntityMappings.get(MappedEntity.class);
+        Assert.assertNotNull(mapping);
+        Assert.assertTrue(mapping.isInsertSupported());
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), MappedEntity.class);
+
+        // Persist by the generated insert
+        DatabaseConsumer<MappedEntity> consumer = new DatabaseConsumer<>(access, MappedEntity.class);
+        final int sampleSize = 200;
+        for (int i = 0; i < sampleSize; ++i) {
+            consumer.consume(new MappedEntity(i * 3L, i % 2 == 0 ? "player" + i : null, i % 3 == 0 ? Action.BREAK : Action.PLACE, (short) i));
+        }
+        consumer.flush();
+
+        // Read by the generated row mapper
+        Dao<MappedEntity, Integer> dao = access.getDao(MappedEntity.class);
+        List<MappedEntity> rows = new ArrayList<>();
+        try (QueryCursor<MappedEntity> cursor = access.queryCursor(MappedEntity.class, dao.queryBuilder().orderBy("id", true).prepare(), 50)) {
+            cursor.forEachRemaining(rows::add);
+        }
+        Assert.assertEquals(sampleSize, rows.size());
+        for (int i = 0; i < sampleSize; ++i) {
+            MappedEntity row = rows.get(i);
+            Assert.assertEquals(i + 1, row.id);
+            Assert.assertEquals(i * 3L, row.timestamp);
+            Assert.assertEquals(i % 2 == 0 ? "player" + i : null, row.player);
+            Assert.assertEquals(i % 3 == 0 ? Action.BREAK : Action.PLACE, row.action);
+            Assert.assertEquals((short) i, row.amount);
+        }
+        // The Dao uses the generated table config and reads the same values
+        Assert.assertEquals("player4", dao.queryForId(5).player);
+
+        access.close();
+    }
+
+    @Test
+    public void versionedEntityTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        EntityMapping<VersionedEntity> mapping = EntityMappings.get(VersionedEntity.class);
+        Assert.assertNotNull(mapping);
+        // Versions are maintained by the insert of ORMLite
+        Assert.assertFalse(mapping.isInsertSupported());
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), VersionedEntity.class);
+
+        DatabaseConsumer<VersionedEntity> consumer = new DatabaseConsumer<>(access, VersionedEntity.class);
+        for (int i = 0; i < 10; ++i) {
+            consumer.consume(new VersionedEntity("value" + i));
+        }
+        consumer.flush();
+
+        Dao<VersionedEntity, Integer> dao = access.getDao(VersionedEntity.class);
+        for (VersionedEntity entity : dao.queryForAll()) {
+            Assert.assertEquals(Integer.valueOf(1), entity.version);
+        }
+        Assert.assertEquals(10L, dao.countOf());
+
+        access.close();
+    }
+
+    enum Action {
+        BREAK, PLACE
+    }
+
+    @DatabaseTable(tableName = "mapped")
+    static class MappedEntity {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private long timestamp;
+
+        @DatabaseField(width = 16)
+        private String player;
+
+        @DatabaseField(dataType = DataType.ENUM_INTEGER)
+        private Action action;
+
+        @DatabaseField
+        short amount;
+
+        private MappedEntity() {
+            // Empty constructor for ORMLite
+        }
+
+        MappedEntity(long timestamp, String player, Action action, short amount) {
+            this.timestamp = timestamp;
+            this.player = player;
+            this.action = action;
+            this.amount = amount;
+        }
+    }
+
+    @DatabaseTable
+    static class VersionedEntity {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String value;
+
+        @DatabaseField(version = true)
+        private Integer version;
+
+        VersionedEntity() {
+            // Empty constructor for ORMLite
+        }
+
+        VersionedEntity(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -28,8 +28,8 @@ import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 import com.j256.ormlite.table.TableUtils;
 
-import java.lang.reflect.Field;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -44,10 +44,20 @@ public class HeavyConsumerTest {
     // Current amount of data in database
     private static final int SAMPLE_SIZE = (int) Math.pow(2, 21);
 
+    // The MySQL and MariaDB servers are only used, if their host is given by -Dheavy.host=<host>
+    static final String SERVER_HOST = System.getProperty("heavy.host");
+
     public static void main(String[] args) throws Exception {
 
-        ConnectionSupplier mariaDbConnection = new MariaDbConnection("192.168.1.29", 3307, "minestar_therock", "consumertest", "test");
-        ConnectionSupplier mysqlDbConnection = new MySqlConnection("192.168.1.29", 3306, "minestar_therock", "consumertest", "test");
+        try (InMemoryConnection memoryConnection = new InMemoryConnection()) {
+            generateData(new DatabaseAccess(memoryConnection), "memory");
+            generateBulkData(new DatabaseAccess(memoryConnection), "memory");
+        }
+        if (SERVER_HOST == null)
+            return;
+
+        ConnectionSupplier mariaDbConnection = new MariaDbConnection(SERVER_HOST, 3307, "minestar_therock", "consumertest", "test");
+        ConnectionSupplier mysqlDbConnection = new MySqlConnection(SERVER_HOST, 3306, "minestar_therock", "consumertest", "test");
 
         ExecutorService threadPool = Executors.newFixedThreadPool(2);
 
@@ -70,38 +80,102 @@ public class HeavyConsumerTest {
         });
     }
 
-    private static void generateData( DatabaseAccess access , String name) throws Exception {
-        System.out.println("Start generate " + name);
-        List<Integer> values = new LinkedList<>();
-        TableUtils.dropTable(access.getConnectionSource(), Block.class, true);
-        TableUtils.createTableIfNotExists(access.getConnectionSource(), Block.class);
-        DatabaseConsumer<Block> consumer = new DatabaseConsumer<>(access, Block.class);
-        DatabaseConsumer.kickOf(consumer);
-        long time = System.nanoTime();
-        for (int i = 0, j = 0; i < SAMPLE_SIZE; ++i, ++j) {
-            consumer.consume(generateBlock());
-            if (j == 1500) {
-                int size = queueSize(consumer);
+    private static void generateData(DatabaseAccess access, String name) throws Exception {
+        try {
+            System.out.println("Start generate " + name);
+            List<Integer> values = new LinkedList<>();
+            TableUtils.dropTable(access.getConnectionSource(), Block.class, true);
+            TableUtils.createTableIfNotExists(access.getConnectionSource(), Block.class);
+            DatabaseConsumer<Block> consumer = new DatabaseConsumer<>(access, Block.class);
+            DatabaseConsumer.kickOf(consumer);
+            long time = System.nanoTime();
+            for (int i = 0, j = 0; i < SAMPLE_SIZE; ++i, ++j) {
+                consumer.consume(generateBlock());
+                if (j == 1500) {
+                    int size = queueSize(consumer);
+                    values.add(size);
+                    System.out.println(name + " :Sleep (i = " + i + ", Consumer Queue: " + size + ")");
+                    Thread.sleep(900L + random.nextInt(100));
+                    j = 0;
+                }
+            }
+            int size;
+            while ((size = queueSize(consumer)) >= 64) {
                 values.add(size);
-                System.out.println(name + " :Sleep (i = " + i + ", Consumer Queue: " + size + ")");
-                Thread.sleep(900L + random.nextInt(100));
-                j = 0;
+                System.out.println(name + " :Sleep (Consumer Queue: " + size + ")");
+                Thread.sleep(1000);
             }
+            consumer.flush();
+            consumer.stop();
+            time = System.nanoTime() - (time);
+            time = time - TimeUnit.MILLISECONDS.toNanos(1000);
+
+            System.out.println(name + ": " + values + ",");
+            System.out.println(name + ": " + Duration.ofNanos(time).toMillis() + " ms");
+        } finally {
+            access.close();
         }
-        int size;
-        while ((size = queueSize(consumer)) >= 64) {
-            values.add(size);
-            System.out.println(name + " :Sleep (Consumer Queue: " + size + ")");
-            Thread.sleep(1000);
+    }
+
+    /**
+     * Inserts the same workload like {@link HeavyConsumerTest#generateData(DatabaseAccess, String)} in a
+     * {@link BulkLoad}. The results are not comparable with the consumer graphs, which are measured without it.
+     */
+    private static void generateBulkData(DatabaseAccess access, String name) throws Exception {
+        try {
+            System.out.println("Start bulk load " + name);
+            List<Integer> values = new LinkedList<>();
+            TableUtils.dropTable(access.getConnectionSource(), Block.class, true);
+            long time = System.nanoTime();
+            // The indexes are built after the load
+            try (BulkLoad<Block> load = access.beginBulkLoad(Block.class)) {
+                DatabaseConsumer<Block> consumer = load.createConsumer(64, 25L);
+                // An own thread, so the last rows are inserted before the session is finished
+                consumer.start();
+                Thread consumerThread = new Thread(consumer, "bulk-" + name);
+                consumerThread.start();
+                try {
+                    for (int i = 0, j = 0; i < SAMPLE_SIZE; ++i, ++j) {
+                        consumer.consume(generateBlock());
+                        if (j == 1500) {
+                            int size = queueSize(consumer);
+                            values.add(size);
+                            System.out.println(name + " :Sleep (i = " + i + ", Consumer Queue: " + size + ")");
+                            Thread.sleep(900L + random.nextInt(100));
+                            j = 0;
+                        }
+                    }
+                } finally {
+                    consumer.stop();
+                    consumerThread.join();
+                }
+            }
+            time = System.nanoTime() - (time);
+            time = time - TimeUnit.MILLISECONDS.toNanos(1000);
+
+            System.out.println(name + " (bulk load): " + values + ",");
+            System.out.println(name + " (bulk load): " + Duration.ofNanos(time).toMillis() + " ms");
+        } finally {
+            access.close();
         }
-        consumer.flush();
-        consumer.stop();
-        time = System.nanoTime() - (time);
-        time = time - TimeUnit.MILLISECONDS.toNanos(1000);
+    }
 
-        System.out.println(name + ": " + values + ",");
-        System.out.println(name + ": " + Duration.ofNanos(time).toMillis() + " ms");
-        access.close();
+    /**
+     * Fills the Block table with random blocks as fast as possible.
+     */
+    static void populate(DatabaseAccess access, int count) throws Exception {
+        TableUtils.dropTable(access.getConnectionSource(), Block.class, true);
+        try (BulkLoad<Block> load = access.beginBulkLoad(Block.class)) {
+            List<Block> blocks = new ArrayList<>(1024);
+            for (int i = 0; i < count; ++i) {
+                blocks.add(generateBlock());
+                if (blocks.size() == 1024) {
+                    load.insert(blocks);
+                    blocks.clear();
+                }
+            }
+            load.insert(blocks);
+        }
     }
 
     private static void test(Map<Integer, Integer> testValues, ConnectionSupplier supplier, boolean onlyResult) throws Exception {
@@ -146,19 +220,8 @@ public class HeavyConsumerTest {
     }
 
 
-    static Field field;
-
-    static {
-        try {
-            field = DatabaseConsumer.class.getDeclaredField("queue");
-            field.setAccessible(true);
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private static <T> int queueSize(DatabaseConsumer<T> consumer) throws Exception {
-        return ((BlockingQueue<T>) field.get(consumer)).size();
+    private static <T> int queueSize(DatabaseConsumer<T> consumer) {
+        return consumer.getQueueSize();
     }
 
     private static final String[] extraData = {
@@ -289,17 +352,46 @@ public class HeavyConsumerTest {
     private static Random random = new Random();
 
     private static Block generateBlock() {
+        return generateBlock(random, 0, 2400, 0);
+    }
+
+    /**
+     * Generates a random block change.
+     *
+     * @param random          The source of the random values, seeded for a reproducible workload
+     * @param worldSize       The blocks are placed inside a square of this size around the origin. Zero for the whole
+     *                        integer range
+     * @param extraDataEvery  One in this many blocks gets extra data like a sign text
+     * @param extraDataLength The length of the extra data. Zero for the texts of real signs
+     * @return The new block
+     */
+    static Block generateBlock(Random random, int worldSize, int extraDataEvery, int extraDataLength) {
         Block block = new Block();
-        block.blockX = random.nextInt(Integer.MAX_VALUE) * (random.nextBoolean() ? 1 : -1);
+        if (worldSize > 0) {
+            block.blockX = random.nextInt(worldSize) - worldSize / 2;
+            block.blockZ = random.nextInt(worldSize) - worldSize / 2;
+        } else {
+            block.blockX = random.nextInt(Integer.MAX_VALUE) * (random.nextBoolean() ? 1 : -1);
+            block.blockZ = random.nextInt(Integer.MAX_VALUE) * (random.nextBoolean() ? 1 : -1);
+        }
         block.blockY = random.nextInt(256);
-        block.blockZ = random.nextInt(Integer.MAX_VALUE) * (random.nextBoolean() ? 1 : -1);
         block.timestamp = System.currentTimeMillis();
         block.fromId = random.nextInt(256);
         block.toId = random.nextInt(256);
         block.fromData = random.nextInt(16);
         block.toData = random.nextInt(16);
         block.reason = REASONS[random.nextInt(REASONS.length)];
-        block.extraData = (random.nextInt(2400) == 0) ? extraData[random.nextInt(extraData.length)] : "";
+        block.extraData = "";
+        if (extraDataEvery > 0 && random.nextInt(extraDataEvery) == 0) {
+            if (extraDataLength > 0) {
+                char[] text = new char[extraDataLength];
+                for (int i = 0; i < text.length; ++i)
+                    text[i] = (char) ('a' + random.nextInt(26));
+                block.extraData = new String(text);
+            } else {
+                block.extraData = extraData[random.nextInt(extraData.length)];
+            }
+        }
         return block;
     }
 
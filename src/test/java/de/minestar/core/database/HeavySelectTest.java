@@ -40,14 +40,38 @@ public class HeavySelectTest {
 
     private static final int SAMPLE_SIZE = (int) Math.pow(2, 10);
     private static final int SAMPLE_ROUNDS = 5;
+    private static final int MEMORY_BLOCKS = (int) Math.pow(2, 18);
 
     public static void main(String[] args) throws Exception {
         List<Selection> sampleSelections = generateSampleLocations();
 
-        ConnectionSupplier mysqlDbConnection = new MySqlConnection("192.168.1.29", 3306, "minestar_therock", "consumertest", "test");
         System.out.println("Rounds:\t\t" + SAMPLE_ROUNDS);
         System.out.println("Sample Size:\t" + SAMPLE_SIZE);
         System.out.println("----------------------------");
+
+        try (InMemoryConnection memoryConnection = new InMemoryConnection()) {
+            DatabaseAccess access = new DatabaseAccess(memoryConnection);
+            HeavyConsumerTest.populate(access, MEMORY_BLOCKS);
+            access.close();
+
+            // Warm up
+            System.out.println("Run in memory warm up");
+            test(memoryConnection, sampleSelections);
+            test(memoryConnection, sampleSelections);
+
+            System.out.println("Run in memory Tests");
+            Map<Integer, List<Long>> memoryTimes = new HashMap<>();
+            for (int i = 0; i < SAMPLE_ROUNDS; ++i) {
+                memoryTimes.put(i, test(memoryConnection, sampleSelections));
+            }
+            System.out.println("In memory Results:");
+            System.out.println("Mean: " + calculateMeanTimes(memoryTimes));
+            System.out.println("Median: " + calculateMedianTimes(memoryTimes));
+        }
+        if (HeavyConsumerTest.SERVER_HOST == null)
+            return;
+
+        ConnectionSupplier mysqlDbConnection = new MySqlConnection(HeavyConsumerTest.SERVER_HOST, 3306, "minestar_therock", "consumertest", "test");
         // Warm up
         System.out.println("Run MySQL warm up");
         test(mysqlDbConnection, sampleSelections);
@@ -59,7 +83,7 @@ public class HeavySelectTest {
             mySQLTimes.put(i, test(mysqlDbConnection, sampleSelections));
         }
 
-        ConnectionSupplier mariaDbConnection = new MariaDbConnection("192.168.1.29", 3307, "minestar_therock", "consumertest", "test");
+        ConnectionSupplier mariaDbConnection = new MariaDbConnection(HeavyConsumerTest.SERVER_HOST, 3307, "minestar_therock", "consumertest", "test");
 
         // Warm up
         System.out.println("Run MariaDB warm up");
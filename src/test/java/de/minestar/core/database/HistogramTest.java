@@ -0,0 +1,93 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketTest() {
+        // The buckets are ordered and cover every value
+        long previousUpperBound = -1L;
+        for (int bucket = 0; bucket < 488; ++bucket) {
+            long upperBound = Histogram.upperBoundOf(bucket);
+            Assert.assertTrue(upperBound > previousUpperBound);
+            Assert.assertEquals(bucket, Histogram.bucketOf(previousUpperBound + 1L));
+            Assert.assertEquals(bucket, Histogram.bucketOf(upperBound));
+            previousUpperBound = upperBound;
+        }
+        Assert.assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void countAtMostTest() {
+        Histogram histogram = new Histogram();
+        histogram.record(100L);
+        histogram.record(101L);
+        histogram.record(110L);
+
+        // 100 and 101 share a bucket, which ends above 100
+        long edge = Histogram.bucketEdgeAtLeast(100L);
+        Assert.assertEquals(103L, edge);
+        Assert.assertEquals(0L, histogram.snapshot().getCountAtMost(100L));
+        Assert.assertEquals(2L, histogram.snapshot().getCountAtMost(edge));
+        Assert.assertEquals(3L, histogram.snapshot().getCountAtMost(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentileTest() throws Exception {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0L, histogram.snapshot().getValueAtPercentile(99.0));
+
+        // Record concurrently
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= 10_000; ++i)
+                    histogram.record(i);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(40_000L, snapshot.getCount());
+        Assert.assertEquals(10_000L, snapshot.getMax());
+        Assert.assertEquals(5000.5, snapshot.getMean(), 0.001);
+        // The relative error is at most 12.5%
+        Assert.assertEquals(5000.0, snapshot.getValueAtPercentile(50.0), 5000.0 * 0.125);
+        Assert.assertEquals(9900.0, snapshot.getValueAtPercentile(99.0), 9900.0 * 0.125);
+        Assert.assertEquals(10_000L, snapshot.getValueAtPercentile(100.0));
+        Assert.assertEquals(1L, snapshot.getValueAtPercentile(0.0));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class InMemoryConnectionTest {
+
+    @Test
+    public void consumerTest() throws Exception {
+        try (InMemoryConnection connection = new InMemoryConnection()) {
+            DatabaseAccess access = new DatabaseAccess(connection);
+            TableUtils.createTableIfNotExists(access.getConnectionSource(), Selection.class);
+            Dao<Selection, Integer> dao = access.getDao(Selection.class);
+
+            // Read concurrently to the writes
+            AtomicBoolean reading = new AtomicBoolean(true);
+            AtomicReference<Exception> readFailure = new AtomicReference<>();
+            Thread reader = new Thread(() -> {
+                while (reading.get()) {
+                    try {
+                        dao.countOf();
+                    } catch (SQLException e) {
+                        readFailure.set(e);
+                        return;
+                    }
+                }
+            });
+            reader.start();
+
+            DatabaseConsumer<Selection> consumer = new DatabaseConsumer<>(access, Selection.class);
+            for (int i = 0; i < 10_000; ++i) {
+                consumer.consume(new Selection("player" + i % 20, i));
+            }
+            consumer.flush();
+            reading.set(false);
+            reader.join();
+
+            Assert.assertNull(readFailure.get());
+            Assert.assertEquals(10_000L, dao.countOf());
+
+            // The database survives a reconnect
+            access.reconnect();
+            Assert.assertEquals(10_000L, access.<Dao<Selection, Integer>, Selection>getDao(Selection.class).countOf());
+            access.close();
+        }
+    }
+
+    @Test
+    public void closeTest() throws Exception {
+        try (InMemoryConnection connection = new InMemoryConnection("closeTest")) {
+            DatabaseAccess access = new DatabaseAccess(connection);
+            TableUtils.createTableIfNotExists(access.getConnectionSource(), Selection.class);
+            Assert.assertTrue(access.getDao(Selection.class).isTableExists());
+            access.close();
+        }
+        // A closed database is dropped
+        try (InMemoryConnection connection = new InMemoryConnection("closeTest")) {
+            DatabaseAccess access = new DatabaseAccess(connection);
+            Assert.assertFalse(access.getDao(Selection.class).isTableExists());
+            access.close();
+        }
+    }
+
+    @DatabaseTable
+    static class Selection {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String player;
+
+        @DatabaseField
+        private int blockX;
+
+        Selection() {
+            // Empty constructor for ORMLite
+        }
+
+        Selection(String player, int blockX) {
+            this.player = player;
+            this.blockX = blockX;
+        }
+    }
+}
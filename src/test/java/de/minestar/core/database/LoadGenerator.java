@@ -0,0 +1,455 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.table.TableUtils;
+import jodd.json.JsonParser;
+import jodd.json.JsonSerializer;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates a reproducible load of the block changes of {@link HeavyConsumerTest} against one or more databases and
+ * writes the results as JSON and HTML reports. The queue depth of the consumer and the latency of concurrent cuboid
+ * selects are recorded as {@link Histogram}s, the batch sizes and flush latencies are taken from the
+ * {@link ConsumerMetrics}. Usage:
+ * <code>
+ * <pre>
+ * LoadGenerator run [config.json] [output directory]
+ * LoadGenerator compare &lt;report.html&gt; &lt;result.json&gt;...
+ * </pre>
+ * </code>
+ * The first command runs the load against every target one after another and writes <code>&lt;name&gt;.json</code>
+ * and <code>&lt;name&gt;.html</code> into the output directory (default <code>build/reports/load</code>). The second
+ * one combines the JSON results of several runs, for example of two releases, into one HTML report. All keys of the
+ * config are optional, the targets are {@link DatabaseConfig}s:
+ * <code>
+ * <pre>
+ * {
+ *     "name": "baseline",
+ *     "seed": 42,
+ *     "durationSeconds": 30,
+ *     "producers": 1,
+ *     "rate": 1500,
+ *     "burst": { "periodSeconds": 10, "lengthSeconds": 2, "factor": 5 },
+ *     "worldSize": 4096,
+ *     "extraDataEvery": 2400,
+ *     "extraDataLength": 0,
+ *     "consumer": { "flushSize": 64, "sleepTimeMillis": 25 },
+ *     "selects": { "perSecond": 10, "cuboidSize": 64 },
+ *     "targets": {
+ *         "memory": { "dialect": "memory" },
+ *         "mysql": { "host": "localhost", "database": "test", "username": "test", "password": "test" }
+ *     }
+ * }
+ * </pre>
+ * </code>
+ * The rate is the number of blocks per second of every producer, a rate of zero produces as fast as possible. During
+ * the last seconds of every burst period the rate is multiplied by the factor. One in <code>extraDataEvery</code>
+ * blocks gets extra data of <code>extraDataLength</code> characters (at most 255) or a real sign text.
+ */
+public class LoadGenerator {
+
+    private static final long QUEUE_SAMPLE_MILLIS = 100L;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    private final Map<String, Object> config;
+    private final long seed;
+    private final long durationNanos;
+    private final int producers;
+    private final int rate;
+    private final int burstPeriodSeconds;
+    private final int burstLengthSeconds;
+    private final int burstFactor;
+    private final int worldSize;
+    private final int extraDataEvery;
+    private final int extraDataLength;
+    private final int flushSize;
+    private final long sleepTimeMillis;
+    private final int selectsPerSecond;
+    private final int cuboidSize;
+
+    /**
+     * @param config The parsed config, see {@link LoadGenerator}
+     */
+    public LoadGenerator(Map<String, Object> config) {
+        this.config = config;
+        this.seed = getLong(config, "seed", 42L);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(getLong(config, "durationSeconds", 30L));
+        this.producers = (int) getLong(config, "producers", 1L);
+        this.rate = (int) getLong(config, "rate", 1500L);
+        Map<String, Object> burst = getObject(config, "burst");
+        this.burstPeriodSeconds = (int) getLong(burst, "periodSeconds", 0L);
+        this.burstLengthSeconds = (int) getLong(burst, "lengthSeconds", 0L);
+        this.burstFactor = (int) getLong(burst, "factor", 1L);
+        this.worldSize = (int) getLong(config, "worldSize", 4096L);
+        this.extraDataEvery = (int) getLong(config, "extraDataEvery", 2400L);
+        this.extraDataLength = (int) getLong(config, "extraDataLength", 0L);
+        Map<String, Object> consumer = getObject(config, "consumer");
+        this.flushSize = (int) getLong(consumer, "flushSize", 64L);
+        this.sleepTimeMillis = getLong(consumer, "sleepTimeMillis", 25L);
+        Map<String, Object> selects = getObject(config, "selects");
+        this.selectsPerSecond = (int) getLong(selects, "perSecond", 10L);
+        this.cuboidSize = (int) getLong(selects, "cuboidSize", 64L);
+        if (burstLengthSeconds > burstPeriodSeconds)
+            throw new IllegalArgumentException("The burst is longer than its period!");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("compare")) {
+            List<Map<String, Object>> runs = new ArrayList<>();
+            for (int i = 2; i < args.length; ++i)
+                runs.add(readJson(Paths.get(args[i])));
+            Path report = Paths.get(args[1]);
+            writeHtml(report, runs);
+            System.out.println("Wrote " + report.toAbsolutePath());
+            return;
+        }
+        if (args.length == 0 || !args[0].equals("run")) {
+            System.out.println("Usage: LoadGenerator run [config.json] [output directory]");
+            System.out.println("       LoadGenerator compare <report.html> <result.json>...");
+            return;
+        }
+        Map<String, Object> config = args.length > 1 ? readJson(Paths.get(args[1])) : Collections.emptyMap();
+        Path outputDirectory = Paths.get(args.length > 2 ? args[2] : "build/reports/load");
+        Map<String, Object> result = new LoadGenerator(config).run();
+        for (Path file : writeReports(outputDirectory, result))
+            System.out.println("Wrote " + file.toAbsolutePath());
+    }
+
+    /**
+     * Runs the load against every target one after another.
+     *
+     * @return The result containing the config and one entry per target
+     * @throws Exception A target could not be used
+     */
+    public Map<String, Object> run() throws Exception {
+        Map<String, Object> targets = getObject(config, "targets");
+        if (targets.isEmpty())
+            targets = Collections.singletonMap("memory", Collections.singletonMap("dialect", "memory"));
+
+        List<Map<String, Object>> targetResults = new ArrayList<>();
+        for (Map.Entry<String, Object> target : targets.entrySet()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> targetValues = (Map<String, Object>) target.getValue();
+            DatabaseConfig targetConfig = DatabaseConfig.fromJson(targetValues, "target " + target.getKey());
+            System.out.println("Run " + target.getKey());
+            targetResults.add(runTarget(target.getKey(), targetConfig));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", config.containsKey("name") ? config.get("name") : "load");
+        result.put("started", System.currentTimeMillis());
+        result.put("config", config);
+        result.put("targets", targetResults);
+        return result;
+    }
+
+    private Map<String, Object> runTarget(String label, DatabaseConfig target) throws Exception {
+        ConnectionSupplier supplier = target.createSupplier();
+        DatabaseAccess access = new DatabaseAccess(supplier, target.createReplicaSuppliers());
+        target.applyTo(access);
+        try {
+            TableUtils.dropTable(access.getConnectionSource(), HeavyConsumerTest.Block.class, true);
+            TableUtils.createTable(access.getConnectionSource(), HeavyConsumerTest.Block.class);
+
+            Histogram queueDepth = new Histogram();
+            Histogram selectLatency = new Histogram();
+            List<Integer> queueSeries = Collections.synchronizedList(new ArrayList<>());
+
+            DatabaseConsumer<HeavyConsumerTest.Block> consumer = new DatabaseConsumer<>(access, HeavyConsumerTest.Block.class, flushSize, sleepTimeMillis);
+            consumer.start();
+            Thread consumerThread = new Thread(consumer, "LoadGenerator-consumer");
+            consumerThread.start();
+
+            // The deepest queue of every second is shown in the chart
+            AtomicLong deepestQueue = new AtomicLong();
+            AtomicLong samples = new AtomicLong();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> {
+                int size = consumer.getQueueSize();
+                queueDepth.record(size);
+                deepestQueue.accumulateAndGet(size, Math::max);
+                if (samples.incrementAndGet() % (1000L / QUEUE_SAMPLE_MILLIS) == 0L)
+                    queueSeries.add((int) deepestQueue.getAndSet(0L));
+            }, 0L, QUEUE_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            long deadline = start + durationNanos;
+            AtomicLong produced = new AtomicLong();
+            ExecutorService threads = Executors.newFixedThreadPool(producers + 1);
+            for (int i = 0; i < producers; ++i) {
+                Random random = new Random(seed + i);
+                threads.submit(() -> produce(consumer, random, start, deadline, produced));
+            }
+            threads.submit(() -> select(access, new Random(seed - 1L), deadline, selectLatency));
+            threads.shutdown();
+            threads.awaitTermination(durationNanos + TimeUnit.MINUTES.toNanos(1L), TimeUnit.NANOSECONDS);
+
+            // The consumer persists its queue before it stops
+            long drainStart = System.nanoTime();
+            consumer.stop();
+            consumerThread.join();
+            long drainNanos = System.nanoTime() - drainStart;
+            sampler.shutdown();
+            sampler.awaitTermination(1L, TimeUnit.SECONDS);
+
+            long persisted = access.getDao(HeavyConsumerTest.Block.class).countOf();
+            ConsumerMetrics.Snapshot metrics = consumer.getMetrics().snapshot();
+            long totalNanos = System.nanoTime() - start;
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("target", label);
+            result.put("dialect", target.getDialect().name().toLowerCase());
+            result.put("produced", produced.get());
+            result.put("persisted", persisted);
+            result.put("failures", metrics.getFailures());
+            result.put("drainMillis", TimeUnit.NANOSECONDS.toMillis(drainNanos));
+            result.put("throughput", persisted * TimeUnit.SECONDS.toNanos(1L) / Math.max(1L, totalNanos));
+            result.put("queueDepth", summary(queueDepth.snapshot(), 1L));
+            result.put("batchSize", summary(metrics.getBatchSize(), 1L));
+            result.put("flushMillis", summary(metrics.getFlushLatency(), TimeUnit.MILLISECONDS.toNanos(1L)));
+            result.put("selectMillis", summary(selectLatency.snapshot(), TimeUnit.MILLISECONDS.toNanos(1L)));
+            result.put("queueSeries", new ArrayList<>(queueSeries));
+            return result;
+        } finally {
+            access.close();
+            if (supplier instanceof AutoCloseable)
+                ((AutoCloseable) supplier).close();
+        }
+    }
+
+    private void produce(DatabaseConsumer<HeavyConsumerTest.Block> consumer, Random random, long start, long deadline, AtomicLong produced) {
+        long count = 0L;
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            long due = rate <= 0 ? count + 1024L : blocksDue(now - start);
+            for (; count < due; ++count)
+                consumer.consume(HeavyConsumerTest.generateBlock(random, worldSize, extraDataEvery, extraDataLength));
+            if (rate > 0)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1L));
+        }
+        produced.addAndGet(count);
+    }
+
+    /**
+     * @param elapsedNanos The time since the start
+     * @return The number of blocks a producer must have produced until now
+     */
+    long blocksDue(long elapsedNanos) {
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1L);
+        double burstSeconds = 0.0;
+        if (burstPeriodSeconds > 0 && burstLengthSeconds > 0) {
+            long periods = (long) (seconds / burstPeriodSeconds);
+            double remainder = seconds - periods * burstPeriodSeconds;
+            // The burst is at the end of every period
+            burstSeconds = periods * burstLengthSeconds + Math.max(0.0, remainder - (burstPeriodSeconds - burstLengthSeconds));
+        }
+        return (long) (rate * (seconds + burstSeconds * (burstFactor - 1)));
+    }
+
+    private void select(DatabaseAccess access, Random random, long deadline, Histogram latency) {
+        if (selectsPerSecond <= 0)
+            return;
+        try {
+            Dao<HeavyConsumerTest.Block, ?> dao = access.getReadDao(HeavyConsumerTest.Block.class);
+            QueryBuilder<HeavyConsumerTest.Block, ?> queryBuilder = dao.queryBuilder();
+            queryBuilder.where()
+                    .between("blockX", new SelectArg(), new SelectArg())
+                    .and()
+                    .between("blockY", new SelectArg(), new SelectArg())
+                    .and()
+                    .between("blockZ", new SelectArg(), new SelectArg());
+            PreparedQuery<HeavyConsumerTest.Block> query = queryBuilder.prepare();
+
+            long interval = TimeUnit.SECONDS.toNanos(1L) / selectsPerSecond;
+            int range = Math.max(1, worldSize > 0 ? worldSize : Integer.MAX_VALUE);
+            for (long next = System.nanoTime(); next < deadline; next += interval) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                int x = random.nextInt(range) - range / 2;
+                int y = random.nextInt(256);
+                int z = random.nextInt(range) - range / 2;
+                query.setArgumentHolderValue(0, x);
+                query.setArgumentHolderValue(1, x + cuboidSize);
+                query.setArgumentHolderValue(2, y);
+                query.setArgumentHolderValue(3, y + cuboidSize);
+                query.setArgumentHolderValue(4, z);
+                query.setArgumentHolderValue(5, z + cuboidSize);
+                long time = System.nanoTime();
+                dao.query(query);
+                latency.record(System.nanoTime() - time);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Map<String, Object> summary(Histogram.Snapshot snapshot, long unit) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", snapshot.getCount());
+        summary.put("mean", snapshot.getMean() / unit);
+        for (int i = 0; i < PERCENTILES.length; ++i)
+            summary.put(PERCENTILE_NAMES[i], snapshot.getValueAtPercentile(PERCENTILES[i]) / (double) unit);
+        summary.put("max", snapshot.getMax() / (double) unit);
+        return summary;
+    }
+
+    /**
+     * Writes the result of a run as <code>&lt;name&gt;.json</code> and <code>&lt;name&gt;.html</code>.
+     *
+     * @param outputDirectory The directory of the reports. Is created if necessary
+     * @param result          The result of {@link LoadGenerator#run()}
+     * @return The written files
+     * @throws IOException The reports could not be written
+     */
+    public static List<Path> writeReports(Path outputDirectory, Map<String, Object> result) throws IOException {
+        Files.createDirectories(outputDirectory);
+        Path json = outputDirectory.resolve(result.get("name") + ".json");
+        Files.write(json, new JsonSerializer().deep(true).serialize(result).getBytes(Charset.forName("UTF8")));
+        Path html = outputDirectory.resolve(result.get("name") + ".html");
+        writeHtml(html, Collections.singletonList(result));
+        return Arrays.asList(json, html);
+    }
+
+    private static void writeHtml(Path file, List<Map<String, Object>> runs) throws IOException {
+        // Every target of every run is one series
+        List<String> labels = new ArrayList<>();
+        List<Map<String, Object>> targets = new ArrayList<>();
+        for (Map<String, Object> run : runs) {
+            for (Object target : (List<?>) run.get("targets")) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> targetResult = (Map<String, Object>) target;
+                labels.add(runs.size() == 1 ? String.valueOf(targetResult.get("target")) : run.get("name") + " " + targetResult.get("target"));
+                targets.add(targetResult);
+            }
+        }
+
+        StringBuilder html = new StringBuilder();
+        html.append("<html>\n<head>\n    <meta charset=\"utf-8\">\n    <link href=\"c3.min.css\" rel=\"stylesheet\">\n");
+        html.append("    <style>td, th { padding: 2px 8px; text-align: right; }</style>\n</head>\n<body>\n");
+        html.append("<h4>Summary</h4>\n<table>\n<tr><th>Target</th><th>Produced</th><th>Persisted</th><th>Rows/s</th><th>Drain ms</th>");
+        html.append("<th>Queue p99</th><th>Flush p99 ms</th><th>Select p99 ms</th></tr>\n");
+        for (int i = 0; i < targets.size(); ++i) {
+            Map<String, Object> target = targets.get(i);
+            html.append("<tr><th>").append(escape(labels.get(i))).append("</th>");
+            for (Object value : new Object[]{target.get("produced"), target.get("persisted"), target.get("throughput"), target.get("drainMillis"),
+                    percentile(target, "queueDepth", "p99"), percentile(target, "flushMillis", "p99"), percentile(target, "selectMillis", "p99")})
+                html.append("<td>").append(value).append("</td>");
+            html.append("</tr>\n");
+        }
+        html.append("</table>\n");
+
+        String[] charts = {"queueSeries", "queueDepth", "batchSize", "flushMillis", "selectMillis"};
+        String[] titles = {"Deepest queue per second", "Queue depth", "Batch size", "Flush latency (ms)", "Select latency (ms)"};
+        for (int i = 0; i < charts.length; ++i)
+            html.append("<h4>").append(titles[i]).append("</h4>\n<div id=\"").append(charts[i]).append("\"></div>\n");
+
+        html.append("<script src=\"http://d3js.org/d3.v3.min.js\" charset=\"utf-8\"></script>\n");
+        html.append("<script src=\"c3.min.js\" charset=\"utf-8\"></script>\n<script>\n");
+        JsonSerializer serializer = new JsonSerializer().deep(true);
+
+        List<List<Object>> seriesColumns = new ArrayList<>();
+        for (int i = 0; i < targets.size(); ++i) {
+            List<Object> column = new ArrayList<>();
+            column.add(labels.get(i));
+            column.addAll((List<?>) targets.get(i).get("queueSeries"));
+            seriesColumns.add(column);
+        }
+        html.append("c3.generate({bindto: '#queueSeries', data: {columns: ").append(serializer.serialize(seriesColumns)).append("}});\n");
+
+        List<String> categories = new ArrayList<>(Arrays.asList(PERCENTILE_NAMES));
+        categories.add("max");
+        for (int c = 1; c < charts.length; ++c) {
+            List<List<Object>> columns = new ArrayList<>();
+            for (int i = 0; i < targets.size(); ++i) {
+                List<Object> column = new ArrayList<>();
+                column.add(labels.get(i));
+                for (String category : categories)
+                    column.add(percentile(targets.get(i), charts[c], category));
+                columns.add(column);
+            }
+            html.append("c3.generate({bindto: '#").append(charts[c]).append("', data: {type: 'bar', columns: ").append(serializer.serialize(columns))
+                    .append("}, axis: {x: {type: 'category', categories: ").append(serializer.serialize(categories)).append("}}});\n");
+        }
+        html.append("</script>\n</body>\n</html>\n");
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, html.toString().getBytes(Charset.forName("UTF8")));
+        // The charts use the c3 files of the docs
+        for (String c3File : new String[]{"c3.min.js", "c3.min.css"}) {
+            Path source = Paths.get("docs", c3File);
+            if (Files.exists(source))
+                Files.copy(source, file.toAbsolutePath().getParent().resolve(c3File), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Object percentile(Map<String, Object> target, String histogram, String name) {
+        Object summary = target.get(histogram);
+        return summary instanceof Map ? ((Map<?, ?>) summary).get(name) : null;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static Map<String, Object> readJson(Path file) throws IOException {
+        return new JsonParser().parse(new String(Files.readAllBytes(file), Charset.forName("UTF8")));
+    }
+
+    private static long getLong(Map<String, Object> values, String key, long defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getObject(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import jodd.json.JsonParser;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class LoadGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void burstTest() {
+        Map<String, Object> config = new JsonParser().parse("{\"rate\": 100, \"burst\": {\"periodSeconds\": 10, \"lengthSeconds\": 2, \"factor\": 5}}");
+        LoadGenerator generator = new LoadGenerator(config);
+        Assert.assertEquals(800L, generator.blocksDue(TimeUnit.SECONDS.toNanos(8L)));
+        // Two burst seconds with five times the rate
+        Assert.assertEquals(1800L, generator.blocksDue(TimeUnit.SECONDS.toNanos(10L)));
+        Assert.assertEquals(2300L, generator.blocksDue(TimeUnit.SECONDS.toNanos(15L)));
+    }
+
+    @Test
+    public void reportTest() throws Exception {
+        Map<String, Object> config = new JsonParser().parse("{\"name\": \"smoke\", \"durationSeconds\": 1, \"producers\": 2, \"rate\": 2000, " +
+                "\"worldSize\": 256, \"extraDataEvery\": 10, \"extraDataLength\": 100, \"selects\": {\"perSecond\": 50}}");
+        Map<String, Object> result = new LoadGenerator(config).run();
+        List<Path> files = LoadGenerator.writeReports(folder.getRoot().toPath(), result);
+
+        Map<String, Object> json = new JsonParser().parse(new String(Files.readAllBytes(files.get(0)), Charset.forName("UTF8")));
+        Map<?, ?> memory = (Map<?, ?>) ((List<?>) json.get("targets")).get(0);
+        Assert.assertEquals("memory", memory.get("target"));
+        Assert.assertEquals(((Number) memory.get("produced")).longValue(), ((Number) memory.get("persisted")).longValue());
+        Assert.assertTrue(((Number) memory.get("produced")).longValue() >= 3000L);
+        Assert.assertTrue(((Number) ((Map<?, ?>) memory.get("flushMillis")).get("count")).longValue() > 0L);
+        Assert.assertTrue(((Number) ((Map<?, ?>) memory.get("selectMillis")).get("count")).longValue() > 0L);
+
+        String html = new String(Files.readAllBytes(files.get(1)), Charset.forName("UTF8"));
+        Assert.assertTrue(html.contains("#flushMillis"));
+    }
+}
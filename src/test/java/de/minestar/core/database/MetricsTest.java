@@ -0,0 +1,159 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void consumerMetricsTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(folder.newFile()));
+        TableUtils.createTable(access.getConnectionSource(), Visit.class);
+        DatabaseConsumer<Visit> consumer = new DatabaseConsumer<>(access, Visit.class);
+        AtomicInteger flushes = new AtomicInteger();
+        consumer.getMetrics().addListener(new MetricsListener() {
+            @Override
+            public void onFlush(Class<?> entityClass, int batchSize, long latencyNanos) {
+                flushes.incrementAndGet();
+            }
+        });
+
+        ConsumerMetrics.Snapshot before = consumer.getMetrics().snapshot();
+        for (int i = 0; i < 300; ++i) {
+            consumer.consume(new Visit("player" + i));
+        }
+        Assert.assertEquals(300, consumer.getMetrics().snapshot().getQueueSize());
+        consumer.flush();
+
+        ConsumerMetrics.Snapshot after = consumer.getMetrics().snapshot();
+        Assert.assertEquals(Visit.class, after.getEntityClass());
+        Assert.assertEquals(0, after.getQueueSize());
+        Assert.assertEquals(300L, after.getEnqueued());
+        Assert.assertEquals(300L, after.getPersisted());
+        // The buffer holds at most 256 objects
+        Assert.assertEquals(2L, after.getFlushes());
+        Assert.assertEquals(2, flushes.get());
+        Assert.assertEquals(256L, after.getBatchSize().getMax());
+        Assert.assertEquals(2L, after.getFlushLatency().getCount());
+        Assert.assertEquals(0L, after.getFailures());
+        Assert.assertEquals(25L, after.getSleepTimeMillis());
+        Assert.assertTrue(after.getEnqueueRate(before) > 0.0);
+        Assert.assertTrue(after.getFlushRate(before) > 0.0);
+
+        // A missing table fails the flush
+        DatabaseConsumer<Missing> failing = new DatabaseConsumer<>(access, Missing.class);
+        AtomicInteger failedElements = new AtomicInteger();
+        failing.getMetrics().addListener(new MetricsListener() {
+            @Override
+            public void onFlushFailure(Class<?> entityClass, int batchSize, Exception cause) {
+                failedElements.addAndGet(batchSize);
+            }
+        });
+        for (int i = 0; i < 5; ++i) {
+            failing.consume(new Missing());
+        }
+        failing.getMetrics().addListener(new MetricsListener() {
+            @Override
+            public void onFlushFailure(Class<?> entityClass, int batchSize, Exception cause) {
+                throw new IllegalStateException("Broken listener");
+            }
+        });
+        failing.flush();
+        Assert.assertEquals(1L, failing.getMetrics().snapshot().getFailures());
+        Assert.assertEquals(5L, failing.getMetrics().snapshot().getFailedElements());
+        Assert.assertEquals(5, failedElements.get());
+        access.close();
+    }
+
+    @Test
+    public void poolMetricsTest() throws Exception {
+        for (SqliteSettings settings : new SqliteSettings[]{null, new SqliteSettings()}) {
+            DatabaseAccess access = new DatabaseAccess(new SqliteConnection(folder.newFile(), settings));
+            TableUtils.createTable(access.getConnectionSource(), Visit.class);
+            access.getDao(Visit.class).create(new Visit("Meldanor"));
+            access.getDao(Visit.class).countOf();
+
+            // A throwing listener neither leaks the connection nor the write lock
+            MetricsListener throwing = new MetricsListener() {
+                @Override
+                public void onAcquire(long waitNanos) {
+                    throw new IllegalStateException("Broken listener");
+                }
+            };
+            access.getPoolMetrics().addListener(throwing);
+            access.getDao(Visit.class).create(new Visit("Meldanor"));
+            access.getDao(Visit.class).create(new Visit("Meldanor"));
+            access.getPoolMetrics().removeListener(throwing);
+
+            PoolMetrics.Snapshot snapshot = access.getPoolMetrics().snapshot();
+            Assert.assertTrue(snapshot.getAcquisitions() >= 3L);
+            Assert.assertEquals(0L, snapshot.getInUse());
+            Assert.assertEquals(snapshot.getAcquisitions(), snapshot.getAcquireWait().getCount());
+
+            // The metrics are kept over a reconnect
+            access.reconnect();
+            access.getDao(Visit.class).countOf();
+            Assert.assertTrue(access.getPoolMetrics().snapshot().getAcquisitions() > snapshot.getAcquisitions());
+            Assert.assertEquals(0L, access.getPoolMetrics().snapshot().getInUse());
+            access.close();
+        }
+    }
+
+    @DatabaseTable
+    static class Visit {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String player;
+
+        Visit() {
+            // Empty constructor for ORMLite
+        }
+
+        Visit(String player) {
+            this.player = player;
+        }
+    }
+
+    @DatabaseTable
+    static class Missing {
+        @DatabaseField(generatedId = true)
+        private int id;
+    }
+}
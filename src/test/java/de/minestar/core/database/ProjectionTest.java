@@ -0,0 +1,150 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+public class ProjectionTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void projectionTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), Measurement.class);
+        Dao<Measurement, Integer> dao = access.getDao(Measurement.class);
+
+        final int sampleSize = 2500;
+        long expectedTimestamps = 0L;
+        long expectedX = 0L;
+        double expectedWeights = 0.0;
+        dao.callBatchTasks(() -> {
+            for (int i = 0; i < sampleSize; ++i) {
+                dao.create(new Measurement(i % 100 - 50, 1000L * i, i / 4.0));
+            }
+            return null;
+        });
+        for (int i = 0; i < sampleSize; ++i) {
+            expectedX += i % 100 - 50;
+            expectedTimestamps += 1000L * i;
+            expectedWeights += i / 4.0;
+        }
+
+        PreparedQuery<Measurement> query = dao.queryBuilder().selectColumns("x", "timestamp", "weight").prepare();
+        for (ProjectionChunk chunk : new ProjectionChunk[]{
+                ProjectionChunk.onHeap(1000, ProjectedColumn.ofInt("x"), ProjectedColumn.ofLong("timestamp"), ProjectedColumn.ofDouble("weight")),
+                ProjectionChunk.offHeap(1000, ProjectedColumn.ofInt("x"), ProjectedColumn.ofLong("timestamp"), ProjectedColumn.ofDouble("weight"))}) {
+            int x = chunk.columnIndex("x");
+            int timestamp = chunk.columnIndex("timestamp");
+            int weight = chunk.columnIndex("weight");
+
+            long sumX = 0L;
+            long sumTimestamps = 0L;
+            double sumWeights = 0.0;
+            int chunks = 0;
+            try (ProjectionCursor cursor = access.project(query, chunk)) {
+                while (cursor.hasNext()) {
+                    ProjectionChunk rows = cursor.next();
+                    Assert.assertSame(chunk, rows);
+                    ++chunks;
+                    sumX += rows.rows().parallel().mapToLong(row -> rows.getInt(x, row)).sum();
+                    sumTimestamps += rows.rows().parallel().mapToLong(row -> rows.getLong(timestamp, row)).sum();
+                    sumWeights += rows.rows().parallel().mapToDouble(row -> rows.getDouble(weight, row)).sum();
+                }
+            }
+            Assert.assertEquals(3, chunks);
+            Assert.assertEquals(expectedX, sumX);
+            Assert.assertEquals(expectedTimestamps, sumTimestamps);
+            Assert.assertEquals(expectedWeights, sumWeights, 0.001);
+        }
+
+        access.close();
+    }
+
+    @Test
+    public void bufferViewTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), Measurement.class);
+        Dao<Measurement, Integer> dao = access.getDao(Measurement.class);
+        for (int i = 0; i < 10; ++i) {
+            dao.create(new Measurement(i, i, i));
+        }
+
+        ProjectionChunk heap = ProjectionChunk.onHeap(16, ProjectedColumn.ofInt("x"));
+        ProjectionChunk offHeap = ProjectionChunk.offHeap(16, ProjectedColumn.ofInt("x"));
+        PreparedQuery<Measurement> query = dao.queryBuilder().selectColumns("x").orderBy("x", true).prepare();
+        for (ProjectionChunk chunk : new ProjectionChunk[]{heap, offHeap}) {
+            try (ProjectionCursor cursor = access.project(query, chunk)) {
+                Assert.assertEquals(10, cursor.next().getIntBuffer(0).remaining());
+                Assert.assertFalse(cursor.hasNext());
+            }
+            Assert.assertEquals(9, chunk.getIntBuffer(0).get(9));
+        }
+        Assert.assertEquals(45, Arrays.stream(heap.getInts(0), 0, heap.getSize()).sum());
+        try {
+            offHeap.getInts(0);
+            Assert.fail("Off heap chunks have no arrays");
+        } catch (IllegalStateException expected) {
+        }
+
+        access.close();
+    }
+
+    @DatabaseTable
+    static class Measurement {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private int x;
+
+        @DatabaseField
+        private long timestamp;
+
+        @DatabaseField
+        private double weight;
+
+        Measurement() {
+            // Empty constructor for ORMLite
+        }
+
+        Measurement(int x, long timestamp, double weight) {
+            this.x = x;
+            this.timestamp = timestamp;
+            this.weight = weight;
+        }
+    }
+}
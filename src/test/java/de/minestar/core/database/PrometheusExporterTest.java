@@ -0,0 +1,123 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+
+public class PrometheusExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void scrapeTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(folder.newFile()));
+        TableUtils.createTable(access.getConnectionSource(), MetricsTest.Visit.class);
+        DatabaseConsumer<MetricsTest.Visit> consumer = new DatabaseConsumer<>(access, MetricsTest.Visit.class);
+        for (int i = 0; i < 10; ++i) {
+            consumer.consume(new MetricsTest.Visit("player" + i));
+        }
+        consumer.flush();
+        Histogram query = new Histogram();
+        query.record(3_000_000L);
+
+        PrometheusExporter exporter = new PrometheusExporter(new InetSocketAddress("localhost", 0));
+        exporter.register(consumer);
+        exporter.register(access, "main \"db\"");
+        exporter.registerQuery("blocksAt", query);
+        String text = exporter.scrape();
+
+        String labels = "{entity=\"" + MetricsTest.Visit.class.getName() + "\",supplier=\"main \\\"db\\\"\"}";
+        Assert.assertTrue(text.contains("# TYPE minestar_db_consumer_persisted_total counter\n"));
+        Assert.assertTrue(text.contains("minestar_db_consumer_persisted_total" + labels + " 10\n"));
+        Assert.assertTrue(text.contains("minestar_db_consumer_queue_size" + labels + " 0\n"));
+        Assert.assertTrue(text.contains("minestar_db_consumer_batch_size_bucket{entity=\"" + MetricsTest.Visit.class.getName() + "\",supplier=\"main \\\"db\\\"\",le=\"8.0\"} 0\n"));
+        Assert.assertTrue(text.contains("minestar_db_consumer_batch_size_count" + labels + " 1\n"));
+        Assert.assertTrue(text.contains("minestar_db_consumer_batch_size_sum" + labels + " 10.0\n"));
+        Assert.assertTrue(text.contains("minestar_db_pool_connections_in_use{supplier=\"main \\\"db\\\"\"} 0\n"));
+        Assert.assertTrue(text.contains("minestar_db_query_duration_seconds_bucket{query=\"blocksAt\",le=\"0.002621439\"} 0\n"));
+        Assert.assertTrue(text.contains("minestar_db_query_duration_seconds_bucket{query=\"blocksAt\",le=\"0.005242879\"} 1\n"));
+        Assert.assertTrue(text.contains("minestar_db_query_duration_seconds_bucket{query=\"blocksAt\",le=\"+Inf\"} 1\n"));
+        // Every family is declared once
+        Assert.assertEquals(text.indexOf("# TYPE minestar_db_consumer_flush_duration_seconds"), text.lastIndexOf("# TYPE minestar_db_consumer_flush_duration_seconds"));
+
+        // Duplicated series are rejected
+        DatabaseConsumer<MetricsTest.Visit> other = new DatabaseConsumer<>(access, MetricsTest.Visit.class);
+        try {
+            exporter.register(other);
+            Assert.fail("The consumer has the same labels");
+        } catch (IllegalArgumentException expected) {
+            Assert.assertFalse(exporter.scrape().contains("consumer=\""));
+        }
+        exporter.register(other, "second");
+        Assert.assertTrue(exporter.scrape().contains("minestar_db_consumer_persisted_total{entity=\"" + MetricsTest.Visit.class.getName() + "\",supplier=\"main \\\"db\\\"\",consumer=\"second\"} 0\n"));
+        try {
+            exporter.register(new DatabaseAccess(access.getConnectionSupplier(), Collections.emptyList(), true), "main \"db\"");
+            Assert.fail("The access has the same label");
+        } catch (IllegalArgumentException expected) {
+            // The registered access is kept
+        }
+
+        exporter.unregister(consumer);
+        exporter.unregister(other);
+        exporter.unregister(query);
+        Assert.assertFalse(exporter.scrape().contains("minestar_db_consumer"));
+        Assert.assertFalse(exporter.scrape().contains("minestar_db_query"));
+        access.close();
+    }
+
+    @Test
+    public void httpTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(folder.newFile()));
+        try (PrometheusExporter exporter = new PrometheusExporter(new InetSocketAddress("localhost", 0))) {
+            exporter.register(access);
+            exporter.start();
+            URL url = new URL("http://localhost:" + exporter.getAddress().getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[1024];
+                for (int read; (read = in.read(buffer)) != -1; )
+                    body.write(buffer, 0, read);
+            }
+            Assert.assertTrue(body.toString("UTF-8").contains("minestar_db_pool_acquisitions_total{supplier=\"SqliteConnection\"}"));
+        }
+        access.close();
+    }
+}
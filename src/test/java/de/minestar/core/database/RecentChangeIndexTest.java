@@ -0,0 +1,118 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RecentChangeIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryBoundAndHistory() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), BlockChange.class);
+
+        // Keep at most 100 changes of the last hour
+        RecentChangeIndex<BlockChange> index = new RecentChangeIndex<>(change -> change.blockX, change -> change.blockY, change -> change.blockZ,
+                change -> change.timestamp, TimeUnit.HOURS.toMillis(1L), 100);
+        DatabaseConsumer<BlockChange> consumer = new DatabaseConsumer<>(access, BlockChange.class);
+        consumer.addListener(index);
+
+        long start = System.currentTimeMillis();
+        // A 10 x 3 x 5 cuboid spanning multiple chunks and sections
+        for (int i = 0; i < 150; ++i) {
+            consumer.consume(new BlockChange(start + i, 10 + i % 10, 14 + i % 3, -2 - i / 30));
+        }
+        // Queued changes are not indexed before they are persisted
+        Assert.assertEquals(0, index.size());
+        consumer.flush();
+
+        Assert.assertEquals(100, index.size());
+        Assert.assertEquals(start + 50, index.getCompleteSince());
+
+        Cuboid cuboid = new Cuboid(10, 14, -2, 19, 16, -6);
+        // Only the recent changes are in memory
+        List<BlockChange> recent = index.query(cuboid, start, start + 1000, null);
+        Assert.assertEquals(100, recent.size());
+        // The older changes are queried from the database
+        RecentChangeIndex.HistoryQuery<BlockChange> history = RecentChangeIndex.betweenQuery(access, BlockChange.class, "blockX", "blockY", "blockZ", "timestamp");
+        Assert.assertEquals(150, index.query(cuboid, start, start + 1000, history).size());
+
+        // A smaller cuboid inside a single chunk
+        List<BlockChange> corner = index.query(new Cuboid(10, 14, -6, 10, 14, -6), start, start + 1000, history);
+        Assert.assertEquals(1, corner.size());
+        Assert.assertEquals(start + 120, corner.get(0).timestamp);
+
+        access.close();
+    }
+
+    @Test
+    public void testTimeWindow() throws Exception {
+        RecentChangeIndex<BlockChange> index = new RecentChangeIndex<>(change -> change.blockX, change -> change.blockY, change -> change.blockZ,
+                change -> change.timestamp, TimeUnit.MINUTES.toMillis(1L), 100);
+        long now = System.currentTimeMillis();
+        index.afterPersist(Arrays.asList(new BlockChange(now - TimeUnit.MINUTES.toMillis(5L), 0, 0, 0), new BlockChange(now, 0, 0, 0)));
+
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals(1, index.query(new Cuboid(0, 0, 0, 0, 0, 0), 0L, Long.MAX_VALUE, null).size());
+    }
+
+    @DatabaseTable
+    static class BlockChange {
+        @DatabaseField(generatedId = true)
+        private int id;
+        @DatabaseField(index = true)
+        private long timestamp;
+        @DatabaseField
+        private int blockX;
+        @DatabaseField
+        private int blockY;
+        @DatabaseField
+        private int blockZ;
+
+        public BlockChange() {
+            // Empty constructor for ORMLite
+        }
+
+        public BlockChange(long timestamp, int blockX, int blockY, int blockZ) {
+            this.timestamp = timestamp;
+            this.blockX = blockX;
+            this.blockY = blockY;
+            this.blockZ = blockZ;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RollupTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1L);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testChangesPerPlayerAndHour() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), PlayerChange.class);
+
+        Rollup<PlayerChange> perPlayer = new Rollup<>(access, "changes_per_player", change -> change.player, change -> change.timestamp,
+                change -> change.amount, HOUR, 0L);
+        perPlayer.createTableIfNotExists();
+        DatabaseConsumer<PlayerChange> consumer = new DatabaseConsumer<>(access, PlayerChange.class);
+        consumer.addListener(perPlayer);
+
+        // Three hours, alternating between two players
+        for (int i = 0; i < 300; ++i) {
+            consumer.consume(new PlayerChange(i % 2 == 0 ? "Alice" : "Bob", i * HOUR / 100, 2));
+        }
+        // Only persisted objects are counted
+        Assert.assertEquals(0, perPlayer.getPendingCount());
+        consumer.flush();
+        Assert.assertEquals(0, perPlayer.getPendingCount());
+
+        // The second write adds to the existing rows
+        for (int i = 0; i < 10; ++i) {
+            consumer.consume(new PlayerChange("Alice", HOUR + i, 1));
+        }
+        consumer.consume(new PlayerChange("Carol", 0L, 1));
+        consumer.flush();
+        Assert.assertEquals(0, perPlayer.getPendingCount());
+
+        List<RollupRow> alice = perPlayer.query("Alice", 0L, 3 * HOUR);
+        Assert.assertEquals(3, alice.size());
+        Assert.assertEquals(HOUR, alice.get(1).getBucket());
+        Assert.assertEquals(60, alice.get(1).getRowCount());
+        Assert.assertEquals(110, alice.get(1).getValueSum());
+        Assert.assertEquals(7, perPlayer.query(null, 0L, 3 * HOUR).size());
+        Assert.assertEquals(2, perPlayer.query(null, HOUR + 1, 2 * HOUR - 1).size());
+
+        // A failed batch is not counted
+        DatabaseConsumer<PlayerChange> failing = new DatabaseConsumer<PlayerChange>(access, PlayerChange.class) {
+            @Override
+            protected void persist(List<PlayerChange> elements) throws Exception {
+                throw new SQLException("Database is gone");
+            }
+        };
+        failing.addListener(perPlayer);
+        failing.consume(new PlayerChange("Dave", 0L, 1));
+        failing.flush();
+        Assert.assertEquals(0, perPlayer.getPendingCount());
+        Assert.assertTrue(perPlayer.query("Dave", 0L, 3 * HOUR).isEmpty());
+
+        // A throwing listener does not persist the committed batch again
+        DatabaseConsumer<PlayerChange> throwing = new DatabaseConsumer<>(access, PlayerChange.class);
+        throwing.addListener(new Rollup<>(access, "changes_per_player", change -> {
+            throw new IllegalStateException("Broken key function");
+        }, change -> change.timestamp, HOUR));
+        long rows = access.getDao(PlayerChange.class).countOf();
+        throwing.consume(new PlayerChange("Eve", 0L, 1));
+        throwing.flush();
+        throwing.consume(new PlayerChange("Eve", 0L, 1));
+        throwing.flush();
+        Assert.assertEquals(rows + 2, access.getDao(PlayerChange.class).countOf());
+        Assert.assertEquals(0L, throwing.getMetrics().snapshot().getFailures());
+
+        access.close();
+    }
+
+    @DatabaseTable
+    public static class PlayerChange {
+
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private String player;
+
+        @DatabaseField
+        private long timestamp;
+
+        @DatabaseField
+        private int amount;
+
+        public PlayerChange() {
+        }
+
+        public PlayerChange(String player, long timestamp, int amount) {
+            this.player = player;
+            this.timestamp = timestamp;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.Random;
+
+public class SpatialQueryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testEncoding() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; ++i) {
+            SpatialKey key = randomKey(random);
+            Assert.assertEquals(key, SpatialKey.fromStoredKey(key.getStoredKey()));
+        }
+        // Corners of the supported range
+        SpatialKey min = new SpatialKey(SpatialKey.MIN_XZ, SpatialKey.MIN_Y, SpatialKey.MIN_XZ);
+        SpatialKey max = new SpatialKey(SpatialKey.MAX_XZ, SpatialKey.MAX_Y, SpatialKey.MAX_XZ);
+        Assert.assertEquals(Long.MIN_VALUE, min.getStoredKey());
+        Assert.assertEquals(Long.MAX_VALUE, max.getStoredKey());
+    }
+
+    @Test
+    public void testDecomposeCoversCuboid() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50; ++i) {
+            SpatialKey min = randomKey(random);
+            SpatialKey max = new SpatialKey(min.getX() + random.nextInt(20), Math.min(SpatialKey.MAX_Y, min.getY() + random.nextInt(20)), min.getZ() + random.nextInt(20));
+            List<long[]> ranges = SpatialQuery.decompose(min, max, SpatialQuery.DEFAULT_MAX_RANGES);
+            Assert.assertTrue(ranges.size() <= SpatialQuery.DEFAULT_MAX_RANGES);
+
+            for (int x = min.getX(); x <= max.getX(); ++x) {
+                for (int y = min.getY(); y <= max.getY(); ++y) {
+                    for (int z = min.getZ(); z <= max.getZ(); ++z) {
+                        Assert.assertTrue(isCovered(ranges, new SpatialKey(x, y, z).getStoredKey()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testQueryCuboid() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), SpatialEntity.class);
+        Dao<SpatialEntity, Integer> dao = access.getDao(SpatialEntity.class);
+        dao.callBatchTasks(() -> {
+            for (int x = -10; x < 10; ++x) {
+                for (int y = 60; y < 70; ++y) {
+                    for (int z = -10; z < 10; ++z) {
+                        dao.create(new SpatialEntity(new SpatialKey(x, y, z)));
+                    }
+                }
+            }
+            return null;
+        });
+
+        SpatialKey min = new SpatialKey(-3, 62, -5);
+        SpatialKey max = new SpatialKey(4, 65, 2);
+        List<SpatialEntity> result = SpatialQuery.queryCuboid(dao, "position", entity -> entity.position, min, max);
+        Assert.assertEquals(8 * 4 * 8, result.size());
+        for (SpatialEntity entity : result) {
+            Assert.assertTrue(entity.position.isInside(min, max));
+        }
+
+        access.close();
+    }
+
+    private static boolean isCovered(List<long[]> ranges, long storedKey) {
+        for (long[] range : ranges) {
+            if (storedKey >= range[0] && storedKey <= range[1])
+                return true;
+        }
+        return false;
+    }
+
+    private static SpatialKey randomKey(Random random) {
+        return new SpatialKey(random.nextInt(60000000) - 30000000, random.nextInt(SpatialKey.MAX_Y + 1), random.nextInt(60000000) - 30000000);
+    }
+
+    @DatabaseTable
+    static class SpatialEntity {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(persisterClass = SpatialKeyPersister.class, index = true)
+        private SpatialKey position;
+
+        public SpatialEntity() {
+            // Empty constructor for ORMLite
+        }
+
+        public SpatialEntity(SpatialKey position) {
+            this.position = position;
+        }
+    }
+}
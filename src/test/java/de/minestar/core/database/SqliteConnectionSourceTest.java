@@ -0,0 +1,163 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SqliteConnectionSourceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void concurrentWritersTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile(), new SqliteSettings()));
+        ConnectionSource source = access.getConnectionSource();
+        Assert.assertTrue(source instanceof SqliteConnectionSource);
+        TableUtils.createTableIfNotExists(source, WrittenRow.class);
+        Dao<WrittenRow, Integer> dao = access.getDao(WrittenRow.class);
+        Assert.assertEquals("wal", dao.queryRaw("PRAGMA journal_mode").getFirstResult()[0]);
+
+        // Readers run while the consumers write
+        AtomicBoolean reading = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            Thread reader = new Thread(() -> {
+                while (reading.get()) {
+                    try {
+                        dao.countOf();
+                        reads.incrementAndGet();
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        // Every writer flushes its own consumer concurrently to the others
+        final int consumerCount = 4;
+        final int rowsPerConsumer = 5000;
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < consumerCount; ++i) {
+            final int consumerId = i;
+            Thread writer = new Thread(() -> {
+                DatabaseConsumer<WrittenRow> consumer = new DatabaseConsumer<>(access, WrittenRow.class);
+                for (int j = 0; j < rowsPerConsumer; ++j) {
+                    consumer.consume(new WrittenRow(consumerId, j));
+                    if (j % 100 == 0)
+                        consumer.flush();
+                }
+                consumer.flush();
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        reading.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        // No batch was lost to a busy database
+        Assert.assertEquals(consumerCount * rowsPerConsumer, dao.countOf());
+        Assert.assertTrue(reads.get() > 0L);
+
+        access.close();
+    }
+
+    @Test(expected = SQLException.class)
+    public void readOnlyConnectionTest() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile(), new SqliteSettings()));
+        TableUtils.createTableIfNotExists(access.getConnectionSource(), WrittenRow.class);
+        DatabaseConnection connection = access.getConnectionSource().getReadOnlyConnection();
+        try {
+            connection.executeStatement("INSERT INTO writtenrow (consumer, value) VALUES (1, 1)", DatabaseConnection.DEFAULT_RESULT_FLAGS);
+        } finally {
+            access.getConnectionSource().releaseConnection(connection);
+            access.close();
+        }
+    }
+
+    @Test
+    public void configTest() throws Exception {
+        File config = temporaryFolder.newFile();
+        String json = "{\"file\": \"" + temporaryFolder.newFile().getAbsolutePath().replace("\\", "\\\\") + "\", "
+                + "\"tuning\": {\"synchronous\": \"full\", \"mmapSize\": 0, \"readConnections\": 2}}";
+        Files.write(config.toPath(), json.getBytes(StandardCharsets.UTF_8));
+
+        ConnectionSource source = new ConfigSqliteConnection(config).createConnection();
+        Assert.assertTrue(source instanceof SqliteConnectionSource);
+        SqliteSettings settings = ((SqliteConnectionSource) source).getSettings();
+        Assert.assertEquals(SqliteSettings.Synchronous.FULL, settings.getSynchronous());
+        Assert.assertEquals(0L, settings.getMmapSize());
+        Assert.assertEquals(2, settings.getReadConnections());
+        Assert.assertEquals(SqliteSettings.JournalMode.WAL, settings.getJournalMode());
+        source.close();
+    }
+
+    @DatabaseTable
+    static class WrittenRow {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private int consumer;
+
+        @DatabaseField
+        private int value;
+
+        WrittenRow() {
+            // Empty constructor for ORMLite
+        }
+
+        WrittenRow(int consumer, int value) {
+            this.consumer = consumer;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.SQLException;
+
+public class StoreAndForwardTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shipTest() throws Exception {
+        DatabaseAccess local = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile(), new SqliteSettings()));
+        DatabaseAccess remote = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        StoreAndForward<ForwardedBlock> storeAndForward = new StoreAndForward<>(local, remote, ForwardedBlock.class, "blocks", 1000);
+        storeAndForward.createTablesIfNotExists();
+
+        final int sampleSize = 4500;
+        DatabaseConsumer<ForwardedBlock> consumer = storeAndForward.createConsumer();
+        for (int i = 0; i < sampleSize; ++i) {
+            consumer.consume(new ForwardedBlock(i));
+        }
+        consumer.flush();
+        Assert.assertEquals(sampleSize, storeAndForward.getPendingCount());
+
+        storeAndForward.start(10L);
+        for (int i = 0; i < 100 && storeAndForward.getPendingCount() > 0; ++i) {
+            Thread.sleep(50L);
+        }
+        storeAndForward.stop();
+        Assert.assertNull(storeAndForward.getLastFailure());
+
+        // All rows are shipped once in their order and removed locally
+        Dao<ForwardedBlock, Integer> remoteDao = remote.getDao(ForwardedBlock.class);
+        Assert.assertEquals(sampleSize, remoteDao.countOf());
+        Assert.assertEquals(0L, local.<Dao<ForwardedBlock, Integer>, ForwardedBlock>getDao(ForwardedBlock.class).countOf());
+        int expected = 0;
+        for (ForwardedBlock block : remoteDao.queryBuilder().orderBy("id", true).query()) {
+            Assert.assertEquals(expected++, block.value);
+        }
+        Assert.assertEquals(sampleSize, storeAndForward.getShippedId());
+
+        local.close();
+        remote.close();
+    }
+
+    @Test
+    public void unreachableRemoteTest() throws Exception {
+        DatabaseAccess local = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile(), new SqliteSettings()));
+        DatabaseAccess remote = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(local.getConnectionSource(), ForwardedBlock.class);
+        TableUtils.createTableIfNotExists(remote.getConnectionSource(), ShipmentProgress.class);
+        StoreAndForward<ForwardedBlock> storeAndForward = new StoreAndForward<>(local, remote, ForwardedBlock.class, "blocks");
+
+        DatabaseConsumer<ForwardedBlock> consumer = storeAndForward.createConsumer();
+        for (int i = 0; i < 100; ++i) {
+            consumer.consume(new ForwardedBlock(i));
+        }
+        consumer.flush();
+
+        // The remote table is missing, so the rows stay local
+        try {
+            storeAndForward.ship();
+            Assert.fail("The remote table does not exist");
+        } catch (SQLException expected) {
+        }
+        Assert.assertEquals(100L, storeAndForward.getPendingCount());
+
+        TableUtils.createTableIfNotExists(remote.getConnectionSource(), ForwardedBlock.class);
+        Assert.assertEquals(100, storeAndForward.ship());
+        Assert.assertEquals(0, storeAndForward.ship());
+
+        // A new shipper continues at the stored progress
+        StoreAndForward<ForwardedBlock> restarted = new StoreAndForward<>(local, remote, ForwardedBlock.class, "blocks");
+        Assert.assertEquals(100L, restarted.getShippedId());
+        Assert.assertEquals(0L, restarted.getPendingCount());
+
+        local.close();
+        remote.close();
+    }
+
+    @Test
+    public void recreatedLocalTest() throws Exception {
+        File localFile = temporaryFolder.newFile();
+        DatabaseAccess local = new DatabaseAccess(new SqliteConnection(localFile, new SqliteSettings()));
+        DatabaseAccess remote = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        StoreAndForward<ForwardedBlock> storeAndForward = new StoreAndForward<>(local, remote, ForwardedBlock.class, "blocks");
+        storeAndForward.createTablesIfNotExists();
+        DatabaseConsumer<ForwardedBlock> consumer = storeAndForward.createConsumer();
+        for (int i = 0; i < 100; ++i) {
+            consumer.consume(new ForwardedBlock(i));
+        }
+        consumer.flush();
+        Assert.assertEquals(100, storeAndForward.ship());
+        local.close();
+
+        // The ids of the new local database start again, but its rows are shipped anyway
+        Assert.assertTrue(localFile.delete());
+        local = new DatabaseAccess(new SqliteConnection(localFile, new SqliteSettings()));
+        StoreAndForward<ForwardedBlock> restarted = new StoreAndForward<>(local, remote, ForwardedBlock.class, "blocks");
+        restarted.createTablesIfNotExists();
+        consumer = restarted.createConsumer();
+        for (int i = 100; i < 110; ++i) {
+            consumer.consume(new ForwardedBlock(i));
+        }
+        consumer.flush();
+        Assert.assertEquals(0L, restarted.getShippedId());
+        Assert.assertEquals(10, restarted.ship());
+        Assert.assertEquals(110L, remote.<Dao<ForwardedBlock, Integer>, ForwardedBlock>getDao(ForwardedBlock.class).countOf());
+        Assert.assertEquals(10L, restarted.getShippedId());
+
+        local.close();
+        remote.close();
+    }
+
+    @DatabaseTable
+    static class ForwardedBlock {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private int value;
+
+        ForwardedBlock() {
+            // Empty constructor for ORMLite
+        }
+
+        ForwardedBlock(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class StringDictionaryTest {
+
+    private static final String[] REASONS = {"Steve", "Alex", "Creeper", "TNT", "Enderman"};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDictionaryColumn() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        StringDictionary reasons = new StringDictionary(access, "reason");
+        reasons.createTableIfNotExists();
+        DictionaryPersister.register(reasons);
+        try {
+            TableUtils.createTableIfNotExists(access.getConnectionSource(), EncodedBlock.class);
+
+            DatabaseConsumer<EncodedBlock> consumer = new DatabaseConsumer<>(access, EncodedBlock.class);
+            consumer.addListener(reasons.batchCreator(block -> block.reason));
+            for (int i = 0; i < 500; ++i) {
+                consumer.consume(new EncodedBlock(i % 7 == 0 ? null : REASONS[i % REASONS.length], i));
+            }
+            consumer.flush();
+            Assert.assertEquals(REASONS.length, reasons.size());
+            Assert.assertEquals(0L, reasons.getBatchCreateFailures());
+
+            // A failed batch creation is counted
+            StringDictionary missing = new StringDictionary(access, "missing");
+            try {
+                missing.batchCreator((String value) -> value).beforePersist(Arrays.asList("Steve", "Alex"));
+                Assert.fail("The dictionary table does not exist");
+            } catch (IllegalStateException expected) {
+                Assert.assertEquals(1L, missing.getBatchCreateFailures());
+            }
+
+            // The column contains the ids
+            Dao<EncodedBlock, Integer> dao = access.getDao(EncodedBlock.class);
+            String[] firstRow = dao.queryRaw("SELECT reason FROM encodedblock WHERE blockX = 1").getFirstResult();
+            Assert.assertEquals(String.valueOf(reasons.idOf(REASONS[1])), firstRow[0]);
+
+            // Strings are decoded and query arguments are encoded transparently
+            List<EncodedBlock> creeper = dao.queryBuilder().where().eq("reason", "Creeper").query();
+            Assert.assertEquals(85, creeper.size());
+            Assert.assertEquals("Creeper", creeper.get(0).reason);
+            Assert.assertNull(dao.queryForEq("blockX", 7).get(0).reason);
+
+            // Unknown query arguments match nothing and are not created
+            Assert.assertTrue(dao.queryBuilder().where().eq("reason", "Typo").query().isEmpty());
+            Assert.assertEquals(StringDictionary.UNKNOWN_ID, reasons.findId("Typo"));
+            Assert.assertEquals(REASONS.length, new StringDictionary(access, "reason").load());
+
+            // Another server sees the values created by this server
+            StringDictionary other = new StringDictionary(access, "reason");
+            Assert.assertEquals(REASONS.length, other.load());
+            Assert.assertEquals("TNT", other.valueOf(reasons.idOf("TNT")));
+            other.createAll(Arrays.asList("TNT", "Wither"));
+            Assert.assertEquals("Wither", reasons.valueOf(other.idOf("Wither")));
+        } finally {
+            DictionaryPersister.unregister(reasons);
+            access.close();
+        }
+    }
+
+    @DatabaseTable
+    public static class EncodedBlock {
+
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(persisterClass = DictionaryPersister.class)
+        private String reason;
+
+        @DatabaseField
+        private int blockX;
+
+        public EncodedBlock() {
+        }
+
+        public EncodedBlock(String reason, int blockX) {
+            this.reason = reason;
+            this.blockX = blockX;
+        }
+    }
+}
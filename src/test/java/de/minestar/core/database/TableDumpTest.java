@@ -0,0 +1,147 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class TableDumpTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void exportImportTest() throws Exception {
+        DatabaseAccess source = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        DatabaseAccess target = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(source.getConnectionSource(), DumpedBlock.class);
+        TableUtils.createTableIfNotExists(target.getConnectionSource(), DumpedBlock.class);
+
+        final int sampleSize = 5000;
+        Dao<DumpedBlock, Integer> sourceDao = source.getDao(DumpedBlock.class);
+        sourceDao.callBatchTasks(() -> {
+            for (int i = 0; i < sampleSize; ++i) {
+                sourceDao.create(new DumpedBlock(i));
+            }
+            // A row larger than the buffers of the dump
+            DumpedBlock large = new DumpedBlock(sampleSize);
+            large.data = new byte[3 << 20];
+            Arrays.fill(large.data, (byte) 7);
+            sourceDao.create(large);
+            return null;
+        });
+
+        Path file = temporaryFolder.newFile().toPath();
+        TableDump export = new TableDump(source);
+        Assert.assertEquals(sampleSize + 1, export.exportTable(DumpedBlock.class, file));
+        TableDump dumpImport = new TableDump(target);
+        Assert.assertEquals(sampleSize + 1, dumpImport.importTable(DumpedBlock.class, file));
+
+        Dao<DumpedBlock, Integer> targetDao = target.getDao(DumpedBlock.class);
+        List<DumpedBlock> expected = sourceDao.queryBuilder().orderBy("id", true).query();
+        List<DumpedBlock> actual = targetDao.queryBuilder().orderBy("id", true).query();
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            DumpedBlock e = expected.get(i);
+            DumpedBlock a = actual.get(i);
+            Assert.assertEquals(e.id, a.id);
+            Assert.assertEquals(e.timestamp, a.timestamp);
+            Assert.assertEquals(e.player, a.player);
+            Assert.assertEquals(e.x, a.x);
+            Assert.assertEquals(e.weight, a.weight, 0.0);
+            Assert.assertEquals(e.placed, a.placed);
+            Assert.assertEquals(e.created, a.created);
+            Assert.assertArrayEquals(e.data, a.data);
+        }
+
+        source.close();
+        target.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidDumpTest() throws Exception {
+        DatabaseAccess target = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TableUtils.createTableIfNotExists(target.getConnectionSource(), DumpedBlock.class);
+        try {
+            new TableDump(target).importTable(DumpedBlock.class, temporaryFolder.newFile().toPath());
+        } finally {
+            target.close();
+        }
+    }
+
+    @DatabaseTable
+    static class DumpedBlock {
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField
+        private long timestamp;
+
+        @DatabaseField
+        private String player;
+
+        @DatabaseField
+        private Integer x;
+
+        @DatabaseField
+        private double weight;
+
+        @DatabaseField
+        private boolean placed;
+
+        @DatabaseField
+        private Date created;
+
+        @DatabaseField(dataType = DataType.BYTE_ARRAY)
+        private byte[] data;
+
+        DumpedBlock() {
+            // Empty constructor for ORMLite
+        }
+
+        DumpedBlock(int i) {
+            this.timestamp = 1000L * i;
+            this.player = i % 3 == 0 ? null : "player" + i;
+            this.x = i % 5 == 0 ? null : i - 100;
+            this.weight = i / 8.0;
+            this.placed = i % 2 == 0;
+            this.created = i % 7 == 0 ? null : new Date(1400000000000L + i);
+            this.data = i % 4 == 0 ? null : new byte[]{(byte) i, (byte) (i >> 8)};
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Minestar.de <http://www.minestar.de/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package de.minestar.core.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TimePartitionedTableTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1L);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPartitions() throws Exception {
+        DatabaseAccess access = new DatabaseAccess(new SqliteConnection(temporaryFolder.newFile()));
+        TimePartitionedTable<LogEntry> table = new TimePartitionedTable<>(access, LogEntry.class, entry -> entry.timestamp, "timestamp", PartitionInterval.DAY);
+        Assert.assertTrue(table.getPartitions().isEmpty());
+
+        // 2015-01-01 00:00 UTC
+        long start = 1420070400000L;
+        Assert.assertEquals("logentry_20150101", table.getTableName(start + DAY - 1));
+
+        PartitionedDatabaseConsumer<LogEntry> consumer = new PartitionedDatabaseConsumer<>(table);
+        // Four entries per day over three days
+        for (int i = 0; i < 12; ++i) {
+            consumer.consume(new LogEntry(start + i * DAY / 4, i));
+        }
+        consumer.flush();
+        Assert.assertEquals(Arrays.asList(start, start + DAY, start + 2 * DAY), table.getPartitions());
+
+        Assert.assertEquals(12, table.query(start, start + 3 * DAY, null).size());
+        // The second day only
+        Assert.assertEquals(4, table.query(start + DAY, start + 2 * DAY - 1, null).size());
+        List<LogEntry> filtered = table.query(start, start + 3 * DAY, where -> where.ge("value", 10));
+        Assert.assertEquals(2, filtered.size());
+
+        // Existing partitions are found by a new instance
+        TimePartitionedTable<LogEntry> other = new TimePartitionedTable<>(access, LogEntry.class, entry -> entry.timestamp, "timestamp", PartitionInterval.DAY);
+        Assert.assertEquals(table.getPartitions(), other.getPartitions());
+
+        // Drop the first day, the second day is partially newer
+        Assert.assertEquals(1, table.dropPartitionsBefore(start + DAY + 1));
+        Assert.assertEquals(8, table.query(start, start + 3 * DAY, null).size());
+        other.refreshPartitions();
+        Assert.assertEquals(2, other.getPartitions().size());
+
+        consumer.stop();
+        access.close();
+    }
+
+    @Test
+    public void testWeekInterval() {
+        // 2015-01-07 is a wednesday, the week starts at monday 2015-01-05
+        long wednesday = 1420070400000L + 6 * DAY + 1000L;
+        long monday = PartitionInterval.WEEK.startOf(wednesday);
+        Assert.assertEquals(1420070400000L + 4 * DAY, monday);
+        Assert.assertEquals(monday + 7 * DAY, PartitionInterval.WEEK.nextStart(monday));
+        Assert.assertEquals("20150105", PartitionInterval.WEEK.suffix(monday));
+        Assert.assertEquals(monday, PartitionInterval.WEEK.parseSuffix("20150105"));
+    }
+
+    @DatabaseTable
+    public static class LogEntry {
+
+        @DatabaseField(generatedId = true)
+        private int id;
+
+        @DatabaseField(index = true)
+        private long timestamp;
+
+        @DatabaseField
+        private int value;
+
+        public LogEntry() {
+        }
+
+        public LogEntry(long timestamp, int value) {
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+}